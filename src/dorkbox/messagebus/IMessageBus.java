@@ -37,6 +37,8 @@
  */
 package dorkbox.messagebus;
 
+import dorkbox.messagebus.dispatch.Publisher;
+import dorkbox.messagebus.error.DeadLetterStore;
 import dorkbox.messagebus.error.IPublicationErrorHandler;
 
 /**
@@ -119,6 +121,56 @@ public interface IMessageBus extends PubSubSupport {
      */
     void addErrorHandler(IPublicationErrorHandler errorHandler);
 
+    /**
+     * @return the number of messages of this type that were published, but had no subscribers (for multiple messages, this is the type
+     *         of the first message). This is counted even if there are no DeadMessage handlers.
+     */
+    long getDeadMessageCount(Class<?> messageClass);
+
+    /**
+     * This is a cheap check (it only uses the tables that are used for publication), so it can be used to skip creating messages that
+     * nothing would receive.
+     *
+     * @return true if a message of this type would be received by at least one handler (DeadMessage handlers do not count)
+     */
+    boolean hasSubscribers(Class<?> messageClass);
+
+    /**
+     * Creates a publisher for messages of exactly this type. The publisher resolves the subscriptions ahead of time (and only again when
+     * a new listener class is subscribed), so it skips the lookups that publish() has to do for every message. Publication is synchronous.
+     */
+    <T> Publisher<T> publisherFor(Class<T> messageClass);
+
+    /**
+     * Resolves (and caches) the subscriptions of these message types ahead of time, including their super-type subscriptions. This way
+     * the first publication of each type does not have to. Subscribing a NEW listener class clears the super-type subscriptions again,
+     * so this should be called after the listeners have been subscribed.
+     *
+     * @return how long priming took, in nanoseconds
+     */
+    long prime(Class<?>... messageTypes);
+
+    /**
+     * Creates the subscriptions of these listener classes ahead of time (finds their handlers and generates their invokers), WITHOUT
+     * subscribing any listeners. This way the first subscribe() of each class does not have to.
+     *
+     * @return how long priming took, in nanoseconds
+     */
+    long primeListeners(Class<?>... listenerClasses);
+
+    /**
+     * Creates the subscriptions of these listener classes ahead of time (finds their handlers and generates their invokers), WITHOUT
+     * subscribing any listeners, using a fork-join pool of this many threads.
+     *
+     * @return how long priming took, in nanoseconds
+     */
+    long primeListeners(int numberOfThreads, Class<?>... listenerClasses);
+
+    /**
+     * @return the record of the most recent messages that had no subscribers, or null if dead letters are not recorded.
+     */
+    DeadLetterStore getDeadLetterStore();
+
     /**
      * Check whether any asynchronous message publications are pending to be processed
      *
@@ -15,11 +15,28 @@
  */
 package dorkbox.messagebus;
 
+import dorkbox.messagebus.common.CollectFuture;
+import dorkbox.messagebus.common.HandlerMetadataCache;
+import dorkbox.messagebus.common.MessageCarrier;
+import dorkbox.messagebus.common.MessageCollector;
+import dorkbox.messagebus.common.MessageConsumer;
+import dorkbox.messagebus.common.MessageConsumer2;
+import dorkbox.messagebus.common.MessageConsumer3;
+import dorkbox.messagebus.common.MessageSupplier;
+import dorkbox.messagebus.error.DeadLetterSerializer;
+import dorkbox.messagebus.error.DeadLetterStore;
+import dorkbox.messagebus.error.DeadLetters;
 import dorkbox.messagebus.error.ErrorHandler;
 import dorkbox.messagebus.error.IPublicationErrorHandler;
+import dorkbox.messagebus.error.KryoDeadLetterSerializer;
+import dorkbox.messagebus.error.PublicationError;
 import dorkbox.messagebus.dispatch.Dispatch;
 import dorkbox.messagebus.dispatch.DispatchExact;
 import dorkbox.messagebus.dispatch.DispatchExactWithSuperTypes;
+import dorkbox.messagebus.dispatch.EpochDispatch;
+import dorkbox.messagebus.dispatch.Publisher;
+import dorkbox.messagebus.subscription.EpochTracker;
+import dorkbox.messagebus.subscription.Registration;
 import dorkbox.messagebus.subscription.SubscriptionManager;
 import dorkbox.messagebus.synchrony.AsyncABQ;
 import dorkbox.messagebus.synchrony.AsyncABQ_noGc;
@@ -27,6 +44,10 @@ import dorkbox.messagebus.synchrony.AsyncDisruptor;
 import dorkbox.messagebus.synchrony.Sync;
 import dorkbox.messagebus.synchrony.Synchrony;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Future;
+
 /**
  * The base class for all message bus implementations with support for asynchronous message dispatch.
  *
@@ -48,6 +69,16 @@ class MessageBus implements IMessageBus {
      */
     public static boolean useAsmForDispatch = true;
 
+    /**
+     * When using ASM, generating the MethodAccess class for a listener takes time (and memory), which is wasted on handlers that are only
+     * called a handful of times. So handlers are first invoked via java reflection, and the MethodAccess is generated (on a background
+     * thread) and swapped in once a handler has been invoked this many times. Listener classes that are primed (primeListeners(), or
+     * subscribeAll()) have their MethodAccess generated right away.
+     *
+     * If this value is <= 0, the MethodAccess is generated when the listener is first subscribed.
+     */
+    public static int asmInvocationThreshold = 1000;
+
     /**
      * 'useDisruptorForAsyncPublish' specifies to use the LMAX Disruptor for asynchronous dispatch of published messages. The benefit of
      * such is that it is VERY high performance and generates zero garbage on the heap. The alternative (if this value is false), is to
@@ -78,6 +109,86 @@ class MessageBus implements IMessageBus {
      */
     public static boolean useStrongReferencesByDefault = true;
 
+    /**
+     * By default, @Synchronized handlers synchronize on the listener. When many threads publish to the same listener, they end up
+     * blocking each other (a lock convoy). If this is true, each invocation is added to a (lock-free) mailbox instead, and whichever
+     * thread owns the mailbox executes the invocations one at a time, in the order they were added (the other threads do not wait).
+     *
+     * This means that a @Synchronized handler might be invoked by a different thread than the one that published the message, and
+     * possibly after publish() has returned. Errors are still reported to the error handlers.
+     */
+    public static boolean useMailboxesForSynchronizedHandlers = false;
+
+    /**
+     * Tracks which publications are in progress, so that unsubscribeAndWait() can wait for them to finish. This is off by default,
+     * because it adds a thread-local lookup and two volatile accesses to every publication. If it is off, unsubscribeAndWait() throws
+     * an IllegalStateException.
+     */
+    public static boolean trackPublications = false;
+
+    /**
+     * The super-type lookups (which are calculated on the first publication of a message type) are cached, so that publication is fast.
+     * Every distinct class that is published (lambdas, proxies, runtime-generated classes, etc) adds an entry to these caches, so they
+     * are bounded and the least recently used entries are evicted once this size is reached.
+     *
+     * If your application publishes more distinct message types than this, increase this value (evicted types are recalculated
+     * on their next publication, which is slow).
+     */
+    public static int superTypeCacheSize = 2048;
+
+    /**
+     * Enables counting the cache-hits for the super-type caches. This is off by default, because it adds a (non-atomic) write for every
+     * publication. Cache misses and evictions are always counted.
+     */
+    public static boolean recordCacheStatistics = false;
+
+    /**
+     * By default, publication errors are handled on the thread that caused them. If this value is > 0, publication errors are instead
+     * placed onto a queue (of this size) and are handled by a separate thread, so that a misbehaving listener (or a slow error handler)
+     * cannot slow down publication. If the queue is full, the error is dropped.
+     */
+    public static int asyncErrorQueueSize = 0;
+
+    /**
+     * If this value is > 0, the most recent messages that had no subscribers (up to this many) are recorded, so that they can be
+     * inspected later via {@link #getDeadLetterStore()}. Recording a dead message allocates a small record, so this is off by default.
+     */
+    public static int deadLetterStoreSize = 0;
+
+    /**
+     * If the dead letter store is enabled and this is not null, the dead letters that no longer fit in memory are appended to this
+     * (memory-mapped) file, up to {@link #deadLetterSpillFileSize} bytes.
+     */
+    public static File deadLetterSpillFile = null;
+
+    /**
+     * The maximum size (in bytes) of the dead letter spill file.
+     */
+    public static int deadLetterSpillFileSize = 64 * 1024 * 1024;
+
+    /**
+     * How dead letters are converted to bytes for the spill file. If null, Kryo is used.
+     */
+    public static DeadLetterSerializer deadLetterSerializer = null;
+
+    /**
+     * Dead messages are counted per type. This is the maximum number of types that are counted individually, the dead messages of any
+     * other types are only counted as a total (so that publishing lots of distinct, generated classes cannot grow this without bound).
+     */
+    public static int deadMessageCountedTypes = DeadLetters.DEFAULT_MAX_COUNTED_TYPES;
+
+    /**
+     * If this is not null, the handlers found in each listener class are saved to this (memory-mapped) file, so that after the JVM is
+     * restarted, the listener classes (that did not change) do not have to be scanned again. The file is shared by all of the buses in
+     * the JVM, but must not be used by more than one JVM at the same time.
+     */
+    public static File handlerCacheFile = null;
+
+    /**
+     * The maximum size (in bytes) of the handler cache file.
+     */
+    public static int handlerCacheFileSize = 4 * 1024 * 1024;
+
 
     static {
         // check to see if we can use ASM for method access (it's a LOT faster than reflection). By default, we use ASM.
@@ -111,6 +222,7 @@ class MessageBus implements IMessageBus {
     }
 
     private final ErrorHandler errorHandler;
+    private final DeadLetters deadLetters;
 
     private final SubscriptionManager subscriptionManager;
 
@@ -155,24 +267,36 @@ class MessageBus implements IMessageBus {
         // round to the nearest power of 2
         numberOfThreads = 1 << (32 - Integer.numberOfLeadingZeros(getMinNumberOfThreads(numberOfThreads) - 1));
 
-        this.errorHandler = new ErrorHandler();
+        this.errorHandler = new ErrorHandler(asyncErrorQueueSize);
+        this.deadLetters = new DeadLetters(createDeadLetterStore(errorHandler), deadMessageCountedTypes);
 
         /**
          * Will subscribe and publish using all provided parameters in the method signature (for subscribe), and arguments (for publish)
          */
-        this.subscriptionManager = new SubscriptionManager(useStrongReferencesByDefault);
+        this.subscriptionManager = new SubscriptionManager(useStrongReferencesByDefault, openHandlerCache(errorHandler),
+                                                           useMailboxesForSynchronizedHandlers ? errorHandler : null);
 
+        final Dispatch dispatch;
         switch (dispatchMode) {
             case Exact:
-                dispatch = new DispatchExact(errorHandler, subscriptionManager);
+                dispatch = new DispatchExact(errorHandler, subscriptionManager, deadLetters);
                 break;
 
             case ExactWithSuperTypes:
             default:
-                dispatch = new DispatchExactWithSuperTypes(errorHandler, subscriptionManager);
+                dispatch = new DispatchExactWithSuperTypes(errorHandler, subscriptionManager, deadLetters);
                 break;
         }
 
+        // if enabled, every publication is tracked, so that un-subscribing can wait for the publications that are in progress
+        final EpochTracker epochs = subscriptionManager.getEpochs();
+        if (epochs != null) {
+            this.dispatch = new EpochDispatch(dispatch, epochs);
+        }
+        else {
+            this.dispatch = dispatch;
+        }
+
         syncPublication = new Sync();
 
         // the disruptor is preferred, but if it cannot be loaded -- we want to try to continue working, hence the use of ArrayBlockingQueue
@@ -190,6 +314,52 @@ class MessageBus implements IMessageBus {
         }
     }
 
+    /**
+     * @return null if the handlers are not cached on disk
+     */
+    private static
+    HandlerMetadataCache openHandlerCache(final ErrorHandler errorHandler) {
+        if (handlerCacheFile == null) {
+            return null;
+        }
+
+        try {
+            return HandlerMetadataCache.open(handlerCacheFile, handlerCacheFileSize);
+        } catch (IOException e) {
+            errorHandler.handlePublicationError(new PublicationError().setMessage("Unable to open the handler cache file. " +
+                                                                                  "Listener classes will always be scanned.")
+                                                                      .setCause(e));
+            return null;
+        }
+    }
+
+    /**
+     * @return null if dead letters are not recorded
+     */
+    private static
+    DeadLetterStore createDeadLetterStore(final ErrorHandler errorHandler) {
+        if (deadLetterStoreSize <= 0) {
+            return null;
+        }
+
+        if (deadLetterSpillFile != null) {
+            DeadLetterSerializer serializer = deadLetterSerializer;
+            if (serializer == null) {
+                serializer = new KryoDeadLetterSerializer();
+            }
+
+            try {
+                return new DeadLetterStore(deadLetterStoreSize, deadLetterSpillFile, deadLetterSpillFileSize, serializer);
+            } catch (IOException e) {
+                errorHandler.handlePublicationError(new PublicationError().setMessage("Unable to open the dead letter spill file. " +
+                                                                                      "Dead letters will only be kept in memory.")
+                                                                          .setCause(e));
+            }
+        }
+
+        return new DeadLetterStore(deadLetterStoreSize);
+    }
+
     /**
      * Always return at least 2 threads
      */
@@ -217,6 +387,17 @@ class MessageBus implements IMessageBus {
         subscriptionManager.subscribe(listener);
     }
 
+    /**
+     * Subscribe all handlers of the given listeners (the same as calling subscribe() for each of them). The listener classes that have
+     * not been subscribed before are analyzed in parallel (one thread per processor) before the listeners are subscribed, which is a lot
+     * faster than subscribing them one by one when starting up with many different listener classes.
+     */
+    @Override
+    public
+    void subscribeAll(final Object... listeners) {
+        subscriptionManager.subscribe(listeners, Runtime.getRuntime().availableProcessors());
+    }
+
 
     /**
      * Immediately remove all registered message handlers (if any) of the given listener.
@@ -238,6 +419,126 @@ class MessageBus implements IMessageBus {
         subscriptionManager.unsubscribe(listener);
     }
 
+    /**
+     * Remove all registered message handlers (if any) of the given listener, and then wait until all of the publications that were in
+     * progress (sync or async) have finished. When this call returns, the listener will not receive any more messages.
+     * <p>
+     * If this is called from within a message handler, the publication of that handler is not waited for.
+     *
+     * @throws IllegalStateException if publications are not tracked (see {@link #trackPublications})
+     */
+    @Override
+    public
+    void unsubscribeAndWait(final Object listener) throws InterruptedException {
+        if (listener == null) {
+            return;
+        }
+
+        subscriptionManager.unsubscribeAndWait(listener);
+    }
+
+    /**
+     * Subscribe all handlers of the given listener (the same as subscribe()), and return a handle that removes them again when it is
+     * closed. Closing the handle does not have to look up the subscriptions of the listener, and does not block other subscribe() or
+     * unsubscribe() calls.
+     */
+    @Override
+    public
+    Registration register(final Object listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("The listener may not be null");
+        }
+
+        return subscriptionManager.register(listener);
+    }
+
+    /**
+     * Subscribe a functional handler for one message type, without any annotation scanning or reflection. The consumer receives
+     * messages of this type (and of its subtypes, if the bus dispatches to super types).
+     */
+    @Override
+    public
+    <T> void subscribe(final Class<T> messageClass, final MessageConsumer<T> consumer) {
+        if (consumer == null) {
+            return;
+        }
+
+        // single writer principle using synchronised
+        subscriptionManager.subscribe(consumer, new Class<?>[] {messageClass});
+    }
+
+    /**
+     * Subscribe a functional handler for <b>TWO</b> message types, without any annotation scanning or reflection.
+     */
+    @Override
+    public
+    <T1, T2> void subscribe(final Class<T1> messageClass1, final Class<T2> messageClass2, final MessageConsumer2<T1, T2> consumer) {
+        if (consumer == null) {
+            return;
+        }
+
+        // single writer principle using synchronised
+        subscriptionManager.subscribe(consumer, new Class<?>[] {messageClass1, messageClass2});
+    }
+
+    /**
+     * Subscribe a functional handler for <b>THREE</b> message types, without any annotation scanning or reflection.
+     */
+    @Override
+    public
+    <T1, T2, T3> void subscribe(final Class<T1> messageClass1, final Class<T2> messageClass2, final Class<T3> messageClass3,
+                                final MessageConsumer3<T1, T2, T3> consumer) {
+        if (consumer == null) {
+            return;
+        }
+
+        // single writer principle using synchronised
+        subscriptionManager.subscribe(consumer, new Class<?>[] {messageClass1, messageClass2, messageClass3});
+    }
+
+    /**
+     * Remove a functional handler, that was subscribed with the same message type.
+     */
+    @Override
+    public
+    <T> void unsubscribe(final Class<T> messageClass, final MessageConsumer<T> consumer) {
+        if (consumer == null) {
+            return;
+        }
+
+        // single writer principle using synchronised
+        subscriptionManager.unsubscribe(consumer, new Class<?>[] {messageClass});
+    }
+
+    /**
+     * Remove a functional handler, that was subscribed with the same <b>TWO</b> message types.
+     */
+    @Override
+    public
+    <T1, T2> void unsubscribe(final Class<T1> messageClass1, final Class<T2> messageClass2, final MessageConsumer2<T1, T2> consumer) {
+        if (consumer == null) {
+            return;
+        }
+
+        // single writer principle using synchronised
+        subscriptionManager.unsubscribe(consumer, new Class<?>[] {messageClass1, messageClass2});
+    }
+
+    /**
+     * Remove a functional handler, that was subscribed with the same <b>THREE</b> message types.
+     */
+    @Override
+    public
+    <T1, T2, T3> void unsubscribe(final Class<T1> messageClass1, final Class<T2> messageClass2, final Class<T3> messageClass3,
+                                  final MessageConsumer3<T1, T2, T3> consumer) {
+        if (consumer == null) {
+            return;
+        }
+
+        // single writer principle using synchronised
+        subscriptionManager.unsubscribe(consumer, new Class<?>[] {messageClass1, messageClass2, messageClass3});
+    }
+
 
     /**
      * Synchronously publish a message to all registered listeners. This includes listeners
@@ -278,6 +579,108 @@ class MessageBus implements IMessageBus {
     }
 
 
+    /**
+     * Synchronously publish <b>FOUR</b> messages to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured
+     * to reject valid subtypes. The call returns when all matching handlers of all registered listeners have
+     * been notified (invoked) of the message.
+     */
+    @Override
+    public
+    void publish(final Object message1, final Object message2, final Object message3, final Object message4) {
+        final Object[] messages = MessageCarrier.acquire(4);
+        messages[0] = message1;
+        messages[1] = message2;
+        messages[2] = message3;
+        messages[3] = message4;
+
+        try {
+            syncPublication.publish(dispatch, messages);
+        } finally {
+            MessageCarrier.release(messages);
+        }
+    }
+
+
+    /**
+     * Synchronously publish <b>FIVE</b> messages to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured
+     * to reject valid subtypes. The call returns when all matching handlers of all registered listeners have
+     * been notified (invoked) of the message.
+     */
+    @Override
+    public
+    void publish(final Object message1, final Object message2, final Object message3, final Object message4, final Object message5) {
+        final Object[] messages = MessageCarrier.acquire(5);
+        messages[0] = message1;
+        messages[1] = message2;
+        messages[2] = message3;
+        messages[3] = message4;
+        messages[4] = message5;
+
+        try {
+            syncPublication.publish(dispatch, messages);
+        } finally {
+            MessageCarrier.release(messages);
+        }
+    }
+
+
+    /**
+     * Synchronously publish <b>SIX</b> messages to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured
+     * to reject valid subtypes. The call returns when all matching handlers of all registered listeners have
+     * been notified (invoked) of the message.
+     */
+    @Override
+    public
+    void publish(final Object message1, final Object message2, final Object message3, final Object message4, final Object message5, final Object message6) {
+        final Object[] messages = MessageCarrier.acquire(6);
+        messages[0] = message1;
+        messages[1] = message2;
+        messages[2] = message3;
+        messages[3] = message4;
+        messages[4] = message5;
+        messages[5] = message6;
+
+        try {
+            syncPublication.publish(dispatch, messages);
+        } finally {
+            MessageCarrier.release(messages);
+        }
+    }
+
+    /**
+     * Synchronously publish a primitive message. Handlers with a matching primitive parameter receive it WITHOUT boxing, and
+     * the message is only boxed if there are also listeners for the boxed type (or if it becomes a dead message).
+     */
+    @Override
+    public
+    void publish(final int message) {
+        syncPublication.publish(dispatch, message);
+    }
+
+    /**
+     * Synchronously publish a primitive message. Handlers with a matching primitive parameter receive it WITHOUT boxing, and
+     * the message is only boxed if there are also listeners for the boxed type (or if it becomes a dead message).
+     */
+    @Override
+    public
+    void publish(final long message) {
+        syncPublication.publish(dispatch, message);
+    }
+
+    /**
+     * Synchronously publish a primitive message. Handlers with a matching primitive parameter receive it WITHOUT boxing, and
+     * the message is only boxed if there are also listeners for the boxed type (or if it becomes a dead message).
+     */
+    @Override
+    public
+    void publish(final double message) {
+        syncPublication.publish(dispatch, message);
+    }
+
+
     /**
      * Publish the message asynchronously to all registered listeners (that match the signature). This includes
      * listeners defined for super types of the given message type, provided they are not configured to reject
@@ -314,6 +717,159 @@ class MessageBus implements IMessageBus {
     }
 
 
+    /**
+     * Publish <b>FOUR</b> messages asynchronously to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured to
+     * reject valid subtypes. This call returns immediately.
+     */
+    @Override
+    public
+    void publishAsync(final Object message1, final Object message2, final Object message3, final Object message4) {
+        final Object[] messages = MessageCarrier.acquire(4);
+        messages[0] = message1;
+        messages[1] = message2;
+        messages[2] = message3;
+        messages[3] = message4;
+
+        try {
+            asyncPublication.publish(dispatch, messages);
+        } finally {
+            MessageCarrier.release(messages);
+        }
+    }
+
+
+    /**
+     * Publish <b>FIVE</b> messages asynchronously to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured to
+     * reject valid subtypes. This call returns immediately.
+     */
+    @Override
+    public
+    void publishAsync(final Object message1, final Object message2, final Object message3, final Object message4, final Object message5) {
+        final Object[] messages = MessageCarrier.acquire(5);
+        messages[0] = message1;
+        messages[1] = message2;
+        messages[2] = message3;
+        messages[3] = message4;
+        messages[4] = message5;
+
+        try {
+            asyncPublication.publish(dispatch, messages);
+        } finally {
+            MessageCarrier.release(messages);
+        }
+    }
+
+
+    /**
+     * Publish <b>SIX</b> messages asynchronously to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured to
+     * reject valid subtypes. This call returns immediately.
+     */
+    @Override
+    public
+    void publishAsync(final Object message1, final Object message2, final Object message3, final Object message4, final Object message5, final Object message6) {
+        final Object[] messages = MessageCarrier.acquire(6);
+        messages[0] = message1;
+        messages[1] = message2;
+        messages[2] = message3;
+        messages[3] = message4;
+        messages[4] = message5;
+        messages[5] = message6;
+
+        try {
+            asyncPublication.publish(dispatch, messages);
+        } finally {
+            MessageCarrier.release(messages);
+        }
+    }
+
+    /**
+     * Publish a primitive message asynchronously, WITHOUT boxing it. The value is stored in the queue entry itself. This call returns
+     * immediately.
+     */
+    @Override
+    public
+    void publishAsync(final int message) {
+        asyncPublication.publish(dispatch, message);
+    }
+
+    /**
+     * Publish a primitive message asynchronously, WITHOUT boxing it. The value is stored in the queue entry itself. This call returns
+     * immediately.
+     */
+    @Override
+    public
+    void publishAsync(final long message) {
+        asyncPublication.publish(dispatch, message);
+    }
+
+    /**
+     * Publish a primitive message asynchronously, WITHOUT boxing it. The value is stored in the queue entry itself. This call returns
+     * immediately.
+     */
+    @Override
+    public
+    void publishAsync(final double message) {
+        asyncPublication.publish(dispatch, message);
+    }
+
+    /**
+     * Synchronously publish a message that is only created (by the supplier) if there are subscribers for the message type. Otherwise,
+     * nothing happens (the message is not created, and is not a dead message).
+     * <p>
+     * The message is dispatched according to its actual class, which should be the same as the message type.
+     */
+    @Override
+    public
+    <T> void publish(final Class<T> messageClass, final MessageSupplier<T> supplier) {
+        if (dispatch.hasSubscribers(messageClass)) {
+            syncPublication.publish(dispatch, supplier.get());
+        }
+    }
+
+    /**
+     * Publish a message asynchronously, that is only created (by the supplier, on the calling thread) if there are subscribers for the
+     * message type. Otherwise, nothing happens. This call returns immediately.
+     */
+    @Override
+    public
+    <T> void publishAsync(final Class<T> messageClass, final MessageSupplier<T> supplier) {
+        if (dispatch.hasSubscribers(messageClass)) {
+            asyncPublication.publish(dispatch, supplier.get());
+        }
+    }
+
+    /**
+     * Synchronously publish a message, and pass the return value of every (non-void) handler that received it to the collector.
+     * Handlers that throw an exception are reported to the error handlers, and do not contribute a result.
+     *
+     * @return the result of the collector, once all handlers have been invoked
+     */
+    @Override
+    public
+    <R> R publishAndCollect(final Object message, final MessageCollector<R> collector) {
+        // there is no need for a future here, since everything happens on the calling thread
+        dispatch.publishAndCollect(message, collector);
+        return collector.getResult();
+    }
+
+    /**
+     * Publish a message asynchronously, and pass the return value of every (non-void) handler that received it to the collector.
+     * This call returns immediately.
+     *
+     * @return a future that completes with the result of the collector, once all handlers have been invoked
+     */
+    @Override
+    public
+    <R> Future<R> publishAndCollectAsync(final Object message, final MessageCollector<R> collector) {
+        final CollectFuture<R> future = new CollectFuture<R>(collector);
+        asyncPublication.publishAndCollect(dispatch, message, future);
+        return future;
+    }
+
+
     /**
      * Publication errors may occur at various points of time during message delivery. A handler may throw an exception,
      * may not be accessible due to security constraints or is not annotated properly.
@@ -328,6 +884,115 @@ class MessageBus implements IMessageBus {
     }
 
 
+    /**
+     * @return the number of messages of this type that were published, but had no subscribers (for multiple messages, this is the type
+     *         of the first message). This is counted even if there are no DeadMessage handlers.
+     */
+    @Override
+    public
+    long getDeadMessageCount(final Class<?> messageClass) {
+        return this.deadLetters.getCount(messageClass);
+    }
+
+    /**
+     * This is a cheap check (it only uses the tables that are used for publication), so it can be used to skip creating messages that
+     * nothing would receive.
+     *
+     * @return true if a message of this type would be received by at least one handler (DeadMessage handlers do not count)
+     */
+    @Override
+    public
+    boolean hasSubscribers(final Class<?> messageClass) {
+        return dispatch.hasSubscribers(messageClass);
+    }
+
+    /**
+     * Creates a publisher for messages of exactly this type. The publisher resolves the subscriptions ahead of time (and only again when
+     * a new listener class is subscribed), so it skips the lookups that publish() has to do for every message. Publication is synchronous.
+     */
+    @Override
+    public
+    <T> Publisher<T> publisherFor(final Class<T> messageClass) {
+        return dispatch.publisherFor(messageClass);
+    }
+
+    /**
+     * Resolves (and caches) the subscriptions of these message types ahead of time, including their super-type subscriptions. This way
+     * the first publication of each type does not have to. Subscribing a NEW listener class clears the super-type subscriptions again,
+     * so this should be called after the listeners have been subscribed.
+     *
+     * @return how long priming took, in nanoseconds
+     */
+    @Override
+    public
+    long prime(final Class<?>... messageTypes) {
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < messageTypes.length; i++) {
+            // this resolves the same subscriptions (and super-type subscriptions) as publication
+            dispatch.prime(messageTypes[i]);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Creates the subscriptions of these listener classes ahead of time (finds their handlers and generates their invokers), WITHOUT
+     * subscribing any listeners. This way the first subscribe() of each class does not have to.
+     *
+     * @return how long priming took, in nanoseconds
+     */
+    @Override
+    public
+    long primeListeners(final Class<?>... listenerClasses) {
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < listenerClasses.length; i++) {
+            subscriptionManager.primeListener(listenerClasses[i]);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Creates the subscriptions of these listener classes ahead of time (finds their handlers and generates their invokers), WITHOUT
+     * subscribing any listeners, using a fork-join pool of this many threads.
+     *
+     * @return how long priming took, in nanoseconds
+     */
+    @Override
+    public
+    long primeListeners(final int numberOfThreads, final Class<?>... listenerClasses) {
+        final long start = System.nanoTime();
+
+        // finding the handlers + generating the invokers of each class happens in parallel, only registering them is serialized
+        subscriptionManager.primeListeners(listenerClasses, numberOfThreads);
+
+        return System.nanoTime() - start;
+    }
+
+
+    /**
+     * @return the record of the most recent messages that had no subscribers, or null if {@link #deadLetterStoreSize} was not set when
+     *         this bus was created.
+     */
+    @Override
+    public
+    DeadLetterStore getDeadLetterStore() {
+        return this.deadLetters.getStore();
+    }
+
+    /**
+     * only used in unit tests
+     *
+     * @return the number of message types (and combinations of message types) whose super-type subscriptions are cached
+     */
+    public
+    int getSuperTypeCacheSize() {
+        return this.subscriptionManager.getSuperTypeCacheSize();
+    }
+
+
     /**
      * Check whether any asynchronous message publications are pending to be processed
      *
@@ -352,6 +1017,12 @@ class MessageBus implements IMessageBus {
         this.syncPublication.shutdown();
         this.asyncPublication.shutdown();
         this.subscriptionManager.shutdown();
+        this.errorHandler.shutdown();
+
+        final DeadLetterStore deadLetterStore = this.deadLetters.getStore();
+        if (deadLetterStore != null) {
+            deadLetterStore.close();
+        }
     }
 }
 
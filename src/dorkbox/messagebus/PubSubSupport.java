@@ -37,6 +37,14 @@
  */
 package dorkbox.messagebus;
 
+import dorkbox.messagebus.common.MessageCollector;
+import dorkbox.messagebus.common.MessageConsumer;
+import dorkbox.messagebus.common.MessageConsumer2;
+import dorkbox.messagebus.common.MessageConsumer3;
+import dorkbox.messagebus.common.MessageSupplier;
+import dorkbox.messagebus.subscription.Registration;
+
+import java.util.concurrent.Future;
 
 /**
  * This interface defines the very basic message publication semantics according to the publish subscribe pattern.
@@ -55,6 +63,12 @@ public interface PubSubSupport {
      */
     void subscribe(Object listener);
 
+    /**
+     * Subscribe all handlers of the given listeners (the same as calling subscribe() for each of them). The listener classes that have
+     * not been subscribed before are analyzed in parallel.
+     */
+    void subscribeAll(Object... listeners);
+
     /**
      * Immediately remove all registered message handlers (if any) of the given listener.
      *
@@ -67,6 +81,58 @@ public interface PubSubSupport {
      */
     void unsubscribe(Object listener);
 
+    /**
+     * Remove all registered message handlers (if any) of the given listener, and then wait until all of the publications that were in
+     * progress (sync or async) have finished. When this call returns, the listener will not receive any more messages.
+     * <p>
+     * If this is called from within a message handler, the publication of that handler is not waited for.
+     * <p>
+     * Publications are only tracked if this was enabled when the bus was created (see MessageBus.trackPublications).
+     *
+     * @throws IllegalStateException if publications are not tracked
+     */
+    void unsubscribeAndWait(Object listener) throws InterruptedException;
+
+    /**
+     * Subscribe all handlers of the given listener (the same as subscribe()), and return a handle that removes them again when it is
+     * closed. Closing the handle does not have to look up the subscriptions of the listener, and does not block other subscribe() or
+     * unsubscribe() calls.
+     */
+    Registration register(Object listener);
+
+    /**
+     * Subscribe a functional handler for one message type, without any annotation scanning or reflection. The consumer receives
+     * messages of this type (and of its subtypes, if the bus dispatches to super types).
+     */
+    <T> void subscribe(Class<T> messageClass, MessageConsumer<T> consumer);
+
+    /**
+     * Subscribe a functional handler for <b>TWO</b> message types, without any annotation scanning or reflection.
+     */
+    <T1, T2> void subscribe(Class<T1> messageClass1, Class<T2> messageClass2, MessageConsumer2<T1, T2> consumer);
+
+    /**
+     * Subscribe a functional handler for <b>THREE</b> message types, without any annotation scanning or reflection.
+     */
+    <T1, T2, T3> void subscribe(Class<T1> messageClass1, Class<T2> messageClass2, Class<T3> messageClass3,
+                                MessageConsumer3<T1, T2, T3> consumer);
+
+    /**
+     * Remove a functional handler, that was subscribed with the same message type.
+     */
+    <T> void unsubscribe(Class<T> messageClass, MessageConsumer<T> consumer);
+
+    /**
+     * Remove a functional handler, that was subscribed with the same <b>TWO</b> message types.
+     */
+    <T1, T2> void unsubscribe(Class<T1> messageClass1, Class<T2> messageClass2, MessageConsumer2<T1, T2> consumer);
+
+    /**
+     * Remove a functional handler, that was subscribed with the same <b>THREE</b> message types.
+     */
+    <T1, T2, T3> void unsubscribe(Class<T1> messageClass1, Class<T2> messageClass2, Class<T3> messageClass3,
+                                  MessageConsumer3<T1, T2, T3> consumer);
+
 
     /**
      * Synchronously publish a message to all registered listeners. This includes listeners
@@ -92,6 +158,51 @@ public interface PubSubSupport {
      */
     void publish(Object message1, Object message2, Object message3);
 
+    /**
+     * Synchronously publish <b>FOUR</b> messages to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured
+     * to reject valid subtypes. The call returns when all matching handlers of all registered listeners have
+     * been notified (invoked) of the message.
+     */
+    void publish(Object message1, Object message2, Object message3, Object message4);
+
+    /**
+     * Synchronously publish <b>FIVE</b> messages to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured
+     * to reject valid subtypes. The call returns when all matching handlers of all registered listeners have
+     * been notified (invoked) of the message.
+     */
+    void publish(Object message1, Object message2, Object message3, Object message4, Object message5);
+
+    /**
+     * Synchronously publish <b>SIX</b> messages to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured
+     * to reject valid subtypes. The call returns when all matching handlers of all registered listeners have
+     * been notified (invoked) of the message.
+     */
+    void publish(Object message1, Object message2, Object message3, Object message4, Object message5, Object message6);
+
+    /**
+     * Synchronously publish a primitive message. Handlers with a matching primitive parameter receive it WITHOUT boxing, and
+     * the message is only boxed if there are also listeners for the boxed type (or if it becomes a dead message).
+     * <p>
+     * Note that the compiler widens byte, short and char messages to an int (and float to a double). Cast them to Object to publish
+     * their boxed type instead.
+     */
+    void publish(int message);
+
+    /**
+     * Synchronously publish a primitive message. Handlers with a matching primitive parameter receive it WITHOUT boxing, and
+     * the message is only boxed if there are also listeners for the boxed type (or if it becomes a dead message).
+     */
+    void publish(long message);
+
+    /**
+     * Synchronously publish a primitive message. Handlers with a matching primitive parameter receive it WITHOUT boxing, and
+     * the message is only boxed if there are also listeners for the boxed type (or if it becomes a dead message).
+     */
+    void publish(double message);
+
     /**
      * Publish the message asynchronously to all registered listeners (that match the signature). This includes
      * listeners defined for super types of the given message type, provided they are not configured to reject
@@ -112,4 +223,73 @@ public interface PubSubSupport {
      * reject valid subtypes. This call returns immediately.
      */
     void publishAsync(Object message1, Object message2, Object message3);
+
+    /**
+     * Publish <b>FOUR</b> messages asynchronously to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured to
+     * reject valid subtypes. This call returns immediately.
+     */
+    void publishAsync(Object message1, Object message2, Object message3, Object message4);
+
+    /**
+     * Publish <b>FIVE</b> messages asynchronously to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured to
+     * reject valid subtypes. This call returns immediately.
+     */
+    void publishAsync(Object message1, Object message2, Object message3, Object message4, Object message5);
+
+    /**
+     * Publish <b>SIX</b> messages asynchronously to all registered listeners (that match the signature). This
+     * includes listeners defined for super types of the given message type, provided they are not configured to
+     * reject valid subtypes. This call returns immediately.
+     */
+    void publishAsync(Object message1, Object message2, Object message3, Object message4, Object message5, Object message6);
+
+    /**
+     * Publish a primitive message asynchronously, WITHOUT boxing it. The value is stored in the queue entry itself. This call returns
+     * immediately.
+     */
+    void publishAsync(int message);
+
+    /**
+     * Publish a primitive message asynchronously, WITHOUT boxing it. The value is stored in the queue entry itself. This call returns
+     * immediately.
+     */
+    void publishAsync(long message);
+
+    /**
+     * Publish a primitive message asynchronously, WITHOUT boxing it. The value is stored in the queue entry itself. This call returns
+     * immediately.
+     */
+    void publishAsync(double message);
+
+    /**
+     * Synchronously publish a message that is only created (by the supplier) if there are subscribers for the message type. Otherwise,
+     * nothing happens (the message is not created, and is not a dead message).
+     * <p>
+     * The message is dispatched according to its actual class, which should be the same as the message type.
+     */
+    <T> void publish(Class<T> messageClass, MessageSupplier<T> supplier);
+
+    /**
+     * Publish a message asynchronously, that is only created (by the supplier, on the calling thread) if there are subscribers for the
+     * message type. Otherwise, nothing happens. This call returns immediately.
+     */
+    <T> void publishAsync(Class<T> messageClass, MessageSupplier<T> supplier);
+
+    /**
+     * Synchronously publish a message, and pass the return value of every (non-void) handler that received it to the collector.
+     * Handlers that throw an exception are reported to the error handlers, and do not contribute a result.
+     *
+     * @return the result of the collector, once all handlers have been invoked
+     */
+    <R> R publishAndCollect(Object message, MessageCollector<R> collector);
+
+    /**
+     * Publish a message asynchronously, and pass the return value of every (non-void) handler that received it to the collector.
+     * This call returns immediately.
+     *
+     * @return a future that completes with the result of the collector, once all handlers have been invoked
+     */
+    <R> Future<R> publishAndCollectAsync(Object message, MessageCollector<R> collector);
 }
@@ -26,7 +26,8 @@ import java.util.concurrent.atomic.AtomicReference;
  *
  *
  * This Tree store "message classes"  as the key, and a unique object as the "value". This map is NEVER cleared (shutdown clears it), and
- * the "value" object is used to store/lookup in another map
+ * the "value" object is used to store/lookup in another map. Because it is never cleared, only SUBSCRIBED signatures should be added to
+ * it -- publication should use find(), which never creates new leaves.
  *
  * This data structure is used to keep track of multi-messages - where there is more that one parameter for publish().
  *
@@ -38,11 +39,11 @@ public class ClassTree<KEY> {
     public static float LOAD_FACTOR = 0.8F;
 
     private static
-    final FastThreadLocal<IdentityMap> keyCache = new FastThreadLocal<IdentityMap>() {
+    final FastThreadLocal<IdentityMap<?, ?>> keyCache = new FastThreadLocal<IdentityMap<?, ?>>() {
         @Override
         public
-        IdentityMap initialValue() {
-            return new IdentityMap(INITIAL_SIZE, LOAD_FACTOR);
+        IdentityMap<?, ?> initialValue() {
+            return new IdentityMap<Object, Object>(INITIAL_SIZE, LOAD_FACTOR);
         }
     };
 
@@ -109,6 +110,93 @@ public class ClassTree<KEY> {
         return getOrCreateValue(leaf);
     }
 
+    public final
+    MultiClass get(KEY[] keys) {
+        ClassTree<KEY> leaf = this;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) {
+                throw new NullPointerException("keys");
+            }
+
+            // have to put value into our children
+            leaf = leaf.getOrCreateLeaf(keys[i]);
+        }
+
+        return getOrCreateValue(leaf);
+    }
+
+    /**
+     * Looks up the value for the keys WITHOUT creating the leaves. This is used during publication, so that classes which are only
+     * published (and never subscribed) do not permanently grow this tree.
+     *
+     * @return null if the keys have never been added to this tree
+     */
+    public final
+    MultiClass find(KEY key1, KEY key2) {
+        ClassTree<KEY> leaf = getLeaf(key1);
+        if (leaf != null) {
+            leaf = leaf.getLeaf(key2);
+            if (leaf != null) {
+                return leaf.value.get();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up the value for the keys WITHOUT creating the leaves. This is used during publication, so that classes which are only
+     * published (and never subscribed) do not permanently grow this tree.
+     *
+     * @return null if the keys have never been added to this tree
+     */
+    public final
+    MultiClass find(KEY key1, KEY key2, KEY key3) {
+        ClassTree<KEY> leaf = getLeaf(key1);
+        if (leaf != null) {
+            leaf = leaf.getLeaf(key2);
+            if (leaf != null) {
+                leaf = leaf.getLeaf(key3);
+                if (leaf != null) {
+                    return leaf.value.get();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up the value for the CLASSES of the messages, WITHOUT creating the leaves (and without allocating an array of classes).
+     *
+     * @return null if the classes have never been added to this tree
+     */
+    @SuppressWarnings("unchecked")
+    public final
+    MultiClass findTypesOf(Object[] messages) {
+        ClassTree<KEY> leaf = this;
+        for (int i = 0; i < messages.length; i++) {
+            leaf = leaf.getLeaf((KEY) messages[i].getClass());
+            if (leaf == null) {
+                return null;
+            }
+        }
+
+        return leaf.value.get();
+    }
+
+    /**
+     * @return the existing leaf, or null if it doesn't exist
+     */
+    private
+    ClassTree<KEY> getLeaf(KEY key) {
+        final Object checked = children.get();
+        if (checked == null) {
+            return null;
+        }
+
+        final IdentityMap<KEY, ClassTree<KEY>> kids = cast(checked);
+        return kids.get(key);
+    }
+
     /**
      * creates a child (if necessary) in an atomic way. The tree returned will either be the current one, or a new one.
      *
@@ -131,7 +219,7 @@ public class ClassTree<KEY> {
         if (checked == null) {
             final boolean success = children.compareAndSet(null, cached);
             if (success) {
-                keyCache.set(new IdentityMap(INITIAL_SIZE, LOAD_FACTOR));
+                keyCache.set(new IdentityMap<Object, Object>(INITIAL_SIZE, LOAD_FACTOR));
                 kids = cast(cached);
             }
             else {
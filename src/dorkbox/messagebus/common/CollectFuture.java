@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.common;
+
+import dorkbox.messagebus.dispatch.Dispatch;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The handle for an asynchronous publishAndCollect(), which completes once every handler has been invoked.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public final
+class CollectFuture<R> implements Future<R> {
+    private final MessageCollector<R> collector;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile R result;
+    private volatile Throwable failure;
+
+    public
+    CollectFuture(final MessageCollector<R> collector) {
+        this.collector = collector;
+    }
+
+    /**
+     * Publishes the message, collects the return values of the handlers and then completes this future. Called by the thread that
+     * runs the asynchronous publication.
+     */
+    public
+    void publish(final Dispatch dispatch, final Object message) {
+        try {
+            dispatch.publishAndCollect(message, this.collector);
+            this.result = this.collector.getResult();
+        } catch (Throwable e) {
+            this.failure = e;
+        } finally {
+            this.done.countDown();
+        }
+    }
+
+    /**
+     * Completes this future with an error, if the message could not be published.
+     */
+    public
+    void fail(final Throwable cause) {
+        this.failure = cause;
+        this.done.countDown();
+    }
+
+    /**
+     * Publication cannot be cancelled once it has been queued.
+     */
+    @Override
+    public
+    boolean cancel(final boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public
+    boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public
+    boolean isDone() {
+        return this.done.getCount() == 0;
+    }
+
+    @Override
+    public
+    R get() throws InterruptedException, ExecutionException {
+        this.done.await();
+        return getResult();
+    }
+
+    @Override
+    public
+    R get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!this.done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private
+    R getResult() throws ExecutionException {
+        final Throwable failure = this.failure;
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return this.result;
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+/**
+ * A (memory-mapped) file that remembers which handlers were found in each listener class, so that the next time the JVM starts the
+ * classes do not have to be scanned again. Looking up the handler methods of an entry is a lot cheaper than scanning the class hierarchy.
+ * <p>
+ * An entry is keyed by the name of the listener class, and is only used if the class files of the class (and of its super classes)
+ * still have the same size and last-modified time. This only needs the directory entry (or jar entry) of each class file, so checking
+ * an entry is a lot cheaper than reading (and hashing) the bytecode, which would cost about as much as the scan that it replaces.
+ * Class files that are not in a directory or a jar are hashed instead. Classes without a classloader (JDK classes) are not checked, and
+ * classes whose class file cannot be found (generated classes, lambdas) are not cached at all.
+ * <p>
+ * Only the listener hierarchy is checked. If a custom annotation that is meta-annotated with the handler annotations is changed (and
+ * is not part of that hierarchy), the listeners that use it are NOT detected as changed -- delete the file after changing it.
+ * <p>
+ * The file starts with [int magic][int version], followed by records: [int length][length bytes], terminated by a length of 0. Records
+ * are only appended, so an entry that is outdated stays in the file (deleting the file clears it). Once the file is full, new entries
+ * are no longer saved. The file is shared by all of the message buses in the JVM, but must not be used by multiple JVMs at the same time.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public final
+class HandlerMetadataCache {
+    private static final int MAGIC = 0x4D42484D; // "MBHM"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4;
+
+    private static final int ACCEPTS_SUBTYPES = 1;
+    private static final int SYNCHRONIZED = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final HashMap<String, Class<?>> primitives = new HashMap<String, Class<?>>();
+    static {
+        final Class<?>[] types = new Class<?>[] {boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class,
+                                                 double.class, void.class};
+        for (int i = 0; i < types.length; i++) {
+            primitives.put(types[i].getName(), types[i]);
+        }
+    }
+
+    // one instance per file, so that the buses in the same JVM do not append over each other's records
+    private static final HashMap<String, HandlerMetadataCache> caches = new HashMap<String, HandlerMetadataCache>();
+
+    /**
+     * @param maxFileSize the maximum size of the file, in bytes
+     *
+     * @return the cache for the file, which is shared by every caller that uses the same file
+     */
+    public static
+    HandlerMetadataCache open(final File file, final int maxFileSize) throws IOException {
+        final String path = file.getCanonicalPath();
+
+        synchronized (caches) {
+            HandlerMetadataCache cache = caches.get(path);
+            if (cache == null) {
+                cache = new HandlerMetadataCache(path, file, maxFileSize);
+                caches.put(path, cache);
+            }
+            return cache;
+        }
+    }
+
+
+    private final String path;
+    private final MappedByteBuffer buffer;
+
+    // class name -> position of its (most recent) record. All access is protected by 'this'
+    private final HashMap<String, Integer> index = new HashMap<String, Integer>();
+
+    private
+    HandlerMetadataCache(final String path, final File file, final int maxFileSize) throws IOException {
+        this.path = path;
+
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // the mapping stays valid after the file is closed
+            this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, maxFileSize);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        final MappedByteBuffer buffer = this.buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            // a new file (or one that we cannot read), so start over
+            buffer.putInt(HEADER_SIZE, 0);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        }
+
+        // index the existing records (only the class names are read), and find their end, so that we append after them
+        int position = HEADER_SIZE;
+        int length;
+        try {
+            while (position + 4 <= maxFileSize && (length = buffer.getInt(position)) > 0) {
+                buffer.position(position + 4);
+                index.put(readString(buffer), position);
+                position += 4 + length;
+            }
+        } catch (RuntimeException e) {
+            // the rest of the file is damaged, so we overwrite it
+            buffer.putInt(position, 0);
+        }
+        buffer.position(Math.min(position, maxFileSize));
+    }
+
+    /**
+     * Forgets this instance, so that the next open() reads the file again. This must only be called once nothing uses the cache anymore.
+     */
+    public
+    void close() {
+        synchronized (caches) {
+            if (caches.get(path) == this) {
+                caches.remove(path);
+            }
+        }
+    }
+
+    /**
+     * @return the handlers of the class, or null if they are not in the cache (or the class has changed since they were saved)
+     */
+    public synchronized
+    MessageHandler[] get(final Class<?> listenerClass) {
+        final Integer position = index.get(listenerClass.getName());
+        if (position == null) {
+            return null;
+        }
+
+        final long hash = hash(listenerClass);
+        if (hash == 0L) {
+            return null;
+        }
+
+        // read from a duplicate, so that the position used for appending is not changed
+        final ByteBuffer record = buffer.duplicate();
+        record.position(position + 4);
+        readString(record);
+
+        if (record.getLong() != hash) {
+            return null;
+        }
+
+        final ClassLoader classLoader = listenerClass.getClassLoader();
+
+        try {
+            final int count = record.getInt();
+            final MessageHandler[] handlers = new MessageHandler[count];
+
+            for (int i = 0; i < count; i++) {
+                final Class<?> declaringClass = loadClass(readString(record), classLoader);
+                final String methodName = readString(record);
+
+                final Class<?>[] parameterTypes = new Class<?>[record.getInt()];
+                for (int j = 0; j < parameterTypes.length; j++) {
+                    parameterTypes[j] = loadClass(readString(record), classLoader);
+                }
+
+                final int flags = record.get();
+                final int referenceType = record.get();
+
+                final Method method = declaringClass.getDeclaredMethod(methodName, parameterTypes);
+                handlers[i] = MessageHandler.create(method, (flags & ACCEPTS_SUBTYPES) != 0, (flags & SYNCHRONIZED) != 0, referenceType);
+            }
+
+            return handlers;
+        } catch (Exception e) {
+            // the handlers no longer exist, so the class has to be scanned again
+            return null;
+        }
+    }
+
+    /**
+     * Saves the handlers of the class, unless its bytecode cannot be read or the file is full.
+     */
+    public synchronized
+    void put(final Class<?> listenerClass, final MessageHandler[] handlers) {
+        final long hash = hash(listenerClass);
+        if (hash == 0L) {
+            return;
+        }
+
+        final MappedByteBuffer buffer = this.buffer;
+        final int start = buffer.position();
+
+        try {
+            // the length (which makes the record visible) is written last
+            buffer.position(start + 4);
+            writeString(buffer, listenerClass.getName());
+            buffer.putLong(hash);
+            buffer.putInt(handlers.length);
+
+            for (int i = 0; i < handlers.length; i++) {
+                final MessageHandler handler = handlers[i];
+                final Method method = handler.getMethod();
+
+                writeString(buffer, method.getDeclaringClass().getName());
+                writeString(buffer, method.getName());
+
+                final Class<?>[] parameterTypes = method.getParameterTypes();
+                buffer.putInt(parameterTypes.length);
+                for (int j = 0; j < parameterTypes.length; j++) {
+                    writeString(buffer, parameterTypes[j].getName());
+                }
+
+                int flags = 0;
+                if (handler.acceptsSubtypes()) {
+                    flags |= ACCEPTS_SUBTYPES;
+                }
+                if (handler.isSynchronized()) {
+                    flags |= SYNCHRONIZED;
+                }
+                buffer.put((byte) flags);
+                buffer.put((byte) handler.getReferenceType());
+            }
+
+            // always leave room for the (zero length) terminator
+            buffer.putInt(buffer.position(), 0);
+        } catch (RuntimeException e) {
+            // the file is full (BufferOverflowException, or no room for the terminator)
+            buffer.position(start);
+            return;
+        }
+
+        buffer.putInt(start, buffer.position() - start - 4);
+        index.put(listenerClass.getName(), start);
+    }
+
+    /**
+     * @return the hash of the size and last-modified time of the class files of the class and its super classes (that have a
+     *         classloader), or 0 if one of them cannot be found
+     */
+    private static
+    long hash(final Class<?> listenerClass) {
+        final CRC32 crc = new CRC32();
+        final byte[] bytes = new byte[4096];
+
+        Class<?> current = listenerClass;
+        while (current != null && current.getClassLoader() != null) {
+            final URL url = current.getResource("/" + current.getName().replace('.', '/') + ".class");
+            if (url == null || !update(crc, url, bytes)) {
+                return 0L;
+            }
+
+            current = current.getSuperclass();
+        }
+
+        // CRC32 is only 32 bits, so 0 is never a valid hash
+        return crc.getValue() | (1L << 32);
+    }
+
+    /**
+     * Adds the size and last-modified time of the class file to the hash (or its bytecode, if it is not in a directory or a jar)
+     *
+     * @return false if the class file cannot be read
+     */
+    private static
+    boolean update(final CRC32 crc, final URL url, final byte[] bytes) {
+        final String protocol = url.getProtocol();
+
+        try {
+            if ("file".equals(protocol)) {
+                final File file = new File(url.toURI());
+                final long lastModified = file.lastModified();
+                if (lastModified != 0L) {
+                    update(crc, file.length(), bytes);
+                    update(crc, lastModified, bytes);
+                    return true;
+                }
+            }
+            else if ("jar".equals(protocol)) {
+                // this only reads the central directory of the jar (which is cached), not the class file itself
+                final JarEntry entry = ((JarURLConnection) url.openConnection()).getJarEntry();
+                if (entry != null && entry.getTime() != -1L && entry.getSize() != -1L) {
+                    update(crc, entry.getSize(), bytes);
+                    update(crc, entry.getTime(), bytes);
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            return false;
+        } catch (URISyntaxException e) {
+            return false;
+        }
+
+        // we do not know how to check this cheaply, so the bytecode itself is hashed
+        InputStream inputStream = null;
+        try {
+            inputStream = url.openStream();
+
+            int read;
+            while ((read = inputStream.read(bytes)) > 0) {
+                crc.update(bytes, 0, read);
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static
+    void update(final CRC32 crc, final long value, final byte[] bytes) {
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (value >>> (i << 3));
+        }
+        crc.update(bytes, 0, 8);
+    }
+
+    private static
+    Class<?> loadClass(final String name, final ClassLoader classLoader) throws ClassNotFoundException {
+        final Class<?> primitive = primitives.get(name);
+        if (primitive != null) {
+            return primitive;
+        }
+        return Class.forName(name, false, classLoader);
+    }
+
+    private static
+    void writeString(final ByteBuffer buffer, final String string) {
+        final byte[] bytes = string.getBytes(UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static
+    String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.common;
+
+import dorkbox.messagebus.util.FastThreadLocal;
+
+import java.util.Arrays;
+
+/**
+ * Reusable (per thread) arrays that carry the messages of a publication with more than three messages through the bus, so that
+ * publishing does not allocate a new Object[] every time.
+ * <p>
+ * A handler can publish while it is receiving a message, so the arrays are kept as a stack: every acquire() MUST be followed by a
+ * release() (in a finally block), in the reverse order.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/2/16
+ */
+public final
+class MessageCarrier {
+    private static final FastThreadLocal<MessageCarrier> carriers = new FastThreadLocal<MessageCarrier>() {
+        @Override
+        public
+        MessageCarrier initialValue() {
+            return new MessageCarrier();
+        }
+    };
+
+    // [depth][number of messages]
+    private Object[][][] arrays = new Object[4][][];
+    private int depth = 0;
+
+    private
+    MessageCarrier() {
+    }
+
+    /**
+     * @return an array (exactly 'count' in length) for the current thread. It MUST be released when the publication is finished.
+     */
+    public static
+    Object[] acquire(final int count) {
+        final MessageCarrier carrier = carriers.get();
+
+        final int depth = carrier.depth++;
+        Object[][][] arrays = carrier.arrays;
+        if (depth == arrays.length) {
+            arrays = carrier.arrays = Arrays.copyOf(arrays, depth * 2);
+        }
+
+        Object[][] byCount = arrays[depth];
+        if (byCount == null) {
+            byCount = arrays[depth] = new Object[MessageHandler.MAX_MESSAGES + 1][];
+        }
+
+        Object[] messages = byCount[count];
+        if (messages == null) {
+            messages = byCount[count] = new Object[count];
+        }
+
+        return messages;
+    }
+
+    /**
+     * Clears the array (so the messages can be garbage collected), and makes it available for the next publication on this thread.
+     */
+    public static
+    void release(final Object[] messages) {
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = null;
+        }
+
+        carriers.get().depth--;
+    }
+}
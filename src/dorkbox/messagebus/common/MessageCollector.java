@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.common;
+
+/**
+ * Gathers the return values of the handlers that receive a message, for request/reply (or scatter/gather) style publication.
+ * <p>
+ * Only handlers that are not declared 'void' are collected. A handler that throws an exception is reported to the error handlers and
+ * does not contribute a result. For a single publication, collect() is always called by one thread at a time.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public
+interface MessageCollector<R> {
+
+    /**
+     * Called once for every handler that returned a value (which can be null).
+     */
+    void collect(Object result);
+
+    /**
+     * @return the result of all of the collected values. Called after every handler has been invoked.
+     */
+    R getResult();
+}
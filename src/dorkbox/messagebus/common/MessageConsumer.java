@@ -0,0 +1,27 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.common;
+
+/**
+ * A functional subscription for one message. Subscribing one of these does not need any annotation scanning or reflection.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public
+interface MessageConsumer<T> {
+    void accept(T message);
+}
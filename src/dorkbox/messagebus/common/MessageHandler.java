@@ -37,6 +37,7 @@
  */
 package dorkbox.messagebus.common;
 
+import com.esotericsoftware.kryo.util.IdentityMap;
 import dorkbox.messagebus.annotations.Handler;
 import dorkbox.messagebus.annotations.References;
 import dorkbox.messagebus.annotations.Synchronized;
@@ -45,6 +46,8 @@ import dorkbox.messagebus.annotations.Listener;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 
 /**
  * Any method in any class annotated with the @Handler annotation represents a message handler. The class that contains
@@ -69,44 +72,188 @@ class MessageHandler {
 
     private static final MessageHandler[] EMPTY_MESSAGEHANDLERS = new MessageHandler[0];
 
-    // publish all listeners defined by the given class (includes listeners defined in super classes)
+    /**
+     * The maximum number of messages (parameters) that a handler can receive
+     */
+    public static final int MAX_MESSAGES = 6;
+
+    // the handlers are immutable, so they are shared by every message bus in the JVM. ClassValue is thread safe and does not keep classes
+    // (or their classloaders) from being unloaded
+    private static final ClassValue<Holder> handlers = new ClassValue<Holder>() {
+        @Override
+        protected
+        Holder computeValue(final Class<?> type) {
+            return new Holder();
+        }
+    };
+
+    /**
+     * Gets all handlers defined by the given class (includes handlers defined in super classes). The class is only scanned once per JVM,
+     * so the returned array is shared and MUST NOT be modified.
+     */
     public static
     MessageHandler[] get(final Class<?> messageClass) {
+        return get(messageClass, null);
+    }
+
+    /**
+     * Gets all handlers defined by the given class (the same as get()). If the class has not been scanned yet in this JVM, the handlers
+     * are loaded from the metadata cache instead (if it has a valid entry), or are saved to it after scanning the class.
+     *
+     * @param metadataCache can be null
+     */
+    public static
+    MessageHandler[] get(final Class<?> messageClass, final HandlerMetadataCache metadataCache) {
+        final Holder holder = handlers.get(messageClass);
+
+        MessageHandler[] messageHandlers = holder.handlers;
+        if (messageHandlers == null) {
+            synchronized (holder) {
+                messageHandlers = holder.handlers;
+                if (messageHandlers == null) {
+                    if (metadataCache != null) {
+                        messageHandlers = metadataCache.get(messageClass);
+                        if (messageHandlers == null) {
+                            messageHandlers = scan(messageClass);
+                            metadataCache.put(messageClass, messageHandlers);
+                        }
+                    }
+                    else {
+                        messageHandlers = scan(messageClass);
+                    }
+
+                    holder.handlers = messageHandlers;
+                }
+            }
+        }
 
-        // publish all handlers (this will include all (inherited) methods directly annotated using @Handler)
-        final Method[] allMethods = ReflectionUtils.getMethods(messageClass);
-        final int length = allMethods.length;
+        return messageHandlers;
+    }
+
+    /**
+     * Scans the class (and its super classes) for handlers, in a single pass over the methods of the class hierarchy. This does not use
+     * (or update) the cache, so get() should be used instead. It is public for benchmarking.
+     * <p>
+     * Each method is only compared to the methods with the same name and number of parameters, which were declared further down the
+     * class hierarchy (those override it). A handler that is overridden inherits the configuration of its parent method, unless the
+     * overriding method is a handler as well.
+     */
+    public static
+    MessageHandler[] scan(final Class<?> messageClass) {
+        // name -> the methods with that name, in the order they were found (walking up from the class, so the deepest override is first)
+        final HashMap<String, ArrayList<Declaration>> declarations = new HashMap<String, ArrayList<Declaration>>();
 
-        final ArrayList<MessageHandler> finalMethods = new ArrayList<MessageHandler>(length);
-        Method method;
+        // annotation type -> whether it is a (meta) @Handler. Most methods use the same few annotations, so they are only searched once
+        final IdentityMap<Class<?>, Object> metaAnnotations = new IdentityMap<Class<?>, Object>();
 
-        for (int i = 0; i < length; i++) {
-            method = allMethods[i];
+        final ArrayList<MessageHandler> finalMethods = new ArrayList<MessageHandler>();
 
-            // retain only those that are at the bottom of their respective class hierarchy (deepest overriding method)
-            if (!ReflectionUtils.containsOverridingMethod(allMethods, method)) {
+        Class<?> current = messageClass;
+        while (current != null) {
+            final Method[] methods;
+            try {
+                methods = current.getDeclaredMethods();
+            } catch (Exception ignored) {
+                // the class cannot be inspected (ie: missing dependencies)
+                break;
+            }
+
+            for (int i = 0; i < methods.length; i++) {
+                final Method method = methods[i];
 
-                // for each handler there will be no overriding method that specifies @Handler annotation
-                // but an overriding method does inherit the listener configuration of the overwritten method
-                final Handler handler = ReflectionUtils.getAnnotation(method, Handler.class);
-                if (handler == null || !handler.enabled()) {
-                    // disabled or invalid listeners are ignored
+                final Declaration declaration = getDeclaration(declarations, method);
+                if (declaration.isHandler) {
+                    // overridden by a method that already is a handler (which uses its own configuration)
                     continue;
                 }
 
-                Method overriddenHandler = ReflectionUtils.getOverridingMethod(method, messageClass);
-                if (overriddenHandler == null) {
-                    overriddenHandler = method;
+                final Handler handler = ReflectionUtils.getCachedAnnotation(method, Handler.class, metaAnnotations);
+                if (handler == null) {
+                    continue;
                 }
 
-                // if a handler is overwritten it inherits the configuration of its parent method
-                finalMethods.add(new MessageHandler(messageClass, overriddenHandler, handler));
+                declaration.isHandler = true;
+                if (handler.enabled()) {
+                    // if a handler is overwritten it inherits the configuration of its parent method
+                    finalMethods.add(new MessageHandler(messageClass, declaration.deepest, handler));
+                }
+                // disabled or invalid listeners are ignored
             }
+
+            current = current.getSuperclass();
         }
 
         return finalMethods.toArray(EMPTY_MESSAGEHANDLERS);
     }
 
+    /**
+     * @return the declaration of the method's signature, which is created (with this method as the deepest override) if it is new
+     */
+    private static
+    Declaration getDeclaration(final HashMap<String, ArrayList<Declaration>> declarations, final Method method) {
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+
+        ArrayList<Declaration> sameName = declarations.get(method.getName());
+        if (sameName == null) {
+            sameName = new ArrayList<Declaration>(2);
+            declarations.put(method.getName(), sameName);
+        }
+        else {
+            for (int i = 0, size = sameName.size(); i < size; i++) {
+                final Declaration declaration = sameName.get(i);
+                if (Arrays.equals(declaration.parameterTypes, parameterTypes)) {
+                    return declaration;
+                }
+            }
+        }
+
+        final Declaration declaration = new Declaration(method, parameterTypes);
+        sameName.add(declaration);
+        return declaration;
+    }
+
+    private static final
+    class Holder {
+        private volatile MessageHandler[] handlers;
+    }
+
+    /**
+     * A method signature (name + parameters) in the class hierarchy that is being scanned
+     */
+    private static final
+    class Declaration {
+        private final Method deepest;
+        private final Class<?>[] parameterTypes;
+
+        // true once a handler was found for this signature, so the methods it overrides are not handlers
+        private boolean isHandler = false;
+
+        private
+        Declaration(final Method deepest, final Class<?>[] parameterTypes) {
+            this.deepest = deepest;
+            this.parameterTypes = parameterTypes;
+        }
+    }
+
+    /**
+     * Creates the handler for a functional subscription (a MessageConsumer), which does not need any annotation scanning. These are
+     * always strongly referenced, not synchronized and accept subtypes.
+     *
+     * @param method the (interface) method that is called, which is only used to describe the handler
+     */
+    public static
+    MessageHandler forConsumer(final Method method, final Class<?>[] handledMessages) {
+        return new MessageHandler(method, handledMessages, true, false, STRONG);
+    }
+
+    /**
+     * Re-creates a handler that was found by scan() earlier (see HandlerMetadataCache)
+     */
+    static
+    MessageHandler create(final Method method, final boolean acceptsSubtypes, final boolean isSynchronized, final int referenceType) {
+        return new MessageHandler(method, method.getParameterTypes(), acceptsSubtypes, isSynchronized, referenceType);
+    }
+
     public static final int WEAK = -1;
     public static final int UNDEFINED = 0;
     public static final int STRONG = 1;
@@ -145,6 +292,16 @@ class MessageHandler {
         }
     }
 
+    private
+    MessageHandler(final Method method, final Class<?>[] handledMessages, final boolean acceptsSubtypes, final boolean isSynchronized,
+                   final int referenceType) {
+        this.method = method;
+        this.handledMessages = handledMessages;
+        this.acceptsSubtypes = acceptsSubtypes;
+        this.isSynchronized = isSynchronized;
+        this.referenceType = referenceType;
+    }
+
     public final
     boolean isSynchronized() {
         return this.isSynchronized;
@@ -191,6 +348,7 @@ class MessageHandler {
         }
 
         MessageHandler other = (MessageHandler) obj;
-        return this.method.equals(other.method);
+        // functional handlers share the same method, but not the same message types
+        return this.method.equals(other.method) && Arrays.equals(this.handledMessages, other.handledMessages);
     }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.common;
+
+/**
+ * Creates a message on demand, so that (expensive) messages are only created if something will receive them.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public
+interface MessageSupplier<T> {
+
+    /**
+     * @return the message to publish. Only called if there are subscribers for the message type.
+     */
+    T get();
+}
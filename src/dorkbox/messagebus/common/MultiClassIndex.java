@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.common;
+
+import com.esotericsoftware.kryo.util.IdentityObjectIntMap;
+
+import java.util.Arrays;
+
+/**
+ * A read-optimized index for values that are keyed by TWO or THREE classes (multi-message handlers).
+ * <p/>
+ * Every class that is part of a key gets a dense id, and the ids of a key are packed into a single long, which is looked up in an
+ * open-addressing table. The index is copy-on-write: the writer (which is always inside the subscription manager's lock) builds a new
+ * snapshot and publishes it, so that looking up a value does not write anything, nor does it take a lock.
+ * <p/>
+ * Two classes pack 31 bits per id, three classes pack 21 bits per id (and set the sign bit, so that they never collide with the keys of
+ * two classes).
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public final
+class MultiClassIndex<V> {
+    private static final int MAX_ID = (1 << 21) - 1;
+    private static final long THREE_CLASSES = 1L << 63;
+    private static final float LOAD_FACTOR = 0.5F;
+
+    private static final
+    class Snapshot {
+        // id 0 means "unknown class"
+        private final IdentityObjectIntMap<Class<?>> ids;
+        private final Class<?>[] classes; // index is the id
+
+        // 0 is an empty slot (the ids are never 0, so a packed key is never 0)
+        private final long[] keys;
+        private final Object[] values;
+        private final int mask;
+        private final int size;
+
+        private
+        Snapshot(final IdentityObjectIntMap<Class<?>> ids, final Class<?>[] classes, final long[] keys, final Object[] values,
+                 final int size) {
+            this.ids = ids;
+            this.classes = classes;
+            this.keys = keys;
+            this.values = values;
+            this.mask = keys.length - 1;
+            this.size = size;
+        }
+    }
+
+    private volatile Snapshot snapshot;
+
+
+    public
+    MultiClassIndex() {
+        clear();
+    }
+
+    /**
+     * @return the value for the classes, or null if there is none
+     */
+    public
+    V get(final Class<?> class1, final Class<?> class2) {
+        final Snapshot snapshot = this.snapshot;
+        final IdentityObjectIntMap<Class<?>> ids = snapshot.ids;
+
+        final int id1 = ids.get(class1, 0);
+        if (id1 == 0) {
+            return null;
+        }
+        final int id2 = ids.get(class2, 0);
+        if (id2 == 0) {
+            return null;
+        }
+
+        return find(snapshot, pack(id1, id2));
+    }
+
+    /**
+     * @return the value for the classes, or null if there is none
+     */
+    public
+    V get(final Class<?> class1, final Class<?> class2, final Class<?> class3) {
+        final Snapshot snapshot = this.snapshot;
+        final IdentityObjectIntMap<Class<?>> ids = snapshot.ids;
+
+        final int id1 = ids.get(class1, 0);
+        if (id1 == 0) {
+            return null;
+        }
+        final int id2 = ids.get(class2, 0);
+        if (id2 == 0) {
+            return null;
+        }
+        final int id3 = ids.get(class3, 0);
+        if (id3 == 0) {
+            return null;
+        }
+
+        return find(snapshot, pack(id1, id2, id3));
+    }
+
+    /**
+     * Only ONE thread may write at a time.
+     */
+    public
+    void put(final Class<?> class1, final Class<?> class2, final V value) {
+        Snapshot snapshot = withIds(this.snapshot, class1, class2, null);
+
+        final IdentityObjectIntMap<Class<?>> ids = snapshot.ids;
+        this.snapshot = withValue(snapshot, pack(ids.get(class1, 0), ids.get(class2, 0)), value);
+    }
+
+    /**
+     * Only ONE thread may write at a time.
+     */
+    public
+    void put(final Class<?> class1, final Class<?> class2, final Class<?> class3, final V value) {
+        Snapshot snapshot = withIds(this.snapshot, class1, class2, class3);
+
+        final IdentityObjectIntMap<Class<?>> ids = snapshot.ids;
+        this.snapshot = withValue(snapshot, pack(ids.get(class1, 0), ids.get(class2, 0), ids.get(class3, 0)), value);
+    }
+
+    /**
+     * Only ONE thread may write at a time.
+     */
+    public
+    void clear() {
+        this.snapshot = new Snapshot(new IdentityObjectIntMap<Class<?>>(), new Class<?>[1], new long[8], new Object[8], 0);
+    }
+
+    private static
+    long pack(final int id1, final int id2) {
+        return ((long) id1 << 31) | id2;
+    }
+
+    private static
+    long pack(final int id1, final int id2, final int id3) {
+        return THREE_CLASSES | ((long) id1 << 42) | ((long) id2 << 21) | id3;
+    }
+
+    private static
+    int hash(final long key) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static
+    <V> V find(final Snapshot snapshot, final long key) {
+        final long[] keys = snapshot.keys;
+        final int mask = snapshot.mask;
+
+        int index = hash(key) & mask;
+        long current;
+        while ((current = keys[index]) != 0L) {
+            if (current == key) {
+                return (V) snapshot.values[index];
+            }
+            index = (index + 1) & mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the snapshot (or a copy of it) where all of the classes have an id
+     */
+    private static
+    Snapshot withIds(final Snapshot snapshot, final Class<?> class1, final Class<?> class2, final Class<?> class3) {
+        final IdentityObjectIntMap<Class<?>> ids = snapshot.ids;
+        if (ids.get(class1, 0) != 0 && ids.get(class2, 0) != 0 && (class3 == null || ids.get(class3, 0) != 0)) {
+            return snapshot;
+        }
+
+        // copy the ids, since readers might be using them
+        final IdentityObjectIntMap<Class<?>> newIds = new IdentityObjectIntMap<Class<?>>(snapshot.classes.length + 3);
+        Class<?>[] classes = Arrays.copyOf(snapshot.classes, snapshot.classes.length + 3);
+        int count = snapshot.classes.length;
+
+        for (int i = 1; i < count; i++) {
+            newIds.put(classes[i], i);
+        }
+
+        count = addId(newIds, classes, count, class1);
+        count = addId(newIds, classes, count, class2);
+        if (class3 != null) {
+            count = addId(newIds, classes, count, class3);
+        }
+
+        classes = Arrays.copyOf(classes, count);
+        return new Snapshot(newIds, classes, snapshot.keys, snapshot.values, snapshot.size);
+    }
+
+    private static
+    int addId(final IdentityObjectIntMap<Class<?>> ids, final Class<?>[] classes, final int count, final Class<?> clazz) {
+        if (ids.get(clazz, 0) != 0) {
+            return count;
+        }
+
+        if (count > MAX_ID) {
+            throw new IllegalStateException("Too many different classes are used by multi-message handlers. Acceptable max is " + MAX_ID);
+        }
+
+        ids.put(clazz, count);
+        classes[count] = clazz;
+        return count + 1;
+    }
+
+    /**
+     * @return a copy of the snapshot, that contains the value
+     */
+    private static
+    Snapshot withValue(final Snapshot snapshot, final long key, final Object value) {
+        int capacity = snapshot.keys.length;
+        if (snapshot.size + 1 > capacity * LOAD_FACTOR) {
+            capacity <<= 1;
+        }
+
+        final long[] keys = new long[capacity];
+        final Object[] values = new Object[capacity];
+        final int mask = capacity - 1;
+
+        int size = 0;
+        final long[] oldKeys = snapshot.keys;
+        for (int i = 0; i < oldKeys.length; i++) {
+            final long oldKey = oldKeys[i];
+            if (oldKey != 0L && oldKey != key) {
+                insert(keys, values, mask, oldKey, snapshot.values[i]);
+                size++;
+            }
+        }
+
+        insert(keys, values, mask, key, value);
+        size++;
+
+        return new Snapshot(snapshot.ids, snapshot.classes, keys, values, size);
+    }
+
+    private static
+    void insert(final long[] keys, final Object[] values, final int mask, final long key, final Object value) {
+        int index = hash(key) & mask;
+        while (keys[index] != 0L) {
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+    }
+}
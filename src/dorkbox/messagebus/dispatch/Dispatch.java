@@ -15,6 +15,7 @@
  */
 package dorkbox.messagebus.dispatch;
 
+import dorkbox.messagebus.common.MessageCollector;
 
 /**
  * @author dorkbox, llc
@@ -24,4 +25,38 @@ public interface Dispatch {
     void publish(Object message1);
     void publish(Object message1, Object message2);
     void publish(Object message1, Object message2, Object message3);
+
+    /**
+     * Publishes more than three messages. The array is only valid for the duration of this call (it is reused).
+     */
+    void publish(Object[] messages);
+
+    /**
+     * @return true if a message of this type would be received by at least one handler (DeadMessage handlers do not count)
+     */
+    boolean hasSubscribers(Class<?> messageClass);
+
+    /**
+     * Resolves (and caches) the subscriptions of this message type (including the super-type subscriptions, if they are used) the same
+     * way that the first publication of it would.
+     */
+    void prime(Class<?> messageClass);
+
+    /**
+     * @return a publisher for messages of exactly this type, which resolves the subscriptions ahead of time
+     */
+    <T> Publisher<T> publisherFor(Class<T> messageClass);
+
+    /**
+     * Publishes the message, and passes the return value of every (non-void) handler that received it to the collector.
+     */
+    void publishAndCollect(Object message1, MessageCollector<?> collector);
+
+    /**
+     * Publishes a primitive message. Handlers for the primitive type receive it without boxing, and the message is only boxed if there
+     * are handlers for the boxed type (or if it is a dead message).
+     */
+    void publish(int message);
+    void publish(long message);
+    void publish(double message);
 }
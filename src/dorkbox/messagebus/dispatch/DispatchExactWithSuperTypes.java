@@ -15,6 +15,8 @@
  */
 package dorkbox.messagebus.dispatch;
 
+import dorkbox.messagebus.common.MessageCollector;
+import dorkbox.messagebus.error.DeadLetters;
 import dorkbox.messagebus.error.DeadMessage;
 import dorkbox.messagebus.error.ErrorHandler;
 import dorkbox.messagebus.subscription.Subscription;
@@ -30,11 +32,33 @@ class DispatchExactWithSuperTypes implements Dispatch {
 
     private final ErrorHandler errorHandler;
     private final SubscriptionManager subManager;
+    private final DeadLetters deadLetters;
 
     public
-    DispatchExactWithSuperTypes(final ErrorHandler errorHandler, final SubscriptionManager subManager) {
+    DispatchExactWithSuperTypes(final ErrorHandler errorHandler, final SubscriptionManager subManager, final DeadLetters deadLetters) {
         this.errorHandler = errorHandler;
         this.subManager = subManager;
+        this.deadLetters = deadLetters;
+    }
+
+    @Override
+    public
+    <T> Publisher<T> publisherFor(final Class<T> messageClass) {
+        return new Publisher<T>(messageClass, this, errorHandler, subManager, true);
+    }
+
+    @Override
+    public
+    boolean hasSubscribers(final Class<?> messageClass) {
+        return hasListeners(subManager.getSubs(messageClass)) || hasListeners(subManager.getSuperSubs(messageClass));
+    }
+
+    @Override
+    public
+    void prime(final Class<?> messageClass) {
+        // unlike hasSubscribers(), the super-type subscriptions are resolved even if there are exact subscriptions
+        subManager.getSubs(messageClass);
+        subManager.getSuperSubs(messageClass);
     }
 
     @Override
@@ -45,10 +69,10 @@ class DispatchExactWithSuperTypes implements Dispatch {
 
         final Class<?> messageClass1 = message1.getClass();
 
-        final Subscription[] subscriptions = subManager.getSubs(messageClass1); // can return null
-        final Subscription[] superSubscriptions = subManager.getSuperSubs(messageClass1); // NOT return null
+        final Subscription<?>[] subscriptions = subManager.getSubs(messageClass1); // can return null
+        final Subscription<?>[] superSubscriptions = subManager.getSuperSubs(messageClass1); // NOT return null
 
-        Subscription sub;
+        Subscription<?> sub;
         int subLength;
         boolean hasSubs = false;
 
@@ -72,16 +96,47 @@ class DispatchExactWithSuperTypes implements Dispatch {
         }
 
         if (!hasSubs) {
-            // Dead Event must EXACTLY MATCH (no subclasses)
-            final Subscription[] deadSubscriptions = subManager.getSubs(DeadMessage.class); // can return null
-            if (deadSubscriptions != null) {
-                final DeadMessage deadMessage = new DeadMessage(message1);
-                for (int i = 0; i < deadSubscriptions.length; i++) {
-                    sub = deadSubscriptions[i];
-                    sub.publish(errorHandler, deadMessage);
-                }
+            publishDeadMessage(message1);
+        }
+    }
+
+    @Override
+    public
+    void publishAndCollect(final Object message1, final MessageCollector<?> collector) {
+        final ErrorHandler errorHandler = this.errorHandler;
+        final SubscriptionManager subManager = this.subManager;
+
+        final Class<?> messageClass1 = message1.getClass();
+
+        final Subscription<?>[] subscriptions = subManager.getSubs(messageClass1); // can return null
+        final Subscription<?>[] superSubscriptions = subManager.getSuperSubs(messageClass1); // NOT return null
+
+        Subscription<?> sub;
+        int subLength;
+        boolean hasSubs = false;
+
+        // Run subscriptions. if the subscriptions are NULL or length == 0, it means we don't have any that were ever subscribed.
+        if (subscriptions != null && (subLength = subscriptions.length) > 0) {
+            // even though they are non-null, and have length > 0 --- it is still possible the subscription was REMOVED at some point.
+            // so there won't be any object/method this publishes to AND there won't be any "dead messages" triggered
+            for (int i = 0; i < subLength; i++) {
+                sub = subscriptions[i];
+                hasSubs |= sub.publishAndCollect(errorHandler, message1, collector);
+            }
+        }
+
+        if ((subLength = superSubscriptions.length) > 0) {
+            // even though they are non-null, and have length > 0 --- it is still possible the subscription was REMOVED at some point.
+            // so there won't be any object/method this publishes to AND there won't be any "dead messages" triggered
+            for (int i = 0; i < subLength; i++) {
+                sub = superSubscriptions[i];
+                hasSubs |= sub.publishAndCollect(errorHandler, message1, collector);
             }
         }
+
+        if (!hasSubs) {
+            publishDeadMessage(message1);
+        }
     }
 
     @Override
@@ -93,10 +148,10 @@ class DispatchExactWithSuperTypes implements Dispatch {
         final Class<?> messageClass1 = message1.getClass();
         final Class<?> messageClass2 = message2.getClass();
 
-        final Subscription[] subscriptions = subManager.getSubs(messageClass1, messageClass2); // can return null
-        final Subscription[] superSubscriptions = subManager.getSuperSubs(messageClass1, messageClass2); // NOT return null
+        final Subscription<?>[] subscriptions = subManager.getSubs(messageClass1, messageClass2); // can return null
+        final Subscription<?>[] superSubscriptions = subManager.getSuperSubs(messageClass1, messageClass2); // NOT return null
 
-        Subscription sub;
+        Subscription<?> sub;
         int subLength;
         boolean hasSubs = false;
 
@@ -120,13 +175,20 @@ class DispatchExactWithSuperTypes implements Dispatch {
         }
 
         if (!hasSubs) {
+            final DeadLetters deadLetters = this.deadLetters;
+            deadLetters.add(message1, message2);
+
             // Dead Event must EXACTLY MATCH (no subclasses)
-            final Subscription[] deadSubscriptions = subManager.getSubs(DeadMessage.class); // can return null
+            final Subscription<?>[] deadSubscriptions = subManager.getSubs(DeadMessage.class); // can return null
             if (deadSubscriptions != null) {
-                final DeadMessage deadMessage = new DeadMessage(message1, message2);
-                for (int i = 0; i < deadSubscriptions.length; i++) {
-                    sub = deadSubscriptions[i];
-                    sub.publish(errorHandler, deadMessage);
+                final DeadMessage deadMessage = deadLetters.acquire(message1, message2);
+                try {
+                    for (int i = 0; i < deadSubscriptions.length; i++) {
+                        sub = deadSubscriptions[i];
+                        sub.publish(errorHandler, deadMessage);
+                    }
+                } finally {
+                    deadLetters.release(deadMessage);
                 }
             }
         }
@@ -142,10 +204,10 @@ class DispatchExactWithSuperTypes implements Dispatch {
         final Class<?> messageClass2 = message2.getClass();
         final Class<?> messageClass3 = message3.getClass();
 
-        final Subscription[] subscriptions = subManager.getSubs(messageClass1, messageClass2, messageClass3); // can return null
-        final Subscription[] superSubscriptions = subManager.getSuperSubs(messageClass1, messageClass2, messageClass3); // NOT return null
+        final Subscription<?>[] subscriptions = subManager.getSubs(messageClass1, messageClass2, messageClass3); // can return null
+        final Subscription<?>[] superSubscriptions = subManager.getSuperSubs(messageClass1, messageClass2, messageClass3); // NOT return null
 
-        Subscription sub;
+        Subscription<?> sub;
         int subLength;
         boolean hasSubs = false;
 
@@ -169,15 +231,233 @@ class DispatchExactWithSuperTypes implements Dispatch {
         }
 
         if (!hasSubs) {
+            final DeadLetters deadLetters = this.deadLetters;
+            deadLetters.add(message1, message2, message3);
+
+            // Dead Event must EXACTLY MATCH (no subclasses)
+            final Subscription<?>[] deadSubscriptions = subManager.getSubs(DeadMessage.class); // can return null
+            if (deadSubscriptions != null) {
+                final DeadMessage deadMessage = deadLetters.acquire(message1, message2, message3);
+                try {
+                    for (int i = 0; i < deadSubscriptions.length; i++) {
+                        sub = deadSubscriptions[i];
+                        sub.publish(errorHandler, deadMessage);
+                    }
+                } finally {
+                    deadLetters.release(deadMessage);
+                }
+            }
+        }
+    }
+
+    @Override
+    public
+    void publish(final Object[] messages) {
+        final ErrorHandler errorHandler = this.errorHandler;
+        final SubscriptionManager subManager = this.subManager;
+
+        final Subscription<?>[] subscriptions = subManager.getSubs(messages); // can return null
+        final Subscription<?>[] superSubscriptions = subManager.getSuperSubs(messages); // NOT return null
+
+        Subscription<?> sub;
+        int subLength;
+        boolean hasSubs = false;
+
+        // Run subscriptions. if the subscriptions are NULL or length == 0, it means we don't have any that were ever subscribed.
+        if (subscriptions != null && (subLength = subscriptions.length) > 0) {
+            // even though they are non-null, and have length > 0 --- it is still possible the subscription was REMOVED at some point.
+            // so there won't be any object/method this publishes to AND there won't be any "dead messages" triggered
+            for (int i = 0; i < subLength; i++) {
+                sub = subscriptions[i];
+                hasSubs |= sub.publish(errorHandler, messages);
+            }
+        }
+
+        if ((subLength = superSubscriptions.length) > 0) {
+            // even though they are non-null, and have length > 0 --- it is still possible the subscription was REMOVED at some point.
+            // so there won't be any object/method this publishes to AND there won't be any "dead messages" triggered
+            for (int i = 0; i < subLength; i++) {
+                sub = superSubscriptions[i];
+                hasSubs |= sub.publish(errorHandler, messages);
+            }
+        }
+
+        if (!hasSubs) {
+            final DeadLetters deadLetters = this.deadLetters;
+            deadLetters.add(messages);
+
             // Dead Event must EXACTLY MATCH (no subclasses)
-            final Subscription[] deadSubscriptions = subManager.getSubs(DeadMessage.class); // can return null
+            final Subscription<?>[] deadSubscriptions = subManager.getSubs(DeadMessage.class); // can return null
             if (deadSubscriptions != null) {
-                final DeadMessage deadMessage = new DeadMessage(message1, message2, message3);
+                final DeadMessage deadMessage = deadLetters.acquire(messages);
+                try {
+                    for (int i = 0; i < deadSubscriptions.length; i++) {
+                        sub = deadSubscriptions[i];
+                        sub.publish(errorHandler, deadMessage);
+                    }
+                } finally {
+                    deadLetters.release(deadMessage);
+                }
+            }
+        }
+    }
+
+    @Override
+    public
+    void publish(final int message) {
+        final ErrorHandler errorHandler = this.errorHandler;
+        final SubscriptionManager subManager = this.subManager;
+
+        final Subscription<?>[] subscriptions = subManager.getSubs(int.class); // can return null
+
+        int subLength;
+        boolean hasSubs = false;
+
+        if (subscriptions != null && (subLength = subscriptions.length) > 0) {
+            for (int i = 0; i < subLength; i++) {
+                hasSubs |= subscriptions[i].publish(errorHandler, message);
+            }
+        }
+
+        // the message is only boxed if something needs the boxed type
+        final Subscription<?>[] boxedSubscriptions = subManager.getSubs(Integer.class); // can return null
+        final Subscription<?>[] superSubscriptions = subManager.getSuperSubs(Integer.class); // NOT return null
+
+        if (!hasSubs || (boxedSubscriptions != null && boxedSubscriptions.length > 0) || superSubscriptions.length > 0) {
+            final Integer boxed = Integer.valueOf(message);
+
+            if (boxedSubscriptions != null && (subLength = boxedSubscriptions.length) > 0) {
+                for (int i = 0; i < subLength; i++) {
+                    hasSubs |= boxedSubscriptions[i].publish(errorHandler, boxed);
+                }
+            }
+
+            if ((subLength = superSubscriptions.length) > 0) {
+                for (int i = 0; i < subLength; i++) {
+                    hasSubs |= superSubscriptions[i].publish(errorHandler, boxed);
+                }
+            }
+
+            if (!hasSubs) {
+                publishDeadMessage(boxed);
+            }
+        }
+    }
+
+    @Override
+    public
+    void publish(final long message) {
+        final ErrorHandler errorHandler = this.errorHandler;
+        final SubscriptionManager subManager = this.subManager;
+
+        final Subscription<?>[] subscriptions = subManager.getSubs(long.class); // can return null
+
+        int subLength;
+        boolean hasSubs = false;
+
+        if (subscriptions != null && (subLength = subscriptions.length) > 0) {
+            for (int i = 0; i < subLength; i++) {
+                hasSubs |= subscriptions[i].publish(errorHandler, message);
+            }
+        }
+
+        // the message is only boxed if something needs the boxed type
+        final Subscription<?>[] boxedSubscriptions = subManager.getSubs(Long.class); // can return null
+        final Subscription<?>[] superSubscriptions = subManager.getSuperSubs(Long.class); // NOT return null
+
+        if (!hasSubs || (boxedSubscriptions != null && boxedSubscriptions.length > 0) || superSubscriptions.length > 0) {
+            final Long boxed = Long.valueOf(message);
+
+            if (boxedSubscriptions != null && (subLength = boxedSubscriptions.length) > 0) {
+                for (int i = 0; i < subLength; i++) {
+                    hasSubs |= boxedSubscriptions[i].publish(errorHandler, boxed);
+                }
+            }
+
+            if ((subLength = superSubscriptions.length) > 0) {
+                for (int i = 0; i < subLength; i++) {
+                    hasSubs |= superSubscriptions[i].publish(errorHandler, boxed);
+                }
+            }
+
+            if (!hasSubs) {
+                publishDeadMessage(boxed);
+            }
+        }
+    }
+
+    @Override
+    public
+    void publish(final double message) {
+        final ErrorHandler errorHandler = this.errorHandler;
+        final SubscriptionManager subManager = this.subManager;
+
+        final Subscription<?>[] subscriptions = subManager.getSubs(double.class); // can return null
+
+        int subLength;
+        boolean hasSubs = false;
+
+        if (subscriptions != null && (subLength = subscriptions.length) > 0) {
+            for (int i = 0; i < subLength; i++) {
+                hasSubs |= subscriptions[i].publish(errorHandler, message);
+            }
+        }
+
+        // the message is only boxed if something needs the boxed type
+        final Subscription<?>[] boxedSubscriptions = subManager.getSubs(Double.class); // can return null
+        final Subscription<?>[] superSubscriptions = subManager.getSuperSubs(Double.class); // NOT return null
+
+        if (!hasSubs || (boxedSubscriptions != null && boxedSubscriptions.length > 0) || superSubscriptions.length > 0) {
+            final Double boxed = Double.valueOf(message);
+
+            if (boxedSubscriptions != null && (subLength = boxedSubscriptions.length) > 0) {
+                for (int i = 0; i < subLength; i++) {
+                    hasSubs |= boxedSubscriptions[i].publish(errorHandler, boxed);
+                }
+            }
+
+            if ((subLength = superSubscriptions.length) > 0) {
+                for (int i = 0; i < subLength; i++) {
+                    hasSubs |= superSubscriptions[i].publish(errorHandler, boxed);
+                }
+            }
+
+            if (!hasSubs) {
+                publishDeadMessage(boxed);
+            }
+        }
+    }
+
+    private
+    void publishDeadMessage(final Object message1) {
+        final ErrorHandler errorHandler = this.errorHandler;
+        final DeadLetters deadLetters = this.deadLetters;
+        deadLetters.add(message1);
+
+        // Dead Event must EXACTLY MATCH (no subclasses)
+        final Subscription<?>[] deadSubscriptions = subManager.getSubs(DeadMessage.class); // can return null
+        if (deadSubscriptions != null) {
+            final DeadMessage deadMessage = deadLetters.acquire(message1);
+            try {
                 for (int i = 0; i < deadSubscriptions.length; i++) {
-                    sub = deadSubscriptions[i];
-                    sub.publish(errorHandler, deadMessage);
+                    deadSubscriptions[i].publish(errorHandler, deadMessage);
                 }
+            } finally {
+                deadLetters.release(deadMessage);
             }
         }
     }
+
+    private static
+    boolean hasListeners(final Subscription<?>[] subscriptions) {
+        if (subscriptions != null) {
+            for (int i = 0; i < subscriptions.length; i++) {
+                if (subscriptions[i].hasListeners()) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.dispatch;
+
+import dorkbox.messagebus.common.MessageCollector;
+import dorkbox.messagebus.subscription.EpochTracker;
+
+/**
+ * Tracks every publication (sync or async) in the epoch tracker of the subscription manager, so that un-subscribing can wait for the
+ * publications that are still in progress.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+@SuppressWarnings("Duplicates")
+public final
+class EpochDispatch implements Dispatch {
+    private final Dispatch dispatch;
+    private final EpochTracker epochs;
+
+    public
+    EpochDispatch(final Dispatch dispatch, final EpochTracker epochs) {
+        this.dispatch = dispatch;
+        this.epochs = epochs;
+    }
+
+    @Override
+    public
+    void publish(final Object message1) {
+        final EpochTracker.Reader reader = epochs.enter();
+        try {
+            dispatch.publish(message1);
+        } finally {
+            reader.exit();
+        }
+    }
+
+    @Override
+    public
+    void publish(final Object message1, final Object message2) {
+        final EpochTracker.Reader reader = epochs.enter();
+        try {
+            dispatch.publish(message1, message2);
+        } finally {
+            reader.exit();
+        }
+    }
+
+    @Override
+    public
+    void publish(final Object message1, final Object message2, final Object message3) {
+        final EpochTracker.Reader reader = epochs.enter();
+        try {
+            dispatch.publish(message1, message2, message3);
+        } finally {
+            reader.exit();
+        }
+    }
+
+    @Override
+    public
+    void publish(final Object[] messages) {
+        final EpochTracker.Reader reader = epochs.enter();
+        try {
+            dispatch.publish(messages);
+        } finally {
+            reader.exit();
+        }
+    }
+
+    @Override
+    public
+    boolean hasSubscribers(final Class<?> messageClass) {
+        return dispatch.hasSubscribers(messageClass);
+    }
+
+    @Override
+    public
+    void prime(final Class<?> messageClass) {
+        dispatch.prime(messageClass);
+    }
+
+    @Override
+    public
+    <T> Publisher<T> publisherFor(final Class<T> messageClass) {
+        // the publisher tracks its own publications
+        return dispatch.publisherFor(messageClass);
+    }
+
+    @Override
+    public
+    void publishAndCollect(final Object message1, final MessageCollector<?> collector) {
+        final EpochTracker.Reader reader = epochs.enter();
+        try {
+            dispatch.publishAndCollect(message1, collector);
+        } finally {
+            reader.exit();
+        }
+    }
+
+    @Override
+    public
+    void publish(final int message) {
+        final EpochTracker.Reader reader = epochs.enter();
+        try {
+            dispatch.publish(message);
+        } finally {
+            reader.exit();
+        }
+    }
+
+    @Override
+    public
+    void publish(final long message) {
+        final EpochTracker.Reader reader = epochs.enter();
+        try {
+            dispatch.publish(message);
+        } finally {
+            reader.exit();
+        }
+    }
+
+    @Override
+    public
+    void publish(final double message) {
+        final EpochTracker.Reader reader = epochs.enter();
+        try {
+            dispatch.publish(message);
+        } finally {
+            reader.exit();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.dispatch;
+
+import dorkbox.messagebus.error.ErrorHandler;
+import dorkbox.messagebus.subscription.EpochTracker;
+import dorkbox.messagebus.subscription.Subscription;
+import dorkbox.messagebus.subscription.SubscriptionManager;
+
+import java.util.Arrays;
+
+/**
+ * Publishes messages of ONE type, using subscriptions that were resolved ahead of time. This skips the getClass() and the table lookups
+ * that publish() has to do for every message.
+ * <p>
+ * The resolved subscriptions are only re-resolved when the subscription manager's version changes (which happens when a NEW listener
+ * class is subscribed). Subscribing/unsubscribing more listeners of a class that is already known is seen immediately, because the
+ * subscriptions themselves are not replaced.
+ * <p>
+ * Messages are delivered as if their class was exactly the type of this publisher, so messages should not be a subclass of it.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public final
+class Publisher<T> {
+    private static final Subscription<?>[] EMPTY_SUBS = new Subscription<?>[0];
+
+    private static final
+    class Resolved {
+        private final int version;
+        private final Subscription<?>[] subscriptions;
+
+        private
+        Resolved(final int version, final Subscription<?>[] subscriptions) {
+            this.version = version;
+            this.subscriptions = subscriptions;
+        }
+    }
+
+    private final Class<T> messageClass;
+    private final Dispatch dispatch;
+    private final ErrorHandler errorHandler;
+    private final SubscriptionManager subManager;
+    private final boolean includeSuperTypes;
+    private final EpochTracker epochs; // null if publications are not tracked
+
+    // races here do not matter, since the resolved subscriptions are immutable, and duplicate resolution is harmless
+    private Resolved resolved = new Resolved(-1, EMPTY_SUBS);
+
+    Publisher(final Class<T> messageClass, final Dispatch dispatch, final ErrorHandler errorHandler,
+              final SubscriptionManager subManager, final boolean includeSuperTypes) {
+        this.messageClass = messageClass;
+        this.dispatch = dispatch;
+        this.errorHandler = errorHandler;
+        this.subManager = subManager;
+        this.includeSuperTypes = includeSuperTypes;
+        this.epochs = subManager.getEpochs();
+    }
+
+    public
+    Class<T> getMessageClass() {
+        return messageClass;
+    }
+
+    /**
+     * Synchronously publish the message to all of the subscriptions for this type.
+     */
+    public
+    void publish(final T message) {
+        final int version = subManager.getVersion();
+
+        Resolved resolved = this.resolved;
+        if (resolved.version != version) {
+            resolved = resolve(version);
+            this.resolved = resolved;
+        }
+
+        final ErrorHandler errorHandler = this.errorHandler;
+        final Subscription<?>[] subscriptions = resolved.subscriptions;
+
+        final EpochTracker epochs = this.epochs;
+        if (epochs == null) {
+            publish(errorHandler, subscriptions, message);
+            return;
+        }
+
+        final EpochTracker.Reader reader = epochs.enter();
+        try {
+            publish(errorHandler, subscriptions, message);
+        } finally {
+            reader.exit();
+        }
+    }
+
+    private
+    void publish(final ErrorHandler errorHandler, final Subscription<?>[] subscriptions, final T message) {
+        boolean hasSubs = false;
+        for (int i = 0; i < subscriptions.length; i++) {
+            hasSubs |= subscriptions[i].publish(errorHandler, message);
+        }
+
+        if (!hasSubs) {
+            // this is rare, so the normal publication takes care of dead messages
+            dispatch.publish(message);
+        }
+    }
+
+    private
+    Resolved resolve(final int version) {
+        final SubscriptionManager subManager = this.subManager;
+
+        Subscription<?>[] subscriptions = subManager.getSubs(messageClass); // can return null
+        if (subscriptions == null) {
+            subscriptions = EMPTY_SUBS;
+        }
+
+        if (includeSuperTypes) {
+            final Subscription<?>[] superSubscriptions = subManager.getSuperSubs(messageClass); // NOT return null
+            if (superSubscriptions.length > 0) {
+                final int length = subscriptions.length;
+                subscriptions = Arrays.copyOf(subscriptions, length + superSubscriptions.length);
+                System.arraycopy(superSubscriptions, 0, subscriptions, length, superSubscriptions.length);
+            }
+        }
+
+        return new Resolved(version, subscriptions);
+    }
+}
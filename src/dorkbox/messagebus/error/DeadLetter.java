@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.error;
+
+/**
+ * A message (or messages) that had no subscribers, as recorded by the {@link DeadLetterStore}.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/2/16
+ */
+public final
+class DeadLetter {
+    private final long sequence;
+    private final long timestamp;
+    private final Object[] messages;
+
+    public
+    DeadLetter(final long sequence, final long timestamp, final Object[] messages) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.messages = messages;
+    }
+
+    /**
+     * @return the order in which the dead letters were recorded. This always increases.
+     */
+    public
+    long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * @return when this was recorded, in milliseconds (see {@link System#currentTimeMillis()})
+     */
+    public
+    long getTimestamp() {
+        return this.timestamp;
+    }
+
+    public
+    Object[] getMessages() {
+        return this.messages;
+    }
+
+    @Override
+    public
+    String toString() {
+        return "DeadLetter{sequence=" + sequence + ", timestamp=" + timestamp + ", messages=" + java.util.Arrays.deepToString(messages) +
+               '}';
+    }
+}
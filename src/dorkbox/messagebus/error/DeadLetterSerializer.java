@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.error;
+
+/**
+ * Converts the messages of a {@link DeadLetter} to and from bytes, so that they can be spilled to disk by the {@link DeadLetterStore}.
+ * <p>
+ * The store only calls this while holding its spill lock (and writes from a single spill thread), so implementations do not have to be
+ * thread-safe.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/2/16
+ */
+public
+interface DeadLetterSerializer {
+
+    byte[] serialize(Object[] messages) throws Exception;
+
+    Object[] deserialize(byte[] bytes) throws Exception;
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.error;
+
+import dorkbox.messagebus.util.NamedThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded record of the most recent dead messages (messages that had no subscribers), so that they can be inspected after the fact
+ * WITHOUT subscribing a DeadMessage handler.
+ * <p>
+ * Recording is lock-free: each dead message claims the next slot of a ring, overwriting the oldest record. Optionally, the records
+ * that are overwritten are spilled (appended) to a memory-mapped file, using a {@link DeadLetterSerializer}. Serializing and writing
+ * them happens on a separate thread, which takes them from a bounded queue, so that publication never waits for it. If the queue is
+ * full, or once the file is full, further records are dropped (and counted).
+ * <p>
+ * The spill file is a sequence of records: [int length][long sequence][long timestamp][length bytes], terminated by a length of 0.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/2/16
+ */
+public final
+class DeadLetterStore {
+    private static final int RECORD_HEADER_SIZE = 4 + 8 + 8;
+    private static final int MIN_SPILL_QUEUE_SIZE = 1024;
+
+    private static final Comparator<DeadLetter> SEQUENCE_ORDER = new Comparator<DeadLetter>() {
+        @Override
+        public
+        int compare(final DeadLetter o1, final DeadLetter o2) {
+            final long s1 = o1.getSequence();
+            final long s2 = o2.getSequence();
+            return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+        }
+    };
+
+    private final AtomicReferenceArray<DeadLetter> ring;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+
+    // only used if spilling to disk. The queue holds the dead letters (and flush requests) for the spill thread
+    private final ArrayBlockingQueue<Object> spillQueue;
+    private final Thread spillThread;
+
+    // only used if spilling to disk. All access to the file is protected by the spillLock
+    private final Object spillLock = new Object();
+    private final DeadLetterSerializer serializer;
+    private final RandomAccessFile spillFile;
+    private final MappedByteBuffer spillBuffer;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile boolean closed = false;
+
+    // the number of records that the last getSpilled() could not deserialize
+    private volatile int unreadableCount = 0;
+
+    /**
+     * Queued by flush(), so that it knows when the dead letters that were queued before it have been written
+     */
+    private static final
+    class FlushRequest {
+        private boolean done = false;
+    }
+
+    /**
+     * Only keeps the dead letters in memory.
+     *
+     * @param size the number of (most recent) dead letters to keep. This is rounded up to the nearest power of 2
+     */
+    public
+    DeadLetterStore(final int size) {
+        this.ring = new AtomicReferenceArray<DeadLetter>(powerOfTwo(size));
+        this.mask = this.ring.length() - 1;
+
+        this.serializer = null;
+        this.spillFile = null;
+        this.spillBuffer = null;
+        this.spillQueue = null;
+        this.spillThread = null;
+    }
+
+    /**
+     * Keeps the dead letters in memory, and spills the oldest ones to the (memory-mapped) file. If the file already contains records,
+     * new records are appended to them.
+     *
+     * @param size the number of (most recent) dead letters to keep in memory. This is rounded up to the nearest power of 2
+     * @param file where to spill the dead letters that are no longer kept in memory
+     * @param maxFileSize the maximum size of the file, in bytes
+     * @param serializer how to convert the messages to bytes
+     */
+    public
+    DeadLetterStore(final int size, final File file, final int maxFileSize, final DeadLetterSerializer serializer) throws IOException {
+        this.ring = new AtomicReferenceArray<DeadLetter>(powerOfTwo(size));
+        this.mask = this.ring.length() - 1;
+
+        this.serializer = serializer;
+        this.spillFile = new RandomAccessFile(file, "rw");
+
+        try {
+            this.spillBuffer = this.spillFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, maxFileSize);
+        } catch (IOException e) {
+            this.spillFile.close();
+            throw e;
+        }
+
+        // find the end of the existing records, so that we append after them
+        final MappedByteBuffer buffer = this.spillBuffer;
+        int position = 0;
+        int length;
+        while (position + RECORD_HEADER_SIZE <= maxFileSize && (length = buffer.getInt(position)) > 0) {
+            position += RECORD_HEADER_SIZE + length;
+        }
+        buffer.position(Math.min(position, maxFileSize));
+
+        // the spill thread has to be able to absorb (at least) a full ring of evictions
+        this.spillQueue = new ArrayBlockingQueue<Object>(Math.max(this.ring.length(), MIN_SPILL_QUEUE_SIZE));
+        this.spillThread = new NamedThreadFactory("MessageBus-DeadLetters").newThread(new Runnable() {
+            @Override
+            public
+            void run() {
+                spillQueued();
+            }
+        });
+        this.spillThread.start();
+    }
+
+    private static
+    int powerOfTwo(final int size) {
+        if (size < 2) {
+            return 2;
+        }
+        return 1 << (32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+
+    public
+    void add(final Object message) {
+        record(new Object[] {message});
+    }
+
+    public
+    void add(final Object message1, final Object message2) {
+        record(new Object[] {message1, message2});
+    }
+
+    public
+    void add(final Object message1, final Object message2, final Object message3) {
+        record(new Object[] {message1, message2, message3});
+    }
+
+    /**
+     * The messages are copied, so the array can be reused by the caller.
+     */
+    public
+    void add(final Object[] messages) {
+        record(messages.clone());
+    }
+
+    private
+    void record(final Object[] messages) {
+        final long sequence = this.sequence.getAndIncrement();
+        final DeadLetter deadLetter = new DeadLetter(sequence, System.currentTimeMillis(), messages);
+
+        final DeadLetter oldest = this.ring.getAndSet((int) (sequence & this.mask), deadLetter);
+        if (oldest != null && this.spillQueue != null) {
+            if (this.closed || !this.spillQueue.offer(oldest)) {
+                droppedCount.getAndIncrement();
+            }
+        }
+    }
+
+    /**
+     * Runs on the spill thread, until the store is closed
+     */
+    private
+    void spillQueued() {
+        final ArrayBlockingQueue<Object> queue = this.spillQueue;
+        Object next;
+
+        while (!this.closed) {
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            synchronized (this.spillLock) {
+                if (next instanceof FlushRequest) {
+                    ((FlushRequest) next).done = true;
+                    this.spillLock.notifyAll();
+                }
+                else {
+                    spill((DeadLetter) next);
+                }
+            }
+        }
+    }
+
+    /**
+     * called from within SYNCHRONIZE (spillLock)
+     */
+    private
+    void spill(final DeadLetter deadLetter) {
+        if (this.closed) {
+            droppedCount.getAndIncrement();
+            return;
+        }
+
+        final MappedByteBuffer buffer = this.spillBuffer;
+
+        final byte[] bytes;
+        try {
+            bytes = this.serializer.serialize(deadLetter.getMessages());
+        } catch (Exception e) {
+            droppedCount.getAndIncrement();
+            return;
+        }
+
+        // always leave room for the (zero length) terminator
+        if (bytes.length == 0 || buffer.remaining() < RECORD_HEADER_SIZE + bytes.length + 4) {
+            droppedCount.getAndIncrement();
+            return;
+        }
+
+        // write the length last, so that a partially written record is never read
+        final int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.putLong(deadLetter.getSequence());
+        buffer.putLong(deadLetter.getTimestamp());
+        buffer.put(bytes);
+        buffer.putInt(buffer.position(), 0);
+        buffer.putInt(start, bytes.length);
+    }
+
+    /**
+     * Waits until the dead letters that were queued for the spill file (before this call) have been written to it. This does nothing if
+     * this store does not spill to disk, or if it is closed.
+     */
+    public
+    void flush() {
+        if (this.spillQueue == null || this.closed) {
+            return;
+        }
+
+        final FlushRequest request = new FlushRequest();
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                this.spillQueue.put(request);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        synchronized (this.spillLock) {
+            while (!request.done && !this.closed) {
+                try {
+                    this.spillLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the dead letters that are still in memory, oldest first. These are NOT removed.
+     */
+    public
+    List<DeadLetter> getRecent() {
+        final AtomicReferenceArray<DeadLetter> ring = this.ring;
+        final int length = ring.length();
+        final List<DeadLetter> deadLetters = new ArrayList<DeadLetter>(length);
+
+        DeadLetter deadLetter;
+        for (int i = 0; i < length; i++) {
+            deadLetter = ring.get(i);
+            if (deadLetter != null) {
+                deadLetters.add(deadLetter);
+            }
+        }
+
+        Collections.sort(deadLetters, SEQUENCE_ORDER);
+        return deadLetters;
+    }
+
+    /**
+     * @return the dead letters that are still in memory, oldest first. These are removed from memory (they are NOT spilled to disk).
+     */
+    public
+    List<DeadLetter> drain() {
+        final AtomicReferenceArray<DeadLetter> ring = this.ring;
+        final int length = ring.length();
+        final List<DeadLetter> deadLetters = new ArrayList<DeadLetter>(length);
+
+        DeadLetter deadLetter;
+        for (int i = 0; i < length; i++) {
+            deadLetter = ring.getAndSet(i, null);
+            if (deadLetter != null) {
+                deadLetters.add(deadLetter);
+            }
+        }
+
+        Collections.sort(deadLetters, SEQUENCE_ORDER);
+        return deadLetters;
+    }
+
+    /**
+     * Waits until the dead letters that are queued for the spill file have been written (see flush()), and then reads them back.
+     *
+     * @return the dead letters that have been spilled to disk (oldest first), or an empty list if this store does not spill to disk.
+     *         Records that cannot be deserialized are skipped, and counted (see getUnreadableCount()).
+     */
+    public
+    List<DeadLetter> getSpilled() {
+        final List<DeadLetter> deadLetters = new ArrayList<DeadLetter>();
+        if (this.spillBuffer == null) {
+            return deadLetters;
+        }
+
+        flush();
+
+        synchronized (this.spillLock) {
+            int unreadable = 0;
+
+            final MappedByteBuffer buffer = this.spillBuffer;
+            final int end = buffer.position();
+
+            int position = 0;
+            int length;
+            while (position < end && (length = buffer.getInt(position)) > 0) {
+                final long sequence = buffer.getLong(position + 4);
+                final long timestamp = buffer.getLong(position + 12);
+
+                final byte[] bytes = new byte[length];
+                final ByteBuffer record = buffer.duplicate();
+                record.position(position + RECORD_HEADER_SIZE);
+                record.get(bytes);
+
+                try {
+                    deadLetters.add(new DeadLetter(sequence, timestamp, this.serializer.deserialize(bytes)));
+                } catch (Exception e) {
+                    // ie: the classes of the messages have changed since they were written
+                    unreadable++;
+                }
+
+                position += RECORD_HEADER_SIZE + length;
+            }
+
+            this.unreadableCount = unreadable;
+        }
+
+        return deadLetters;
+    }
+
+    /**
+     * @return the number of spilled records that the last call to getSpilled() skipped, because they could not be deserialized
+     */
+    public
+    int getUnreadableCount() {
+        return this.unreadableCount;
+    }
+
+    /**
+     * @return the number of dead letters that could not be spilled to disk (because the spill queue or the file was full, or they could
+     *         not be serialized)
+     */
+    public
+    long getDroppedCount() {
+        return this.droppedCount.get();
+    }
+
+    /**
+     * Writes the dead letters that are still queued, and then flushes and closes the spill file (if there is one). The dead letters in
+     * memory are still available.
+     */
+    public
+    void close() {
+        if (this.spillFile == null) {
+            return;
+        }
+
+        flush();
+
+        synchronized (this.spillLock) {
+            if (this.closed) {
+                return;
+            }
+
+            this.closed = true;
+            this.spillLock.notifyAll();
+
+            this.spillBuffer.force();
+            try {
+                this.spillFile.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        this.spillThread.interrupt();
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.error;
+
+import com.esotericsoftware.kryo.util.IdentityMap;
+import dorkbox.messagebus.util.FastThreadLocal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of messages that had no subscribers (dead messages).
+ * <p>
+ * Every dead message is counted, per type (the type of the FIRST message). This does not need a DeadMessage handler to be subscribed.
+ * If a {@link DeadLetterStore} is configured, the most recent dead messages are also recorded there.
+ * <p>
+ * If there ARE DeadMessage handlers, the DeadMessage that they receive is reused (one per thread), so that misrouted traffic does not
+ * create garbage.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/2/16
+ */
+public final
+class DeadLetters {
+    /**
+     * The default maximum number of message types that are counted individually.
+     */
+    public static final int DEFAULT_MAX_COUNTED_TYPES = 1024;
+
+    private static final FastThreadLocal<DeadMessage> deadMessageCache = new FastThreadLocal<DeadMessage>() {
+        @Override
+        public
+        DeadMessage initialValue() {
+            return new DeadMessage();
+        }
+    };
+
+    // copy-on-write, so that counting is lock-free. New types are rare, and only those take the lock.
+    private volatile IdentityMap<Class<?>, AtomicLong> counters = new IdentityMap<Class<?>, AtomicLong>(16);
+    private final AtomicLong otherTypes = new AtomicLong();
+
+    // all of the counters (copy-on-write, like the map), so that the total can be summed without a shared (contended) counter
+    private volatile AtomicLong[] allCounters = new AtomicLong[0];
+
+    private final DeadLetterStore store;
+    private final int maxCountedTypes;
+
+    public
+    DeadLetters() {
+        this(null);
+    }
+
+    /**
+     * @param store where to record the dead messages, or null to only count them
+     */
+    public
+    DeadLetters(final DeadLetterStore store) {
+        this(store, DEFAULT_MAX_COUNTED_TYPES);
+    }
+
+    /**
+     * @param store where to record the dead messages, or null to only count them
+     * @param maxCountedTypes the maximum number of message types that are counted individually. Dead messages of other types are only
+     *                        counted as a total, so that publishing lots of distinct (generated) classes cannot grow this without bound.
+     */
+    public
+    DeadLetters(final DeadLetterStore store, final int maxCountedTypes) {
+        this.store = store;
+        this.maxCountedTypes = maxCountedTypes;
+    }
+
+    /**
+     * @return the store that records the most recent dead messages, or null if they are only counted
+     */
+    public
+    DeadLetterStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Counts (and records, if there is a store) a message that had no subscribers
+     */
+    public
+    void add(final Object message) {
+        count(message.getClass());
+
+        final DeadLetterStore store = this.store;
+        if (store != null) {
+            store.add(message);
+        }
+    }
+
+    /**
+     * Counts (and records, if there is a store) messages that had no subscribers
+     */
+    public
+    void add(final Object message1, final Object message2) {
+        count(message1.getClass());
+
+        final DeadLetterStore store = this.store;
+        if (store != null) {
+            store.add(message1, message2);
+        }
+    }
+
+    /**
+     * Counts (and records, if there is a store) messages that had no subscribers
+     */
+    public
+    void add(final Object message1, final Object message2, final Object message3) {
+        count(message1.getClass());
+
+        final DeadLetterStore store = this.store;
+        if (store != null) {
+            store.add(message1, message2, message3);
+        }
+    }
+
+    /**
+     * Counts (and records, if there is a store) messages that had no subscribers
+     */
+    public
+    void add(final Object[] messages) {
+        count(messages[0].getClass());
+
+        final DeadLetterStore store = this.store;
+        if (store != null) {
+            store.add(messages);
+        }
+    }
+
+    /**
+     * Counts a dead message, using the type of the (first) message
+     */
+    private
+    void count(final Class<?> messageClass) {
+        AtomicLong counter = counters.get(messageClass);
+        if (counter == null) {
+            counter = createCounter(messageClass);
+        }
+
+        counter.getAndIncrement();
+    }
+
+    private synchronized
+    AtomicLong createCounter(final Class<?> messageClass) {
+        final IdentityMap<Class<?>, AtomicLong> current = this.counters;
+
+        AtomicLong counter = current.get(messageClass);
+        if (counter != null) {
+            return counter;
+        }
+
+        if (current.size >= this.maxCountedTypes) {
+            return otherTypes;
+        }
+
+        final IdentityMap<Class<?>, AtomicLong> newCounters = new IdentityMap<Class<?>, AtomicLong>(current.size + 1);
+        for (IdentityMap.Entry<Class<?>, AtomicLong> entry : current.entries()) {
+            newCounters.put(entry.key, entry.value);
+        }
+
+        counter = new AtomicLong();
+        newCounters.put(messageClass, counter);
+
+        final AtomicLong[] all = this.allCounters;
+        final AtomicLong[] newAll = new AtomicLong[all.length + 1];
+        System.arraycopy(all, 0, newAll, 0, all.length);
+        newAll[all.length] = counter;
+
+        // the array first, so that the total is never less than the count of a type
+        this.allCounters = newAll;
+        this.counters = newCounters;
+        return counter;
+    }
+
+    /**
+     * @return the number of dead messages of this type (for multiple messages, this is the type of the first message)
+     */
+    public
+    long getCount(final Class<?> messageClass) {
+        final AtomicLong counter = counters.get(messageClass);
+        if (counter == null) {
+            return 0L;
+        }
+        return counter.get();
+    }
+
+    /**
+     * @return the total number of dead messages, of all types. This is the sum of the counters, so it is not a snapshot if messages
+     *         are being counted at the same time.
+     */
+    public
+    long getTotalCount() {
+        final AtomicLong[] all = this.allCounters;
+
+        long total = otherTypes.get();
+        for (int i = 0; i < all.length; i++) {
+            total += all[i].get();
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of dead messages whose type was not counted individually (because too many types were already counted)
+     */
+    public
+    long getOtherCount() {
+        return otherTypes.get();
+    }
+
+    /**
+     * @return the reusable DeadMessage for this thread (or a new one, if a DeadMessage handler caused another dead message).
+     *         It MUST be released after the DeadMessage handlers have been called.
+     */
+    public
+    DeadMessage acquire(final Object message) {
+        return acquire().set(message);
+    }
+
+    /**
+     * @return the reusable DeadMessage for this thread (or a new one, if a DeadMessage handler caused another dead message).
+     *         It MUST be released after the DeadMessage handlers have been called.
+     */
+    public
+    DeadMessage acquire(final Object message1, final Object message2) {
+        return acquire().set(message1, message2);
+    }
+
+    /**
+     * @return the reusable DeadMessage for this thread (or a new one, if a DeadMessage handler caused another dead message).
+     *         It MUST be released after the DeadMessage handlers have been called.
+     */
+    public
+    DeadMessage acquire(final Object message1, final Object message2, final Object message3) {
+        return acquire().set(message1, message2, message3);
+    }
+
+    /**
+     * @return the reusable DeadMessage for this thread (or a new one, if a DeadMessage handler caused another dead message).
+     *         It MUST be released after the DeadMessage handlers have been called. The messages are NOT copied.
+     */
+    public
+    DeadMessage acquire(final Object[] messages) {
+        return acquire().set(messages);
+    }
+
+    private static
+    DeadMessage acquire() {
+        final DeadMessage deadMessage = deadMessageCache.get();
+        if (deadMessage.inUse) {
+            return new DeadMessage();
+        }
+
+        deadMessage.inUse = true;
+        return deadMessage;
+    }
+
+    public
+    void release(final DeadMessage deadMessage) {
+        if (deadMessage.inUse) {
+            deadMessage.clear();
+            deadMessage.inUse = false;
+        }
+    }
+}
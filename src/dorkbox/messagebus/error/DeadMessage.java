@@ -39,6 +39,10 @@ package dorkbox.messagebus.error;
 
 /**
  * The dead message event is published whenever no message handlers could be found for a given message publication.
+ * <p>
+ * Dead messages that are published by the bus are REUSED (one per thread), so they are only valid for the duration of the handler
+ * call. Use {@link #copy()} inside the handler if the dead message must be kept for later. Once the handler has returned, the messages
+ * are released, and {@link #getMessages()} and {@link #copy()} throw an IllegalStateException.
  *
  * @author bennidi
  *         Date: 1/18/13
@@ -48,7 +52,19 @@ package dorkbox.messagebus.error;
 public final
 class DeadMessage {
 
-    private final Object[] relatedMessages;
+    private Object[] relatedMessages;
+
+    // reused by the bus, so that publishing a dead message does not allocate
+    private Object[] related1;
+    private Object[] related2;
+    private Object[] related3;
+    boolean inUse = false;
+
+    /**
+     * Only used by the bus, for the reusable (per thread) dead messages.
+     */
+    DeadMessage() {
+    }
 
     public
     DeadMessage(Object message) {
@@ -71,8 +87,90 @@ class DeadMessage {
         this.relatedMessages[2] = message3;
     }
 
+    /**
+     * @throws IllegalStateException if this dead message was published by the bus, and is used after its handler has returned
+     */
     public
     Object[] getMessages() {
-        return this.relatedMessages;
+        return related();
+    }
+
+    /**
+     * @return a new DeadMessage, with the same messages as this one, that is safe to keep after the handler has returned.
+     *
+     * @throws IllegalStateException if this dead message was published by the bus, and is used after its handler has returned
+     */
+    public
+    DeadMessage copy() {
+        final DeadMessage copy = new DeadMessage();
+        copy.relatedMessages = related().clone();
+        return copy;
+    }
+
+    private
+    Object[] related() {
+        final Object[] related = this.relatedMessages;
+        if (related == null) {
+            throw new IllegalStateException("DeadMessage used after its handler returned; call copy() inside the handler");
+        }
+        return related;
+    }
+
+    DeadMessage set(Object message) {
+        Object[] related = this.related1;
+        if (related == null) {
+            related = this.related1 = new Object[1];
+        }
+
+        related[0] = message;
+        this.relatedMessages = related;
+        return this;
+    }
+
+    DeadMessage set(Object message1, Object message2) {
+        Object[] related = this.related2;
+        if (related == null) {
+            related = this.related2 = new Object[2];
+        }
+
+        related[0] = message1;
+        related[1] = message2;
+        this.relatedMessages = related;
+        return this;
+    }
+
+    DeadMessage set(Object message1, Object message2, Object message3) {
+        Object[] related = this.related3;
+        if (related == null) {
+            related = this.related3 = new Object[3];
+        }
+
+        related[0] = message1;
+        related[1] = message2;
+        related[2] = message3;
+        this.relatedMessages = related;
+        return this;
+    }
+
+    /**
+     * The array is NOT copied, it is only referenced (it is copied by {@link #copy()}).
+     */
+    DeadMessage set(Object[] messages) {
+        this.relatedMessages = messages;
+        return this;
+    }
+
+    /**
+     * Releases the references to the messages, so that a reused dead message does not keep them alive.
+     */
+    void clear() {
+        // only clear the arrays that belong to us
+        final Object[] related = this.relatedMessages;
+        if (related == related1 || related == related2 || related == related3) {
+            for (int i = 0; i < related.length; i++) {
+                related[i] = null;
+            }
+        }
+        this.relatedMessages = null;
     }
 }
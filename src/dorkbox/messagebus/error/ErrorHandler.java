@@ -15,11 +15,24 @@
  */
 package dorkbox.messagebus.error;
 
-import java.util.ArrayDeque;
-import java.util.Collection;
+import dorkbox.messagebus.util.FastThreadLocal;
+import dorkbox.messagebus.util.NamedThreadFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Dispatches publication errors to all of the registered error handlers.
+ * <p>
+ * The error handlers are stored in a copy-on-write array, so reporting an error never takes a lock (only adding an error handler does).
+ * <p>
+ * Optionally, the errors can be handed off to a bounded queue that is drained by its own thread. This way a handler that is failing
+ * for every message (or a slow error handler) will not slow down the threads that are publishing messages. If the queue is full, the
+ * error is dropped (and counted).
+ *
  * @author bennidi
+ * @author dorkbox, llc
  */
 @SuppressWarnings("Duplicates")
 public final
@@ -31,53 +44,338 @@ class ErrorHandler {
                     "Falling back to console logger." + LINE_SEPARATOR +
                     "Publication error handlers can be added by calling MessageBus.addErrorHandler()" + LINE_SEPARATOR;
 
-    // this handler will receive all errors that occur during message dispatch or message handling
-    private final Collection<IPublicationErrorHandler> errorHandlers = new ArrayDeque<IPublicationErrorHandler>();
-    private boolean changedDefaults = false;
+    private static final IPublicationErrorHandler[] EMPTY_HANDLERS = new IPublicationErrorHandler[0];
+
+    // errors reported by the publication path reuse the same record (per thread), so that an error storm does not create garbage
+    private static final FastThreadLocal<ReusableError> reusableError = new FastThreadLocal<ReusableError>() {
+        @Override
+        public
+        ReusableError initialValue() {
+            return new ReusableError();
+        }
+    };
+
+    // this handler will receive all errors that occur during message dispatch or message handling.
+    // copy-on-write, so that reading it never needs a lock
+    private volatile IPublicationErrorHandler[] errorHandlers = EMPTY_HANDLERS;
+    private volatile boolean changedDefaults = false;
+
+    // only used when errors are handled asynchronously
+    private final ArrayBlockingQueue<Object> errorQueue;
+    private final Thread errorThread;
+    private final AtomicLong droppedErrors = new AtomicLong();
+    private volatile boolean shuttingDown = false;
 
+    // reports the errors of the error handlers themselves (only for the error thread, since there is no caller to throw to)
+    private final IPublicationErrorHandler.ConsoleLogger fallbackLogger = new IPublicationErrorHandler.ConsoleLogger();
 
+
+    /**
+     * Errors are handled on the thread that caused them.
+     */
     public
     ErrorHandler() {
+        this(0);
+    }
+
+    /**
+     * @param asyncQueueSize if > 0, errors are placed onto a queue of this size and handled by a separate thread. If the queue is full,
+     *                       errors are dropped.
+     */
+    public
+    ErrorHandler(final int asyncQueueSize) {
+        if (asyncQueueSize > 0) {
+            this.errorQueue = new ArrayBlockingQueue<Object>(asyncQueueSize);
+
+            this.errorThread = new NamedThreadFactory("MessageBus-Errors").newThread(new Runnable() {
+                @Override
+                public
+                void run() {
+                    final ArrayBlockingQueue<Object> queue = ErrorHandler.this.errorQueue;
+                    Object error;
+
+                    while (!ErrorHandler.this.shuttingDown) {
+                        try {
+                            error = queue.take();
+                        } catch (InterruptedException e) {
+                            continue;
+                        }
+
+                        try {
+                            if (error instanceof PublicationError) {
+                                dispatch((PublicationError) error);
+                            }
+                            else {
+                                final ListenerError listenerError = (ListenerError) error;
+                                dispatch(listenerError.error, listenerError.listenerClass);
+                            }
+                        } catch (Throwable t) {
+                            // a broken error handler must not stop the error thread, otherwise every later error is silently dropped
+                            final PublicationError handlerError = new PublicationError().setMessage("An error handler threw an exception")
+                                                                                        .setCause(t);
+                            ErrorHandler.this.fallbackLogger.handleError(handlerError);
+                        }
+                    }
+                }
+            });
+            this.errorThread.start();
+        }
+        else {
+            this.errorQueue = null;
+            this.errorThread = null;
+        }
     }
 
     public synchronized
     void addErrorHandler(IPublicationErrorHandler handler) {
         changedDefaults = true;
 
-        this.errorHandlers.add(handler);
+        final IPublicationErrorHandler[] current = this.errorHandlers;
+        final IPublicationErrorHandler[] newHandlers = Arrays.copyOf(current, current.length + 1);
+        newHandlers[current.length] = handler;
+
+        this.errorHandlers = newHandlers;
     }
 
-    public synchronized
-    void handlePublicationError(PublicationError error) {
-        if (!changedDefaults) {
-            changedDefaults = true;
+    /**
+     * @return the number of errors that were dropped because the (asynchronous) error queue was full
+     */
+    public
+    long getDroppedErrors() {
+        return droppedErrors.get();
+    }
 
-            // lazy-set the error handler + default message if none have been set
-            if (this.errorHandlers.isEmpty()) {
-                this.errorHandlers.add(new IPublicationErrorHandler.ConsoleLogger());
-                System.out.println(ERROR_HANDLER_MSG);
+    public
+    void handlePublicationError(PublicationError error) {
+        final ArrayBlockingQueue<Object> queue = this.errorQueue;
+        if (queue != null) {
+            if (!queue.offer(error)) {
+                droppedErrors.getAndIncrement();
             }
+            return;
         }
 
-        for (IPublicationErrorHandler errorHandler : this.errorHandlers) {
-            errorHandler.handleError(error);
+        dispatch(error);
+    }
+
+    /**
+     * Reports an error that happened while publishing a message, WITHOUT allocating a new PublicationError.
+     * <p>
+     * Error handlers that are {@link IPublicationErrorHandler.ReuseSafe} receive a (per-thread) reused PublicationError, which is only
+     * valid during their handleError() call, all others receive a copy. If errors are handled asynchronously, a copy is placed onto the
+     * queue instead.
+     */
+    public
+    void handlePublicationError(final String message, final Throwable cause, final Object publishedObject) {
+        final ReusableError reusable = reusableError.get();
+        final PublicationError error = reusable.acquire();
+
+        error.setMessage(message)
+             .setCause(cause)
+             .setPublishedObject(publishedObject);
+
+        handleReusable(reusable, error);
+    }
+
+    /**
+     * Reports an error that happened while publishing a message, WITHOUT allocating a new PublicationError.
+     * <p>
+     * Error handlers that are {@link IPublicationErrorHandler.ReuseSafe} receive a (per-thread) reused PublicationError, which is only
+     * valid during their handleError() call, all others receive a copy. If errors are handled asynchronously, a copy is placed onto the
+     * queue instead.
+     */
+    public
+    void handlePublicationError(final String message, final Throwable cause, final Object publishedObject1,
+                                final Object publishedObject2) {
+        final ReusableError reusable = reusableError.get();
+        final PublicationError error = reusable.acquire();
+
+        error.setMessage(message)
+             .setCause(cause)
+             .setPublishedObject(publishedObject1, publishedObject2);
+
+        handleReusable(reusable, error);
+    }
+
+    /**
+     * Reports an error that happened while publishing a message, WITHOUT allocating a new PublicationError.
+     * <p>
+     * Error handlers that are {@link IPublicationErrorHandler.ReuseSafe} receive a (per-thread) reused PublicationError, which is only
+     * valid during their handleError() call, all others receive a copy. If errors are handled asynchronously, a copy is placed onto the
+     * queue instead.
+     */
+    public
+    void handlePublicationError(final String message, final Throwable cause, final Object publishedObject1,
+                                final Object publishedObject2, final Object publishedObject3) {
+        final ReusableError reusable = reusableError.get();
+        final PublicationError error = reusable.acquire();
+
+        error.setMessage(message)
+             .setCause(cause)
+             .setPublishedObject(publishedObject1, publishedObject2, publishedObject3);
+
+        handleReusable(reusable, error);
+    }
+
+    /**
+     * Reports an error that happened while publishing more than three messages, WITHOUT allocating a new PublicationError.
+     * <p>
+     * Error handlers that are {@link IPublicationErrorHandler.ReuseSafe} receive a (per-thread) reused PublicationError, which is only
+     * valid during their handleError() call, all others receive a copy. If errors are handled asynchronously, a copy is placed onto the
+     * queue instead.
+     */
+    public
+    void handlePublicationError(final String message, final Throwable cause, final Object[] publishedObjects) {
+        final ReusableError reusable = reusableError.get();
+        final PublicationError error = reusable.acquire();
+
+        error.setMessage(message)
+             .setCause(cause)
+             .setPublishedObjects(publishedObjects);
+
+        handleReusable(reusable, error);
+    }
+
+    private
+    void handleReusable(final ReusableError reusable, final PublicationError error) {
+        try {
+            final ArrayBlockingQueue<Object> queue = this.errorQueue;
+            if (queue != null) {
+                // the error thread would see the record AFTER it has been reused
+                if (!queue.offer(error.copy())) {
+                    droppedErrors.getAndIncrement();
+                }
+            }
+            else {
+                dispatchReused(error);
+            }
+        } finally {
+            reusable.release(error);
         }
     }
 
-    public synchronized
+    public
     void handleError(final String error, final Class<?> listenerClass) {
+        final ArrayBlockingQueue<Object> queue = this.errorQueue;
+        if (queue != null) {
+            if (!queue.offer(new ListenerError(error, listenerClass))) {
+                droppedErrors.getAndIncrement();
+            }
+            return;
+        }
+
+        dispatch(error, listenerClass);
+    }
+
+    /**
+     * Stops the error thread (if errors are handled asynchronously). Errors that are still in the queue are discarded.
+     */
+    public
+    void shutdown() {
+        this.shuttingDown = true;
+
+        if (this.errorThread != null) {
+            this.errorThread.interrupt();
+        }
+    }
+
+    private
+    void dispatch(final PublicationError error) {
+        final IPublicationErrorHandler[] handlers = getHandlers();
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].handleError(error);
+        }
+    }
+
+    /**
+     * The error is cleared (and reused) once this returns, so the error handlers that are not reuse-safe receive a copy of it
+     */
+    private
+    void dispatchReused(final PublicationError error) {
+        final IPublicationErrorHandler[] handlers = getHandlers();
+        PublicationError copy = null;
+
+        for (int i = 0; i < handlers.length; i++) {
+            final IPublicationErrorHandler handler = handlers[i];
+
+            if (handler instanceof IPublicationErrorHandler.ReuseSafe) {
+                handler.handleError(error);
+            }
+            else {
+                // only copied once, no matter how many handlers need it
+                if (copy == null) {
+                    copy = error.copy();
+                }
+                handler.handleError(copy);
+            }
+        }
+    }
+
+    private
+    void dispatch(final String error, final Class<?> listenerClass) {
+        final IPublicationErrorHandler[] handlers = getHandlers();
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i].handleError(error, listenerClass);
+        }
+    }
+
+    private
+    IPublicationErrorHandler[] getHandlers() {
         if (!changedDefaults) {
-            changedDefaults = true;
+            // only happens once, so it's OK to lock here
+            synchronized (this) {
+                if (!changedDefaults) {
+                    // lazy-set the error handler + default message if none have been set
+                    if (this.errorHandlers.length == 0) {
+                        this.errorHandlers = new IPublicationErrorHandler[] {new IPublicationErrorHandler.ConsoleLogger()};
+                        System.out.println(ERROR_HANDLER_MSG);
+                    }
 
-            // lazy-set the error handler + default message if none have been set
-            if (this.errorHandlers.isEmpty()) {
-                this.errorHandlers.add(new IPublicationErrorHandler.ConsoleLogger());
-                System.out.println(ERROR_HANDLER_MSG);
+                    changedDefaults = true;
+                }
             }
         }
 
-        for (IPublicationErrorHandler errorHandler : this.errorHandlers) {
-            errorHandler.handleError(error, listenerClass);
+        return this.errorHandlers;
+    }
+
+    /**
+     * Holds the per-thread PublicationError. If an error handler causes another error (for example, by publishing a message), the
+     * record is still in use, so a new one is created for that error.
+     */
+    private static final
+    class ReusableError {
+        private final PublicationError error = new PublicationError();
+        private boolean inUse = false;
+
+        private
+        PublicationError acquire() {
+            if (inUse) {
+                return new PublicationError();
+            }
+
+            inUse = true;
+            return error;
+        }
+
+        private
+        void release(final PublicationError error) {
+            if (error == this.error) {
+                error.clear();
+                inUse = false;
+            }
+        }
+    }
+
+    private static final
+    class ListenerError {
+        private final String error;
+        private final Class<?> listenerClass;
+
+        private
+        ListenerError(final String error, final Class<?> listenerClass) {
+            this.error = error;
+            this.listenerClass = listenerClass;
         }
     }
 }
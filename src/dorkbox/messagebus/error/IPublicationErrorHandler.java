@@ -22,6 +22,8 @@
  */
 package dorkbox.messagebus.error;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Publication error handlers are provided with a publication error every time an error occurs during message publication.
  * <p/>
@@ -51,17 +53,103 @@ interface IPublicationErrorHandler {
     void handleError(String error, final Class<?> listenerClass);
 
 
+    /**
+     * Errors that are reported by the publication path are REUSED (one per thread), and are cleared once the error handlers have
+     * returned. An error handler that implements this interface promises that it does not keep (or hand off to another thread) the
+     * PublicationError that it receives, so it is given the reused error. All other error handlers receive a copy of it.
+     */
+    interface ReuseSafe extends IPublicationErrorHandler {
+    }
+
+
     /**
      * The default error handler will simply log to standard out and print the stack trace if available.
+     * <p/>
+     * Because a handler that fails for every message would otherwise flood the console (and slow down everything that is writing to
+     * it), at most {@link #DEFAULT_MAX_ERRORS_PER_SECOND} errors (or the number given to the constructor) are printed per second. The
+     * number of suppressed errors is printed once logging resumes.
+     * <p/>
+     * Rate limiting is lock-free: the current (one second) window and the number of errors in it are packed into a single atomic value.
      */
     final
-    class ConsoleLogger implements IPublicationErrorHandler {
+    class ConsoleLogger implements ReuseSafe {
+        public static final int DEFAULT_MAX_ERRORS_PER_SECOND = 10;
+
+        private static final long WINDOW_NANOS = 1000000000L;
+
+        private final int maxErrorsPerSecond;
+
+        // the upper 32 bits are the window (in seconds), the lower 32 bits are the number of errors in that window
+        private final AtomicLong window = new AtomicLong();
+
+        // only updated when a window ends
+        private final AtomicLong suppressedTotal = new AtomicLong();
+
+        public
+        ConsoleLogger() {
+            this(DEFAULT_MAX_ERRORS_PER_SECOND);
+        }
+
+        /**
+         * @param maxErrorsPerSecond the maximum number of errors that are printed per second
+         */
+        public
+        ConsoleLogger(final int maxErrorsPerSecond) {
+            this.maxErrorsPerSecond = maxErrorsPerSecond;
+        }
+
+        /**
+         * @return true if this error should be logged
+         */
+        private
+        boolean allowed() {
+            final long currentWindow = System.nanoTime() / WINDOW_NANOS;
+            final int max = this.maxErrorsPerSecond;
+
+            while (true) {
+                final long state = this.window.get();
+                final int count = (int) state;
+
+                if ((int) (state >>> 32) != (int) currentWindow) {
+                    // the first error of a new window reports what was suppressed in the previous one
+                    if (this.window.compareAndSet(state, (currentWindow << 32) | 1L)) {
+                        if (count > max) {
+                            final int suppressed = count - max;
+                            this.suppressedTotal.getAndAdd(suppressed);
+                            System.out.println("Suppressed " + suppressed + " publication errors in the last second.");
+                        }
+                        return max > 0;
+                    }
+                }
+                else if (count == Integer.MAX_VALUE) {
+                    return false;
+                }
+                else if (this.window.compareAndSet(state, state + 1)) {
+                    // errors past the maximum are still counted, so that the number of suppressed errors is known
+                    return count < max;
+                }
+            }
+        }
+
+        /**
+         * @return the number of errors that were not printed (because too many errors happened in the same second)
+         */
+        public
+        long getSuppressedCount() {
+            final int count = (int) this.window.get();
+            return this.suppressedTotal.get() + Math.max(0, count - this.maxErrorsPerSecond);
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public
         void handleError(final PublicationError error) {
+            if (!allowed()) {
+                return;
+            }
+
             // Printout the error itself
             System.out.println(error);
 
@@ -77,6 +165,10 @@ interface IPublicationErrorHandler {
         @Override
         public
         void handleError(final String error, final Class<?> listenerClass) {
+            if (!allowed()) {
+                return;
+            }
+
             // Printout the error itself
             System.out.println(new StringBuilder().append(error).append(": ").append(listenerClass.getSimpleName()).toString());
         }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.error;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Serializes dead letters with Kryo. Classes do not have to be registered, however they must be serializable by Kryo (by default,
+ * this means they need a no-arg constructor).
+ *
+ * @author dorkbox, llc
+ *         Date: 2/2/16
+ */
+public
+class KryoDeadLetterSerializer implements DeadLetterSerializer {
+    private final Kryo kryo;
+    private final Output output;
+
+    public
+    KryoDeadLetterSerializer() {
+        this(new Kryo());
+    }
+
+    /**
+     * @param kryo a (configured) kryo instance, for example with registered classes or custom serializers
+     */
+    public
+    KryoDeadLetterSerializer(final Kryo kryo) {
+        this.kryo = kryo;
+        this.output = new Output(1024, -1);
+    }
+
+    @Override
+    public
+    byte[] serialize(final Object[] messages) throws Exception {
+        final Output output = this.output;
+        output.clear();
+
+        kryo.writeClassAndObject(output, messages);
+        return output.toBytes();
+    }
+
+    @Override
+    public
+    Object[] deserialize(final byte[] bytes) throws Exception {
+        return (Object[]) kryo.readClassAndObject(new Input(bytes));
+    }
+}
@@ -44,6 +44,10 @@ import java.util.Arrays;
  * for some reason and contain details as to the cause and location
  * where they occurred.
  * <p/>
+ * Errors that are reported by the publication path are REUSED (one per thread). Only error handlers that implement
+ * {@link IPublicationErrorHandler.ReuseSafe} receive the reused error (which is only valid for the duration of their
+ * {@link IPublicationErrorHandler#handleError(PublicationError)} call), all other error handlers receive a copy of it.
+ * <p/>
  *
  * @author bennidi
  *         Date: 2/22/12
@@ -58,6 +62,11 @@ class PublicationError {
     private String message;
     private Object[] publishedObjects;
 
+    // reused by the publication path, so that reporting an error does not allocate
+    private Object[] published1;
+    private Object[] published2;
+    private Object[] published3;
+
 
     /**
      * Default constructor.
@@ -105,27 +114,87 @@ class PublicationError {
 
     public
     PublicationError setPublishedObject(Object publishedObject) {
-        this.publishedObjects = new Object[1];
-        this.publishedObjects[0] = publishedObject;
+        Object[] published = this.published1;
+        if (published == null) {
+            published = this.published1 = new Object[1];
+        }
+
+        published[0] = publishedObject;
+        this.publishedObjects = published;
 
         return this;
     }
 
     public
     PublicationError setPublishedObject(Object publishedObject1, Object publishedObject2) {
-        this.publishedObjects = new Object[2];
-        this.publishedObjects[0] = publishedObject1;
-        this.publishedObjects[1] = publishedObject2;
+        Object[] published = this.published2;
+        if (published == null) {
+            published = this.published2 = new Object[2];
+        }
+
+        published[0] = publishedObject1;
+        published[1] = publishedObject2;
+        this.publishedObjects = published;
 
         return this;
     }
 
     public
     PublicationError setPublishedObject(Object publishedObject1, Object publishedObject2, Object publishedObject3) {
-        this.publishedObjects = new Object[3];
-        this.publishedObjects[0] = publishedObject1;
-        this.publishedObjects[1] = publishedObject2;
-        this.publishedObjects[2] = publishedObject3;
+        Object[] published = this.published3;
+        if (published == null) {
+            published = this.published3 = new Object[3];
+        }
+
+        published[0] = publishedObject1;
+        published[1] = publishedObject2;
+        published[2] = publishedObject3;
+        this.publishedObjects = published;
+
+        return this;
+    }
+
+    /**
+     * The array is NOT copied, it is only referenced (it is copied by {@link #copy()}).
+     */
+    public
+    PublicationError setPublishedObjects(Object[] publishedObjects) {
+        this.publishedObjects = publishedObjects;
+        return this;
+    }
+
+    /**
+     * @return a new PublicationError, with the same values as this one, that is safe to keep after the error handler has returned.
+     */
+    public
+    PublicationError copy() {
+        final PublicationError copy = new PublicationError();
+        copy.cause = this.cause;
+        copy.message = this.message;
+
+        if (this.publishedObjects != null) {
+            copy.publishedObjects = this.publishedObjects.clone();
+        }
+
+        return copy;
+    }
+
+    /**
+     * Releases the references held by this error, so that a reused error does not keep the published objects (or the cause) alive.
+     */
+    public
+    PublicationError clear() {
+        this.cause = null;
+        this.message = null;
+
+        // only clear the arrays that belong to us
+        final Object[] published = this.publishedObjects;
+        if (published != null && (published == published1 || published == published2 || published == published3)) {
+            for (int i = 0; i < published.length; i++) {
+                published[i] = null;
+            }
+        }
+        this.publishedObjects = null;
 
         return this;
     }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.subscription;
+
+import dorkbox.messagebus.common.MessageCollector;
+import dorkbox.messagebus.common.MessageConsumer;
+import dorkbox.messagebus.common.MessageConsumer2;
+import dorkbox.messagebus.common.MessageConsumer3;
+import dorkbox.messagebus.common.MessageHandler;
+import dorkbox.messagebus.error.ErrorHandler;
+
+import java.lang.reflect.Method;
+
+/**
+ * The subscription for all of the functional subscriptions (MessageConsumer, MessageConsumer2, MessageConsumer3) of the same message
+ * type(s). The "listeners" of this subscription are the consumers themselves, and they are called directly (no reflection).
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+@SuppressWarnings({"Duplicates", "unchecked"})
+final
+class ConsumerSubscription extends Subscription<Object> {
+    private static final Method[] ACCEPT = new Method[4];
+
+    static {
+        try {
+            ACCEPT[1] = MessageConsumer.class.getMethod("accept", Object.class);
+            ACCEPT[2] = MessageConsumer2.class.getMethod("accept", Object.class, Object.class);
+            ACCEPT[3] = MessageConsumer3.class.getMethod("accept", Object.class, Object.class, Object.class);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    ConsumerSubscription(final Class<?>[] messageTypes) {
+        super(ConsumerSubscription.class, MessageHandler.forConsumer(ACCEPT[messageTypes.length], messageTypes));
+    }
+
+    @Override
+    public
+    Entry<Object> createEntry(final Object listener, final Entry<Object> head) {
+        return new Entry<Object>(listener, head);
+    }
+
+    @Override
+    public
+    boolean publish(final ErrorHandler errorHandler, final Object message) {
+        Entry<Object> head = head();
+        Entry<Object> current = head;
+        MessageConsumer<Object> consumer;
+        while (current != null) {
+            consumer = (MessageConsumer<Object>) current.getValue();
+            current = current.next();
+
+            try {
+                consumer.accept(message);
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, message);
+            }
+        }
+
+        return head != null;  // true if we have something to publish to, otherwise false
+    }
+
+    @Override
+    public
+    boolean publish(final ErrorHandler errorHandler, final Object message1, final Object message2) {
+        Entry<Object> head = head();
+        Entry<Object> current = head;
+        MessageConsumer2<Object, Object> consumer;
+        while (current != null) {
+            consumer = (MessageConsumer2<Object, Object>) current.getValue();
+            current = current.next();
+
+            try {
+                consumer.accept(message1, message2);
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, message1, message2);
+            }
+        }
+
+        return head != null;  // true if we have something to publish to, otherwise false
+    }
+
+    @Override
+    public
+    boolean publish(final ErrorHandler errorHandler, final Object message1, final Object message2, final Object message3) {
+        Entry<Object> head = head();
+        Entry<Object> current = head;
+        MessageConsumer3<Object, Object, Object> consumer;
+        while (current != null) {
+            consumer = (MessageConsumer3<Object, Object, Object>) current.getValue();
+            current = current.next();
+
+            try {
+                consumer.accept(message1, message2, message3);
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, message1, message2, message3);
+            }
+        }
+
+        return head != null;  // true if we have something to publish to, otherwise false
+    }
+
+    /**
+     * There are no functional subscriptions for more than three messages
+     */
+    @Override
+    public
+    boolean publish(final ErrorHandler errorHandler, final Object[] messages) {
+        return false;
+    }
+
+    /**
+     * Consumers do not return anything, so there is nothing to collect
+     */
+    @Override
+    public
+    boolean publishAndCollect(final ErrorHandler errorHandler, final Object message, final MessageCollector<?> collector) {
+        return publish(errorHandler, message);
+    }
+}
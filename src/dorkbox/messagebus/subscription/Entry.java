@@ -15,8 +15,10 @@
  */
 package dorkbox.messagebus.subscription;
 
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 //
-// not thread-safe!!!
+// not thread-safe!!! (except for the mailbox)
 //
 
 
@@ -31,6 +33,15 @@ class Entry<T> {
     private Entry<T> next;
     private Entry<T> prev;
 
+    // only created for listeners whose @Synchronized handlers are executed via a mailbox
+    private volatile Mailbox mailbox;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Entry, Mailbox> mailboxREF =
+                    AtomicReferenceFieldUpdater.newUpdater(Entry.class,
+                                                           Mailbox.class,
+                                                           "mailbox");
+
     public
     Entry(T value, Entry<T> next) {
         if (next != null) {
@@ -57,6 +68,14 @@ class Entry<T> {
         // if this element is their current element
         //next = null;
         //predecessor = null;
+
+        // iterators never use 'prev', so it marks the entry as removed (an entry can be removed by every subscription that shares it)
+        this.prev = this;
+    }
+
+    public
+    boolean isRemoved() {
+        return this.prev == this;
     }
 
     public
@@ -74,4 +93,27 @@ class Entry<T> {
     T getValue() {
         return value;
     }
+
+    /**
+     * @return the mailbox of this listener, which is created by the first call
+     */
+    public
+    Mailbox getMailbox() {
+        Mailbox mailbox = this.mailbox;
+        if (mailbox == null) {
+            mailbox = new Mailbox();
+            if (!mailboxREF.compareAndSet(this, null, mailbox)) {
+                mailbox = this.mailbox;
+            }
+        }
+        return mailbox;
+    }
+
+    /**
+     * @return the mailbox of this listener, or null if it was never needed
+     */
+    public
+    Mailbox peekMailbox() {
+        return this.mailbox;
+    }
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.subscription;
+
+import dorkbox.messagebus.util.FastThreadLocal;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tracks which publications are in progress, so that a writer can wait until every publication that might still see the "old"
+ * subscriptions has finished (a grace period).
+ * <p/>
+ * Every publishing thread has its own reader record, and publication only writes to its own record (there is no contention between
+ * publishing threads). A writer starts a new epoch, and then waits for the records that are still in an older epoch.
+ * <p/>
+ * Old subscriptions and entries do not have to be reclaimed explicitly -- the garbage collector takes care of them once the last
+ * publication that can reach them has finished. The records of threads that have died are removed whenever a thread registers, or a
+ * writer waits, so there are only as many records as there are (publishing) threads alive.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public final
+class EpochTracker {
+    private static final Reader[] EMPTY_READERS = new Reader[0];
+
+    /**
+     * The per-thread record of a publishing thread. Publication on the same thread can be nested (ie: a handler that publishes a
+     * message), in which case only the outer-most publication is tracked.
+     */
+    public static final
+    class Reader {
+        // 0 means that this thread is not publishing
+        private volatile long epoch = 0L;
+        private static final AtomicLongFieldUpdater<Reader> epochREF = AtomicLongFieldUpdater.newUpdater(Reader.class, "epoch");
+
+        // only touched by the owning thread
+        private int depth = 0;
+
+        // the record is removed once the thread has died
+        private final WeakReference<Thread> thread;
+
+        private
+        Reader(final Thread thread) {
+            this.thread = new WeakReference<Thread>(thread);
+        }
+
+        private
+        boolean isAlive() {
+            final Thread thread = this.thread.get();
+            return thread != null && thread.isAlive();
+        }
+
+        /**
+         * Leaves the epoch that was entered by EpochTracker.enter()
+         */
+        public
+        void exit() {
+            if (--depth == 0) {
+                // the writer only has to see this eventually
+                epochREF.lazySet(this, 0L);
+            }
+        }
+    }
+
+    private final FastThreadLocal<Reader> readers = new FastThreadLocal<Reader>() {
+        @Override
+        public
+        Reader initialValue() {
+            return register();
+        }
+    };
+
+    // copy-on-write, only changes when a thread publishes for the first time
+    private volatile Reader[] allReaders = EMPTY_READERS;
+
+    private volatile long epoch = 1L;
+
+
+    public
+    EpochTracker() {
+    }
+
+    private synchronized
+    Reader register() {
+        final Reader reader = new Reader(Thread.currentThread());
+
+        final Reader[] current = removeDeadReaders();
+        final Reader[] newReaders = Arrays.copyOf(current, current.length + 1);
+        newReaders[current.length] = reader;
+        this.allReaders = newReaders;
+
+        return reader;
+    }
+
+    /**
+     * Removes the records of the threads that have died (they can not be publishing anymore).
+     * called from within SYNCHRONIZE (this)
+     *
+     * @return the records that are left
+     */
+    private
+    Reader[] removeDeadReaders() {
+        final Reader[] current = this.allReaders;
+
+        int alive = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].isAlive()) {
+                alive++;
+            }
+        }
+
+        if (alive == current.length) {
+            return current;
+        }
+
+        final Reader[] newReaders = new Reader[alive];
+        int index = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].isAlive()) {
+                newReaders[index++] = current[i];
+            }
+        }
+
+        this.allReaders = newReaders;
+        return newReaders;
+    }
+
+    /**
+     * only used in unit tests
+     *
+     * @return the number of threads that have a record
+     */
+    public synchronized
+    int size() {
+        return this.allReaders.length;
+    }
+
+    /**
+     * Enters the current epoch. This must be followed by Reader.exit() (in a finally block).
+     */
+    public
+    Reader enter() {
+        final Reader reader = readers.get();
+
+        if (reader.depth++ == 0) {
+            long epoch;
+            do {
+                epoch = this.epoch;
+                reader.epoch = epoch;
+                // if a writer started a new epoch while we were entering, it might not have seen us. Enter the new epoch instead.
+            } while (epoch != this.epoch);
+        }
+
+        return reader;
+    }
+
+    /**
+     * Waits until every publication that was in progress when this method was called has finished. Publications that start after this
+     * method was called see all of the changes that were made before it was called, so they are not waited for.
+     * <p/>
+     * If this is called from within a message handler, the publication that is calling it is not waited for (otherwise it would wait
+     * for itself).
+     */
+    public
+    void awaitQuiescence() throws InterruptedException {
+        final long newEpoch;
+        final Reader[] allReaders;
+        synchronized (this) {
+            newEpoch = ++this.epoch;
+            allReaders = removeDeadReaders();
+        }
+
+        final Reader self = readers.get();
+
+        for (int i = 0; i < allReaders.length; i++) {
+            final Reader reader = allReaders[i];
+            if (reader == self) {
+                continue;
+            }
+
+            long readerEpoch = reader.epoch;
+            while (readerEpoch != 0L && readerEpoch < newEpoch) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+
+                LockSupport.parkNanos(10000L);
+                readerEpoch = reader.epoch;
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.subscription;
+
+import com.esotericsoftware.kryo.util.IdentityMap;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * The subscribed listeners of a listener class. Every subscribed instance of a class receives messages from ALL of the subscriptions of
+ * that class, so these subscriptions share one list -- and each instance has ONE entry (and one map slot, and one weak reference in weak
+ * mode) instead of one per message handler. Only subscriptions that use the same kind of reference share a list.
+ * <p/>
+ * This class uses the "single writer principle", where the list itself is the lock for writers. Readers (publication) only read the head
+ * of the list.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public final
+class ListenerList {
+    // This is only touched by a single thread (the one holding the lock)!
+    private final IdentityMap<Object, Entry<?>> entries; // maintain a map of entries for FAST lookup during unsubscribe.
+
+    // this is still inside the single-writer, and can use the same techniques as subscription manager (for thread safe publication)
+    private volatile Entry<?> head = null; // reference to the first element
+
+    // Recommended for best performance while adhering to the "single writer principle". Must be static-final
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ListenerList, Entry> headREF =
+                    AtomicReferenceFieldUpdater.newUpdater(ListenerList.class,
+                                                           Entry.class,
+                                                           "head");
+
+    public
+    ListenerList() {
+        this.entries = new IdentityMap<Object, Entry<?>>(32, SubscriptionManager.LOAD_FACTOR);
+    }
+
+    /**
+     * Every entry in a list has the same type, because only subscriptions that use the same kind of reference share a list.
+     */
+    @SuppressWarnings("unchecked")
+    private static
+    <T> Entry<T> cast(final Entry<?> entry) {
+        return (Entry<T>) entry;
+    }
+
+    <T> Entry<T> head() {
+        return cast(headREF.get(this));
+    }
+
+    /**
+     * single writer principle!
+     *
+     * @param listener the object that will receive messages during publication
+     * @param subscription creates the entry, if the listener is not subscribed yet
+     *
+     * @return the entry of the listener (which is the existing entry, if the listener was already subscribed)
+     */
+    synchronized
+    <T> Entry<T> subscribe(final Object listener, final Subscription<T> subscription) {
+        Entry<T> head = head();
+
+        Entry<T> entry = cast(entries.get(listener));
+        if (entry == null) {
+            entry = head = subscription.createEntry(listener, head);
+
+            entries.put(listener, head);
+            headREF.lazySet(this, head);
+        }
+
+        return entry;
+    }
+
+    /**
+     * single writer principle!
+     *
+     * @param listener the object that will NO LONGER receive messages during publication
+     *
+     * @return the entry that was removed, or null if the listener was not subscribed
+     */
+    synchronized
+    Entry<?> unsubscribe(final Object listener) {
+        final Entry<?> entry = entries.get(listener);
+
+        if (entry != null) {
+            removeNode(entry);
+
+            this.entries.remove(listener);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Removes the entry, if it is still the entry of the listener.
+     *
+     * @param listener the object that will NO LONGER receive messages during publication
+     * @param entry the entry that was created for the listener
+     */
+    synchronized
+    void unsubscribe(final Object listener, final Entry<?> entry) {
+        if (entries.get(listener) == entry) {
+            removeNode(entry);
+
+            this.entries.remove(listener);
+        }
+    }
+
+    /**
+     * single writer principle!
+     * called from within SYNCHRONIZE (this)
+     *
+     * @param entry the entry that will be removed from the linked list
+     */
+    void removeNode(final Entry<?> entry) {
+        if (entry.isRemoved()) {
+            // another subscription (that shares this list) already removed it
+            return;
+        }
+
+        Entry<?> head = headREF.get(this);
+
+        if (entry == head) {
+            // if it was second, now it's first
+            head = head.next();
+            //oldHead.clear(); // optimize for GC not possible because of potentially running iterators
+        }
+
+        entry.remove();
+        headREF.lazySet(this, head);
+    }
+
+    /**
+     * called on shutdown for GC purposes
+     */
+    synchronized
+    void clear() {
+        this.entries.clear();
+        this.head = null;
+    }
+
+    int size() {
+        return this.entries.size;
+    }
+}
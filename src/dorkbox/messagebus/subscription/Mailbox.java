@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.subscription;
+
+import dorkbox.messagebus.error.DeadMessage;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executes the handlers of @Synchronized listeners one at a time, WITHOUT blocking the threads that publish to them.
+ * <p>
+ * Every publishing thread adds its invocation to the (lock-free, multi-producer single-consumer) queue of the mailbox, and then tries to
+ * become the owner of the mailbox. The owner executes the queued invocations in order (FIFO) until the queue is empty, and all of the
+ * other threads return immediately. This keeps the mutual exclusion of synchronized(listener), without a lock convoy when many threads
+ * publish to the same listener.
+ * <p>
+ * Every subscribed listener has its own mailbox, which is created on the entry of the listener by the first publication to one of
+ * its @Synchronized handlers, so unrelated listeners never wait for each other. Since an entry belongs to the subscriptions of one bus, the
+ * handlers of a listener that is subscribed to several buses (or that has both strong and weak handlers) are only serialized per bus
+ * (and per kind of reference).
+ * <p>
+ * Invocations by the owner itself (a handler that publishes to the same listener) are executed immediately, the same as a re-entrant
+ * monitor. Invocations that wait for their result (publishAndCollect) can deadlock the same way that nested monitors can: when two
+ * listeners, each owned by a different thread, wait for each other.
+ * <p>
+ * An invocation that is queued runs after the publishing thread has returned, when the messages of the publication might already be
+ * reused by the bus (dead messages, and the arrays of more than three messages), so it takes a copy of them first.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public final
+class Mailbox {
+
+    /**
+     * @return an owned copy of the message, which is still valid after the publication has returned
+     */
+    public static
+    Object copy(final Object message) {
+        if (message instanceof DeadMessage) {
+            // dead messages are reused (per thread) by the bus
+            return ((DeadMessage) message).copy();
+        }
+        return message;
+    }
+
+    /**
+     * @return an owned copy of the messages, which is still valid after the publication has returned
+     */
+    public static
+    Object[] copy(final Object[] messages) {
+        // the array of more than three messages is reused (per thread) by the bus
+        final Object[] copy = new Object[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            copy[i] = copy(messages[i]);
+        }
+        return copy;
+    }
+
+
+    /**
+     * An invocation that is executed by the owner of the mailbox. It must not throw an exception.
+     */
+    public abstract static
+    class Task {
+        private volatile Task next;
+
+        public abstract
+        void run();
+
+        /**
+         * Called by the publishing thread before the task is queued, because the task will run after the publication has returned. The
+         * task must replace the messages that it references with copies (see Mailbox.copy()).
+         */
+        protected abstract
+        void copyMessages();
+    }
+
+    /**
+     * An invocation whose result is needed by the thread that published it, so that thread waits until the invocation was executed.
+     */
+    public abstract static
+    class ResultTask extends Task {
+        private final Thread waiter = Thread.currentThread();
+        private volatile boolean done = false;
+
+        private Object result;
+        private Throwable error;
+
+        @Override
+        public final
+        void run() {
+            try {
+                this.result = call();
+            } catch (Throwable e) {
+                this.error = e;
+            }
+
+            this.done = true;
+            LockSupport.unpark(this.waiter);
+        }
+
+        public abstract
+        Object call() throws Throwable;
+
+        @Override
+        protected final
+        void copyMessages() {
+            // the publishing thread waits until the task was executed, so the messages are still valid
+        }
+
+        private
+        Object await() throws Throwable {
+            boolean interrupted = false;
+            while (!this.done) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (this.error != null) {
+                throw this.error;
+            }
+            return this.result;
+        }
+    }
+
+    private static final
+    class Stub extends Task {
+        @Override
+        public
+        void run() {
+        }
+
+        @Override
+        protected
+        void copyMessages() {
+        }
+    }
+
+
+    // producers swap the tail, only the owner reads from the head
+    private final AtomicReference<Task> tail;
+    private Task head;
+
+    private final AtomicReference<Thread> owner = new AtomicReference<Thread>();
+
+    Mailbox() {
+        final Stub stub = new Stub();
+        this.head = stub;
+        this.tail = new AtomicReference<Task>(stub);
+    }
+
+    /**
+     * Executes the task, either on this thread (if it becomes the owner of the mailbox) or on the thread that currently owns it.
+     */
+    public
+    void execute(final Task task) {
+        final Thread currentThread = Thread.currentThread();
+        final AtomicReference<Thread> owner = this.owner;
+
+        if (owner.get() == currentThread) {
+            // re-entrant
+            task.run();
+            return;
+        }
+
+        if (owner.compareAndSet(null, currentThread)) {
+            // the task runs before we return, so it is not queued (and does not need copies of the messages)
+            try {
+                runQueued();
+                task.run();
+            } finally {
+                owner.set(null);
+            }
+
+            // a task that was added while we were the owner
+            if (this.tail.get() != this.head) {
+                drain();
+            }
+            return;
+        }
+
+        task.copyMessages();
+
+        // the previous tail is linked last, so the owner might briefly see the task in the tail but not in the queue (see poll())
+        final Task previous = this.tail.getAndSet(task);
+        previous.next = task;
+
+        drain();
+    }
+
+    /**
+     * Executes the task (the same as execute()), and waits for its result.
+     */
+    public
+    Object executeAndWait(final ResultTask task) throws Throwable {
+        execute(task);
+        return task.await();
+    }
+
+    /**
+     * Waits until the tasks that were queued before this call have been executed. If the current thread is the owner of this mailbox
+     * (ie: this is called by one of its handlers), they can only be executed after the handler has returned, so this does not wait.
+     */
+    public
+    void flush() {
+        try {
+            executeAndWait(new ResultTask() {
+                @Override
+                public
+                Object call() {
+                    return null;
+                }
+            });
+        } catch (Throwable ignored) {
+            // the task does not throw
+        }
+    }
+
+    private
+    void drain() {
+        final Thread currentThread = Thread.currentThread();
+        final AtomicReference<Thread> owner = this.owner;
+
+        while (owner.compareAndSet(null, currentThread)) {
+            try {
+                runQueued();
+            } finally {
+                owner.set(null);
+            }
+
+            // a task that was added after the last poll(), while we were still the owner, has to be executed by someone. If its
+            // thread was not able to become the owner, that is us.
+            if (this.tail.get() == this.head) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Only called by the owner
+     */
+    private
+    void runQueued() {
+        Task task;
+        while ((task = poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Only called by the owner
+     */
+    private
+    Task poll() {
+        final Task head = this.head;
+        Task next = head.next;
+
+        if (next == null) {
+            if (this.tail.get() == head) {
+                return null;
+            }
+
+            // a producer has swapped the tail, but not linked it yet
+            while ((next = head.next) == null) {
+                Thread.yield();
+            }
+        }
+
+        // the task becomes the new head (stub), so that it is no longer referenced by the previous one
+        head.next = null;
+        this.head = next;
+        return next;
+    }
+}
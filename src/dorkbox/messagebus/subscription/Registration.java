@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.subscription;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The handle for a subscribed listener. It references the entries of the listener in each of its subscriptions, so closing it removes
+ * the listener WITHOUT looking up its subscriptions, and only takes the locks of those subscriptions (not the subscription manager's).
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public final
+class Registration {
+    private final Object listener;
+    private final Subscription<?>[] subscriptions;
+    private final Entry<?>[] entries;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    Registration(final Object listener, final Subscription<?>[] subscriptions, final Entry<?>[] entries) {
+        this.listener = listener;
+        this.subscriptions = subscriptions;
+        this.entries = entries;
+    }
+
+    public
+    Object getListener() {
+        return listener;
+    }
+
+    /**
+     * Removes the listener from all of its subscriptions. Calling this more than once has no effect.
+     */
+    public
+    void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        final Subscription<?>[] subscriptions = this.subscriptions;
+        final Entry<?>[] entries = this.entries;
+        for (int i = 0; i < subscriptions.length; i++) {
+            subscriptions[i].unsubscribe(listener, entries[i]);
+        }
+    }
+
+    public
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * only used in unit tests
+     *
+     * @return the entry of the listener in each of its subscriptions (in the same order as the subscriptions)
+     */
+    public
+    Entry<?>[] getEntries() {
+        return entries;
+    }
+}
@@ -15,12 +15,15 @@
  */
 package dorkbox.messagebus.subscription;
 
-import com.esotericsoftware.kryo.util.IdentityMap;
+import dorkbox.messagebus.common.MessageCollector;
 import dorkbox.messagebus.common.MessageHandler;
 import dorkbox.messagebus.error.ErrorHandler;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * A subscription is a container that manages exactly one message handler of all registered
@@ -47,23 +50,67 @@ class Subscription<T> {
     // the handler's metadata -> for each handler in a listener, a unique subscription context is created
     private final MessageHandler handler;
 
-    // This is only touched by a single thread!
-    private final IdentityMap<Object, Entry> entries; // maintain a map of entries for FAST lookup during unsubscribe.
+    // true if the handler returns a value (which can be collected by publishAndCollect)
+    protected final boolean hasReturnValue;
 
-    // this is still inside the single-writer, and can use the same techniques as subscription manager (for thread safe publication)
-    protected volatile Entry<T> head = null; // reference to the first element
+    // only for handlers with a single primitive parameter, so that primitive messages are delivered without boxing them
+    private final MethodHandle primitiveHandle;
 
-    // Recommended for best performance while adhering to the "single writer principle". Must be static-final
-    protected static final AtomicReferenceFieldUpdater<Subscription, Entry> headREF =
-                    AtomicReferenceFieldUpdater.newUpdater(Subscription.class,
-                                                           Entry.class,
-                                                           "head");
+    // the subscribed listeners, which are shared by all of the subscriptions of the listener class (that use the same kind of reference)
+    private final ListenerList listeners;
+
+    // the single writer for this subscription (the listener list). Registrations (and cleaning up garbage collected listeners) modify
+    // this subscription without going through the subscription manager, so its lock is not enough.
+    protected final Object singleWriterLock;
 
     protected
     Subscription(final Class<?> listenerClass, final MessageHandler handler) {
+        this(listenerClass, handler, new ListenerList());
+    }
+
+    /**
+     * @param listeners the listeners of this subscription, which can be shared with the other subscriptions of the listener class
+     */
+    protected
+    Subscription(final Class<?> listenerClass, final MessageHandler handler, final ListenerList listeners) {
+        this(listenerClass, handler, listeners, false);
+    }
+
+    /**
+     * @param listeners the listeners of this subscription, which can be shared with the other subscriptions of the listener class
+     * @param usesMailboxes true if @Synchronized handlers are executed via mailboxes (which only the invocations of the subclasses
+     *                      support, so primitive messages are boxed for them)
+     */
+    protected
+    Subscription(final Class<?> listenerClass, final MessageHandler handler, final ListenerList listeners, final boolean usesMailboxes) {
         this.listenerClass = listenerClass;
         this.handler = handler;
-        this.entries = new IdentityMap<Object, Entry>(32, SubscriptionManager.LOAD_FACTOR);
+        this.listeners = listeners;
+        this.singleWriterLock = listeners;
+        this.primitiveHandle = usesMailboxes && handler.isSynchronized() ? null : createPrimitiveHandle(handler);
+        this.hasReturnValue = handler.getMethod().getReturnType() != void.class;
+    }
+
+    /**
+     * @return a method handle of type (Object, primitive)void, or null if the handler does not have a single primitive parameter
+     */
+    private static
+    MethodHandle createPrimitiveHandle(final MessageHandler handler) {
+        final Class<?>[] handledMessages = handler.getHandledMessages();
+        if (handledMessages.length != 1 || !handledMessages[0].isPrimitive()) {
+            return null;
+        }
+
+        final Method method = handler.getMethod();
+        try {
+            method.setAccessible(true);
+            return MethodHandles.lookup()
+                                .unreflect(method)
+                                .asType(MethodType.methodType(void.class, Object.class, handledMessages[0]));
+        } catch (Exception e) {
+            // we will use the "normal" (boxed) publication instead
+            return null;
+        }
     }
 
     /**
@@ -72,8 +119,7 @@ class Subscription<T> {
      */
     public final
     void clear() {
-        this.entries.clear();
-        this.head = null;
+        this.listeners.clear();
     }
 
     // only used in unit tests to verify that the subscription manager is working correctly
@@ -87,63 +133,85 @@ class Subscription<T> {
         return handler;
     }
 
+    /**
+     * Prepares the invocation of the handler now (ie: generates its invoker), instead of once the handler has been invoked often enough.
+     */
+    public
+    void prime() {
+    }
+
     public abstract
     Entry<T> createEntry(final Object listener, final Entry<T> head);
 
+    /**
+     * @return the listener for this entry, or null if it is no longer available (ie: it was garbage collected)
+     */
+    protected
+    Object getListener(final Entry<T> entry) {
+        return entry.getValue();
+    }
+
     /**
      * single writer principle!
-     * called from within SYNCHRONIZE
      *
      * @param listener the object that will receive messages during publication
+     *
+     * @return the entry of the listener (which is the existing entry, if the listener was already subscribed)
      */
-    public
-    void subscribe(final Object listener) {
-        Entry head = headREF.get(this);
-
-        if (!entries.containsKey(listener)) {
-            head = createEntry(listener, head);
-
-            entries.put(listener, head);
-            headREF.lazySet(this, head);
-        }
+    public final
+    Entry<T> subscribe(final Object listener) {
+        return this.listeners.subscribe(listener, this);
     }
 
     /**
      * single writer principle!
-     * called from within SYNCHRONIZE
      *
      * @param listener the object that will NO LONGER receive messages during publication
+     *
+     * @return the entry that was removed, or null if the listener was not subscribed (or was already removed by another subscription
+     *         that shares the listeners)
      */
-    public
-    void unsubscribe(final Object listener) {
-        Entry entry = entries.get(listener);
-
-        if (entry != null) {
-            removeNode(entry);
+    public final
+    Entry<?> unsubscribe(final Object listener) {
+        return this.listeners.unsubscribe(listener);
+    }
 
-            this.entries.remove(listener);
-        }
+    /**
+     * Removes the entry that was returned by subscribe(), if it is still subscribed. This does not need the subscription manager.
+     *
+     * @param listener the object that will NO LONGER receive messages during publication
+     * @param entry the entry that was created for the listener
+     */
+    public final
+    void unsubscribe(final Object listener, final Entry<?> entry) {
+        this.listeners.unsubscribe(listener, entry);
     }
 
     /**
      * single writer principle!
-     * called from within SYNCHRONIZE
+     * called from within SYNCHRONIZE (singleWriterLock)
      *
      * @param entry the entry that will be removed from the linked list
      */
-    protected
-    void removeNode(final Entry entry) {
-        Entry head = headREF.get(this);
+    protected final
+    void removeNode(final Entry<?> entry) {
+        this.listeners.removeNode(entry);
+    }
 
-        if (entry == head) {
-            // if it was second, now it's first
-            head = head.next();
-            //oldHead.clear(); // optimize for GC not possible because of potentially running iterators
-        }
-        else {
-            entry.remove();
-        }
-        headREF.lazySet(this, head);
+    /**
+     * @return the first entry of the listeners (for publication), or null if there are no listeners
+     */
+    protected final
+    Entry<T> head() {
+        return this.listeners.head();
+    }
+
+    /**
+     * @return true if there is at least one listener. For weak subscriptions, this might include a listener that was garbage collected.
+     */
+    public final
+    boolean hasListeners() {
+        return this.listeners.head() != null;
     }
 
     /**
@@ -151,7 +219,7 @@ class Subscription<T> {
      */
     public final
     int size() {
-        return this.entries.size;
+        return this.listeners.size();
     }
 
     public abstract
@@ -163,6 +231,138 @@ class Subscription<T> {
     public abstract
     boolean publish(final ErrorHandler errorHandler, final Object message1, final Object message2, final Object message3);
 
+    /**
+     * Publishes more than three messages. The array is only valid for the duration of this call.
+     */
+    public abstract
+    boolean publish(final ErrorHandler errorHandler, final Object[] messages);
+
+    /**
+     * Publishes the message, and passes the return value of each (non-void) handler to the collector.
+     */
+    public abstract
+    boolean publishAndCollect(final ErrorHandler errorHandler, final Object message, final MessageCollector<?> collector);
+
+    /**
+     * Publishes a primitive message WITHOUT boxing it. Only used for handlers that have a single 'int' parameter.
+     */
+    public
+    boolean publish(final ErrorHandler errorHandler, final int message) {
+        final MethodHandle handle = this.primitiveHandle;
+        if (handle == null) {
+            return publish(errorHandler, (Object) Integer.valueOf(message));
+        }
+
+        final boolean isSynchronized = this.handler.isSynchronized();
+
+        final Entry<T> head = head();
+        Entry<T> current = head;
+        Object listener;
+        while (current != null) {
+            listener = getListener(current);
+            current = current.next();
+
+            if (listener == null) {
+                continue;
+            }
+
+            try {
+                if (isSynchronized) {
+                    synchronized (listener) {
+                        handle.invokeExact(listener, message);
+                    }
+                }
+                else {
+                    handle.invokeExact(listener, message);
+                }
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, (Object) Integer.valueOf(message));
+            }
+        }
+
+        return head != null;  // true if we have something to publish to, otherwise false
+    }
+
+    /**
+     * Publishes a primitive message WITHOUT boxing it. Only used for handlers that have a single 'long' parameter.
+     */
+    public
+    boolean publish(final ErrorHandler errorHandler, final long message) {
+        final MethodHandle handle = this.primitiveHandle;
+        if (handle == null) {
+            return publish(errorHandler, (Object) Long.valueOf(message));
+        }
+
+        final boolean isSynchronized = this.handler.isSynchronized();
+
+        final Entry<T> head = head();
+        Entry<T> current = head;
+        Object listener;
+        while (current != null) {
+            listener = getListener(current);
+            current = current.next();
+
+            if (listener == null) {
+                continue;
+            }
+
+            try {
+                if (isSynchronized) {
+                    synchronized (listener) {
+                        handle.invokeExact(listener, message);
+                    }
+                }
+                else {
+                    handle.invokeExact(listener, message);
+                }
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, (Object) Long.valueOf(message));
+            }
+        }
+
+        return head != null;  // true if we have something to publish to, otherwise false
+    }
+
+    /**
+     * Publishes a primitive message WITHOUT boxing it. Only used for handlers that have a single 'double' parameter.
+     */
+    public
+    boolean publish(final ErrorHandler errorHandler, final double message) {
+        final MethodHandle handle = this.primitiveHandle;
+        if (handle == null) {
+            return publish(errorHandler, (Object) Double.valueOf(message));
+        }
+
+        final boolean isSynchronized = this.handler.isSynchronized();
+
+        final Entry<T> head = head();
+        Entry<T> current = head;
+        Object listener;
+        while (current != null) {
+            listener = getListener(current);
+            current = current.next();
+
+            if (listener == null) {
+                continue;
+            }
+
+            try {
+                if (isSynchronized) {
+                    synchronized (listener) {
+                        handle.invokeExact(listener, message);
+                    }
+                }
+                else {
+                    handle.invokeExact(listener, message);
+                }
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, (Object) Double.valueOf(message));
+            }
+        }
+
+        return head != null;  // true if we have something to publish to, otherwise false
+    }
+
 
     @Override
     public final
@@ -182,7 +382,7 @@ class Subscription<T> {
         if (getClass() != obj.getClass()) {
             return false;
         }
-        Subscription other = (Subscription) obj;
+        Subscription<?> other = (Subscription<?>) obj;
         return this.ID == other.ID;
     }
 }
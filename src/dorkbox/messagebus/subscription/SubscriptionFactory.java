@@ -22,5 +22,10 @@ import dorkbox.messagebus.common.MessageHandler;
  */
 public
 interface SubscriptionFactory {
-    Subscription<?> create(final Class<?> listenerClass, final MessageHandler handler);
+    /**
+     * @param strongListeners the listeners shared by the subscriptions of the listener class that use strong references
+     * @param weakListeners the listeners shared by the subscriptions of the listener class that use weak references
+     */
+    Subscription<?> create(final Class<?> listenerClass, final MessageHandler handler, final ListenerList strongListeners,
+                           final ListenerList weakListeners);
 }
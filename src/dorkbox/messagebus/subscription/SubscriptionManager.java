@@ -18,14 +18,20 @@ package dorkbox.messagebus.subscription;
 import com.esotericsoftware.kryo.util.IdentityMap;
 import dorkbox.messagebus.MessageBus;
 import dorkbox.messagebus.common.ClassTree;
+import dorkbox.messagebus.common.HandlerMetadataCache;
 import dorkbox.messagebus.common.MessageHandler;
 import dorkbox.messagebus.common.MultiClass;
+import dorkbox.messagebus.common.MultiClassIndex;
+import dorkbox.messagebus.error.ErrorHandler;
 import dorkbox.messagebus.subscription.asm.AsmFactory;
 import dorkbox.messagebus.subscription.reflection.ReflectionFactory;
 import dorkbox.messagebus.util.ClassUtils;
+import dorkbox.messagebus.util.ClockCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 /**
  * Permits subscriptions with a varying length of parameters as the signature, which must be match by the publisher for it to be accepted
@@ -43,33 +49,67 @@ import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 public final
 class SubscriptionManager {
     public static final float LOAD_FACTOR = 0.8F;
-    private static final Subscription[] EMPTY_SUBS = new Subscription[0];
+    private static final Subscription<?>[] EMPTY_SUBS = new Subscription<?>[0];
+    private static final Entry<?>[] EMPTY_ENTRIES = new Entry<?>[0];
 
     // controls if we use java reflection or ASM to access methods during publication
     private final SubscriptionFactory subscriptionFactory;
 
+    // can be null
+    private final HandlerMetadataCache metadataCache;
 
-    // ONLY used by SUB/UNSUB
-    // remember already processed classes that do not contain any message handlers
-    private final IdentityMap<Class<?>, Boolean> nonListeners;
 
     // ONLY used by SUB/UNSUB
-    // all subscriptions per messageHandler type
+    // all subscriptions per messageHandler type (classes that do not contain any message handlers have an empty array)
     // this map provides fast access for subscribing and unsubscribing
-    // once a collection of subscriptions is stored it does not change
-    private final IdentityMap<Class<?>, Subscription[]> subsPerListener;
+    // once a collection of subscriptions is stored it does not change.
+    // Copy-on-write (it only changes for a NEW listener class), so that listeners of known classes never need the global lock
+    private volatile IdentityMap<Class<?>, Subscription<?>[]> subsPerListener;
+
+    // subscribing/unsubscribing listeners of a KNOWN class only needs the lock of that class (these are striped by the class), so that
+    // the subscriptions of a listener are always changed together.
+    private static final int LISTENER_LOCK_STRIPES = 64;
+    private final Object[] listenerLocks = new Object[LISTENER_LOCK_STRIPES];
+
+    // ONLY used by SUB/UNSUB
+    // the subscription for the functional subscriptions (consumers) of a message type. The key is the class (for one message), or the
+    // MultiClass (for two or three messages).
+    // Copy-on-write (it only changes for a NEW combination of message types), so that consumers of known types never need the global lock
+    private volatile IdentityMap<Object, Subscription<?>> consumerSubs;
 
     // We perpetually KEEP the types registered here, and just change what is sub/unsub
 
     // all subscriptions of a message type.
-    private volatile IdentityMap<Class<?>, Subscription[]> subsSingle;
-    private volatile IdentityMap<MultiClass, Subscription[]> subsMulti;
+    private volatile IdentityMap<Class<?>, Subscription<?>[]> subsSingle;
+
+    // all subscriptions of two or three message types. Looking these up does not write anything (copy-on-write)
+    private final MultiClassIndex<Subscription<?>[]> subsMultiIndex;
+
+    // the subscriptions of two or three message types that accept subtypes, indexed by their parameter types (copy-on-write). Used to
+    // resolve their super-type subscriptions
+    private final SuperTypeIndex superTypeIndex2;
+    private final SuperTypeIndex superTypeIndex3;
+
+    // all subscriptions of more than three message types
+    private volatile IdentityMap<MultiClass, Subscription<?>[]> subsMulti;
+
+    // all subscriptions that have more than three parameters (copy-on-write). Used to resolve their super-type subscriptions
+    private volatile Subscription<?>[] subsMany = EMPTY_SUBS;
+
+    // changes every time the subscription tables are replaced (ie: a NEW listener class was subscribed), so that anything that has
+    // resolved subscriptions ahead of time knows when to resolve them again
+    private volatile int version = 0;
 
-    // keeps track of all subscriptions of the super classes of a message type.
-    private volatile IdentityMap<Class<?>, Subscription[]> subsSuperSingle;
-    private volatile IdentityMap<MultiClass, Subscription[]> subsSuperMulti;
+    // tracks the publications that are in progress, so that un-subscribing can wait for them to finish. Null if they are not tracked.
+    private final EpochTracker epochs;
+
+    // keeps track of all subscriptions of the super classes of a message type. These are bounded, because every distinct message class
+    // that is published (lambdas, proxies, generated classes, etc) adds an entry here -- and these can always be recalculated.
+    private final ClockCache<Subscription<?>[]> subsSuperSingle;
+    private final ClockCache<Subscription<?>[]> subsSuperMulti;
 
     // In order to force the "single writer principle" for subscribe & unsubscribe, they are within SYNCHRONIZED.
+    // This lock is only needed to create the subscriptions for a NEW listener class (or message type), since that changes the tables.
     //
     // These methods **COULD** be dispatched via another thread (so it's only one thread ever touching them), however we do NOT want them
     // asynchronous - as publish() should ALWAYS succeed if a correct subscribe() is called before. 'Synchronized' is good enough here.
@@ -81,51 +121,76 @@ class SubscriptionManager {
 
 
     // Recommended for best performance while adhering to the "single writer principle". Must be static-final
+    @SuppressWarnings("rawtypes")
     private static final AtomicReferenceFieldUpdater<SubscriptionManager, IdentityMap> subsSingleREF =
                     AtomicReferenceFieldUpdater.newUpdater(SubscriptionManager.class,
                                                            IdentityMap.class,
                                                            "subsSingle");
 
+    @SuppressWarnings("rawtypes")
     private static final AtomicReferenceFieldUpdater<SubscriptionManager, IdentityMap> subsMultiREF =
                     AtomicReferenceFieldUpdater.newUpdater(SubscriptionManager.class,
                                                            IdentityMap.class,
                                                            "subsMulti");
 
 
-    private static final AtomicReferenceFieldUpdater<SubscriptionManager, IdentityMap> subsSuperSingleREF =
-                    AtomicReferenceFieldUpdater.newUpdater(SubscriptionManager.class,
-                                                           IdentityMap.class,
-                                                           "subsSuperSingle");
+    public
+    SubscriptionManager(final boolean useStrongReferencesByDefault) {
+        this(useStrongReferencesByDefault, null);
+    }
 
-    private static final AtomicReferenceFieldUpdater<SubscriptionManager, IdentityMap> subsSuperMultiREF =
-                    AtomicReferenceFieldUpdater.newUpdater(SubscriptionManager.class,
-                                                           IdentityMap.class,
-                                                           "subsSuperMulti");
+    /**
+     * @param metadataCache where the handlers of the listener classes are loaded from (and saved to), so that they do not have to be
+     *                      scanned again after a restart. Can be null.
+     */
+    public
+    SubscriptionManager(final boolean useStrongReferencesByDefault, final HandlerMetadataCache metadataCache) {
+        this(useStrongReferencesByDefault, metadataCache, null);
+    }
 
+    /**
+     * @param metadataCache where the handlers of the listener classes are loaded from (and saved to), so that they do not have to be
+     *                      scanned again after a restart. Can be null.
+     * @param mailboxErrorHandler if not null, @Synchronized handlers are executed via the mailbox of the listener (instead of
+     *                            synchronizing on the listener), and report their errors here
+     */
     public
-    SubscriptionManager(final boolean useStrongReferencesByDefault) {
+    SubscriptionManager(final boolean useStrongReferencesByDefault, final HandlerMetadataCache metadataCache,
+                        final ErrorHandler mailboxErrorHandler) {
+        this.metadataCache = metadataCache;
+        this.epochs = MessageBus.trackPublications ? new EpochTracker() : null;
+
         // not all platforms support ASM. ASM is our default, and is just-as-fast and directly invoking the method
         if (MessageBus.useAsmForDispatch) {
-            this.subscriptionFactory = new AsmFactory(useStrongReferencesByDefault);
+            this.subscriptionFactory = new AsmFactory(useStrongReferencesByDefault, MessageBus.asmInvocationThreshold, mailboxErrorHandler);
         }
         else {
-            this.subscriptionFactory = new ReflectionFactory(useStrongReferencesByDefault);
+            this.subscriptionFactory = new ReflectionFactory(useStrongReferencesByDefault, mailboxErrorHandler);
         }
 
-        classUtils = new ClassUtils();
+        final int cacheSize = MessageBus.superTypeCacheSize;
+        final boolean recordStats = MessageBus.recordCacheStatistics;
+
+        classUtils = new ClassUtils(cacheSize, recordStats);
         classTree = new ClassTree<Class<?>>();
 
 
         // modified ONLY during SUB/UNSUB
-        nonListeners = new IdentityMap<Class<?>, Boolean>(16, LOAD_FACTOR);
-        subsPerListener = new IdentityMap<Class<?>, Subscription[]>(32, LOAD_FACTOR);
-        subsSingle = new IdentityMap<Class<?>, Subscription[]>(32, LOAD_FACTOR);
-        subsMulti = new IdentityMap<MultiClass, Subscription[]>(32, LOAD_FACTOR);
+        subsPerListener = new IdentityMap<Class<?>, Subscription<?>[]>(32, LOAD_FACTOR);
+        for (int i = 0; i < LISTENER_LOCK_STRIPES; i++) {
+            listenerLocks[i] = new Object();
+        }
+        consumerSubs = new IdentityMap<Object, Subscription<?>>(16, LOAD_FACTOR);
+        subsSingle = new IdentityMap<Class<?>, Subscription<?>[]>(32, LOAD_FACTOR);
+        subsMultiIndex = new MultiClassIndex<Subscription<?>[]>();
+        superTypeIndex2 = new SuperTypeIndex(2);
+        superTypeIndex3 = new SuperTypeIndex(3);
+        subsMulti = new IdentityMap<MultiClass, Subscription<?>[]>(32, LOAD_FACTOR);
 
 
-        // modified during publication, however duplicates are OK, we we can "pretend" it's the same as the single-writer-principle
-        subsSuperSingle = new IdentityMap<Class<?>, Subscription[]>(32, LOAD_FACTOR);
-        subsSuperMulti = new IdentityMap<MultiClass, Subscription[]>(32, LOAD_FACTOR);
+        // modified during publication, however duplicates are OK. The least recently used entries are evicted when full.
+        subsSuperSingle = new ClockCache<Subscription<?>[]>(cacheSize, recordStats);
+        subsSuperMulti = new ClockCache<Subscription<?>[]>(cacheSize, recordStats);
     }
 
     /**
@@ -139,11 +204,11 @@ class SubscriptionManager {
         // use-case 99% of the time)
         synchronized (singleWriterLock) {
             // explicitly clear out the subscriptions
-            final IdentityMap.Entries<Class<?>, Subscription[]> entries = subsPerListener.entries();
-            for (IdentityMap.Entry<Class<?>, Subscription[]> entry : entries) {
-                final Subscription[] subscriptions = entry.value;
+            final IdentityMap.Entries<Class<?>, Subscription<?>[]> entries = subsPerListener.entries();
+            for (IdentityMap.Entry<Class<?>, Subscription<?>[]> entry : entries) {
+                final Subscription<?>[] subscriptions = entry.value;
                 if (subscriptions != null) {
-                    Subscription subscription;
+                    Subscription<?> subscription;
 
                     for (int i = 0; i < subscriptions.length; i++) {
                         subscription = subscriptions[i];
@@ -151,212 +216,533 @@ class SubscriptionManager {
                     }
                 }
             }
-        }
 
-        this.nonListeners.clear();
+            for (IdentityMap.Entry<Object, Subscription<?>> entry : consumerSubs.entries()) {
+                entry.value.clear();
+            }
+        }
 
-        this.subsPerListener.clear();
+        this.subsPerListener = new IdentityMap<Class<?>, Subscription<?>[]>(32, LOAD_FACTOR);
+        this.consumerSubs = new IdentityMap<Object, Subscription<?>>(16, LOAD_FACTOR);
 
-        this.subsSingle.clear();
-        this.subsMulti.clear();
+        // publication might still be reading the old tables
+        this.subsSingle = new IdentityMap<Class<?>, Subscription<?>[]>(32, LOAD_FACTOR);
+        this.subsMultiIndex.clear();
+        this.superTypeIndex2.clear();
+        this.superTypeIndex3.clear();
+        this.subsMulti = new IdentityMap<MultiClass, Subscription<?>[]>(32, LOAD_FACTOR);
+        this.subsMany = EMPTY_SUBS;
 
         this.subsSuperSingle.clear();
         this.subsSuperMulti.clear();
 
         this.classTree.clear();
         this.classUtils.shutdown();
+
+        synchronized (singleWriterLock) {
+            version++;
+        }
+    }
+
+    /**
+     * @return the version of the subscription tables. This changes whenever the subscriptions for a message type are replaced.
+     */
+    public
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the tracker that every publication enters, so that un-subscribing can wait for the publications that are in progress. Null
+     *         if publications are not tracked (see MessageBus.trackPublications).
+     */
+    public
+    EpochTracker getEpochs() {
+        return epochs;
+    }
+
+    /**
+     * Creates the subscriptions for the listener class (finds the handlers, and generates their invokers), WITHOUT subscribing a
+     * listener. This way, the first subscribe() of that class does not have to do it.
+     */
+    public
+    void primeListener(final Class<?> listenerClass) {
+        Subscription<?>[] subscriptions = subsPerListener.get(listenerClass);
+        if (subscriptions == null) {
+            subscriptions = createSubscriptions(listenerClass);
+        }
+
+        // subscribe() leaves generating the invokers until the handlers are used (see MessageBus.asmInvocationThreshold)
+        for (int i = 0; i < subscriptions.length; i++) {
+            subscriptions[i].prime();
+        }
+    }
+
+    /**
+     * Creates the subscriptions for the listener classes (the same as primeListener()), on a fork-join pool of this parallelism. Only
+     * registering the result of each class is serialized (by the global lock), finding the handlers and generating their invokers
+     * happens in parallel.
+     */
+    public
+    void primeListeners(final Class<?>[] listenerClasses, final int parallelism) {
+        if (parallelism <= 1 || listenerClasses.length <= 1) {
+            for (int i = 0; i < listenerClasses.length; i++) {
+                primeListener(listenerClasses[i]);
+            }
+            return;
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new PrimeTask(this, listenerClasses, 0, listenerClasses.length));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Subscribes many listeners at once. The subscriptions of the listener classes that are not known yet are created first, in parallel
+     * (see primeListeners()), then the listeners are subscribed one after another.
+     */
+    public
+    void subscribe(final Object[] listeners, final int parallelism) {
+        // the distinct classes that do not have subscriptions yet
+        final IdentityMap<Class<?>, Boolean> newClasses = new IdentityMap<Class<?>, Boolean>();
+        final IdentityMap<Class<?>, Subscription<?>[]> subsPerListener = this.subsPerListener;
+
+        for (int i = 0; i < listeners.length; i++) {
+            final Object listener = listeners[i];
+            if (listener != null && subsPerListener.get(listener.getClass()) == null) {
+                newClasses.put(listener.getClass(), Boolean.TRUE);
+            }
+        }
+
+        if (newClasses.size > 0) {
+            final Class<?>[] listenerClasses = new Class<?>[newClasses.size];
+            int index = 0;
+            for (Class<?> listenerClass : newClasses.keys()) {
+                listenerClasses[index++] = listenerClass;
+            }
+
+            primeListeners(listenerClasses, parallelism);
+        }
+
+        for (int i = 0; i < listeners.length; i++) {
+            final Object listener = listeners[i];
+            if (listener != null) {
+                subscribe(listener, false);
+            }
+        }
+    }
+
+    /**
+     * only used in unit tests
+     *
+     * @return the number of message types (and combinations of message types) whose super-type subscriptions are cached
+     */
+    public
+    int getSuperTypeCacheSize() {
+        return subsSuperSingle.size() + subsSuperMulti.size();
+    }
+
+    /**
+     * @return a summary of the hit/miss/eviction counters of the (bounded) super-type caches
+     */
+    public
+    String getCacheStatistics() {
+        return "superSingle=" + subsSuperSingle + ", superMulti=" + subsSuperMulti + ", superClasses=" + classUtils.getSuperClassesCache();
     }
 
     /**
      * Subscribes a specific listener. The infrastructure for subscription never "shrinks", meaning that when a listener is un-subscribed,
      * the listeners are only removed from the internal map -- the map itself is not cleaned up until a 'shutdown' is called.
      *
-     * This method uses the "single-writer-principle" for lock-free publication. Since there are only 2
-     * methods to guarantee this method can only be called one-at-a-time (either it is only called by one thread, or only one thread can
-     * access it at a time) -- we chose the 2nd option -- and use a 'synchronized' block to make sure that only one thread can access
-     * this method at a time.
+     * This method uses the "single-writer-principle" for lock-free publication. Only creating the subscriptions for a NEW listener class
+     * changes the publication tables, so only that is within the global 'synchronized' block. Listeners of known classes only lock the
+     * (striped) lock of their class, so that listeners of different classes do not block each other.
      */
     public
     void subscribe(final Object listener) {
+        subscribe(listener, false);
+    }
+
+    /**
+     * Subscribes a specific listener (the same as subscribe()), and returns a handle that can un-subscribe it again without looking
+     * up its subscriptions.
+     */
+    public
+    Registration register(final Object listener) {
+        return subscribe(listener, true);
+    }
+
+    /**
+     * @return the registration for the listener, or null if 'createRegistration' is false
+     */
+    private
+    Registration subscribe(final Object listener, final boolean createRegistration) {
         final Class<?> listenerClass = listener.getClass();
 
+        // this is an array, because subscriptions for a specific listener CANNOT change, either they exist or do not exist.
+        // ONCE subscriptions are in THIS map, they are considered AVAILABLE.
+        Subscription<?>[] subscriptions = subsPerListener.get(listenerClass);
+
+        // the subscriptions from the map were null, so create them
+        if (subscriptions == null) {
+            subscriptions = createSubscriptions(listenerClass);
+        }
+
+        if (subscriptions.length == 0) {
+            // early reject of known classes that do not define message handlers
+            return createRegistration ? new Registration(listener, EMPTY_SUBS, EMPTY_ENTRIES) : null;
+        }
+
+        final Entry<?>[] entries = createRegistration ? new Entry<?>[subscriptions.length] : null;
+
+        // the subscriptions already exist and must only be updated. Only listeners of the same class (stripe) can block us here
+        synchronized (getListenerLock(listenerClass)) {
+            Entry<?> entry;
+            for (int i = 0; i < subscriptions.length; i++) {
+                entry = subscriptions[i].subscribe(listener);
+
+                if (entries != null) {
+                    entries[i] = entry;
+                }
+            }
+        }
+
+        return createRegistration ? new Registration(listener, subscriptions, entries) : null;
+    }
+
+    /**
+     * Creates the subscriptions for a NEW listener class (without any listeners), and makes them available for publication.
+     *
+     * @return the subscriptions for the listener class, which are empty if the class does not define message handlers
+     */
+    private
+    Subscription<?>[] createSubscriptions(final Class<?> listenerClass) {
+        // finding the handlers (and generating their invokers) does not need the lock, so different listener classes can be prepared
+        // at the same time. If another thread creates the subscriptions of the same class first, these are discarded.
+        final MessageHandler[] messageHandlers = MessageHandler.get(listenerClass, metadataCache);
+        final int handlersSize = messageHandlers.length;
+
+        final Subscription<?>[] newSubscriptions = new Subscription<?>[handlersSize];
+        if (handlersSize > 0) {
+            // every instance is subscribed to ALL of the subscriptions of its class, so they share the listeners (this way an
+            // instance only has one entry, instead of one per handler)
+            final ListenerList strongListeners = new ListenerList();
+            final ListenerList weakListeners = new ListenerList();
+
+            for (int i = 0; i < handlersSize; i++) {
+                newSubscriptions[i] = subscriptionFactory.create(listenerClass, messageHandlers[i], strongListeners, weakListeners);
+            }
+        }
+
         // synchronized is used here to ensure the "single writer principle", and make sure that ONLY one thread at a time can enter this
         // section. Because of this, we can have unlimited reader threads all going at the same time, without contention (which is our
         // use-case 99% of the time)
         synchronized (singleWriterLock) {
-            final IdentityMap<Class<?>, Boolean> nonListeners = this.nonListeners;
-            if (nonListeners.containsKey(listenerClass)) {
-                // early reject of known classes that do not define message handlers
-                return;
+            final IdentityMap<Class<?>, Subscription<?>[]> subsPerListener = this.subsPerListener;
+
+            // another thread might have created them while we were waiting for the lock
+            Subscription<?>[] subscriptions = subsPerListener.get(listenerClass);
+            if (subscriptions != null) {
+                return subscriptions;
             }
 
-            // this is an array, because subscriptions for a specific listener CANNOT change, either they exist or do not exist.
-            // ONCE subscriptions are in THIS map, they are considered AVAILABLE.
-            Subscription[] subscriptions = subsPerListener.get(listenerClass);
+            // remember the class as non listening class if no handlers are found
+            if (handlersSize == 0) {
+                subscriptions = EMPTY_SUBS;
+            }
+            else {
+                subscriptions = newSubscriptions;
 
-            // the subscriptions from the map were null, so create them
-            if (subscriptions == null) {
-                final MessageHandler[] messageHandlers = MessageHandler.get(listenerClass);
-                final int handlersSize = messageHandlers.length;
+                // copy the tables (single-writer-principle), since publication reads them without a lock and must never see a table
+                // that is being changed (or resized)
+                final IdentityMap<Class<?>, Subscription<?>[]> singleSubs = copy(this.subsSingle);
+                final IdentityMap<MultiClass, Subscription<?>[]> multiSubs = copy(this.subsMulti);
 
-                // remember the class as non listening class if no handlers are found
-                if (handlersSize == 0) {
-                    this.nonListeners.put(listenerClass, Boolean.TRUE);
-                    return;
+                // add all of the subscriptions for publication
+                for (int i = 0; i < handlersSize; i++) {
+                    register(subscriptions[i], singleSubs, multiSubs);
                 }
 
-                // create the subscriptions
-                subscriptions = new Subscription[handlersSize];
+                // publish the copies (single writer principle)
+                subsSingleREF.lazySet(this, singleSubs);
+                subsMultiREF.lazySet(this, multiSubs);
 
-                // access a snapshot of the subscriptions (single-writer-principle)
-                final IdentityMap<Class<?>, Subscription[]> singleSubs = subsSingleREF.get(this);
-                final IdentityMap<MultiClass, Subscription[]> multiSubs = subsMultiREF.get(this);
 
-                Subscription subscription;
+                // only dump the super subscriptions if it is a COMPLETELY NEW subscription.
+                // If it's not new, then the hierarchy isn't changing for super subscriptions
+                subsSuperSingle.clear();
+                subsSuperMulti.clear();
 
-                MessageHandler messageHandler;
-                Class<?>[] messageHandlerTypes;
-                int messageHandlerTypesSize;
+                version++;
+            }
+            // activates this sub for sub/unsub (copy-on-write, so that known classes can be read without the lock)
+            final IdentityMap<Class<?>, Subscription<?>[]> newSubsPerListener = copy(subsPerListener);
+            newSubsPerListener.put(listenerClass, subscriptions);
+            this.subsPerListener = newSubsPerListener;
 
-                MultiClass multiClass;
-                Class<?> handlerType;
+            return subscriptions;
+        }
+    }
 
+    private
+    Object getListenerLock(final Class<?> listenerClass) {
+        final int hash = System.identityHashCode(listenerClass);
+        return listenerLocks[(hash ^ (hash >>> 16)) & (LISTENER_LOCK_STRIPES - 1)];
+    }
 
-                // Prepare all of the subscriptions and add for publication AND subscribe since the data structures are consistent
-                for (int i = 0; i < handlersSize; i++) {
-                    messageHandler = messageHandlers[i];
-
-                    subscription = subscriptionFactory.create(listenerClass, messageHandler);
-                    subscription.subscribe(listener);  // register this callback listener to this subscription
-                    subscriptions[i] = subscription;
-
-                    // register for publication
-                    messageHandlerTypes = messageHandler.getHandledMessages();
-                    messageHandlerTypesSize = messageHandlerTypes.length;
-
-                    switch (messageHandlerTypesSize) {
-                        case 0: {
-                            // if a publisher publishes VOID, it calls a method with 0 parameters (that's been subscribed)
-                            // This is the SAME THING as having Void as a parameter!!
-                            handlerType = Void.class;
-
-
-                            // makes this subscription visible for publication
-                            final Subscription[] newSubs;
-                            Subscription[] currentSubs = singleSubs.get(handlerType);
-                            if (currentSubs != null) {
-                                final int currentLength = currentSubs.length;
-
-                                // add the new subscription to the array
-                                newSubs = Arrays.copyOf(currentSubs, currentLength + 1, Subscription[].class);
-                                newSubs[currentLength] = subscription;
-                            } else {
-                                newSubs = new Subscription[1];
-                                newSubs[0] = subscription;
-                            }
-
-                            singleSubs.put(handlerType, newSubs);
-                            break;
-                        }
 
-                        case 1: {
-                            handlerType = messageHandlerTypes[0];
+    /**
+     * Subscribes a functional subscription (consumer) for one, two or three message types. This does not need any annotation scanning
+     * or reflection. Only the first consumer of a message type (or combination of types) creates a new subscription, all of the others
+     * are added to that subscription.
+     * <p>
+     * Only creating the subscription for a NEW combination of message types takes the global lock. Otherwise, only the lock of that
+     * subscription (its listener list) is taken.
+     *
+     * @param consumer the MessageConsumer, MessageConsumer2 or MessageConsumer3 (depending on the number of message types)
+     */
+    public
+    void subscribe(final Object consumer, final Class<?>[] messageTypes) {
+        final Object key = getConsumerKey(messageTypes);
+
+        Subscription<?> subscription = consumerSubs.get(key);
+        if (subscription == null) {
+            subscription = createConsumerSubscription(key, messageTypes);
+        }
+
+        subscription.subscribe(consumer);
+    }
+
+    /**
+     * Creates the subscription for a NEW combination of message types (without any consumers), and makes it available for publication.
+     *
+     * @return the subscription for the message types (which is the existing one, if another thread created it first)
+     */
+    private
+    Subscription<?> createConsumerSubscription(final Object key, final Class<?>[] messageTypes) {
+        synchronized (singleWriterLock) {
+            final IdentityMap<Object, Subscription<?>> consumerSubs = this.consumerSubs;
+
+            // another thread might have created it while we were waiting for the lock
+            Subscription<?> subscription = consumerSubs.get(key);
+            if (subscription != null) {
+                return subscription;
+            }
 
-                            // makes this subscription visible for publication
-                            final Subscription[] newSubs;
-                            Subscription[] currentSubs = singleSubs.get(handlerType);
-                            if (currentSubs != null) {
-                                final int currentLength = currentSubs.length;
+            subscription = new ConsumerSubscription(messageTypes);
 
-                                // add the new subscription to the array
-                                newSubs = Arrays.copyOf(currentSubs, currentLength + 1, Subscription[].class);
-                                newSubs[currentLength] = subscription;
-                            } else {
-                                newSubs = new Subscription[1];
-                                newSubs[0] = subscription;
-                            }
+            // copy the tables (single-writer-principle), since publication reads them without a lock and must never see a table
+            // that is being changed (or resized)
+            final IdentityMap<Class<?>, Subscription<?>[]> singleSubs = copy(this.subsSingle);
+            final IdentityMap<MultiClass, Subscription<?>[]> multiSubs = copy(this.subsMulti);
 
-                            singleSubs.put(handlerType, newSubs);
+            register(subscription, singleSubs, multiSubs);
 
-                            break;
-                        }
+            // publish the copies (single writer principle)
+            subsSingleREF.lazySet(this, singleSubs);
+            subsMultiREF.lazySet(this, multiSubs);
 
-                        case 2: {
-                            multiClass = classTree.get(messageHandlerTypes[0], messageHandlerTypes[1]);
+            subsSuperSingle.clear();
+            subsSuperMulti.clear();
 
-                            // makes this subscription visible for publication
-                            final Subscription[] newSubs;
-                            Subscription[] currentSubs = multiSubs.get(multiClass);
+            version++;
+
+            // activates this subscription for sub/unsub (copy-on-write, so that known types can be read without the lock)
+            final IdentityMap<Object, Subscription<?>> newConsumerSubs = new IdentityMap<Object, Subscription<?>>(consumerSubs.size * 2 + 2,
+                                                                                                          LOAD_FACTOR);
+            for (IdentityMap.Entry<Object, Subscription<?>> entry : consumerSubs.entries()) {
+                newConsumerSubs.put(entry.key, entry.value);
+            }
+            newConsumerSubs.put(key, subscription);
+            this.consumerSubs = newConsumerSubs;
 
-                            if (currentSubs != null) {
-                                final int currentLength = currentSubs.length;
+            return subscription;
+        }
+    }
 
-                                // add the new subscription to the array
-                                newSubs = Arrays.copyOf(currentSubs, currentLength + 1, Subscription[].class);
-                                newSubs[currentLength] = subscription;
-                            } else {
-                                newSubs = new Subscription[1];
-                                newSubs[0] = subscription;
-                            }
+    /**
+     * Un-subscribes a functional subscription (consumer), that was subscribed with the same message types. This only takes the lock of
+     * that subscription (its listener list).
+     */
+    public
+    void unsubscribe(final Object consumer, final Class<?>[] messageTypes) {
+        final Subscription<?> subscription = consumerSubs.get(getConsumerKey(messageTypes));
+        if (subscription != null) {
+            subscription.unsubscribe(consumer);
+        }
+    }
 
-                            multiSubs.put(multiClass, newSubs);
-                            break;
-                        }
+    /**
+     * The class tree is thread-safe, so this does not need the lock
+     */
+    private
+    Object getConsumerKey(final Class<?>[] messageTypes) {
+        switch (messageTypes.length) {
+            case 1:
+                return messageTypes[0];
+            case 2:
+                return classTree.get(messageTypes[0], messageTypes[1]);
+            case 3:
+                return classTree.get(messageTypes[0], messageTypes[1], messageTypes[2]);
+            default:
+                throw new IllegalArgumentException("Functional subscriptions only support one, two or three message types");
+        }
+    }
 
-                        case 3: {
-                            multiClass = classTree.get(messageHandlerTypes[0], messageHandlerTypes[1], messageHandlerTypes[2]);
+    /**
+     * Called from within SYNCHRONIZE
+     *
+     * @return a copy of the table, which can be changed while publication still reads the original
+     */
+    private static
+    <K> IdentityMap<K, Subscription<?>[]> copy(final IdentityMap<K, Subscription<?>[]> table) {
+        final IdentityMap<K, Subscription<?>[]> copy = new IdentityMap<K, Subscription<?>[]>(table.size * 2 + 2, LOAD_FACTOR);
+        for (IdentityMap.Entry<K, Subscription<?>[]> entry : table.entries()) {
+            copy.put(entry.key, entry.value);
+        }
+        return copy;
+    }
 
-                            // makes this subscription visible for publication
-                            final Subscription[] newSubs;
-                            Subscription[] currentSubs = multiSubs.get(multiClass);
+    /**
+     * Makes the subscription visible for publication, in the (copied) tables. Called from within SYNCHRONIZE
+     */
+    private
+    void register(final Subscription<?> subscription, final IdentityMap<Class<?>, Subscription<?>[]> singleSubs,
+                  final IdentityMap<MultiClass, Subscription<?>[]> multiSubs) {
+        final Class<?>[] messageHandlerTypes = subscription.getHandler().getHandledMessages();
+        final int messageHandlerTypesSize = messageHandlerTypes.length;
+
+        MultiClass multiClass;
+        Class<?> handlerType;
+
+        switch (messageHandlerTypesSize) {
+            case 0: {
+                // if a publisher publishes VOID, it calls a method with 0 parameters (that's been subscribed)
+                // This is the SAME THING as having Void as a parameter!!
+                handlerType = Void.class;
+
+
+                // makes this subscription visible for publication
+                final Subscription<?>[] newSubs;
+                Subscription<?>[] currentSubs = singleSubs.get(handlerType);
+                if (currentSubs != null) {
+                    final int currentLength = currentSubs.length;
+
+                    // add the new subscription to the array
+                    newSubs = Arrays.copyOf(currentSubs, currentLength + 1);
+                    newSubs[currentLength] = subscription;
+                } else {
+                    newSubs = new Subscription<?>[1];
+                    newSubs[0] = subscription;
+                }
 
-                            if (currentSubs != null) {
-                                final int currentLength = currentSubs.length;
+                singleSubs.put(handlerType, newSubs);
+                break;
+            }
 
-                                // add the new subscription to the array
-                                newSubs = Arrays.copyOf(currentSubs, currentLength + 1, Subscription[].class);
-                                newSubs[currentLength] = subscription;
-                            } else {
-                                newSubs = new Subscription[1];
-                                newSubs[0] = subscription;
-                            }
+            case 1: {
+                handlerType = messageHandlerTypes[0];
+
+                // makes this subscription visible for publication
+                final Subscription<?>[] newSubs;
+                Subscription<?>[] currentSubs = singleSubs.get(handlerType);
+                if (currentSubs != null) {
+                    final int currentLength = currentSubs.length;
+
+                    // add the new subscription to the array
+                    newSubs = Arrays.copyOf(currentSubs, currentLength + 1);
+                    newSubs[currentLength] = subscription;
+                } else {
+                    newSubs = new Subscription<?>[1];
+                    newSubs[0] = subscription;
+                }
 
-                            multiSubs.put(multiClass, newSubs);
-                            break;
-                        }
+                singleSubs.put(handlerType, newSubs);
 
-                        default: {
-                            throw new RuntimeException("Unsupported number of parameters during subscribe. Acceptable max is 3");
-                        }
-                    }
+                break;
+            }
+
+            case 2: {
+                // makes this subscription visible for publication
+                final Subscription<?>[] newSubs;
+                Subscription<?>[] currentSubs = subsMultiIndex.get(messageHandlerTypes[0], messageHandlerTypes[1]);
+
+                if (currentSubs != null) {
+                    final int currentLength = currentSubs.length;
+
+                    // add the new subscription to the array
+                    newSubs = Arrays.copyOf(currentSubs, currentLength + 1);
+                    newSubs[currentLength] = subscription;
+                } else {
+                    newSubs = new Subscription<?>[1];
+                    newSubs[0] = subscription;
                 }
 
-                // activates this sub for sub/unsub (only used by the subscription writer thread)
-                subsPerListener.put(listenerClass, subscriptions);
+                subsMultiIndex.put(messageHandlerTypes[0], messageHandlerTypes[1], newSubs);
 
+                if (subscription.getHandler().acceptsSubtypes()) {
+                    superTypeIndex2.add(subscription);
+                }
+                break;
+            }
 
-                // save this snapshot back to the original (single writer principle)
-                subsSingleREF.lazySet(this, singleSubs);
-                subsMultiREF.lazySet(this, multiSubs);
+            case 3: {
+                // makes this subscription visible for publication
+                final Subscription<?>[] newSubs;
+                Subscription<?>[] currentSubs = subsMultiIndex.get(messageHandlerTypes[0], messageHandlerTypes[1], messageHandlerTypes[2]);
 
+                if (currentSubs != null) {
+                    final int currentLength = currentSubs.length;
 
-                // only dump the super subscriptions if it is a COMPLETELY NEW subscription.
-                // If it's not new, then the hierarchy isn't changing for super subscriptions
-                IdentityMap<Class<?>, Subscription[]> superSingleSubs = subsSuperSingleREF.get(this);
-                superSingleSubs.clear();
-                subsSuperSingleREF.lazySet(this, superSingleSubs);
+                    // add the new subscription to the array
+                    newSubs = Arrays.copyOf(currentSubs, currentLength + 1);
+                    newSubs[currentLength] = subscription;
+                } else {
+                    newSubs = new Subscription<?>[1];
+                    newSubs[0] = subscription;
+                }
+
+                subsMultiIndex.put(messageHandlerTypes[0], messageHandlerTypes[1], messageHandlerTypes[2], newSubs);
 
-                IdentityMap<MultiClass, Subscription[]> superMultiSubs = subsSuperMultiREF.get(this);
-                superMultiSubs.clear();
-                subsSuperMultiREF.lazySet(this, superMultiSubs);
+                if (subscription.getHandler().acceptsSubtypes()) {
+                    superTypeIndex3.add(subscription);
+                }
+                break;
             }
-            else {
-                // subscriptions already exist and must only be updated
-                Subscription subscription;
-                for (int i = 0; i < subscriptions.length; i++) {
-                    subscription = subscriptions[i];
-                    subscription.subscribe(listener);
+
+            default: {
+                if (messageHandlerTypesSize > MessageHandler.MAX_MESSAGES) {
+                    throw new RuntimeException("Unsupported number of parameters during subscribe. Acceptable max is " +
+                                               MessageHandler.MAX_MESSAGES);
                 }
+
+                multiClass = classTree.get(messageHandlerTypes);
+
+                // makes this subscription visible for publication
+                final Subscription<?>[] newSubs;
+                Subscription<?>[] currentSubs = multiSubs.get(multiClass);
+
+                if (currentSubs != null) {
+                    final int currentLength = currentSubs.length;
+
+                    // add the new subscription to the array
+                    newSubs = Arrays.copyOf(currentSubs, currentLength + 1);
+                    newSubs[currentLength] = subscription;
+                } else {
+                    newSubs = new Subscription<?>[1];
+                    newSubs[0] = subscription;
+                }
+
+                multiSubs.put(multiClass, newSubs);
+
+                final Subscription<?>[] many = this.subsMany;
+                final Subscription<?>[] newMany = Arrays.copyOf(many, many.length + 1);
+                newMany[many.length] = subscription;
+                this.subsMany = newMany;
+                break;
             }
         }
     }
@@ -366,31 +752,69 @@ class SubscriptionManager {
      * Un-subscribes a specific listener. The infrastructure for subscription never "shrinks", meaning that when a listener is un-subscribed,
      * the listeners are only removed from the internal map -- the map itself is not cleaned up until a 'shutdown' is called.
      *
-     * This method uses the "single-writer-principle" for lock-free publication. Since there are only 2
-     * methods to guarantee this method can only be called one-at-a-time (either it is only called by one thread, or only one thread can
-     * access it at a time) -- we chose the 2nd option -- and use a 'synchronized' block to make sure that only one thread can access
-     * this method at a time.
+     * This method uses the "single-writer-principle" for lock-free publication. Only creating the subscriptions for a NEW listener class
+     * changes the publication tables, so only that is within the global 'synchronized' block. Listeners of known classes only lock the
+     * (striped) lock of their class, so that listeners of different classes do not block each other.
      */
     public
     void unsubscribe(final Object listener) {
         final Class<?> listenerClass = listener.getClass();
 
-        // synchronized is used here to ensure the "single writer principle", and make sure that ONLY one thread at a time can enter this
-        // section. Because of this, we can have unlimited reader threads all going at the same time, without contention (which is our
-        // use-case 99% of the time)
-        synchronized (singleWriterLock) {
-            if (nonListeners.containsKey(listenerClass)) {
-                // early reject of known classes that do not define message handlers
-                return;
+        final Subscription<?>[] subscriptions = subsPerListener.get(listenerClass);
+        if (subscriptions == null || subscriptions.length == 0) {
+            // early reject of unknown classes, or known classes that do not define message handlers
+            return;
+        }
+
+        // only listeners of the same class (stripe) can block us here
+        synchronized (getListenerLock(listenerClass)) {
+            for (int i = 0; i < subscriptions.length; i++) {
+                subscriptions[i].unsubscribe(listener);
             }
+        }
+    }
 
-            final Subscription[] subscriptions = subsPerListener.get(listenerClass);
-            if (subscriptions != null) {
-                Subscription subscription;
+    /**
+     * Un-subscribes a specific listener, and then waits until every publication that was in progress (and so might still deliver a
+     * message to the listener) has finished. Once this returns, the listener will not receive any more messages.
+     * <p/>
+     * Asynchronous messages that are still queued are not "in progress", since they are dispatched with the current subscriptions
+     * (which no longer contain the listener) once they are taken from the queue. Invocations of @Synchronized handlers that were queued
+     * in the mailbox of the listener are waited for as well (unless this is called by a handler of the listener, which owns the mailbox).
+     */
+    public
+    void unsubscribeAndWait(final Object listener) throws InterruptedException {
+        final EpochTracker epochs = this.epochs;
+        if (epochs == null) {
+            throw new IllegalStateException("Publications are not tracked, so there is nothing to wait for. Set MessageBus.trackPublications " +
+                                            "before creating the bus.");
+        }
+
+        final Class<?> listenerClass = listener.getClass();
+
+        final Subscription<?>[] subscriptions = subsPerListener.get(listenerClass);
+        if (subscriptions == null || subscriptions.length == 0) {
+            epochs.awaitQuiescence();
+            return;
+        }
+
+        // the entries of the listener have its mailbox
+        final Entry<?>[] removed = new Entry<?>[subscriptions.length];
+        synchronized (getListenerLock(listenerClass)) {
+            for (int i = 0; i < subscriptions.length; i++) {
+                removed[i] = subscriptions[i].unsubscribe(listener);
+            }
+        }
+
+        epochs.awaitQuiescence();
 
-                for (int i = 0; i < subscriptions.length; i++) {
-                    subscription = subscriptions[i];
-                    subscription.unsubscribe(listener);
+        // the publications that we waited for have queued their invocations, but the owner of the mailbox might not have executed them yet
+        for (int i = 0; i < removed.length; i++) {
+            final Entry<?> entry = removed[i];
+            if (entry != null) {
+                final Mailbox mailbox = entry.peekMailbox();
+                if (mailbox != null) {
+                    mailbox.flush();
                 }
             }
         }
@@ -401,8 +825,8 @@ class SubscriptionManager {
      * @return can return null
      */
     public
-    Subscription[] getSubs(final Class<?> messageClass) {
-        return (Subscription[]) subsSingleREF.get(this).get(messageClass);
+    Subscription<?>[] getSubs(final Class<?> messageClass) {
+        return (Subscription<?>[]) subsSingleREF.get(this).get(messageClass);
     }
 
 
@@ -410,49 +834,56 @@ class SubscriptionManager {
      * @return can return null
      */
     public
-    Subscription[] getSubs(final Class<?> messageClass1, final Class<?> messageClass2) {
-        // never returns null
-        final MultiClass multiClass = classTree.get(messageClass1,
-                                                    messageClass2);
-        return (Subscription[]) subsMultiREF.get(this).get(multiClass);
+    Subscription<?>[] getSubs(final Class<?> messageClass1, final Class<?> messageClass2) {
+        // does not create (or write) anything
+        return subsMultiIndex.get(messageClass1, messageClass2);
     }
 
     /**
      * @return can return null
      */
     public
-    Subscription[] getSubs(final Class<?> messageClass1, final Class<?> messageClass2, final Class<?> messageClass3) {
-        // never returns null
-        final MultiClass multiClass = classTree.get(messageClass1,
-                                                    messageClass2,
-                                                    messageClass3);
-        return (Subscription[]) subsMultiREF.get(this).get(multiClass);
+    Subscription<?>[] getSubs(final Class<?> messageClass1, final Class<?> messageClass2, final Class<?> messageClass3) {
+        // does not create (or write) anything
+        return subsMultiIndex.get(messageClass1, messageClass2, messageClass3);
+    }
+
+    /**
+     * @param messages more than three messages. Their classes are used for the lookup (no array of classes is created)
+     * @return can return null
+     */
+    public
+    Subscription<?>[] getSubs(final Object[] messages) {
+        // does not create anything, so published-only classes do not grow the tree
+        final MultiClass multiClass = classTree.findTypesOf(messages);
+        if (multiClass == null) {
+            return null;
+        }
+        return (Subscription<?>[]) subsMultiREF.get(this).get(multiClass);
     }
 
     /**
      * @return can NOT return null
      */
     public
-    Subscription[] getSuperSubs(final Class<?> messageClass) {
+    Subscription<?>[] getSuperSubs(final Class<?> messageClass) {
         // The subscriptions that are remembered here DO NOT CHANGE (only the listeners inside them change).
         // if we subscribe a NEW LISTENER super/child class -- THEN these subscriptions change!
         // we also DO NOT care about duplicates (since they will be the same anyways)
-        final IdentityMap<Class<?>, Subscription[]> localSuperSubs = subsSuperSingleREF.get(this);
-
-        Subscription[] subscriptions = localSuperSubs.get(messageClass);
+        Subscription<?>[] subscriptions = subsSuperSingle.get(messageClass);
         // the only time this is null, is when subscriptions DO NOT exist, and they haven't been calculated. Otherwise, if they are
         // calculated and if they do not exist - this will be an empty array.
         if (subscriptions == null) {
             final Class<?>[] superClasses = this.classUtils.getSuperClasses(messageClass);  // never returns null, cached response
 
             final int length = superClasses.length;
-            final ArrayList<Subscription> subsAsList = new ArrayList<Subscription>(length);
+            final ArrayList<Subscription<?>> subsAsList = new ArrayList<Subscription<?>>(length);
 
-            final IdentityMap<Class<?>, Subscription[]> localSubs = subsSingleREF.get(this);
+            final IdentityMap<Class<?>, Subscription<?>[]> localSubs = subsSingleREF.get(this);
 
             Class<?> superClass;
-            Subscription sub;
-            Subscription[] superSubs;
+            Subscription<?> sub;
+            Subscription<?>[] superSubs;
 
             MessageHandler handler;
             Class<?>[] handledMessages;
@@ -479,7 +910,7 @@ class SubscriptionManager {
                             // exact type
                             subsAsList.add(sub);
                         }
-                        else if (acceptsSubtypes && handledMessage.isAssignableFrom(messageClass)) {
+                        else if (acceptsSubtypes && classUtils.isSuperType(handledMessage, messageClass)) {
                             // legit sub-type
                             subsAsList.add(sub);
                         }
@@ -488,10 +919,7 @@ class SubscriptionManager {
             }
 
             // subsAsList now contains ALL of the super-class subscriptions.
-            subscriptions = subsAsList.toArray(EMPTY_SUBS);
-            localSuperSubs.put(messageClass, subscriptions);
-
-            subsSuperSingleREF.lazySet(this, localSuperSubs);
+            subscriptions = subsSuperSingle.put(messageClass, subsAsList.toArray(EMPTY_SUBS));
         }
 
         return subscriptions;
@@ -501,201 +929,136 @@ class SubscriptionManager {
      * @return can NOT return null
      */
     public
-    Subscription[] getSuperSubs(final Class<?> messageClass1, final Class<?> messageClass2) {
-        // save the subscriptions
-        final Class<?>[] superClasses1 = this.classUtils.getSuperClasses(messageClass1);  // never returns null, cached response
-        final Class<?>[] superClasses2 = this.classUtils.getSuperClasses(messageClass2);  // never returns null, cached response
-
-        final MultiClass origMultiClass = classTree.get(messageClass1, messageClass2);
-
-        IdentityMap<MultiClass, Subscription[]> localSuperSubs = subsSuperMultiREF.get(this);
-        Subscription[] subscriptions = localSuperSubs.get(origMultiClass);
+    Subscription<?>[] getSuperSubs(final Class<?> messageClass1, final Class<?> messageClass2) {
+        Subscription<?>[] subscriptions = subsSuperMulti.get(messageClass1, messageClass2);
         // the only time this is null, is when subscriptions DO NOT exist, and they haven't been calculated. Otherwise, if they are
         // calculated and if they do not exist - this will be an empty array.
         if (subscriptions == null) {
-            final IdentityMap<MultiClass, Subscription[]> localSubs = subsMultiREF.get(this);
-
-            Class<?> superClass1;
-            Class<?> superClass2;
-            Subscription sub;
-            Subscription[] superSubs;
-
-            MessageHandler handler;
-            Class<?>[] handledMessages;
-            boolean acceptsSubtypes;
-            Class<?> handledMessage1;
-            Class<?> handledMessage2;
-
-            final int length1 = superClasses1.length;
-            final int length2 = superClasses2.length;
-
-            ArrayList<Subscription> subsAsList = new ArrayList<Subscription>(length1 + length2);
+            final Class<?>[] superClasses1 = this.classUtils.getSuperClasses(messageClass1);  // never returns null, cached response
+            final Class<?>[] superClasses2 = this.classUtils.getSuperClasses(messageClass2);  // never returns null, cached response
 
-            for (int i = 0; i < length1; i++) {
-                superClass1 = superClasses1[i];
-
-                // only go over subtypes
-                if (superClass1 == messageClass1) {
-                    continue;
-                }
-
-                for (int j = 0; j < length2; j++) {
-                    superClass2 = superClasses2[j];
-
-                    // only go over subtypes
-                    if (superClass2 == messageClass2) {
-                        continue;
-                    }
+            // intersects the subscriptions of each parameter, instead of checking every combination of the super classes
+            subscriptions = subsSuperMulti.put(messageClass1, messageClass2, superTypeIndex2.get(superClasses1, superClasses2));
+        }
 
-                    // never returns null
-                    MultiClass multiClass = classTree.get(superClass1,
-                                                          superClass2);
-
-                    superSubs = localSubs.get(multiClass);
-
-                    //noinspection Duplicates
-                    if (superSubs != null) {
-                        for (int k = 0; k < superSubs.length; k++) {
-                            sub = superSubs[k];
-
-                            handler = sub.getHandler();
-                            handledMessages = handler.getHandledMessages();
-                            acceptsSubtypes = handler.acceptsSubtypes();
-
-                            handledMessage1 = handledMessages[0];
-                            handledMessage2 = handledMessages[1];
-
-                            if (handledMessage1.equals(messageClass1) && handledMessage2.equals(messageClass2)) {
-                                // exact type
-                                subsAsList.add(sub);
-                            }
-                            else if (acceptsSubtypes && handledMessage1.isAssignableFrom(messageClass1) &&
-                                                        handledMessage2.isAssignableFrom(messageClass2)) {
-                                // legit sub-type
-                                subsAsList.add(sub);
-                            }
-                        }
-                    }
-                }
-            }
+        return subscriptions;
+    }
 
-            // subsAsList now contains ALL of the super-class subscriptions.
-            subscriptions = subsAsList.toArray(EMPTY_SUBS);
-            localSuperSubs.put(origMultiClass, subscriptions);
+    /**
+     * @return can NOT return null
+     */
+    public
+    Subscription<?>[] getSuperSubs(final Class<?> messageClass1, final Class<?> messageClass2, final Class<?> messageClass3) {
+        Subscription<?>[] subscriptions = subsSuperMulti.get(messageClass1, messageClass2, messageClass3);
+        // the only time this is null, is when subscriptions DO NOT exist, and they haven't been calculated. Otherwise, if they are
+        // calculated and if they do not exist - this will be an empty array.
+        if (subscriptions == null) {
+            final Class<?>[] superClasses1 = this.classUtils.getSuperClasses(messageClass1);  // never returns null, cached response
+            final Class<?>[] superClasses2 = this.classUtils.getSuperClasses(messageClass2);  // never returns null, cached response
+            final Class<?>[] superClasses3 = this.classUtils.getSuperClasses(messageClass3);  // never returns null, cached response
 
-            subsSuperMultiREF.lazySet(this, localSuperSubs);
+            // intersects the subscriptions of each parameter, instead of checking every combination of the super classes
+            subscriptions = subsSuperMulti.put(messageClass1, messageClass2, messageClass3,
+                                               superTypeIndex3.get(superClasses1, superClasses2, superClasses3));
         }
 
         return subscriptions;
     }
 
     /**
+     * Instead of enumerating every combination of the super classes of each message (which grows exponentially with the number of
+     * messages), all of the subscriptions with more than three parameters are checked.
+     *
+     * @param messages more than three messages. Their classes are used for the lookup (no array of classes is created)
      * @return can NOT return null
      */
     public
-    Subscription[] getSuperSubs(final Class<?> messageClass1, final Class<?> messageClass2, final Class<?> messageClass3) {
-        // save the subscriptions
-        final Class<?>[] superClasses1 = this.classUtils.getSuperClasses(messageClass1);  // never returns null, cached response
-        final Class<?>[] superClasses2 = this.classUtils.getSuperClasses(messageClass2);  // never returns null, cached response
-        final Class<?>[] superClasses3 = this.classUtils.getSuperClasses(messageClass3);  // never returns null, cached response
-
-        final MultiClass origMultiClass = classTree.get(messageClass1, messageClass2, messageClass3);
-
-        IdentityMap<MultiClass, Subscription[]> localSuperSubs = subsSuperMultiREF.get(this);
-        Subscription[] subscriptions = localSuperSubs.get(origMultiClass);
+    Subscription<?>[] getSuperSubs(final Object[] messages) {
+        Subscription<?>[] subscriptions = subsSuperMulti.getTypesOf(messages);
         // the only time this is null, is when subscriptions DO NOT exist, and they haven't been calculated. Otherwise, if they are
         // calculated and if they do not exist - this will be an empty array.
         if (subscriptions == null) {
-            final IdentityMap<MultiClass, Subscription[]> localSubs = subsMultiREF.get(this);
+            final Subscription<?>[] many = this.subsMany;
+            final int length = messages.length;
 
-            Class<?> superClass1;
-            Class<?> superClass2;
-            Class<?> superClass3;
-            Subscription sub;
-            Subscription[] superSubs;
+            final ArrayList<Subscription<?>> subsAsList = new ArrayList<Subscription<?>>();
 
+            Subscription<?> sub;
             MessageHandler handler;
             Class<?>[] handledMessages;
-            boolean acceptsSubtypes;
-            Class<?> handledMessage1;
-            Class<?> handledMessage2;
-            Class<?> handledMessage3;
+            Class<?> messageClass;
+            boolean exact;
+            boolean assignable;
 
-            final int length1 = superClasses1.length;
-            final int length2 = superClasses2.length;
-            final int length3 = superClasses3.length;
+            for (int i = 0; i < many.length; i++) {
+                sub = many[i];
 
-            ArrayList<Subscription> subsAsList = new ArrayList<Subscription>(length1 + length2);
+                handler = sub.getHandler();
+                handledMessages = handler.getHandledMessages();
 
-            for (int i = 0; i < length1; i++) {
-                superClass1 = superClasses1[i];
-
-                // only go over subtypes
-                if (superClass1 == messageClass1) {
+                if (handledMessages.length != length || !handler.acceptsSubtypes()) {
                     continue;
                 }
 
-                for (int j = 0; j < length2; j++) {
-                    superClass2 = superClasses2[j];
+                exact = true;
+                assignable = true;
+                for (int j = 0; j < length; j++) {
+                    messageClass = messages[j].getClass();
 
-                    // only go over subtypes
-                    if (superClass2 == messageClass2) {
-                        continue;
-                    }
+                    if (handledMessages[j] != messageClass) {
+                        exact = false;
 
-                    for (int k = 0; k < length3; k++) {
-                        superClass3 = superClasses3[j];
-
-                        // only go over subtypes
-                        if (superClass3 == messageClass3) {
-                            continue;
-                        }
-
-                        // never returns null
-                        MultiClass multiClass = classTree.get(superClass1,
-                                                              superClass2,
-                                                              superClass3);
-
-                        superSubs = localSubs.get(multiClass);
-
-                        //noinspection Duplicates
-                        if (superSubs != null) {
-                            for (int m = 0; m < superSubs.length; m++) {
-                                sub = superSubs[m];
-
-                                handler = sub.getHandler();
-                                handledMessages = handler.getHandledMessages();
-                                acceptsSubtypes = handler.acceptsSubtypes();
-
-                                handledMessage1 = handledMessages[0];
-                                handledMessage2 = handledMessages[1];
-                                handledMessage3 = handledMessages[2];
-
-                                if (handledMessage1.equals(messageClass1) &&
-                                    handledMessage2.equals(messageClass2) &&
-                                    handledMessage3.equals(messageClass3)) {
-                                    // exact type
-                                    subsAsList.add(sub);
-                                }
-                                else if (acceptsSubtypes && handledMessage1.isAssignableFrom(messageClass1) &&
-                                                            handledMessage2.isAssignableFrom(messageClass2) &&
-                                                            handledMessage3.isAssignableFrom(messageClass3)) {
-                                    // legit sub-type
-                                    subsAsList.add(sub);
-                                }
-                            }
+                        if (!classUtils.isSuperType(handledMessages[j], messageClass)) {
+                            assignable = false;
+                            break;
                         }
                     }
                 }
+
+                // exact matches are already published to by getSubs()
+                if (assignable && !exact) {
+                    subsAsList.add(sub);
+                }
             }
 
             // subsAsList now contains ALL of the super-class subscriptions.
-            subscriptions = subsAsList.toArray(EMPTY_SUBS);
-            localSuperSubs.put(origMultiClass, subscriptions);
-
-            subsSuperMultiREF.lazySet(this, localSuperSubs);
+            subscriptions = subsSuperMulti.putTypesOf(messages, subsAsList.toArray(EMPTY_SUBS));
         }
 
         return subscriptions;
     }
+
+    /**
+     * Creates the subscriptions for a range of listener classes, by splitting it in half until only one class is left
+     */
+    private static final
+    class PrimeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SubscriptionManager subscriptionManager;
+        private final Class<?>[] listenerClasses;
+        private final int start;
+        private final int end;
+
+        private
+        PrimeTask(final SubscriptionManager subscriptionManager, final Class<?>[] listenerClasses, final int start, final int end) {
+            this.subscriptionManager = subscriptionManager;
+            this.listenerClasses = listenerClasses;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected
+        void compute() {
+            if (end - start == 1) {
+                subscriptionManager.primeListener(listenerClasses[start]);
+                return;
+            }
+
+            final int middle = (start + end) >>> 1;
+            invokeAll(new PrimeTask(subscriptionManager, listenerClasses, start, middle),
+                      new PrimeTask(subscriptionManager, listenerClasses, middle, end));
+        }
+    }
 }
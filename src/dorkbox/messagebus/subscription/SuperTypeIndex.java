@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.subscription;
+
+import com.esotericsoftware.kryo.util.IdentityMap;
+
+import java.util.Arrays;
+
+/**
+ * Resolves the super-type subscriptions of multi-message handlers (with TWO or THREE parameters) WITHOUT enumerating every combination
+ * of the super classes of the messages.
+ * <p/>
+ * Every subscription (that accepts subtypes) has an index, and for every parameter position there is a bitset of the subscriptions per
+ * parameter type. For a new combination of message classes, the bitsets of the super classes of each message are OR'd together (which
+ * is proportional to the depth of that message's hierarchy), and then the positions are AND'd together. The remaining bits are the
+ * subscriptions that accept all of the messages.
+ * <p/>
+ * This is copy-on-write. The writer (which is always inside the subscription manager's lock) builds a new snapshot.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+final
+class SuperTypeIndex {
+    private static final Subscription<?>[] EMPTY_SUBS = new Subscription<?>[0];
+
+    private static final
+    class Snapshot {
+        private final Subscription<?>[] subscriptions;
+
+        // per parameter position: the handled type -> bitset of the indices of the subscriptions
+        private final IdentityMap<Class<?>, long[]>[] bitsPerPosition;
+        private final int words;
+
+        private
+        Snapshot(final Subscription<?>[] subscriptions, final IdentityMap<Class<?>, long[]>[] bitsPerPosition) {
+            this.subscriptions = subscriptions;
+            this.bitsPerPosition = bitsPerPosition;
+            this.words = (subscriptions.length + 63) >>> 6;
+        }
+    }
+
+    private final int numberOfMessages;
+    private volatile Snapshot snapshot;
+
+
+    SuperTypeIndex(final int numberOfMessages) {
+        this.numberOfMessages = numberOfMessages;
+        clear();
+    }
+
+    /**
+     * Only ONE thread may write at a time.
+     */
+    void clear() {
+        this.snapshot = build(EMPTY_SUBS);
+    }
+
+    /**
+     * Only ONE thread may write at a time.
+     *
+     * @param subscription must accept subtypes, and have the same number of parameters as this index
+     */
+    void add(final Subscription<?> subscription) {
+        final Subscription<?>[] current = this.snapshot.subscriptions;
+        final Subscription<?>[] subscriptions = Arrays.copyOf(current, current.length + 1);
+        subscriptions[current.length] = subscription;
+
+        this.snapshot = build(subscriptions);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private
+    Snapshot build(final Subscription<?>[] subscriptions) {
+        final int words = (subscriptions.length + 63) >>> 6;
+        final IdentityMap<Class<?>, long[]>[] bitsPerPosition = new IdentityMap[numberOfMessages];
+
+        for (int position = 0; position < numberOfMessages; position++) {
+            final IdentityMap<Class<?>, long[]> bitsPerType = new IdentityMap<Class<?>, long[]>(16, SubscriptionManager.LOAD_FACTOR);
+
+            for (int i = 0; i < subscriptions.length; i++) {
+                final Class<?> handledMessage = subscriptions[i].getHandler().getHandledMessages()[position];
+
+                long[] bits = bitsPerType.get(handledMessage);
+                if (bits == null) {
+                    bits = new long[words];
+                    bitsPerType.put(handledMessage, bits);
+                }
+                bits[i >>> 6] |= 1L << i;
+            }
+
+            bitsPerPosition[position] = bitsPerType;
+        }
+
+        return new Snapshot(subscriptions, bitsPerPosition);
+    }
+
+    /**
+     * @return the subscriptions that have a SUPER class of every message as their parameter (never null)
+     */
+    Subscription<?>[] get(final Class<?>[] superClasses1, final Class<?>[] superClasses2) {
+        final Snapshot snapshot = this.snapshot;
+        if (snapshot.words == 0) {
+            return EMPTY_SUBS;
+        }
+
+        final long[] bits = union(snapshot, 0, superClasses1);
+        intersect(bits, union(snapshot, 1, superClasses2));
+
+        return toSubscriptions(snapshot, bits);
+    }
+
+    /**
+     * @return the subscriptions that have a SUPER class of every message as their parameter (never null)
+     */
+    Subscription<?>[] get(final Class<?>[] superClasses1, final Class<?>[] superClasses2, final Class<?>[] superClasses3) {
+        final Snapshot snapshot = this.snapshot;
+        if (snapshot.words == 0) {
+            return EMPTY_SUBS;
+        }
+
+        final long[] bits = union(snapshot, 0, superClasses1);
+        intersect(bits, union(snapshot, 1, superClasses2));
+        intersect(bits, union(snapshot, 2, superClasses3));
+
+        return toSubscriptions(snapshot, bits);
+    }
+
+    /**
+     * @return the bitset of every subscription that has one of the classes at this parameter position
+     */
+    private static
+    long[] union(final Snapshot snapshot, final int position, final Class<?>[] classes) {
+        final IdentityMap<Class<?>, long[]> bitsPerType = snapshot.bitsPerPosition[position];
+        final long[] union = new long[snapshot.words];
+
+        for (int i = 0; i < classes.length; i++) {
+            final long[] bits = bitsPerType.get(classes[i]);
+            if (bits != null) {
+                for (int j = 0; j < bits.length; j++) {
+                    union[j] |= bits[j];
+                }
+            }
+        }
+
+        return union;
+    }
+
+    private static
+    void intersect(final long[] bits, final long[] other) {
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] &= other[i];
+        }
+    }
+
+    private static
+    Subscription<?>[] toSubscriptions(final Snapshot snapshot, final long[] bits) {
+        int count = 0;
+        for (int i = 0; i < bits.length; i++) {
+            count += Long.bitCount(bits[i]);
+        }
+
+        if (count == 0) {
+            return EMPTY_SUBS;
+        }
+
+        final Subscription<?>[] allSubscriptions = snapshot.subscriptions;
+        final Subscription<?>[] subscriptions = new Subscription<?>[count];
+        int index = 0;
+
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0L) {
+                final int bit = Long.numberOfTrailingZeros(word);
+                subscriptions[index++] = allSubscriptions[(i << 6) + bit];
+                word &= word - 1;
+            }
+        }
+
+        return subscriptions;
+    }
+}
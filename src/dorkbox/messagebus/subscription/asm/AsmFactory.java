@@ -16,6 +16,8 @@
 package dorkbox.messagebus.subscription.asm;
 
 import dorkbox.messagebus.common.MessageHandler;
+import dorkbox.messagebus.error.ErrorHandler;
+import dorkbox.messagebus.subscription.ListenerList;
 import dorkbox.messagebus.subscription.Subscription;
 import dorkbox.messagebus.subscription.SubscriptionFactory;
 
@@ -26,30 +28,41 @@ public
 class AsmFactory implements SubscriptionFactory {
 
     private final boolean useStrongReferencesByDefault;
+    private final int invocationThreshold;
+    private final ErrorHandler mailboxErrorHandler;
 
+    /**
+     * @param invocationThreshold the number of times a handler is invoked via reflection, before its MethodAccess is generated. If <= 0,
+     *                            the MethodAccess is generated when the subscription is created.
+     * @param mailboxErrorHandler if not null, @Synchronized handlers are executed via the mailbox of the listener (instead of
+     *                            synchronizing on the listener), and report their errors here
+     */
     public
-    AsmFactory(final boolean useStrongReferencesByDefault) {
+    AsmFactory(final boolean useStrongReferencesByDefault, final int invocationThreshold, final ErrorHandler mailboxErrorHandler) {
         this.useStrongReferencesByDefault = useStrongReferencesByDefault;
+        this.invocationThreshold = invocationThreshold;
+        this.mailboxErrorHandler = mailboxErrorHandler;
     }
 
     @Override
     public
-    Subscription<?> create(final Class<?> listenerClass, final MessageHandler handler) {
+    Subscription<?> create(final Class<?> listenerClass, final MessageHandler handler, final ListenerList strongListeners,
+                           final ListenerList weakListeners) {
         // figure out what kind of references we want to use by default, as specified by MessageBus.useStrongReferencesByDefault
         final int referenceType = handler.getReferenceType();
         if (referenceType == MessageHandler.UNDEFINED) {
             if (useStrongReferencesByDefault) {
-                return new SubscriptionAsmStrong(listenerClass, handler);
+                return new SubscriptionAsmStrong(listenerClass, handler, strongListeners, invocationThreshold, mailboxErrorHandler);
             }
             else {
-                return new SubscriptionAsmWeak(listenerClass, handler);
+                return new SubscriptionAsmWeak(listenerClass, handler, weakListeners, invocationThreshold, mailboxErrorHandler);
             }
         }
         else if (referenceType == MessageHandler.WEAK) {
-            return new SubscriptionAsmWeak(listenerClass, handler);
+            return new SubscriptionAsmWeak(listenerClass, handler, weakListeners, invocationThreshold, mailboxErrorHandler);
         }
         else {
-            return new SubscriptionAsmStrong(listenerClass, handler);
+            return new SubscriptionAsmStrong(listenerClass, handler, strongListeners, invocationThreshold, mailboxErrorHandler);
         }
     }
 }
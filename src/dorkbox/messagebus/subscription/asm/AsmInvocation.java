@@ -38,6 +38,7 @@
 package dorkbox.messagebus.subscription.asm;
 
 import com.esotericsoftware.reflectasm.MethodAccess;
+import dorkbox.messagebus.subscription.Entry;
 
 /**
  * A handler invocation encapsulates the logic that is used to invoke a single
@@ -59,33 +60,57 @@ interface AsmInvocation {
     /**
      * Invoke the message delivery logic of this handler
      *
+     * @param entry    The entry of the listener (which has the mailbox of the listener)
      * @param listener The listener that will receive the message. This can be a reference to a method object
      *                 from the java reflection api or any other wrapper that can be used to invoke the handler
      * @param message  The message to be delivered to the handler. This can be any object compatible with the object
      *                 type that the handler consumes
      * @param handler  The handler (method) that will be called via reflection
      */
-    void invoke(Object listener, MethodAccess handler, int methodIndex, Object message) throws Throwable;
+    void invoke(Entry<?> entry, Object listener, MethodAccess handler, int methodIndex, Object message) throws Throwable;
+
+    /**
+     * Invoke the message delivery logic of this handler, and return the value that the handler returned (null for 'void' handlers)
+     *
+     * @param entry    The entry of the listener (which has the mailbox of the listener)
+     * @param listener The listener that will receive the message
+     * @param message  The message to be delivered to the handler
+     * @param handler  The handler (method) that will be called via reflection
+     */
+    Object invokeAndReturn(Entry<?> entry, Object listener, MethodAccess handler, int methodIndex, Object message) throws Throwable;
 
     /**
      * Invoke the message delivery logic of this handler
      *
+     * @param entry    The entry of the listener (which has the mailbox of the listener)
      * @param listener The listener that will receive the message. This can be a reference to a method object
      *                 from the java reflection api or any other wrapper that can be used to invoke the handler
      * @param message1  The message to be delivered to the handler. This can be any object compatible with the object
      *                 type that the handler consumes
      * @param handler  The handler (method) that will be called via reflection
      */
-    void invoke(Object listener, MethodAccess handler, int methodIndex, Object message1, Object message2) throws Throwable;
+    void invoke(Entry<?> entry, Object listener, MethodAccess handler, int methodIndex, Object message1, Object message2) throws Throwable;
 
     /**
      * Invoke the message delivery logic of this handler
      *
+     * @param entry    The entry of the listener (which has the mailbox of the listener)
      * @param listener The listener that will receive the message. This can be a reference to a method object
      *                 from the java reflection api or any other wrapper that can be used to invoke the handler
      * @param message1  The message to be delivered to the handler. This can be any object compatible with the object
      *                 type that the handler consumes
      * @param handler  The handler (method) that will be called via reflection
      */
-    void invoke(Object listener, MethodAccess handler, int methodIndex, Object message1, Object message2, Object message3) throws Throwable;
+    void invoke(Entry<?> entry, Object listener, MethodAccess handler, int methodIndex, Object message1, Object message2, Object message3) throws Throwable;
+
+    /**
+     * Invoke the message delivery logic of this handler, for more than three messages
+     *
+     * @param entry    The entry of the listener (which has the mailbox of the listener)
+     * @param listener The listener that will receive the message. This can be a reference to a method object
+     *                 from the java reflection api or any other wrapper that can be used to invoke the handler
+     * @param messages The messages to be delivered to the handler. The length must match the number of parameters of the handler
+     * @param handler  The handler (method) that will be called via reflection
+     */
+    void invoke(Entry<?> entry, Object listener, MethodAccess handler, int methodIndex, Object[] messages) throws Throwable;
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.subscription.asm;
+
+import com.esotericsoftware.reflectasm.MethodAccess;
+import dorkbox.messagebus.error.ErrorHandler;
+import dorkbox.messagebus.subscription.Entry;
+import dorkbox.messagebus.subscription.Mailbox;
+
+/**
+ * Executes the handler invocations of @Synchronized handlers via the mailbox of the listener, instead of synchronizing on the listener.
+ * <p>
+ * The invocation might be executed later, by another thread (the owner of the mailbox), so errors are reported to the error handler here
+ * instead of being thrown to the caller. Only invokeAndReturn() waits for the invocation to finish (and throws its errors).
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public
+class AsmMailboxInvocation implements AsmInvocation {
+
+    private final AsmInvocation delegate;
+    private final ErrorHandler errorHandler;
+
+    public
+    AsmMailboxInvocation(final AsmInvocation delegate, final ErrorHandler errorHandler) {
+        this.delegate = delegate;
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message) throws Throwable {
+        final Invocation invocation = new Invocation(this, entry, listener, handler, methodIndex, 1);
+        invocation.message1 = message;
+        entry.getMailbox().execute(invocation);
+    }
+
+    @Override
+    public
+    Object invokeAndReturn(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message) throws Throwable {
+        return entry.getMailbox().executeAndWait(new Mailbox.ResultTask() {
+            @Override
+            public
+            Object call() throws Throwable {
+                return delegate.invokeAndReturn(entry, listener, handler, methodIndex, message);
+            }
+        });
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message1, final Object message2) throws Throwable {
+        final Invocation invocation = new Invocation(this, entry, listener, handler, methodIndex, 2);
+        invocation.message1 = message1;
+        invocation.message2 = message2;
+        entry.getMailbox().execute(invocation);
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message1, final Object message2, final Object message3) throws Throwable {
+        final Invocation invocation = new Invocation(this, entry, listener, handler, methodIndex, 3);
+        invocation.message1 = message1;
+        invocation.message2 = message2;
+        invocation.message3 = message3;
+        entry.getMailbox().execute(invocation);
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object[] messages) throws Throwable {
+        final Invocation invocation = new Invocation(this, entry, listener, handler, methodIndex, -1);
+        invocation.messages = messages;
+        entry.getMailbox().execute(invocation);
+    }
+
+
+    /**
+     * One invocation of the handler, which the mailbox either executes right away or queues (in which case it copies the messages)
+     */
+    private static final
+    class Invocation extends Mailbox.Task {
+        private final AsmMailboxInvocation owner;
+        private final Entry<?> entry;
+        private final MethodAccess handler;
+        private final int methodIndex;
+
+        // the number of messages, or -1 for the array of messages
+        private final int size;
+
+        // released after running, because the mailbox keeps a reference to the task that was executed last
+        private Object listener;
+        private Object message1;
+        private Object message2;
+        private Object message3;
+        private Object[] messages;
+
+        private
+        Invocation(final AsmMailboxInvocation owner, final Entry<?> entry, final Object listener, final MethodAccess handler,
+                   final int methodIndex, final int size) {
+            this.owner = owner;
+            this.entry = entry;
+            this.listener = listener;
+            this.handler = handler;
+            this.methodIndex = methodIndex;
+            this.size = size;
+        }
+
+        @Override
+        protected
+        void copyMessages() {
+            this.message1 = Mailbox.copy(this.message1);
+            this.message2 = Mailbox.copy(this.message2);
+            this.message3 = Mailbox.copy(this.message3);
+            if (this.messages != null) {
+                this.messages = Mailbox.copy(this.messages);
+            }
+        }
+
+        @Override
+        public
+        void run() {
+            final AsmInvocation delegate = this.owner.delegate;
+            try {
+                switch (this.size) {
+                    case 1:
+                        delegate.invoke(this.entry, this.listener, this.handler, this.methodIndex, this.message1);
+                        break;
+                    case 2:
+                        delegate.invoke(this.entry, this.listener, this.handler, this.methodIndex, this.message1, this.message2);
+                        break;
+                    case 3:
+                        delegate.invoke(this.entry, this.listener, this.handler, this.methodIndex, this.message1, this.message2, this.message3);
+                        break;
+                    default:
+                        delegate.invoke(this.entry, this.listener, this.handler, this.methodIndex, this.messages);
+                        break;
+                }
+            } catch (Throwable e) {
+                final ErrorHandler errorHandler = this.owner.errorHandler;
+                switch (this.size) {
+                    case 1:
+                        errorHandler.handlePublicationError("Error during publication of message.", e, this.message1);
+                        break;
+                    case 2:
+                        errorHandler.handlePublicationError("Error during publication of message.", e, this.message1, this.message2);
+                        break;
+                    case 3:
+                        errorHandler.handlePublicationError("Error during publication of message.", e, this.message1, this.message2,
+                                                            this.message3);
+                        break;
+                    default:
+                        errorHandler.handlePublicationError("Error during publication of message.", e, this.messages);
+                        break;
+                }
+            } finally {
+                this.listener = null;
+                this.message1 = null;
+                this.message2 = null;
+                this.message3 = null;
+                this.messages = null;
+            }
+        }
+    }
+}
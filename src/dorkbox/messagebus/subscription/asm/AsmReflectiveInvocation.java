@@ -38,6 +38,7 @@
 package dorkbox.messagebus.subscription.asm;
 
 import com.esotericsoftware.reflectasm.MethodAccess;
+import dorkbox.messagebus.subscription.Entry;
 
 /**
  * Uses reflection to invoke a message handler for a given message.
@@ -57,19 +58,31 @@ class AsmReflectiveInvocation implements AsmInvocation {
 
     @Override
     public
-    void invoke(final Object listener, final MethodAccess handler, final int methodIndex, final Object message) throws Throwable {
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message) throws Throwable {
         handler.invoke(listener, methodIndex, message);
     }
 
     @Override
     public
-    void invoke(final Object listener, final MethodAccess handler, final int methodIndex, final Object message1, final Object message2) throws Throwable {
+    Object invokeAndReturn(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message) throws Throwable {
+        return handler.invoke(listener, methodIndex, message);
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message1, final Object message2) throws Throwable {
         handler.invoke(listener, methodIndex, message1, message2);
     }
 
     @Override
     public
-    void invoke(final Object listener, final MethodAccess handler, final int methodIndex, final Object message1, final Object message2, final Object message3) throws Throwable {
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message1, final Object message2, final Object message3) throws Throwable {
         handler.invoke(listener, methodIndex, message1, message2, message3);
     }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object[] messages) throws Throwable {
+        handler.invoke(listener, methodIndex, messages);
+    }
 }
@@ -38,6 +38,7 @@
 package dorkbox.messagebus.subscription.asm;
 
 import com.esotericsoftware.reflectasm.MethodAccess;
+import dorkbox.messagebus.subscription.Entry;
 
 /**
  * Synchronizes message handler invocations for all handlers that specify @Synchronized
@@ -59,25 +60,41 @@ class AsmSynchronizedInvocation implements AsmInvocation {
 
     @Override
     public
-    void invoke(final Object listener, final MethodAccess handler, final int methodIndex, final Object message) throws Throwable {
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message) throws Throwable {
         synchronized (listener) {
-            this.delegate.invoke(listener, handler, methodIndex, message);
+            this.delegate.invoke(entry, listener, handler, methodIndex, message);
         }
     }
 
     @Override
     public
-    void invoke(final Object listener, final MethodAccess handler, int methodIndex, final Object message1, final Object message2) throws Throwable {
+    Object invokeAndReturn(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message) throws Throwable {
         synchronized (listener) {
-            this.delegate.invoke(listener, handler, methodIndex, message1, message2);
+            return this.delegate.invokeAndReturn(entry, listener, handler, methodIndex, message);
         }
     }
 
     @Override
     public
-    void invoke(final Object listener, final MethodAccess handler, final int methodIndex, final Object message1, final Object message2, final Object message3) throws Throwable {
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, int methodIndex, final Object message1, final Object message2) throws Throwable {
         synchronized (listener) {
-            this.delegate.invoke(listener, handler, methodIndex, message1, message2, message3);
+            this.delegate.invoke(entry, listener, handler, methodIndex, message1, message2);
+        }
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message1, final Object message2, final Object message3) throws Throwable {
+        synchronized (listener) {
+            this.delegate.invoke(entry, listener, handler, methodIndex, message1, message2, message3);
+        }
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object[] messages) throws Throwable {
+        synchronized (listener) {
+            this.delegate.invoke(entry, listener, handler, methodIndex, messages);
         }
     }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.subscription.asm;
+
+import com.esotericsoftware.reflectasm.MethodAccess;
+import dorkbox.messagebus.subscription.Entry;
+
+import dorkbox.messagebus.util.NamedThreadFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invokes the handler via java reflection (the MethodAccess and the method index are ignored), until it has been invoked often enough
+ * for generating a MethodAccess class to be worth it. Then the subscription is told to promote itself.
+ * <p>
+ * The invocation count is not atomic, so under contention the promotion can happen a few invocations late (which doesn't matter). The
+ * promotion itself (generating the MethodAccess) happens on a background thread, so that the publication that reaches the threshold
+ * does not have to wait for it.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+final
+class AsmTieredInvocation implements AsmInvocation {
+
+    /**
+     * The subscription that uses this invocation, which swaps in the generated MethodAccess when promoted
+     */
+    interface Target {
+        void promote();
+    }
+
+    // shared by every bus (like the MethodAccess cache). The thread only exists while there are handlers to promote.
+    private static final Executor promoter = new ThreadPoolExecutor(0, 1, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                                    new NamedThreadFactory("MessageBus-Promoter"));
+
+    private final Method method;
+    private final Target target;
+    private final int threshold;
+
+    private int count = 0;
+
+    AsmTieredInvocation(final Method method, final Target target, final int threshold) {
+        this.method = method;
+        this.target = target;
+        this.threshold = threshold;
+
+        method.setAccessible(true);
+    }
+
+    private
+    void count() {
+        if (++this.count == this.threshold) {
+            final Target target = this.target;
+            promoter.execute(new Runnable() {
+                @Override
+                public
+                void run() {
+                    try {
+                        target.promote();
+                    } catch (Throwable ignored) {
+                        // the MethodAccess could not be generated, so we keep using reflection
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message) throws Throwable {
+        count();
+        try {
+            this.method.invoke(listener, message);
+        } catch (InvocationTargetException e) {
+            // the same exception that the generated MethodAccess would throw
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public
+    Object invokeAndReturn(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message) throws Throwable {
+        count();
+        try {
+            return this.method.invoke(listener, message);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message1, final Object message2) throws Throwable {
+        count();
+        try {
+            this.method.invoke(listener, message1, message2);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object message1, final Object message2, final Object message3) throws Throwable {
+        count();
+        try {
+            this.method.invoke(listener, message1, message2, message3);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final MethodAccess handler, final int methodIndex, final Object[] messages) throws Throwable {
+        count();
+        try {
+            this.method.invoke(listener, messages);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
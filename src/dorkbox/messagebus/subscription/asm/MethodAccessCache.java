@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.subscription.asm;
+
+import com.esotericsoftware.reflectasm.MethodAccess;
+
+/**
+ * The generated MethodAccess of each class, which is shared by every message bus in the JVM (a MethodAccess is immutable once it has
+ * been created).
+ * <p>
+ * The cache is a ClassValue, so it is classloader aware: each class has its own entry (even if another classloader defines a class with
+ * the same name), and the entry does not keep the class (or its classloader) from being unloaded.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public final
+class MethodAccessCache {
+
+    private static final ClassValue<Holder> accessors = new ClassValue<Holder>() {
+        @Override
+        protected
+        Holder computeValue(final Class<?> type) {
+            return new Holder();
+        }
+    };
+
+    private
+    MethodAccessCache() {
+    }
+
+    /**
+     * @return the MethodAccess of the class, which is generated if it does not exist yet
+     */
+    static
+    MethodAccess get(final Class<?> type) {
+        final Holder holder = accessors.get(type);
+
+        MethodAccess access = holder.access;
+        if (access == null) {
+            synchronized (holder) {
+                access = holder.access;
+                if (access == null) {
+                    access = MethodAccess.get(type);
+                    holder.access = access;
+                }
+            }
+        }
+
+        return access;
+    }
+
+    /**
+     * @return the MethodAccess of the class, or null if it has not been generated yet
+     */
+    public static
+    MethodAccess getIfPresent(final Class<?> type) {
+        return accessors.get(type).access;
+    }
+
+    private static final
+    class Holder {
+        private volatile MethodAccess access;
+    }
+}
@@ -38,10 +38,11 @@
 package dorkbox.messagebus.subscription.asm;
 
 import com.esotericsoftware.reflectasm.MethodAccess;
+import dorkbox.messagebus.common.MessageCollector;
 import dorkbox.messagebus.common.MessageHandler;
 import dorkbox.messagebus.error.ErrorHandler;
-import dorkbox.messagebus.error.PublicationError;
 import dorkbox.messagebus.subscription.Entry;
+import dorkbox.messagebus.subscription.ListenerList;
 import dorkbox.messagebus.subscription.Subscription;
 
 import java.lang.ref.WeakReference;
@@ -64,30 +65,80 @@ import java.lang.reflect.Method;
  */
 @SuppressWarnings("Duplicates")
 final
-class SubscriptionAsmWeak extends Subscription<WeakReference<Object>> {
-    private final AsmInvocation invocation;
+class SubscriptionAsmWeak extends Subscription<WeakReference<Object>> implements AsmTieredInvocation.Target {
+    // swapped (once) when the handler is promoted from reflection to the generated MethodAccess. The invocation is written AFTER the
+    // MethodAccess and the method index, so reading the invocation first guarantees that they are visible as well.
+    private volatile AsmInvocation invocation;
 
-    private final Object singleWriterLock = new Object();
+    private MethodAccess handlerAccess;
+    private int methodIndex;
 
-    private final MethodAccess handlerAccess;
-    private final int methodIndex;
+    // null unless @Synchronized handlers use mailboxes
+    private final ErrorHandler mailboxErrorHandler;
 
+    /**
+     * @param invocationThreshold the number of invocations (via reflection) before the MethodAccess is generated. If <= 0, the
+     *                            MethodAccess is generated immediately.
+     * @param mailboxErrorHandler if not null, @Synchronized handlers are executed via the mailbox of the listener (instead of
+     *                            synchronizing on the listener), and report their errors here
+     */
     public
-    SubscriptionAsmWeak(final Class<?> listenerClass, final MessageHandler handler) {
-        // we use ASM here
-        super(listenerClass, handler);
+    SubscriptionAsmWeak(final Class<?> listenerClass, final MessageHandler handler, final ListenerList listeners,
+                        final int invocationThreshold, final ErrorHandler mailboxErrorHandler) {
+        super(listenerClass, handler, listeners, mailboxErrorHandler != null);
+        this.mailboxErrorHandler = mailboxErrorHandler;
+
+        // if another subscription (possibly of another message bus) already generated the MethodAccess, there is no need to wait
+        if (invocationThreshold > 0 && MethodAccessCache.getIfPresent(handler.getMethod().getDeclaringClass()) == null) {
+            this.invocation = wrap(handler, new AsmTieredInvocation(handler.getMethod(), this, invocationThreshold));
+        }
+        else {
+            promote();
+        }
+    }
 
-        AsmInvocation invocation = new AsmReflectiveInvocation();
+    private
+    AsmInvocation wrap(final MessageHandler handler, final AsmInvocation invocation) {
         if (handler.isSynchronized()) {
-            invocation = new AsmSynchronizedInvocation(invocation);
+            if (mailboxErrorHandler != null) {
+                return new AsmMailboxInvocation(invocation, mailboxErrorHandler);
+            }
+            return new AsmSynchronizedInvocation(invocation);
+        }
+        return invocation;
+    }
+
+    /**
+     * Generates the MethodAccess now, instead of once the handler has been invoked often enough
+     */
+    @Override
+    public
+    void prime() {
+        try {
+            promote();
+        } catch (Throwable ignored) {
+            // the MethodAccess could not be generated, so we keep using reflection
         }
+    }
 
-        this.invocation = invocation;
+    /**
+     * Generates (or reuses the already generated) MethodAccess for the handler, and uses it from now on.
+     */
+    @Override
+    public synchronized
+    void promote() {
+        if (this.handlerAccess != null) {
+            return;
+        }
 
         // we use ASM here
-        Method method = handler.getMethod();
-        this.handlerAccess = MethodAccess.get(method.getDeclaringClass());
-        this.methodIndex = this.handlerAccess.getIndex(method.getName(), handler.getHandledMessages());
+        final MessageHandler handler = getHandler();
+        final Method method = handler.getMethod();
+        final MethodAccess handlerAccess = MethodAccessCache.get(method.getDeclaringClass());
+
+        this.methodIndex = handlerAccess.getIndex(method.getName(), handler.getHandledMessages());
+        this.handlerAccess = handlerAccess;
+        this.invocation = wrap(handler, new AsmReflectiveInvocation());
     }
 
     @Override
@@ -97,33 +148,60 @@ class SubscriptionAsmWeak extends Subscription<WeakReference<Object>> {
     }
 
     @Override
-    public
-    void subscribe(final Object listener) {
-        // extra locking to ensure the single-writer-principle (with regards to how cleaning up orphans works)
-        synchronized (singleWriterLock) {
-            super.subscribe(listener);
-        }
+    protected
+    Object getListener(final Entry<WeakReference<Object>> entry) {
+        return entry.getValue().get();
     }
 
     @Override
     public
-    void unsubscribe(final Object listener) {
-        // extra locking to ensure the single-writer-principle (with regards to how cleaning up orphans works)
-        synchronized (singleWriterLock) {
-            super.unsubscribe(listener);
+    boolean publish(final ErrorHandler errorHandler,final Object message) {
+        final AsmInvocation invocation = this.invocation;
+        final MethodAccess handler = this.handlerAccess;
+        final int handleIndex = this.methodIndex;
+
+        Entry<WeakReference<Object>> head = cast(head());
+        Entry<WeakReference<Object>> current = head;
+        Entry<WeakReference<Object>> entry;
+        Object listener;
+        while (current != null) {
+            listener = current.getValue().get();
+            if (listener == null) {
+                Entry<WeakReference<Object>> next = current.next();
+
+                synchronized (singleWriterLock) {
+                    removeNode(current); // this means it has been garbage collected!! we need to clean up ourselves
+                }
+                current = next;
+                continue;
+            }
+            entry = current;
+            current = current.next();
+
+            try {
+                invocation.invoke(entry, listener, handler, handleIndex, message);
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, message);
+            }
         }
+
+        // because the value can be GC'd at any time, this is the best guess possible
+        return head != null && head.getValue() != null;  // true if we have something to publish to, otherwise false
     }
 
     @Override
     public
-    boolean publish(final ErrorHandler errorHandler,final Object message) {
+    boolean publishAndCollect(final ErrorHandler errorHandler, final Object message, final MessageCollector<?> collector) {
+        final AsmInvocation invocation = this.invocation;
         final MethodAccess handler = this.handlerAccess;
         final int handleIndex = this.methodIndex;
-        final AsmInvocation invocation = this.invocation;
+        final boolean hasReturnValue = this.hasReturnValue;
 
-        Entry<WeakReference<Object>> head = cast(headREF.get(this));
+        Entry<WeakReference<Object>> head = cast(head());
         Entry<WeakReference<Object>> current = head;
+        Entry<WeakReference<Object>> entry;
         Object listener;
+        Object result;
         while (current != null) {
             listener = current.getValue().get();
             if (listener == null) {
@@ -135,14 +213,16 @@ class SubscriptionAsmWeak extends Subscription<WeakReference<Object>> {
                 current = next;
                 continue;
             }
+            entry = current;
             current = current.next();
 
             try {
-                invocation.invoke(listener, handler, handleIndex, message);
+                result = invocation.invokeAndReturn(entry, listener, handler, handleIndex, message);
+                if (hasReturnValue) {
+                    collector.collect(result);
+                }
             } catch (Throwable e) {
-                errorHandler.handlePublicationError(new PublicationError().setMessage("Error during publication of message.")
-                                                                          .setCause(e)
-                                                                          .setPublishedObject(message));
+                errorHandler.handlePublicationError("Error during publication of message.", e, message);
             }
         }
 
@@ -153,12 +233,13 @@ class SubscriptionAsmWeak extends Subscription<WeakReference<Object>> {
     @Override
     public
     boolean publish(final ErrorHandler errorHandler,final Object message1, final Object message2) {
+        final AsmInvocation invocation = this.invocation;
         final MethodAccess handler = this.handlerAccess;
         final int handleIndex = this.methodIndex;
-        final AsmInvocation invocation = this.invocation;
 
-        Entry<WeakReference<Object>> head = cast(headREF.get(this));
+        Entry<WeakReference<Object>> head = cast(head());
         Entry<WeakReference<Object>> current = head;
+        Entry<WeakReference<Object>> entry;
         Object listener;
         while (current != null) {
             listener = current.getValue().get();
@@ -171,14 +252,13 @@ class SubscriptionAsmWeak extends Subscription<WeakReference<Object>> {
                 current = next;
                 continue;
             }
+            entry = current;
             current = current.next();
 
             try {
-                invocation.invoke(listener, handler, handleIndex, message1, message2);
+                invocation.invoke(entry, listener, handler, handleIndex, message1, message2);
             } catch (Throwable e) {
-                errorHandler.handlePublicationError(new PublicationError().setMessage("Error during publication of message.")
-                                                                          .setCause(e)
-                                                                          .setPublishedObject(message1, message2));
+                errorHandler.handlePublicationError("Error during publication of message.", e, message1, message2);
             }
         }
 
@@ -189,12 +269,49 @@ class SubscriptionAsmWeak extends Subscription<WeakReference<Object>> {
     @Override
     public
     boolean publish(final ErrorHandler errorHandler, final Object message1, final Object message2, final Object message3) {
+        final AsmInvocation invocation = this.invocation;
         final MethodAccess handler = this.handlerAccess;
         final int handleIndex = this.methodIndex;
+
+        Entry<WeakReference<Object>> head = cast(head());
+        Entry<WeakReference<Object>> current = head;
+        Entry<WeakReference<Object>> entry;
+        Object listener;
+        while (current != null) {
+            listener = current.getValue().get();
+            if (listener == null) {
+                Entry<WeakReference<Object>> next = current.next();
+
+                synchronized (singleWriterLock) {
+                    removeNode(current); // this means it has been garbage collected!! we need to clean up ourselves
+                }
+                current = next;
+                continue;
+            }
+            entry = current;
+            current = current.next();
+
+            try {
+                invocation.invoke(entry, listener, handler, handleIndex, message1, message2, message3);
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, message1, message2, message3);
+            }
+        }
+
+        // because the value can be GC'd at any time, this is the best guess possible
+        return head != null && head.getValue() != null;  // true if we have something to publish to, otherwise false
+    }
+
+    @Override
+    public
+    boolean publish(final ErrorHandler errorHandler, final Object[] messages) {
         final AsmInvocation invocation = this.invocation;
+        final MethodAccess handler = this.handlerAccess;
+        final int handleIndex = this.methodIndex;
 
-        Entry<WeakReference<Object>> head = cast(headREF.get(this));
+        Entry<WeakReference<Object>> head = cast(head());
         Entry<WeakReference<Object>> current = head;
+        Entry<WeakReference<Object>> entry;
         Object listener;
         while (current != null) {
             listener = current.getValue().get();
@@ -207,14 +324,13 @@ class SubscriptionAsmWeak extends Subscription<WeakReference<Object>> {
                 current = next;
                 continue;
             }
+            entry = current;
             current = current.next();
 
             try {
-                invocation.invoke(listener, handler, handleIndex, message1, message2, message3);
+                invocation.invoke(entry, listener, handler, handleIndex, messages);
             } catch (Throwable e) {
-                errorHandler.handlePublicationError(new PublicationError().setMessage("Error during publication of message.")
-                                                                          .setCause(e)
-                                                                          .setPublishedObject(message1, message2, message3));
+                errorHandler.handlePublicationError("Error during publication of message.", e, messages);
             }
         }
 
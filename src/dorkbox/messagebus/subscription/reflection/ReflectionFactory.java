@@ -16,6 +16,8 @@
 package dorkbox.messagebus.subscription.reflection;
 
 import dorkbox.messagebus.common.MessageHandler;
+import dorkbox.messagebus.error.ErrorHandler;
+import dorkbox.messagebus.subscription.ListenerList;
 import dorkbox.messagebus.subscription.Subscription;
 import dorkbox.messagebus.subscription.SubscriptionFactory;
 
@@ -27,30 +29,37 @@ public
 class ReflectionFactory implements SubscriptionFactory {
 
     private final boolean useStrongReferencesByDefault;
+    private final ErrorHandler mailboxErrorHandler;
 
+    /**
+     * @param mailboxErrorHandler if not null, @Synchronized handlers are executed via the mailbox of the listener (instead of
+     *                            synchronizing on the listener), and report their errors here
+     */
     public
-    ReflectionFactory(final boolean useStrongReferencesByDefault) {
+    ReflectionFactory(final boolean useStrongReferencesByDefault, final ErrorHandler mailboxErrorHandler) {
         this.useStrongReferencesByDefault = useStrongReferencesByDefault;
+        this.mailboxErrorHandler = mailboxErrorHandler;
     }
 
     @Override
     public
-    Subscription create(final Class<?> listenerClass, final MessageHandler handler) {
+    Subscription<?> create(final Class<?> listenerClass, final MessageHandler handler, final ListenerList strongListeners,
+                           final ListenerList weakListeners) {
         // figure out what kind of references we want to use by default, as specified by MessageBus.useStrongReferencesByDefault
         final int referenceType = handler.getReferenceType();
         if (referenceType == MessageHandler.UNDEFINED) {
             if (useStrongReferencesByDefault) {
-                return new SubscriptionReflectionStrong(listenerClass, handler);
+                return new SubscriptionReflectionStrong(listenerClass, handler, strongListeners, mailboxErrorHandler);
             }
             else {
-                return new SubscriptionReflectionWeak(listenerClass, handler);
+                return new SubscriptionReflectionWeak(listenerClass, handler, weakListeners, mailboxErrorHandler);
             }
         }
         else if (referenceType == MessageHandler.WEAK) {
-            return new SubscriptionReflectionWeak(listenerClass, handler);
+            return new SubscriptionReflectionWeak(listenerClass, handler, weakListeners, mailboxErrorHandler);
         }
         else {
-            return new SubscriptionReflectionStrong(listenerClass, handler);
+            return new SubscriptionReflectionStrong(listenerClass, handler, strongListeners, mailboxErrorHandler);
         }
     }
 }
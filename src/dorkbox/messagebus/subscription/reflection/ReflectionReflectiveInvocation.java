@@ -37,6 +37,8 @@
  */
 package dorkbox.messagebus.subscription.reflection;
 
+import dorkbox.messagebus.subscription.Entry;
+
 import java.lang.reflect.Method;
 
 /**
@@ -57,19 +59,31 @@ class ReflectionReflectiveInvocation implements ReflectionInvocation {
 
     @Override
     public
-    void invoke(final Object listener, final Method handler, final Object message) throws Throwable {
+    void invoke(final Entry<?> entry, final Object listener, final Method handler, final Object message) throws Throwable {
         handler.invoke(listener, message);
     }
 
     @Override
     public
-    void invoke(final Object listener, final Method handler, final Object message1, final Object message2) throws Throwable {
+    Object invokeAndReturn(final Entry<?> entry, final Object listener, final Method handler, final Object message) throws Throwable {
+        return handler.invoke(listener, message);
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final Method handler, final Object message1, final Object message2) throws Throwable {
         handler.invoke(listener, message1, message2);
     }
 
     @Override
     public
-    void invoke(final Object listener, final Method handler, final Object message1, final Object message2, final Object message3) throws Throwable {
+    void invoke(final Entry<?> entry, final Object listener, final Method handler, final Object message1, final Object message2, final Object message3) throws Throwable {
         handler.invoke(listener, message1, message2, message3);
     }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, final Method handler, final Object[] messages) throws Throwable {
+        handler.invoke(listener, messages);
+    }
 }
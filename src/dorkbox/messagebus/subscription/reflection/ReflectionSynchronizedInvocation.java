@@ -37,6 +37,8 @@
  */
 package dorkbox.messagebus.subscription.reflection;
 
+import dorkbox.messagebus.subscription.Entry;
+
 import java.lang.reflect.Method;
 
 /**
@@ -59,25 +61,41 @@ class ReflectionSynchronizedInvocation implements ReflectionInvocation {
 
     @Override
     public
-    void invoke(final Object listener, final Method handler, final Object message) throws Throwable {
+    void invoke(final Entry<?> entry, final Object listener, final Method handler, final Object message) throws Throwable {
+        synchronized (listener) {
+            this.delegate.invoke(entry, listener, handler, message);
+        }
+    }
+
+    @Override
+    public
+    Object invokeAndReturn(final Entry<?> entry, final Object listener, final Method handler, final Object message) throws Throwable {
+        synchronized (listener) {
+            return this.delegate.invokeAndReturn(entry, listener, handler, message);
+        }
+    }
+
+    @Override
+    public
+    void invoke(final Entry<?> entry, final Object listener, Method handler, final Object message1, final Object message2) throws Throwable {
         synchronized (listener) {
-            this.delegate.invoke(listener, handler, message);
+            this.delegate.invoke(entry, listener, handler, message1, message2);
         }
     }
 
     @Override
     public
-    void invoke(final Object listener, Method handler, final Object message1, final Object message2) throws Throwable {
+    void invoke(final Entry<?> entry, final Object listener, final Method handler, final Object message1, final Object message2, final Object message3) throws Throwable {
         synchronized (listener) {
-            this.delegate.invoke(listener, handler, message1, message2);
+            this.delegate.invoke(entry, listener, handler, message1, message2, message3);
         }
     }
 
     @Override
     public
-    void invoke(final Object listener, final Method handler, final Object message1, final Object message2, final Object message3) throws Throwable {
+    void invoke(final Entry<?> entry, final Object listener, final Method handler, final Object[] messages) throws Throwable {
         synchronized (listener) {
-            this.delegate.invoke(listener, handler, message1, message2, message3);
+            this.delegate.invoke(entry, listener, handler, messages);
         }
     }
 }
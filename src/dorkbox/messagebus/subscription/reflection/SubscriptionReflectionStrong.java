@@ -37,10 +37,11 @@
  */
 package dorkbox.messagebus.subscription.reflection;
 
+import dorkbox.messagebus.common.MessageCollector;
 import dorkbox.messagebus.common.MessageHandler;
 import dorkbox.messagebus.error.ErrorHandler;
-import dorkbox.messagebus.error.PublicationError;
 import dorkbox.messagebus.subscription.Entry;
+import dorkbox.messagebus.subscription.ListenerList;
 import dorkbox.messagebus.subscription.Subscription;
 
 import java.lang.reflect.Method;
@@ -66,14 +67,24 @@ class SubscriptionReflectionStrong extends Subscription<Object> {
     private final Method method;
     private final ReflectionInvocation invocation;
 
+    /**
+     * @param mailboxErrorHandler if not null, @Synchronized handlers are executed via the mailbox of the listener (instead of
+     *                            synchronizing on the listener), and report their errors here
+     */
     public
-    SubscriptionReflectionStrong(final Class<?> listenerClass, final MessageHandler handler) {
+    SubscriptionReflectionStrong(final Class<?> listenerClass, final MessageHandler handler, final ListenerList listeners,
+                                 final ErrorHandler mailboxErrorHandler) {
         // we use "normal java" here
-        super(listenerClass, handler);
+        super(listenerClass, handler, listeners, mailboxErrorHandler != null);
 
         ReflectionInvocation invocation = new ReflectionReflectiveInvocation();
         if (handler.isSynchronized()) {
-            invocation = new ReflectionSynchronizedInvocation(invocation);
+            if (mailboxErrorHandler != null) {
+                invocation = new ReflectionMailboxInvocation(invocation, mailboxErrorHandler);
+            }
+            else {
+                invocation = new ReflectionSynchronizedInvocation(invocation);
+            }
         }
 
         this.invocation = invocation;
@@ -92,19 +103,49 @@ class SubscriptionReflectionStrong extends Subscription<Object> {
         final Method method = this.method;
         final ReflectionInvocation invocation = this.invocation;
 
-        Entry head = headREF.get(this);
-        Entry current = head;
+        Entry<Object> head = head();
+        Entry<Object> current = head;
+        Entry<Object> entry;
+        Object listener;
+        while (current != null) {
+            listener = current.getValue();
+            entry = current;
+            current = current.next();
+
+            try {
+                invocation.invoke(entry, listener, method, message);
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, message);
+            }
+        }
+
+        return head != null;  // true if we have something to publish to, otherwise false
+    }
+
+    @Override
+    public
+    boolean publishAndCollect(final ErrorHandler errorHandler, final Object message, final MessageCollector<?> collector) {
+        final Method method = this.method;
+        final ReflectionInvocation invocation = this.invocation;
+        final boolean hasReturnValue = this.hasReturnValue;
+
+        Entry<Object> head = head();
+        Entry<Object> current = head;
+        Entry<Object> entry;
         Object listener;
+        Object result;
         while (current != null) {
             listener = current.getValue();
+            entry = current;
             current = current.next();
 
             try {
-                invocation.invoke(listener, method, message);
+                result = invocation.invokeAndReturn(entry, listener, method, message);
+                if (hasReturnValue) {
+                    collector.collect(result);
+                }
             } catch (Throwable e) {
-                errorHandler.handlePublicationError(new PublicationError().setMessage("Error during publication of message.")
-                                                                          .setCause(e)
-                                                                          .setPublishedObject(message));
+                errorHandler.handlePublicationError("Error during publication of message.", e, message);
             }
         }
 
@@ -117,19 +158,19 @@ class SubscriptionReflectionStrong extends Subscription<Object> {
         final Method method = this.method;
         final ReflectionInvocation invocation = this.invocation;
 
-        Entry head = headREF.get(this);
-        Entry current = head;
+        Entry<Object> head = head();
+        Entry<Object> current = head;
+        Entry<Object> entry;
         Object listener;
         while (current != null) {
             listener = current.getValue();
+            entry = current;
             current = current.next();
 
             try {
-                invocation.invoke(listener, method, message1, message2);
+                invocation.invoke(entry, listener, method, message1, message2);
             } catch (Throwable e) {
-                errorHandler.handlePublicationError(new PublicationError().setMessage("Error during publication of message.")
-                                                                          .setCause(e)
-                                                                          .setPublishedObject(message1, message2));
+                errorHandler.handlePublicationError("Error during publication of message.", e, message1, message2);
             }
         }
 
@@ -142,19 +183,44 @@ class SubscriptionReflectionStrong extends Subscription<Object> {
         final Method method = this.method;
         final ReflectionInvocation invocation = this.invocation;
 
-        Entry head = headREF.get(this);
-        Entry current = head;
+        Entry<Object> head = head();
+        Entry<Object> current = head;
+        Entry<Object> entry;
+        Object listener;
+        while (current != null) {
+            listener = current.getValue();
+            entry = current;
+            current = current.next();
+
+            try {
+                invocation.invoke(entry, listener, method, message1, message2, message3);
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, message1, message2, message3);
+            }
+        }
+
+        return head != null;  // true if we have something to publish to, otherwise false
+    }
+
+    @Override
+    public
+    boolean publish(final ErrorHandler errorHandler, final Object[] messages) {
+        final Method method = this.method;
+        final ReflectionInvocation invocation = this.invocation;
+
+        Entry<Object> head = head();
+        Entry<Object> current = head;
+        Entry<Object> entry;
         Object listener;
         while (current != null) {
             listener = current.getValue();
+            entry = current;
             current = current.next();
 
             try {
-                invocation.invoke(listener, method, message1, message2, message3);
+                invocation.invoke(entry, listener, method, messages);
             } catch (Throwable e) {
-                errorHandler.handlePublicationError(new PublicationError().setMessage("Error during publication of message.")
-                                                                          .setCause(e)
-                                                                          .setPublishedObject(message1, message2, message3));
+                errorHandler.handlePublicationError("Error during publication of message.", e, messages);
             }
         }
 
@@ -37,10 +37,11 @@
  */
 package dorkbox.messagebus.subscription.reflection;
 
+import dorkbox.messagebus.common.MessageCollector;
 import dorkbox.messagebus.common.MessageHandler;
 import dorkbox.messagebus.error.ErrorHandler;
-import dorkbox.messagebus.error.PublicationError;
 import dorkbox.messagebus.subscription.Entry;
+import dorkbox.messagebus.subscription.ListenerList;
 import dorkbox.messagebus.subscription.Subscription;
 
 import java.lang.ref.WeakReference;
@@ -64,19 +65,27 @@ import java.lang.reflect.Method;
 @SuppressWarnings("Duplicates")
 final
 class SubscriptionReflectionWeak extends Subscription<WeakReference<Object>> {
-    private final Object singleWriterLock = new Object();
-
     private final Method method;
     private final ReflectionInvocation invocation;
 
+    /**
+     * @param mailboxErrorHandler if not null, @Synchronized handlers are executed via the mailbox of the listener (instead of
+     *                            synchronizing on the listener), and report their errors here
+     */
     public
-    SubscriptionReflectionWeak(final Class<?> listenerClass, final MessageHandler handler) {
+    SubscriptionReflectionWeak(final Class<?> listenerClass, final MessageHandler handler, final ListenerList listeners,
+                               final ErrorHandler mailboxErrorHandler) {
         // we use "normal java" here
-        super(listenerClass, handler);
+        super(listenerClass, handler, listeners, mailboxErrorHandler != null);
 
         ReflectionInvocation invocation = new ReflectionReflectiveInvocation();
         if (handler.isSynchronized()) {
-            invocation = new ReflectionSynchronizedInvocation(invocation);
+            if (mailboxErrorHandler != null) {
+                invocation = new ReflectionMailboxInvocation(invocation, mailboxErrorHandler);
+            }
+            else {
+                invocation = new ReflectionSynchronizedInvocation(invocation);
+            }
         }
 
         this.invocation = invocation;
@@ -90,32 +99,58 @@ class SubscriptionReflectionWeak extends Subscription<WeakReference<Object>> {
     }
 
     @Override
-    public
-    void subscribe(final Object listener) {
-        // extra locking to ensure the single-writer-principle (with regards to how cleaning up orphans works)
-        synchronized (singleWriterLock) {
-            super.subscribe(listener);
-        }
+    protected
+    Object getListener(final Entry<WeakReference<Object>> entry) {
+        return entry.getValue().get();
     }
 
     @Override
     public
-    void unsubscribe(final Object listener) {
-        // extra locking to ensure the single-writer-principle (with regards to how cleaning up orphans works)
-        synchronized (singleWriterLock) {
-            super.unsubscribe(listener);
+    boolean publish(final ErrorHandler errorHandler, final Object message) {
+        final Method method = this.method;
+        final ReflectionInvocation invocation = this.invocation;
+
+        Entry<WeakReference<Object>> head = cast(head());
+        Entry<WeakReference<Object>> current = head;
+        Entry<WeakReference<Object>> entry;
+        Object listener;
+        while (current != null) {
+            listener = current.getValue().get();
+            if (listener == null) {
+                Entry<WeakReference<Object>> next = current.next();
+
+                synchronized (singleWriterLock) {
+                    removeNode(current); // this means it has been garbage collected!! we need to clean up ourselves
+                }
+                current = next;
+                continue;
+            }
+            entry = current;
+            current = current.next();
+
+            try {
+                invocation.invoke(entry, listener, method, message);
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, message);
+            }
         }
+
+        // because the value can be GC'd at any time, this is the best guess possible
+        return head != null && head.getValue() != null;  // true if we have something to publish to, otherwise false
     }
 
     @Override
     public
-    boolean publish(final ErrorHandler errorHandler, final Object message) {
+    boolean publishAndCollect(final ErrorHandler errorHandler, final Object message, final MessageCollector<?> collector) {
         final Method method = this.method;
         final ReflectionInvocation invocation = this.invocation;
+        final boolean hasReturnValue = this.hasReturnValue;
 
-        Entry<WeakReference<Object>> head = cast(headREF.get(this));
+        Entry<WeakReference<Object>> head = cast(head());
         Entry<WeakReference<Object>> current = head;
+        Entry<WeakReference<Object>> entry;
         Object listener;
+        Object result;
         while (current != null) {
             listener = current.getValue().get();
             if (listener == null) {
@@ -127,14 +162,16 @@ class SubscriptionReflectionWeak extends Subscription<WeakReference<Object>> {
                 current = next;
                 continue;
             }
+            entry = current;
             current = current.next();
 
             try {
-                invocation.invoke(listener, method, message);
+                result = invocation.invokeAndReturn(entry, listener, method, message);
+                if (hasReturnValue) {
+                    collector.collect(result);
+                }
             } catch (Throwable e) {
-                errorHandler.handlePublicationError(new PublicationError().setMessage("Error during publication of message.")
-                                                                          .setCause(e)
-                                                                          .setPublishedObject(message));
+                errorHandler.handlePublicationError("Error during publication of message.", e, message);
             }
         }
 
@@ -148,8 +185,9 @@ class SubscriptionReflectionWeak extends Subscription<WeakReference<Object>> {
         final Method method = this.method;
         final ReflectionInvocation invocation = this.invocation;
 
-        Entry<WeakReference<Object>> head = cast(headREF.get(this));
+        Entry<WeakReference<Object>> head = cast(head());
         Entry<WeakReference<Object>> current = head;
+        Entry<WeakReference<Object>> entry;
         Object listener;
         while (current != null) {
             listener = current.getValue().get();
@@ -162,14 +200,13 @@ class SubscriptionReflectionWeak extends Subscription<WeakReference<Object>> {
                 current = next;
                 continue;
             }
+            entry = current;
             current = current.next();
 
             try {
-                invocation.invoke(listener, method, message1, message2);
+                invocation.invoke(entry, listener, method, message1, message2);
             } catch (Throwable e) {
-                errorHandler.handlePublicationError(new PublicationError().setMessage("Error during publication of message.")
-                                                                          .setCause(e)
-                                                                          .setPublishedObject(message1, message2));
+                errorHandler.handlePublicationError("Error during publication of message.", e, message1, message2);
             }
         }
 
@@ -183,8 +220,44 @@ class SubscriptionReflectionWeak extends Subscription<WeakReference<Object>> {
         final Method method = this.method;
         final ReflectionInvocation invocation = this.invocation;
 
-        Entry<WeakReference<Object>> head = cast(headREF.get(this));
+        Entry<WeakReference<Object>> head = cast(head());
+        Entry<WeakReference<Object>> current = head;
+        Entry<WeakReference<Object>> entry;
+        Object listener;
+        while (current != null) {
+            listener = current.getValue().get();
+            if (listener == null) {
+                Entry<WeakReference<Object>> next = current.next();
+
+                synchronized (singleWriterLock) {
+                    removeNode(current); // this means it has been garbage collected!! we need to clean up ourselves
+                }
+                current = next;
+                continue;
+            }
+            entry = current;
+            current = current.next();
+
+            try {
+                invocation.invoke(entry, listener, method, message1, message2, message3);
+            } catch (Throwable e) {
+                errorHandler.handlePublicationError("Error during publication of message.", e, message1, message2, message3);
+            }
+        }
+
+        // because the value can be GC'd at any time, this is the best guess possible
+        return head != null && head.getValue() != null;  // true if we have something to publish to, otherwise false
+    }
+
+    @Override
+    public
+    boolean publish(final ErrorHandler errorHandler, final Object[] messages) {
+        final Method method = this.method;
+        final ReflectionInvocation invocation = this.invocation;
+
+        Entry<WeakReference<Object>> head = cast(head());
         Entry<WeakReference<Object>> current = head;
+        Entry<WeakReference<Object>> entry;
         Object listener;
         while (current != null) {
             listener = current.getValue().get();
@@ -197,14 +270,13 @@ class SubscriptionReflectionWeak extends Subscription<WeakReference<Object>> {
                 current = next;
                 continue;
             }
+            entry = current;
             current = current.next();
 
             try {
-                invocation.invoke(listener, method, message1, message2, message3);
+                invocation.invoke(entry, listener, method, messages);
             } catch (Throwable e) {
-                errorHandler.handlePublicationError(new PublicationError().setMessage("Error during publication of message.")
-                                                                          .setCause(e)
-                                                                          .setPublishedObject(message1, message2, message3));
+                errorHandler.handlePublicationError("Error during publication of message.", e, messages);
             }
         }
 
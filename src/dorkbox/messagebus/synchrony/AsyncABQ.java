@@ -15,6 +15,7 @@
  */
 package dorkbox.messagebus.synchrony;
 
+import dorkbox.messagebus.common.CollectFuture;
 import dorkbox.messagebus.util.NamedThreadFactory;
 import dorkbox.messagebus.error.ErrorHandler;
 import dorkbox.messagebus.error.PublicationError;
@@ -99,6 +100,7 @@ class AsyncABQ implements Synchrony {
         Object message1 = null;
         Object message2 = null;
         Object message3 = null;
+        Object[] messages = null;
 
         try {
             event = queue.take();
@@ -108,8 +110,25 @@ class AsyncABQ implements Synchrony {
             message1 = event.message1;
             message2 = event.message2;
             message3 = event.message3;
+            messages = event.messages;
 
             switch (messageType) {
+                case MessageType.INT: {
+                    dispatch.publish((int) event.longValue);
+                    return;
+                }
+                case MessageType.LONG: {
+                    dispatch.publish(event.longValue);
+                    return;
+                }
+                case MessageType.DOUBLE: {
+                    dispatch.publish(event.doubleValue);
+                    return;
+                }
+                case MessageType.COLLECT: {
+                    ((CollectFuture<?>) message2).publish(dispatch, message1);
+                    return;
+                }
                 case MessageType.ONE: {
                     dispatch.publish(message1);
                     return;
@@ -120,6 +139,10 @@ class AsyncABQ implements Synchrony {
                 }
                 case MessageType.THREE: {
                     dispatch.publish(message1, message2, message3);
+                    return;
+                }
+                case MessageType.MANY: {
+                    dispatch.publish(messages);
                     //noinspection UnnecessaryReturnStatement
                     return;
                 }
@@ -143,6 +166,12 @@ class AsyncABQ implements Synchrony {
                         errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message dequeue.")
                                                                                   .setCause(e)
                                                                                   .setPublishedObject(message1, message2, message3));
+                        return;
+                    }
+                    case MessageType.MANY: {
+                        errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message dequeue.")
+                                                                                  .setCause(e)
+                                                                                  .setPublishedObjects(messages));
                         //noinspection UnnecessaryReturnStatement
                         return;
                     }
@@ -211,6 +240,104 @@ class AsyncABQ implements Synchrony {
         }
     }
 
+    @Override
+    public
+    void publish(final Dispatch dispatch, final Object[] messages) {
+        MessageHolder job = new MessageHolder();
+
+        job.type = MessageType.MANY;
+        job.dispatch = dispatch;
+
+        // the caller reuses the array
+        job.messages = messages.clone();
+
+        try {
+            this.dispatchQueue.put(job);
+        } catch (InterruptedException e) {
+            errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message queue.")
+                                                                      .setCause(e)
+                                                                      .setPublishedObjects(job.messages));
+        }
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final int message) {
+        MessageHolder job = new MessageHolder();
+
+        job.type = MessageType.INT;
+        job.dispatch = dispatch;
+
+        job.longValue = message;
+
+        try {
+            this.dispatchQueue.put(job);
+        } catch (InterruptedException e) {
+            errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message queue.")
+                                                                      .setCause(e)
+                                                                      .setPublishedObject(message));
+        }
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final long message) {
+        MessageHolder job = new MessageHolder();
+
+        job.type = MessageType.LONG;
+        job.dispatch = dispatch;
+
+        job.longValue = message;
+
+        try {
+            this.dispatchQueue.put(job);
+        } catch (InterruptedException e) {
+            errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message queue.")
+                                                                      .setCause(e)
+                                                                      .setPublishedObject(message));
+        }
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final double message) {
+        MessageHolder job = new MessageHolder();
+
+        job.type = MessageType.DOUBLE;
+        job.dispatch = dispatch;
+
+        job.doubleValue = message;
+
+        try {
+            this.dispatchQueue.put(job);
+        } catch (InterruptedException e) {
+            errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message queue.")
+                                                                      .setCause(e)
+                                                                      .setPublishedObject(message));
+        }
+    }
+
+    @Override
+    public
+    void publishAndCollect(final Dispatch dispatch, final Object message, final CollectFuture<?> future) {
+        MessageHolder job = new MessageHolder();
+
+        job.type = MessageType.COLLECT;
+        job.dispatch = dispatch;
+
+        job.message1 = message;
+        job.message2 = future;
+
+        try {
+            this.dispatchQueue.put(job);
+        } catch (InterruptedException e) {
+            errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message queue.")
+                                                                      .setCause(e)
+                                                                      .setPublishedObject(message));
+            future.fail(e);
+        }
+    }
+
     @Override
     public
     boolean hasPendingMessages() {
@@ -15,6 +15,8 @@
  */
 package dorkbox.messagebus.synchrony;
 
+import dorkbox.messagebus.common.CollectFuture;
+import dorkbox.messagebus.common.MessageCarrier;
 import dorkbox.messagebus.util.NamedThreadFactory;
 import dorkbox.messagebus.error.ErrorHandler;
 import dorkbox.messagebus.error.PublicationError;
@@ -113,6 +115,9 @@ class AsyncABQ_noGc implements Synchrony {
         Object message1 = null;
         Object message2 = null;
         Object message3 = null;
+        Object[] messages = null;
+        long longValue;
+        double doubleValue;
 
         try {
             event = queue.take();
@@ -122,22 +127,56 @@ class AsyncABQ_noGc implements Synchrony {
             message1 = event.message1;
             message2 = event.message2;
             message3 = event.message3;
+            longValue = event.longValue;
+            doubleValue = event.doubleValue;
 
-            gcQueue.put(event);
+            if (messageType == MessageType.MANY) {
+                // the holder is reused as soon as it is back in the gcQueue, so copy the messages into our own (reusable) array
+                messages = MessageCarrier.acquire(event.messages.length);
+                System.arraycopy(event.messages, 0, messages, 0, messages.length);
+            }
 
-            switch (messageType) {
-                case MessageType.ONE: {
-                    dispatch.publish(message1);
-                    return;
-                }
-                case MessageType.TWO: {
-                    dispatch.publish(message1, message2);
-                    return;
+            try {
+                gcQueue.put(event);
+
+                switch (messageType) {
+                    case MessageType.ONE: {
+                        dispatch.publish(message1);
+                        return;
+                    }
+                    case MessageType.TWO: {
+                        dispatch.publish(message1, message2);
+                        return;
+                    }
+                    case MessageType.THREE: {
+                        dispatch.publish(message1, message2, message3);
+                        return;
+                    }
+                    case MessageType.MANY: {
+                        dispatch.publish(messages);
+                        return;
+                    }
+                    case MessageType.INT: {
+                        dispatch.publish((int) longValue);
+                        return;
+                    }
+                    case MessageType.LONG: {
+                        dispatch.publish(longValue);
+                        return;
+                    }
+                    case MessageType.DOUBLE: {
+                        dispatch.publish(doubleValue);
+                        return;
+                    }
+                    case MessageType.COLLECT: {
+                        ((CollectFuture<?>) message2).publish(dispatch, message1);
+                        //noinspection UnnecessaryReturnStatement
+                        return;
+                    }
                 }
-                case MessageType.THREE: {
-                    dispatch.publish(message1, message2, message3);
-                    //noinspection UnnecessaryReturnStatement
-                    return;
+            } finally {
+                if (messages != null) {
+                    MessageCarrier.release(messages);
                 }
             }
         } catch (InterruptedException e) {
@@ -162,6 +201,23 @@ class AsyncABQ_noGc implements Synchrony {
                         //noinspection UnnecessaryReturnStatement
                         return;
                     }
+                    // the messages for MANY were released by the time we get here (and primitives are not boxed)
+                    case MessageType.MANY:
+                    case MessageType.INT:
+                    case MessageType.LONG:
+                    case MessageType.DOUBLE: {
+                        errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message dequeue.")
+                                                                                  .setCause(e));
+                        return;
+                    }
+                    case MessageType.COLLECT: {
+                        errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message dequeue.")
+                                                                                  .setCause(e)
+                                                                                  .setPublishedObject(message1));
+                        ((CollectFuture<?>) message2).fail(e);
+                        //noinspection UnnecessaryReturnStatement
+                        return;
+                    }
                 }
             }
         }
@@ -227,6 +283,103 @@ class AsyncABQ_noGc implements Synchrony {
         }
     }
 
+    @Override
+    public
+    void publish(final Dispatch dispatch, final Object[] messages) {
+        try {
+            MessageHolder job = gcQueue.take();
+
+            job.type = MessageType.MANY;
+            job.dispatch = dispatch;
+
+            job.setMessages(messages);
+
+            this.dispatchQueue.put(job);
+        } catch (InterruptedException e) {
+            errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message queue.")
+                                                                      .setCause(e)
+                                                                      .setPublishedObjects(messages.clone()));
+        }
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final int message) {
+        try {
+            MessageHolder job = gcQueue.take();
+
+            job.type = MessageType.INT;
+            job.dispatch = dispatch;
+
+            job.longValue = message;
+
+            this.dispatchQueue.put(job);
+        } catch (InterruptedException e) {
+            errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message queue.")
+                                                                      .setCause(e)
+                                                                      .setPublishedObject(message));
+        }
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final long message) {
+        try {
+            MessageHolder job = gcQueue.take();
+
+            job.type = MessageType.LONG;
+            job.dispatch = dispatch;
+
+            job.longValue = message;
+
+            this.dispatchQueue.put(job);
+        } catch (InterruptedException e) {
+            errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message queue.")
+                                                                      .setCause(e)
+                                                                      .setPublishedObject(message));
+        }
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final double message) {
+        try {
+            MessageHolder job = gcQueue.take();
+
+            job.type = MessageType.DOUBLE;
+            job.dispatch = dispatch;
+
+            job.doubleValue = message;
+
+            this.dispatchQueue.put(job);
+        } catch (InterruptedException e) {
+            errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message queue.")
+                                                                      .setCause(e)
+                                                                      .setPublishedObject(message));
+        }
+    }
+
+    @Override
+    public
+    void publishAndCollect(final Dispatch dispatch, final Object message, final CollectFuture<?> future) {
+        try {
+            MessageHolder job = gcQueue.take();
+
+            job.type = MessageType.COLLECT;
+            job.dispatch = dispatch;
+
+            job.message1 = message;
+            job.message2 = future;
+
+            this.dispatchQueue.put(job);
+        } catch (InterruptedException e) {
+            errorHandler.handlePublicationError(new PublicationError().setMessage("Interrupted error during message queue.")
+                                                                      .setCause(e)
+                                                                      .setPublishedObject(message));
+            future.fail(e);
+        }
+    }
+
     @Override
     public
     boolean hasPendingMessages() {
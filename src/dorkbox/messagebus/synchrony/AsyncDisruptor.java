@@ -23,6 +23,7 @@ import com.lmax.disruptor.SequenceBarrier;
 import com.lmax.disruptor.Sequencer;
 import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.WorkProcessor;
+import dorkbox.messagebus.common.CollectFuture;
 import dorkbox.messagebus.util.NamedThreadFactory;
 import dorkbox.messagebus.dispatch.Dispatch;
 import dorkbox.messagebus.error.ErrorHandler;
@@ -167,8 +168,84 @@ class AsyncDisruptor implements Synchrony {
         job.dispatch = dispatch;
 
         job.message1 = message1;
-        job.message3 = message2;
-        job.message2 = message3;
+        job.message2 = message2;
+        job.message3 = message3;
+
+        ringBuffer.publish(seq);
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final Object[] messages) {
+        long seq = ringBuffer.next();
+
+        MessageHolder job = ringBuffer.get(seq);
+
+        job.type = MessageType.MANY;
+        job.dispatch = dispatch;
+
+        job.setMessages(messages);
+
+        ringBuffer.publish(seq);
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final int message) {
+        long seq = ringBuffer.next();
+
+        MessageHolder job = ringBuffer.get(seq);
+
+        job.type = MessageType.INT;
+        job.dispatch = dispatch;
+
+        job.longValue = message;
+
+        ringBuffer.publish(seq);
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final long message) {
+        long seq = ringBuffer.next();
+
+        MessageHolder job = ringBuffer.get(seq);
+
+        job.type = MessageType.LONG;
+        job.dispatch = dispatch;
+
+        job.longValue = message;
+
+        ringBuffer.publish(seq);
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final double message) {
+        long seq = ringBuffer.next();
+
+        MessageHolder job = ringBuffer.get(seq);
+
+        job.type = MessageType.DOUBLE;
+        job.dispatch = dispatch;
+
+        job.doubleValue = message;
+
+        ringBuffer.publish(seq);
+    }
+
+    @Override
+    public
+    void publishAndCollect(final Dispatch dispatch, final Object message, final CollectFuture<?> future) {
+        long seq = ringBuffer.next();
+
+        MessageHolder job = ringBuffer.get(seq);
+
+        job.type = MessageType.COLLECT;
+        job.dispatch = dispatch;
+
+        job.message1 = message;
+        job.message2 = future;
 
         ringBuffer.publish(seq);
     }
@@ -15,6 +15,7 @@
  */
 package dorkbox.messagebus.synchrony;
 
+import dorkbox.messagebus.common.MessageHandler;
 import dorkbox.messagebus.dispatch.Dispatch;
 import dorkbox.messagebus.synchrony.disruptor.MessageType;
 
@@ -30,6 +31,30 @@ class MessageHolder {
     public Object message2 = null;
     public Object message3 = null;
 
+    // only for more than three messages. This array belongs to this holder, and is reused
+    public Object[] messages = null;
+    private final Object[][] messagesByCount = new Object[MessageHandler.MAX_MESSAGES + 1][];
+
+    // only for a single primitive message (ints are also stored in 'longValue'), so they do not have to be boxed
+    public long longValue = 0L;
+    public double doubleValue = 0.0D;
+
     public
     MessageHolder() {}
+
+    /**
+     * Copies the messages into an array that belongs to this holder (so the caller can reuse its array).
+     */
+    public
+    void setMessages(final Object[] messages) {
+        final int length = messages.length;
+
+        Object[] copy = messagesByCount[length];
+        if (copy == null) {
+            copy = messagesByCount[length] = new Object[length];
+        }
+
+        System.arraycopy(messages, 0, copy, 0, length);
+        this.messages = copy;
+    }
 }
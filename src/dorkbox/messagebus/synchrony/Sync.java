@@ -15,6 +15,7 @@
  */
 package dorkbox.messagebus.synchrony;
 
+import dorkbox.messagebus.common.CollectFuture;
 import dorkbox.messagebus.dispatch.Dispatch;
 
 
@@ -46,6 +47,36 @@ class Sync implements Synchrony {
         dispatch.publish(message1, message2, message3);
     }
 
+    @Override
+    public
+    void publish(final Dispatch dispatch, final Object[] messages) {
+        dispatch.publish(messages);
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final int message) {
+        dispatch.publish(message);
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final long message) {
+        dispatch.publish(message);
+    }
+
+    @Override
+    public
+    void publish(final Dispatch dispatch, final double message) {
+        dispatch.publish(message);
+    }
+
+    @Override
+    public
+    void publishAndCollect(final Dispatch dispatch, final Object message, final CollectFuture<?> future) {
+        future.publish(dispatch, message);
+    }
+
     @Override
     public
     void shutdown() {
@@ -15,6 +15,7 @@
  */
 package dorkbox.messagebus.synchrony;
 
+import dorkbox.messagebus.common.CollectFuture;
 import dorkbox.messagebus.dispatch.Dispatch;
 
 /**
@@ -26,6 +27,23 @@ interface Synchrony {
     void publish(Dispatch dispatch, Object message1, Object message2);
     void publish(Dispatch dispatch, Object message1, Object message2, Object message3);
 
+    /**
+     * Publishes more than three messages. The array is reused by the caller, so asynchronous implementations must copy it.
+     */
+    void publish(Dispatch dispatch, Object[] messages);
+
+    /**
+     * Publishes a single primitive message, without boxing it.
+     */
+    void publish(Dispatch dispatch, int message);
+    void publish(Dispatch dispatch, long message);
+    void publish(Dispatch dispatch, double message);
+
+    /**
+     * Publishes the message, collects the return values of the handlers and then completes the future.
+     */
+    void publishAndCollect(Dispatch dispatch, Object message, CollectFuture<?> future);
+
     void shutdown();
     boolean hasPendingMessages();
 }
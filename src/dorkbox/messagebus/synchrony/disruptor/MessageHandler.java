@@ -17,6 +17,7 @@ package dorkbox.messagebus.synchrony.disruptor;
 
 import com.lmax.disruptor.LifecycleAware;
 import com.lmax.disruptor.WorkHandler;
+import dorkbox.messagebus.common.CollectFuture;
 import dorkbox.messagebus.synchrony.MessageHolder;
 
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -49,6 +50,27 @@ class MessageHandler implements WorkHandler<MessageHolder>, LifecycleAware {
             }
             case MessageType.THREE: {
                 event.dispatch.publish(event.message1, event.message2, event.message3);
+                return;
+            }
+            case MessageType.MANY: {
+                // the messages belong to the ring-buffer entry, which is not reused until we are finished with it
+                event.dispatch.publish(event.messages);
+                return;
+            }
+            case MessageType.INT: {
+                event.dispatch.publish((int) event.longValue);
+                return;
+            }
+            case MessageType.LONG: {
+                event.dispatch.publish(event.longValue);
+                return;
+            }
+            case MessageType.DOUBLE: {
+                event.dispatch.publish(event.doubleValue);
+                return;
+            }
+            case MessageType.COLLECT: {
+                ((CollectFuture<?>) event.message2).publish(event.dispatch, event.message1);
                 //noinspection UnnecessaryReturnStatement
                 return;
             }
@@ -22,6 +22,15 @@ public final class MessageType {
     public static final int ONE = 1;
     public static final int TWO = 2;
     public static final int THREE = 3;
+    public static final int MANY = 4; // more than three, they are in MessageHolder.messages
+
+    // a single primitive message, which is NOT boxed. They are in MessageHolder.longValue/doubleValue
+    public static final int INT = 5;
+    public static final int LONG = 6;
+    public static final int DOUBLE = 7;
+
+    // publishAndCollect. The message is in MessageHolder.message1, the CollectFuture in MessageHolder.message2
+    public static final int COLLECT = 8;
 
     private MessageType() {
     }
@@ -15,13 +15,8 @@
  */
 package dorkbox.messagebus.util;
 
-import com.esotericsoftware.kryo.util.IdentityMap;
-import dorkbox.messagebus.subscription.SubscriptionManager;
-
 import java.lang.reflect.Array;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * @author dorkbox
@@ -30,28 +25,23 @@ import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 public final
 class ClassUtils {
 
-    private volatile IdentityMap<Class<?>, Class<?>> arrayCache;
-    private volatile IdentityMap<Class<?>, Class<?>[]> superClassesCache;
-
-    // Recommended for best performance while adhering to the "single writer principle". Must be static-final
-    private static final AtomicReferenceFieldUpdater<ClassUtils, IdentityMap> arrayREF =
-                    AtomicReferenceFieldUpdater.newUpdater(ClassUtils.class,
-                                                           IdentityMap.class,
-                                                           "arrayCache");
+    // these are bounded, since every distinct class (lambdas, proxies, generated classes, etc) would otherwise be kept forever
+    private final ClockCache<Class<?>> arrayCache;
+    private final ClockCache<Class<?>[]> superClassesCache; // only for arrays, the lattice has the super types of all other classes
 
-    private static final AtomicReferenceFieldUpdater<ClassUtils, IdentityMap> superClassesREF =
-                    AtomicReferenceFieldUpdater.newUpdater(ClassUtils.class,
-                                                           IdentityMap.class,
-                                                           "superClassesCache");
+    private final TypeLattice typeLattice = new TypeLattice();
 
     /**
-     * These data structures are never reset because the class hierarchy doesn't change at runtime. This class uses the "single writer
-     * principle" for storing data, EVEN THOUGH it's not accessed by a single writer. This DOES NOT MATTER because duplicates DO NOT matter
+     * These data structures are never reset because the class hierarchy doesn't change at runtime, however the least recently used
+     * entries are evicted once they are full. Duplicates DO NOT matter.
+     *
+     * @param maxCacheSize the maximum number of classes to cache
+     * @param recordStats true if cache hits should be counted
      */
     public
-    ClassUtils() {
-        this.arrayCache = new IdentityMap<Class<?>, Class<?>>(32, SubscriptionManager.LOAD_FACTOR);
-        this.superClassesCache = new IdentityMap<Class<?>, Class<?>[]>(32, SubscriptionManager.LOAD_FACTOR);
+    ClassUtils(final int maxCacheSize, final boolean recordStats) {
+        this.arrayCache = new ClockCache<Class<?>>(maxCacheSize, recordStats);
+        this.superClassesCache = new ClockCache<Class<?>[]>(maxCacheSize, recordStats);
     }
 
     /**
@@ -59,50 +49,35 @@ class ClassUtils {
      * <p>
      * race conditions will result in DUPLICATE answers, which we don't care if happens
      * never returns null
-     * never reset (class hierarchy never changes during runtime)
+     * never reset (class hierarchy never changes during runtime), but can be evicted if it is not used
      */
     public
     Class<?>[] getSuperClasses(final Class<?> clazz) {
-        // access a snapshot of the subscriptions (single-writer-principle)
-        final IdentityMap<Class<?>, Class<?>[]> cache = cast(superClassesREF.get(this));
+        if (!clazz.isArray()) {
+            // resolved once per class (from the already resolved super types), and only cleared on shutdown
+            return typeLattice.getSuperTypes(clazz);
+        }
 
-        Class<?>[] classes = cache.get(clazz);
+        Class<?>[] classes = superClassesCache.get(clazz);
 
         // duplicates DO NOT MATTER
         if (classes == null) {
             // publish all super types of class
-            final Iterator<Class<?>> superTypesIterator = ReflectionUtils.getSuperTypes(clazz);
-            final ArrayList<Class<?>> newList = new ArrayList<Class<?>>(16);
+            final Class<?>[] superTypes = typeLattice.getSuperTypes(clazz);
+            final ArrayList<Class<?>> newList = new ArrayList<Class<?>>(superTypes.length);
 
             Class<?> c;
-            final boolean isArray = clazz.isArray();
-
-            if (isArray) {
-                while (superTypesIterator.hasNext()) {
-                    c = superTypesIterator.next();
-                    c = getArrayClass(c);
-
-                    if (c != clazz) {
-                        newList.add(c);
-                    }
-                }
-            }
-            else {
-                while (superTypesIterator.hasNext()) {
-                    c = superTypesIterator.next();
+            for (int i = 0; i < superTypes.length; i++) {
+                c = getArrayClass(superTypes[i]);
 
-                    if (c != clazz) {
-                        newList.add(c);
-                    }
+                if (c != clazz) {
+                    newList.add(c);
                 }
             }
 
             classes = new Class<?>[newList.size()];
             newList.toArray(classes);
-            cache.put(clazz, classes);
-
-            // save this snapshot back to the original (single writer principle)
-            superClassesREF.lazySet(this, cache);
+            classes = superClassesCache.put(clazz, classes);
         }
 
         return classes;
@@ -111,32 +86,42 @@ class ClassUtils {
     /**
      * race conditions will result in DUPLICATE answers, which we don't care if happens
      * never returns null
-     * never resets (class hierarchy never changes during runtime)
+     * never resets (class hierarchy never changes during runtime), but can be evicted if it is not used
      *
      * https://bugs.openjdk.java.net/browse/JDK-6525802  (fixed this in 2007, so Array.newInstance is just as fast (via intrinsics) new [])
      * Cache is in place to keep GC down.
      */
     public
     Class<?> getArrayClass(final Class<?> c) {
-        // access a snapshot of the subscriptions (single-writer-principle)
-        final IdentityMap<Class<?>, Class<?>> cache = cast(arrayREF.get(this));
-
-        Class<?> clazz = cache.get(c);
+        Class<?> clazz = arrayCache.get(c);
 
         if (clazz == null) {
             // messy, but the ONLY way to do it. Array super types are also arrays
             final Object[] newInstance = (Object[]) Array.newInstance(c, 0);
-            clazz = newInstance.getClass();
-            cache.put(c, clazz);
-
-            // save this snapshot back to the original (single writer principle)
-            arrayREF.lazySet(this, cache);
+            clazz = arrayCache.put(c, newInstance.getClass());
         }
 
         return clazz;
     }
 
 
+    /**
+     * @return true if a handler for the super type can receive the type (this is a bit test, except for arrays)
+     */
+    public
+    boolean isSuperType(final Class<?> superType, final Class<?> type) {
+        if (type.isArray()) {
+            return superType.isAssignableFrom(type);
+        }
+
+        return typeLattice.isSuperType(superType, type);
+    }
+
+    public
+    ClockCache<Class<?>[]> getSuperClassesCache() {
+        return this.superClassesCache;
+    }
+
     /**
      * Clears the caches, should only be called on shutdown
      */
@@ -144,11 +129,6 @@ class ClassUtils {
     void shutdown() {
         this.arrayCache.clear();
         this.superClassesCache.clear();
-    }
-
-    @SuppressWarnings("unchecked")
-    private static
-    <T> T cast(Object obj) {
-        return (T) obj;
+        this.typeLattice.clear();
     }
 }
@@ -0,0 +1,429 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.util;
+
+import java.util.Arrays;
+
+/**
+ * A size-bounded cache, keyed by one, two or three classes (compared by identity), that evicts entries using the CLOCK
+ * (second-chance) algorithm once it is full. Keys with more than three classes are looked up by the classes of the messages, so that
+ * publication does not have to create an array of classes.
+ * <p>
+ * This is used for the DERIVED tables (super-type lookups, array classes, etc) which can always be recalculated. Every distinct class
+ * that is published (lambdas, proxies, generated classes...) would otherwise add a permanent entry to these tables.
+ * <p>
+ * READS are lock-free and do not allocate. A hit only writes the "referenced" bit of the node, and only if it was not already set, so
+ * hot types do not keep dirtying the cache line.
+ * <p>
+ * WRITES (which only happen on a cache miss, after the expensive calculation has been done) are serialized by a lock. A reader racing
+ * with a writer might not see an entry that is being moved around, which simply results in a cache miss. Duplicate calculations DO NOT
+ * matter, because the writer will return the value that is already in the cache.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/2/16
+ */
+public final
+class ClockCache<V> {
+
+    private static final
+    class Node<V> {
+        private final Class<?> key1;
+        private final Class<?> key2;
+        private final Class<?> key3;
+        private final Class<?>[] keys; // only for more than 3 keys
+        private final int hash;
+        private final V value;
+
+        // the CLOCK "second chance" bit. Races here do not matter. New entries start without a second chance, so that classes which
+        // are only published once (lambdas, proxies, etc) are evicted before the hot types.
+        private boolean referenced = false;
+
+        private
+        Node(final Class<?> key1, final Class<?> key2, final Class<?> key3, final Class<?>[] keys, final int hash, final V value) {
+            this.key1 = key1;
+            this.key2 = key2;
+            this.key3 = key3;
+            this.keys = keys;
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+
+    private final int maxSize;
+    private final boolean recordStats;
+
+    // open addressing (linear probing). This is never resized, so it can be final.
+    private final Node<V>[] table;
+    private final int mask;
+
+    // ONLY touched by the writer. These are the resident nodes, in the order that the "clock hand" visits them
+    private final Node<V>[] clock;
+    private int clockHand = 0;
+    private int size = 0;
+
+    // statistics. 'hits' is racy (and approximate) on purpose, it is only updated if 'recordStats' is enabled.
+    private long hits = 0;
+    private volatile long misses = 0;
+    private volatile long evictions = 0;
+
+    /**
+     * @param maxSize the maximum number of entries this cache will keep before it starts to evict entries
+     * @param recordStats true if cache hits should be counted (misses and evictions are always counted, since they are rare)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public
+    ClockCache(final int maxSize, final boolean recordStats) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maximum size of the cache must be > 0");
+        }
+
+        this.maxSize = maxSize;
+        this.recordStats = recordStats;
+
+        // keep the load factor at or below 0.5, so that probe chains stay short
+        final int capacity = 1 << (32 - Integer.numberOfLeadingZeros(maxSize * 2 - 1));
+        this.table = new Node[capacity];
+        this.mask = capacity - 1;
+        this.clock = new Node[maxSize];
+    }
+
+    private static
+    int hash(final Class<?> key1, final Class<?> key2, final Class<?> key3) {
+        int h = System.identityHashCode(key1);
+        if (key2 != null) {
+            h = h * 31 + System.identityHashCode(key2);
+        }
+        if (key3 != null) {
+            h = h * 31 + System.identityHashCode(key3);
+        }
+
+        // spread the bits, since identity hash codes can have poor distribution in the lower bits
+        return h ^ (h >>> 16);
+    }
+
+    private static
+    int hashTypesOf(final Object[] messages) {
+        int h = 0;
+        for (int i = 0; i < messages.length; i++) {
+            h = h * 31 + System.identityHashCode(messages[i].getClass());
+        }
+
+        // spread the bits, since identity hash codes can have poor distribution in the lower bits
+        return h ^ (h >>> 16);
+    }
+
+    private static
+    boolean matchesTypesOf(final Class<?>[] keys, final Object[] messages) {
+        if (keys == null || keys.length != messages.length) {
+            return false;
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != messages[i].getClass()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the cached value, or null if it is not in the cache
+     */
+    public
+    V get(final Class<?> key) {
+        return get(key, null, null);
+    }
+
+    /**
+     * @return the cached value, or null if it is not in the cache
+     */
+    public
+    V get(final Class<?> key1, final Class<?> key2) {
+        return get(key1, key2, null);
+    }
+
+    /**
+     * @return the cached value, or null if it is not in the cache
+     */
+    public
+    V get(final Class<?> key1, final Class<?> key2, final Class<?> key3) {
+        final Node<V>[] table = this.table;
+        final int mask = this.mask;
+
+        int index = hash(key1, key2, key3) & mask;
+        Node<V> node;
+
+        for (int i = 0; i <= mask; i++) {
+            node = table[index];
+
+            if (node == null) {
+                return null;
+            }
+
+            if (node.key1 == key1 && node.key2 == key2 && node.key3 == key3 && node.keys == null) {
+                if (!node.referenced) {
+                    node.referenced = true;
+                }
+                if (recordStats) {
+                    hits++;
+                }
+                return node.value;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the cached value for the classes of the messages (used for more than three messages), or null if it is not in the cache
+     */
+    public
+    V getTypesOf(final Object[] messages) {
+        final Node<V>[] table = this.table;
+        final int mask = this.mask;
+
+        int index = hashTypesOf(messages) & mask;
+        Node<V> node;
+
+        for (int i = 0; i <= mask; i++) {
+            node = table[index];
+
+            if (node == null) {
+                return null;
+            }
+
+            if (matchesTypesOf(node.keys, messages)) {
+                if (!node.referenced) {
+                    node.referenced = true;
+                }
+                if (recordStats) {
+                    hits++;
+                }
+                return node.value;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * Saves the value for the classes of the messages (used for more than three messages), evicting an older entry if necessary.
+     *
+     * @return the value that is now in the cache (which might be a value that a different thread saved first)
+     */
+    public synchronized
+    V putTypesOf(final Object[] messages, final V value) {
+        final Node<V>[] table = this.table;
+        final int mask = this.mask;
+        final int hash = hashTypesOf(messages);
+
+        // duplicates DO NOT MATTER, but we only want to keep one of them
+        int index = hash & mask;
+        Node<V> node;
+        while ((node = table[index]) != null) {
+            if (matchesTypesOf(node.keys, messages)) {
+                return node.value;
+            }
+            index = (index + 1) & mask;
+        }
+
+        final Class<?>[] keys = new Class<?>[messages.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = messages[i].getClass();
+        }
+
+        insert(new Node<V>(null, null, null, keys, hash, value), index);
+        return value;
+    }
+
+    /**
+     * Saves the value into the cache, evicting an older entry if necessary.
+     *
+     * @return the value that is now in the cache (which might be a value that a different thread saved first)
+     */
+    public
+    V put(final Class<?> key, final V value) {
+        return put(key, null, null, value);
+    }
+
+    /**
+     * Saves the value into the cache, evicting an older entry if necessary.
+     *
+     * @return the value that is now in the cache (which might be a value that a different thread saved first)
+     */
+    public
+    V put(final Class<?> key1, final Class<?> key2, final V value) {
+        return put(key1, key2, null, value);
+    }
+
+    /**
+     * Saves the value into the cache, evicting an older entry if necessary.
+     *
+     * @return the value that is now in the cache (which might be a value that a different thread saved first)
+     */
+    public synchronized
+    V put(final Class<?> key1, final Class<?> key2, final Class<?> key3, final V value) {
+        final Node<V>[] table = this.table;
+        final int mask = this.mask;
+        final int hash = hash(key1, key2, key3);
+
+        // duplicates DO NOT MATTER, but we only want to keep one of them
+        int index = hash & mask;
+        Node<V> node;
+        while ((node = table[index]) != null) {
+            if (node.key1 == key1 && node.key2 == key2 && node.key3 == key3 && node.keys == null) {
+                return node.value;
+            }
+            index = (index + 1) & mask;
+        }
+
+        insert(new Node<V>(key1, key2, key3, null, hash, value), index);
+        return value;
+    }
+
+    /**
+     * Called from within SYNCHRONIZE
+     *
+     * @param index the empty slot found for the node, which might change if an entry has to be evicted
+     */
+    private
+    void insert(final Node<V> newNode, int index) {
+        final Node<V>[] table = this.table;
+        final int mask = this.mask;
+
+        misses++;
+
+        if (size < maxSize) {
+            clock[size++] = newNode;
+        }
+        else {
+            // the cache is full, so run the clock hand until we find an entry that has not been used since the last sweep.
+            final Node<V>[] clock = this.clock;
+            int hand = this.clockHand;
+            Node<V> candidate;
+
+            while (true) {
+                candidate = clock[hand];
+                if (candidate.referenced) {
+                    candidate.referenced = false;
+                    hand = (hand + 1) % maxSize;
+                }
+                else {
+                    break;
+                }
+            }
+
+            removeNode(candidate);
+            clock[hand] = newNode;
+            this.clockHand = (hand + 1) % maxSize;
+            evictions++;
+
+            // the slot we found earlier might have moved because of the removal
+            index = newNode.hash & mask;
+            while (table[index] != null) {
+                index = (index + 1) & mask;
+            }
+        }
+
+        table[index] = newNode;
+    }
+
+    /**
+     * Removes the node from the table, using "backward shift" deletion so that no tombstones are necessary. Nodes are copied into
+     * their new location BEFORE their old location is cleared, so a concurrent reader will see the node either once or twice.
+     */
+    private
+    void removeNode(final Node<V> node) {
+        final Node<V>[] table = this.table;
+        final int mask = this.mask;
+
+        int index = node.hash & mask;
+        while (table[index] != node) {
+            index = (index + 1) & mask;
+        }
+
+        table[index] = null;
+
+        int next = index;
+        Node<V> current;
+        while (true) {
+            next = (next + 1) & mask;
+            current = table[next];
+            if (current == null) {
+                return;
+            }
+
+            final int home = current.hash & mask;
+
+            // if 'home' is cyclically in the range (index, next], then this node is reachable and must stay where it is
+            final boolean stays = index <= next ? (index < home && home <= next) : (index < home || home <= next);
+            if (!stays) {
+                table[index] = current;
+                table[next] = null;
+                index = next;
+            }
+        }
+    }
+
+    /**
+     * Removes everything from the cache. This is done whenever the data that was used to calculate the cached values has changed.
+     */
+    public synchronized
+    void clear() {
+        Arrays.fill(this.table, null);
+        Arrays.fill(this.clock, null);
+        this.clockHand = 0;
+        this.size = 0;
+    }
+
+    public synchronized
+    int size() {
+        return this.size;
+    }
+
+    public
+    int maxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the (approximate) number of cache hits, or 0 if statistics are not recorded
+     */
+    public
+    long getHits() {
+        return this.hits;
+    }
+
+    public
+    long getMisses() {
+        return this.misses;
+    }
+
+    public
+    long getEvictions() {
+        return this.evictions;
+    }
+
+    @Override
+    public
+    String toString() {
+        return "ClockCache{size=" + size() + "/" + maxSize + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + '}';
+    }
+}
@@ -58,6 +58,9 @@ class ReflectionUtils {
 
     private static final Method[] EMPTY_METHODS = new Method[0];
 
+    // marks (in the meta-annotation cache) an annotation type that is not annotated with the annotation we are looking for
+    private static final Object NO_ANNOTATION = new Object();
+
     private
     ReflectionUtils() {
     }
@@ -182,6 +185,42 @@ class ReflectionUtils {
         return getAnnotation(from, annotationType, new IdentityMap<AnnotatedElement, Boolean>());
     }
 
+    /**
+     * Searches for an Annotation of the given type on the element. Supports meta annotations, which are only searched once per annotation
+     * type (the result is remembered in the cache). This is for looking at many elements, which mostly use the same few annotations.
+     *
+     * @param metaAnnotations annotation type -> meta annotation found on it. Must only be used for the same annotationType.
+     * @return Annotation instance or null
+     */
+    public static
+    <A extends Annotation> A getCachedAnnotation(final AnnotatedElement from, final Class<A> annotationType,
+                                                 final IdentityMap<Class<?>, Object> metaAnnotations) {
+        final A ann = from.getAnnotation(annotationType);
+        if (ann != null) {
+            return ann;
+        }
+
+        final Annotation[] annotations = from.getAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            final Class<? extends Annotation> metaType = annotations[i].annotationType();
+
+            Object metaAnn = metaAnnotations.get(metaType);
+            if (metaAnn == null) {
+                metaAnn = getAnnotation(metaType, annotationType);
+                if (metaAnn == null) {
+                    metaAnn = NO_ANNOTATION;
+                }
+                metaAnnotations.put(metaType, metaAnn);
+            }
+
+            if (metaAnn != NO_ANNOTATION) {
+                return annotationType.cast(metaAnn);
+            }
+        }
+
+        return null;
+    }
+
     //
     private static
     boolean isOverriddenBy(final Method superclassMethod, final Method subclassMethod) {
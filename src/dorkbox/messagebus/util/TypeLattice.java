@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.messagebus.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives every class a dense id, and a sorted array (of these ids) of all of its super types -- so that checking if one type is a super
+ * type of another is a binary search over the (few) super types of that class.
+ * <p/>
+ * A class is only resolved the first time it is used, and it is resolved from its direct super class and interfaces (which are already
+ * resolved), so this takes time proportional to the depth of that class -- not to the size of its whole hierarchy. The memory used by
+ * each class is proportional to the number of its super types (and not to the number of classes that have been resolved before it).
+ * <p/>
+ * The super types are the same as ReflectionUtils.getSuperTypes(): all super classes and all interfaces. Interfaces do not have Object
+ * as a super type. Array covariance is NOT modeled here (an array class only has the super types of an array: Object, Cloneable and
+ * Serializable).
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public final
+class TypeLattice {
+    private static final Class<?>[] EMPTY_CLASSES = new Class<?>[0];
+
+    private static final
+    class Node {
+        private final int id;
+
+        // all of the super types, WITHOUT this class
+        private final Class<?>[] superTypes;
+
+        // the ids of this class and all of its super types, sorted
+        private final int[] ids;
+
+        private
+        Node(final int id, final Class<?>[] superTypes, final int[] ids) {
+            this.id = id;
+            this.superTypes = superTypes;
+            this.ids = ids;
+        }
+    }
+
+    /**
+     * ClassValue is thread safe, computes each class only once and does not keep classes from being unloaded. The ids are only unique
+     * within a single instance, which is replaced (as a whole) when the lattice is cleared.
+     */
+    private static final
+    class Nodes extends ClassValue<Node> {
+        private final AtomicInteger nextId = new AtomicInteger();
+
+        @Override
+        protected
+        Node computeValue(final Class<?> type) {
+            final int id = nextId.getAndIncrement();
+
+            final Class<?> superClass = type.getSuperclass();
+            final Class<?>[] interfaces = type.getInterfaces();
+
+            // the direct super types are resolved first (which are usually already resolved)
+            final ArrayList<Class<?>> superTypes = new ArrayList<Class<?>>();
+            final ArrayList<Integer> ids = new ArrayList<Integer>();
+
+            if (superClass != null) {
+                merge(superClass, superTypes, ids);
+            }
+            for (int i = 0; i < interfaces.length; i++) {
+                merge(interfaces[i], superTypes, ids);
+            }
+
+            final int size = ids.size();
+            final int[] sortedIds = new int[size + 1];
+            for (int i = 0; i < size; i++) {
+                sortedIds[i] = ids.get(i);
+            }
+            sortedIds[size] = id;
+            Arrays.sort(sortedIds);
+
+            return new Node(id, superTypes.toArray(EMPTY_CLASSES), sortedIds);
+        }
+
+        /**
+         * Adds the direct super type (and all of its super types) to the lists, if they are not there already
+         */
+        private
+        void merge(final Class<?> directSuperType, final ArrayList<Class<?>> superTypes, final ArrayList<Integer> ids) {
+            final Node node = get(directSuperType);
+            add(directSuperType, node.id, superTypes, ids);
+
+            final Class<?>[] types = node.superTypes;
+            for (int i = 0; i < types.length; i++) {
+                final Class<?> type = types[i];
+                add(type, get(type).id, superTypes, ids);
+            }
+        }
+
+        // there are only a handful of super types, so a linear search is fine (and this only happens once per class)
+        private static
+        void add(final Class<?> type, final int id, final ArrayList<Class<?>> superTypes, final ArrayList<Integer> ids) {
+            if (!ids.contains(id)) {
+                superTypes.add(type);
+                ids.add(id);
+            }
+        }
+    }
+
+    private volatile Nodes nodes = new Nodes();
+
+
+    public
+    TypeLattice() {
+    }
+
+    /**
+     * @return the dense id of the class
+     */
+    public
+    int getId(final Class<?> type) {
+        return nodes.get(type).id;
+    }
+
+    /**
+     * @return all of the super classes and interfaces of the class (without the class itself). Never null, do not modify.
+     */
+    public
+    Class<?>[] getSuperTypes(final Class<?> type) {
+        return nodes.get(type).superTypes;
+    }
+
+    /**
+     * @return true if the super type is the same as, or a super class/interface of the type
+     */
+    public
+    boolean isSuperType(final Class<?> superType, final Class<?> type) {
+        // both have to be resolved by the same instance, since the ids are only unique within it
+        final Nodes nodes = this.nodes;
+        return Arrays.binarySearch(nodes.get(type).ids, nodes.get(superType).id) >= 0;
+    }
+
+    /**
+     * Forgets all of the resolved classes (and their ids), should only be called on shutdown
+     */
+    public
+    void clear() {
+        this.nodes = new Nodes();
+    }
+}
@@ -42,6 +42,28 @@ import org.junit.runners.Suite;
         AsyncFIFOBusTest.class,
         MultiTreeTest.class,
         MultiMessageTest.class,
+        ClockCacheTest.class,
+        DeadLetterStoreTest.class,
+        ErrorHandlerTest.class,
+        PrimitiveMessageTest.class,
+        PublishAndCollectTest.class,
+        LazyPublicationTest.class,
+        PublisherTest.class,
+        ConsumerSubscriptionTest.class,
+        RegistrationTest.class,
+        SubscriptionChurnTest.class,
+        SubscriptionMemoryTest.class,
+        UnsubscribeAndWaitTest.class,
+        MultiClassIndexTest.class,
+        SuperTypeIndexTest.class,
+        TypeLatticeTest.class,
+        PrimeTest.class,
+        TieredInvocationTest.class,
+        SharedHandlerCacheTest.class,
+        HandlerScanTest.class,
+        BulkSubscribeTest.class,
+        HandlerMetadataCacheTest.class,
+        MailboxTest.class,
 })
 public class AllTests {
 }
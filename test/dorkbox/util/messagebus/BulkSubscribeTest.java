@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class BulkSubscribeTest extends MessageBusTest {
+
+    private static final AtomicInteger strings = new AtomicInteger();
+    private static final AtomicInteger integers = new AtomicInteger();
+    private static final AtomicInteger numbers = new AtomicInteger();
+
+    @Test
+    public void testSubscribeAll() {
+        strings.set(0);
+        integers.set(0);
+        numbers.set(0);
+
+        IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.ExactWithSuperTypes, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        // one of the classes is already known
+        bus.subscribe(new StringListener());
+
+        final int count = 100;
+        Object[] listeners = new Object[count * 4 + 1];
+        for (int i = 0; i < count; i++) {
+            listeners[i * 4] = new StringListener();
+            listeners[i * 4 + 1] = new IntegerListener();
+            listeners[i * 4 + 2] = new NumberListener();
+            listeners[i * 4 + 3] = new NoHandlers();
+        }
+        // nulls are ignored, like they are for subscribe()
+        listeners[count * 4] = null;
+
+        bus.subscribeAll(listeners);
+
+        // subscribing the same listeners again does nothing
+        bus.subscribeAll(listeners);
+
+        bus.publish("message");
+        bus.publish(1);
+        bus.publish(1.5D);
+
+        assertEquals(count + 1, strings.get());
+        assertEquals(count, integers.get());
+        assertEquals(count * 2, numbers.get());
+
+        bus.subscribeAll();
+        bus.shutdown();
+    }
+
+    public static class StringListener {
+        @Handler
+        public void handle(String message) {
+            strings.getAndIncrement();
+        }
+    }
+
+    public static class IntegerListener {
+        @Handler
+        public void handle(Integer message) {
+            integers.getAndIncrement();
+        }
+    }
+
+    public static class NumberListener {
+        @Handler(acceptSubtypes = true)
+        public void handle(Number message) {
+            numbers.getAndIncrement();
+        }
+    }
+
+    public static class NoHandlers {
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.util.ClockCache;
+import dorkbox.util.messagebus.common.AssertSupport;
+import org.junit.Test;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/2/16
+ */
+public class ClockCacheTest extends AssertSupport {
+
+    private static final Class<?>[] TYPES = new Class<?>[] {String.class, Integer.class, Long.class, Double.class, Float.class,
+                                                            Short.class, Byte.class, Character.class, Boolean.class, Object.class,
+                                                            Number.class, CharSequence.class, Comparable.class, Runnable.class};
+
+    @Test
+    public void testGetPut() {
+        ClockCache<String> cache = new ClockCache<String>(4, true);
+
+        assertNull(cache.get(String.class));
+        assertEquals("a", cache.put(String.class, "a"));
+        assertEquals("a", cache.get(String.class));
+
+        // different arity is a different key
+        assertNull(cache.get(String.class, String.class));
+        cache.put(String.class, String.class, "b");
+        cache.put(String.class, String.class, String.class, "c");
+
+        assertEquals("a", cache.get(String.class));
+        assertEquals("b", cache.get(String.class, String.class));
+        assertEquals("c", cache.get(String.class, String.class, String.class));
+
+        // duplicates keep the first value
+        assertEquals("a", cache.put(String.class, "z"));
+        assertEquals(3, cache.size());
+        assertEquals(3L, cache.getMisses());
+        assertTrue(cache.getHits() > 0);
+    }
+
+    @Test
+    public void testBounded() {
+        ClockCache<Class<?>> cache = new ClockCache<Class<?>>(8, false);
+
+        for (int j = 0; j < 10; j++) {
+            for (Class<?> type : TYPES) {
+                if (cache.get(type) == null) {
+                    cache.put(type, type);
+                }
+                assertTrue(cache.size() <= 8);
+            }
+        }
+
+        assertEquals(8, cache.size());
+        assertTrue(cache.getEvictions() > 0);
+
+        // everything that is still in the cache has the correct value
+        int found = 0;
+        for (Class<?> type : TYPES) {
+            Class<?> value = cache.get(type);
+            if (value != null) {
+                assertTrue(type == value);
+                found++;
+            }
+        }
+        assertEquals(8, found);
+    }
+
+    @Test
+    public void testHotEntriesStay() {
+        ClockCache<Class<?>> cache = new ClockCache<Class<?>>(4, false);
+        cache.put(String.class, String.class);
+
+        for (Class<?> type : TYPES) {
+            // keep the hot entry referenced
+            assertTrue(String.class == cache.get(String.class));
+
+            if (cache.get(type) == null) {
+                cache.put(type, type);
+            }
+        }
+
+        assertTrue(String.class == cache.get(String.class));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(String.class));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.common.MessageConsumer;
+import dorkbox.messagebus.common.MessageConsumer2;
+import dorkbox.messagebus.common.MessageConsumer3;
+import dorkbox.util.messagebus.common.ConcurrentExecutor;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class ConsumerSubscriptionTest extends MessageBusTest {
+
+    @Test
+    public void testConsumers() {
+        IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.ExactWithSuperTypes, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        final AtomicInteger count1 = new AtomicInteger();
+        final AtomicInteger count2 = new AtomicInteger();
+        final AtomicInteger count3 = new AtomicInteger();
+        final AtomicInteger superCount = new AtomicInteger();
+
+        MessageConsumer<String> consumer1 = new MessageConsumer<String>() {
+            @Override
+            public void accept(final String message) {
+                count1.getAndIncrement();
+            }
+        };
+        MessageConsumer2<String, Integer> consumer2 = new MessageConsumer2<String, Integer>() {
+            @Override
+            public void accept(final String message1, final Integer message2) {
+                count2.addAndGet(message2);
+            }
+        };
+        MessageConsumer3<String, String, String> consumer3 = new MessageConsumer3<String, String, String>() {
+            @Override
+            public void accept(final String message1, final String message2, final String message3) {
+                count3.getAndIncrement();
+            }
+        };
+        MessageConsumer<CharSequence> superConsumer = new MessageConsumer<CharSequence>() {
+            @Override
+            public void accept(final CharSequence message) {
+                superCount.getAndIncrement();
+            }
+        };
+
+        bus.subscribe(String.class, consumer1);
+        bus.subscribe(String.class, Integer.class, consumer2);
+        bus.subscribe(String.class, String.class, String.class, consumer3);
+        bus.subscribe(CharSequence.class, superConsumer);
+
+        // works together with "normal" listeners
+        StringListener listener = new StringListener();
+        bus.subscribe(listener);
+
+        bus.publish("s");
+        bus.publish("s", 5);
+        bus.publish("s", "s", "s");
+
+        assertEquals(1, count1.get());
+        assertEquals(5, count2.get());
+        assertEquals(1, count3.get());
+        assertEquals(1, superCount.get());
+        assertEquals(1, listener.count.get());
+
+        // many consumers of the same type share one subscription
+        for (int i = 0; i < 100; i++) {
+            bus.subscribe(String.class, consumer1);
+        }
+        bus.publish("s");
+        assertEquals(2, count1.get());
+
+        bus.unsubscribe(String.class, consumer1);
+        bus.unsubscribe(String.class, Integer.class, consumer2);
+        bus.unsubscribe(String.class, String.class, String.class, consumer3);
+
+        bus.publish("s");
+        bus.publish("s", 5);
+        bus.publish("s", "s", "s");
+
+        assertEquals(2, count1.get());
+        assertEquals(5, count2.get());
+        assertEquals(1, count3.get());
+        assertEquals(3, superCount.get());
+
+        bus.shutdown();
+    }
+
+    @Test
+    public void testConcurrentConsumers() {
+        final MessageBus bus = new MessageBus();
+        bus.addErrorHandler(TestFailingHandler);
+
+        final AtomicInteger count = new AtomicInteger();
+
+        // every thread subscribes consumers of the same (new) types, and un-subscribes half of them again
+        ConcurrentExecutor.runConcurrent(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 100; i++) {
+                    MessageConsumer<Long> consumer = new MessageConsumer<Long>() {
+                        @Override
+                        public void accept(final Long message) {
+                            count.getAndIncrement();
+                        }
+                    };
+                    MessageConsumer2<Long, Long> consumer2 = new MessageConsumer2<Long, Long>() {
+                        @Override
+                        public void accept(final Long message1, final Long message2) {
+                            count.getAndIncrement();
+                        }
+                    };
+
+                    bus.subscribe(Long.class, consumer);
+                    bus.subscribe(Long.class, Long.class, consumer2);
+
+                    if (i % 2 == 0) {
+                        bus.unsubscribe(Long.class, consumer);
+                        bus.unsubscribe(Long.class, Long.class, consumer2);
+                    }
+                }
+            }
+        }, ConcurrentUnits);
+
+        bus.publish(1L);
+        assertEquals(50 * ConcurrentUnits, count.get());
+
+        bus.publish(1L, 2L);
+        assertEquals(100 * ConcurrentUnits, count.get());
+
+        bus.shutdown();
+    }
+
+    public static class StringListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            count.getAndIncrement();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.error.DeadLetter;
+import dorkbox.messagebus.error.DeadLetterSerializer;
+import dorkbox.messagebus.error.DeadLetterStore;
+import dorkbox.messagebus.error.KryoDeadLetterSerializer;
+import dorkbox.util.messagebus.common.AssertSupport;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/2/16
+ */
+public class DeadLetterStoreTest extends AssertSupport {
+
+    @Test
+    public void testRing() {
+        DeadLetterStore store = new DeadLetterStore(4);
+
+        for (int i = 0; i < 10; i++) {
+            store.add(i);
+        }
+        store.add("a", "b");
+
+        List<DeadLetter> recent = store.getRecent();
+        assertEquals(4, recent.size());
+        assertEquals(7, recent.get(0).getMessages()[0]);
+        assertEquals("b", recent.get(3).getMessages()[1]);
+        assertTrue(recent.get(3).getTimestamp() > 0);
+
+        assertEquals(4, store.drain().size());
+        assertEquals(0, store.getRecent().size());
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        File file = File.createTempFile("deadLetters", ".bin");
+        file.deleteOnExit();
+
+        DeadLetterStore store = new DeadLetterStore(2, file, 64 * 1024, new KryoDeadLetterSerializer());
+        for (int i = 0; i < 10; i++) {
+            store.add("message", i);
+        }
+
+        // the oldest 8 were spilled
+        List<DeadLetter> spilled = store.getSpilled();
+        assertEquals(8, spilled.size());
+        assertEquals(0, spilled.get(0).getMessages()[1]);
+        assertEquals(7L, spilled.get(7).getSequence());
+        store.close();
+
+        // re-opening the file appends to the existing records
+        store = new DeadLetterStore(2, file, 64 * 1024, new KryoDeadLetterSerializer());
+        for (int i = 0; i < 3; i++) {
+            store.add("other");
+        }
+        assertEquals(9, store.getSpilled().size());
+        assertEquals(0L, store.getDroppedCount());
+        store.close();
+    }
+
+    @Test
+    public void testUnreadableRecordsAreCounted() throws Exception {
+        File file = File.createTempFile("deadLetters", ".bin");
+        file.deleteOnExit();
+
+        final KryoDeadLetterSerializer kryo = new KryoDeadLetterSerializer();
+        DeadLetterStore store = new DeadLetterStore(2, file, 64 * 1024, new DeadLetterSerializer() {
+            @Override
+            public byte[] serialize(final Object[] messages) throws Exception {
+                return kryo.serialize(messages);
+            }
+
+            @Override
+            public Object[] deserialize(final byte[] bytes) throws Exception {
+                Object[] messages = kryo.deserialize(bytes);
+                if ("bad".equals(messages[0])) {
+                    throw new IllegalStateException("unreadable");
+                }
+                return messages;
+            }
+        });
+
+        store.add("good");
+        store.add("bad");
+        store.add("good");
+        store.add("recent");
+        store.add("recent");
+
+        assertEquals(2, store.getSpilled().size());
+        assertEquals(1, store.getUnreadableCount());
+        store.close();
+    }
+
+    @Test
+    public void testSpillDoesNotBlockPublication() throws Exception {
+        File file = File.createTempFile("deadLetters", ".bin");
+        file.deleteOnExit();
+
+        final KryoDeadLetterSerializer kryo = new KryoDeadLetterSerializer();
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        DeadLetterStore store = new DeadLetterStore(2, file, 1024 * 1024, new DeadLetterSerializer() {
+            @Override
+            public byte[] serialize(final Object[] messages) throws Exception {
+                writing.countDown();
+                release.await();
+                return kryo.serialize(messages);
+            }
+
+            @Override
+            public Object[] deserialize(final byte[] bytes) throws Exception {
+                return kryo.deserialize(bytes);
+            }
+        });
+
+        // the spill thread is stuck writing the first eviction
+        store.add(0);
+        store.add(1);
+        store.add(2);
+        writing.await();
+
+        // these only fill the spill queue (1024), and the rest are dropped instead of waiting for the spill thread
+        for (int i = 3; i < 1037; i++) {
+            store.add(i);
+        }
+        assertEquals(10L, store.getDroppedCount());
+
+        release.countDown();
+        assertEquals(1025, store.getSpilled().size());
+        store.close();
+
+        // after closing, evictions are dropped
+        store.add(-1);
+        assertEquals(11L, store.getDroppedCount());
+    }
+}
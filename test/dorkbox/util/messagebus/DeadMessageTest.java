@@ -25,6 +25,7 @@ package dorkbox.util.messagebus;
 import dorkbox.messagebus.MessageBus;
 import dorkbox.messagebus.annotations.Handler;
 import dorkbox.util.messagebus.common.*;
+import dorkbox.messagebus.error.DeadLetters;
 import dorkbox.messagebus.error.DeadMessage;
 import dorkbox.util.messagebus.listeners.IMessageListener;
 import dorkbox.util.messagebus.listeners.MessageTypesListener;
@@ -124,6 +125,78 @@ public class DeadMessageTest extends MessageBusTest{
         assertEquals(InstancesPerListener, deadMessages.get());
     }
 
+    @Test
+    public void testDeadMessageCounters() {
+        final MessageBus bus = createBus();
+
+        // counted, even without a DeadMessage handler
+        bus.publish("a");
+        bus.publish("b");
+        bus.publish("a", 1);
+        assertEquals(3L, bus.getDeadMessageCount(String.class));
+        assertEquals(0L, bus.getDeadMessageCount(Integer.class));
+
+        KeepingDeadMessageHandler handler = new KeepingDeadMessageHandler();
+        bus.subscribe(handler);
+
+        bus.publish(1);
+        assertEquals(1L, bus.getDeadMessageCount(Integer.class));
+
+        // the dead message is reused, so a copy must be used to keep it
+        assertNotNull(handler.copy);
+        assertEquals(1, handler.copy.getMessages()[0]);
+        assertEquals(1, handler.copy.getMessages().length);
+
+        bus.publish(2);
+        assertEquals(2, handler.copy.getMessages()[0]);
+
+        // the reused dead message (that was not copied) is released once the handler returns
+        try {
+            handler.kept.getMessages();
+            fail("getMessages() must fail after the handler returned");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            handler.kept.copy();
+            fail("copy() must fail after the handler returned");
+        } catch (IllegalStateException expected) {
+        }
+
+        bus.shutdown();
+    }
+
+    @Test
+    public void testCountedTypesAreBounded() {
+        DeadLetters deadLetters = new DeadLetters(null, 2);
+
+        deadLetters.add("a");
+        deadLetters.add(1);
+        deadLetters.add("b", 2);
+
+        // only the first two types are counted individually
+        deadLetters.add(1L);
+        deadLetters.add(new Object[] {2.0D});
+
+        assertEquals(2L, deadLetters.getCount(String.class));
+        assertEquals(1L, deadLetters.getCount(Integer.class));
+        assertEquals(0L, deadLetters.getCount(Long.class));
+        assertEquals(2L, deadLetters.getOtherCount());
+
+        // the total is the sum of all of the counters
+        assertEquals(5L, deadLetters.getTotalCount());
+    }
+
+    public static class KeepingDeadMessageHandler {
+        volatile DeadMessage copy;
+        volatile DeadMessage kept;
+
+        @Handler
+        public void handle(DeadMessage message){
+            copy = message.copy();
+            kept = message;
+        }
+    }
+
     public static class DeadMessagHandler {
         @Handler
         public void handle(DeadMessage message){
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.error.ErrorHandler;
+import dorkbox.messagebus.error.IPublicationErrorHandler;
+import dorkbox.messagebus.error.PublicationError;
+import dorkbox.util.messagebus.common.AssertSupport;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/4/16
+ */
+public class ErrorHandlerTest extends AssertSupport {
+
+    @Test
+    public void testAsyncErrorsAreHandledOnAnotherThread() throws Exception {
+        ErrorHandler errorHandler = new ErrorHandler(16);
+        KeepingErrorHandler handler = new KeepingErrorHandler(3);
+        errorHandler.addErrorHandler(handler);
+
+        errorHandler.handlePublicationError("first", null, "message");
+        errorHandler.handlePublicationError(new PublicationError().setMessage("second"));
+        errorHandler.handleError("third", String.class);
+
+        assertTrue(handler.received.await(5, TimeUnit.SECONDS));
+        assertEquals(0L, errorHandler.getDroppedErrors());
+
+        // the reused error was copied before it was queued
+        assertEquals("first", handler.errors.get(0).getMessage());
+        assertEquals("message", handler.errors.get(0).getPublishedObject()[0]);
+        assertEquals("second", handler.errors.get(1).getMessage());
+
+        for (Thread thread : handler.threads) {
+            assertFalse(thread == Thread.currentThread());
+        }
+
+        errorHandler.shutdown();
+    }
+
+    @Test
+    public void testQueueFullDropsErrors() throws Exception {
+        ErrorHandler errorHandler = new ErrorHandler(2);
+        SlowErrorHandler handler = new SlowErrorHandler();
+        errorHandler.addErrorHandler(handler);
+
+        // the error thread is stuck in the (slow) error handler
+        errorHandler.handlePublicationError("slow", null, "message");
+        assertTrue(handler.handling.await(5, TimeUnit.SECONDS));
+
+        // two fill the queue, and the rest are dropped instead of waiting for the error thread
+        for (int i = 0; i < 5; i++) {
+            errorHandler.handlePublicationError("queued", null, i);
+        }
+        errorHandler.handleError("queued", String.class);
+        assertEquals(4L, errorHandler.getDroppedErrors());
+
+        handler.release.countDown();
+        assertTrue(handler.handled.await(5, TimeUnit.SECONDS));
+
+        // the queued errors are the ones that were handled
+        assertEquals(0, handler.errors.get(1).getPublishedObject()[0]);
+        assertEquals(1, handler.errors.get(2).getPublishedObject()[0]);
+        assertEquals(4L, errorHandler.getDroppedErrors());
+
+        errorHandler.shutdown();
+    }
+
+    @Test
+    public void testThrowingHandlerDoesNotStopTheErrorThread() throws Exception {
+        ErrorHandler errorHandler = new ErrorHandler(16);
+        KeepingErrorHandler handler = new KeepingErrorHandler(3);
+        errorHandler.addErrorHandler(handler);
+        errorHandler.addErrorHandler(new ThrowingErrorHandler());
+
+        errorHandler.handlePublicationError("first", null, "message");
+
+        // the later errors are still delivered, after the error handler threw for the first one
+        errorHandler.handlePublicationError("second", null, "message");
+        errorHandler.handleError("third", String.class);
+
+        assertTrue(handler.received.await(5, TimeUnit.SECONDS));
+        assertEquals("second", handler.errors.get(1).getMessage());
+        assertEquals(0L, errorHandler.getDroppedErrors());
+
+        errorHandler.shutdown();
+    }
+
+    @Test
+    public void testConsoleLoggerIsRateLimited() {
+        IPublicationErrorHandler.ConsoleLogger logger = new IPublicationErrorHandler.ConsoleLogger(2);
+
+        for (int i = 0; i < 100; i++) {
+            logger.handleError("rate limited", String.class);
+        }
+
+        // 2 are printed per second, and the rest are suppressed (these 100 errors might span a few windows)
+        long suppressed = logger.getSuppressedCount();
+        assertTrue(suppressed >= 90L);
+        assertTrue(suppressed <= 98L);
+    }
+
+    @Test
+    public void testConsoleLoggerCountsAcrossThreads() throws Exception {
+        final IPublicationErrorHandler.ConsoleLogger logger = new IPublicationErrorHandler.ConsoleLogger(0);
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        logger.handleError("rate limited", String.class);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // nothing is printed, and every error is counted exactly once
+        assertEquals(4000L, logger.getSuppressedCount());
+    }
+
+    @Test
+    public void testHandlersReceiveACopyUnlessReuseSafe() {
+        ErrorHandler errorHandler = new ErrorHandler();
+        KeepingErrorHandler keeping = new KeepingErrorHandler(2);
+        ReuseSafeErrorHandler reuseSafe = new ReuseSafeErrorHandler();
+        errorHandler.addErrorHandler(keeping);
+        errorHandler.addErrorHandler(reuseSafe);
+
+        errorHandler.handlePublicationError("first", null, "message1", "message2");
+        errorHandler.handlePublicationError("second", null, "message3");
+
+        // the kept errors are still valid after handleError() has returned
+        assertEquals("first", keeping.errors.get(0).getMessage());
+        assertEquals("message2", keeping.errors.get(0).getPublishedObject()[1]);
+        assertEquals("second", keeping.errors.get(1).getMessage());
+        assertFalse(keeping.errors.get(0) == keeping.errors.get(1));
+
+        // the reuse-safe handler saw the same values, in the same (reused and now cleared) error
+        assertEquals("first", reuseSafe.messages.get(0));
+        assertEquals("second", reuseSafe.messages.get(1));
+        assertTrue(reuseSafe.errors.get(0) == reuseSafe.errors.get(1));
+        assertNull(reuseSafe.errors.get(0).getMessage());
+        assertNull(reuseSafe.errors.get(0).getPublishedObject());
+    }
+
+    @Test
+    public void testErrorInsideErrorHandler() {
+        final ErrorHandler errorHandler = new ErrorHandler();
+        final List<String> seen = new CopyOnWriteArrayList<String>();
+
+        errorHandler.addErrorHandler(new IPublicationErrorHandler.ReuseSafe() {
+            @Override
+            public void handleError(PublicationError error) {
+                if ("outer".equals(error.getMessage())) {
+                    // the reused error is in use, so this one gets its own
+                    errorHandler.handlePublicationError("inner", null, "innerMessage");
+
+                    // and the outer error was not overwritten by it
+                    seen.add(error.getMessage() + ":" + error.getPublishedObject()[0]);
+                }
+                else {
+                    seen.add(error.getMessage() + ":" + error.getPublishedObject()[0]);
+                }
+            }
+
+            @Override
+            public void handleError(String error, Class<?> listenerClass) {
+            }
+        });
+
+        errorHandler.handlePublicationError("outer", null, "outerMessage");
+
+        assertEquals(2, seen.size());
+        assertEquals("inner:innerMessage", seen.get(0));
+        assertEquals("outer:outerMessage", seen.get(1));
+    }
+
+    @Test
+    public void testCopy() {
+        Exception cause = new Exception("cause");
+        Object[] published = new Object[] {"a", "b", "c", "d"};
+
+        PublicationError error = new PublicationError().setMessage("message")
+                                                       .setCause(cause)
+                                                       .setPublishedObjects(published);
+        PublicationError copy = error.copy();
+
+        error.setMessage("changed");
+        published[0] = "changed";
+
+        assertEquals("message", copy.getMessage());
+        assertTrue(copy.getCause() == cause);
+        assertEquals("a", copy.getPublishedObject()[0]);
+        assertEquals(4, copy.getPublishedObject().length);
+
+        // clearing the original does not clear the copy
+        error.setPublishedObject("x", "y").clear();
+        assertEquals("message", copy.getMessage());
+        assertEquals("d", copy.getPublishedObject()[3]);
+    }
+
+    public static class ReuseSafeErrorHandler implements IPublicationErrorHandler.ReuseSafe {
+        final List<PublicationError> errors = new CopyOnWriteArrayList<PublicationError>();
+        final List<String> messages = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public void handleError(PublicationError error) {
+            errors.add(error);
+            messages.add(error.getMessage());
+        }
+
+        @Override
+        public void handleError(String error, Class<?> listenerClass) {
+        }
+    }
+
+    public static class ThrowingErrorHandler implements IPublicationErrorHandler {
+        @Override
+        public void handleError(PublicationError error) {
+            throw new RuntimeException("broken error handler");
+        }
+
+        @Override
+        public void handleError(String error, Class<?> listenerClass) {
+            throw new RuntimeException("broken error handler");
+        }
+    }
+
+    public static class KeepingErrorHandler implements IPublicationErrorHandler {
+        final List<PublicationError> errors = new CopyOnWriteArrayList<PublicationError>();
+        final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+        final CountDownLatch received;
+
+        public KeepingErrorHandler(int expected) {
+            received = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void handleError(PublicationError error) {
+            errors.add(error);
+            threads.add(Thread.currentThread());
+            received.countDown();
+        }
+
+        @Override
+        public void handleError(String error, Class<?> listenerClass) {
+            threads.add(Thread.currentThread());
+            received.countDown();
+        }
+    }
+
+    public static class SlowErrorHandler implements IPublicationErrorHandler {
+        final List<PublicationError> errors = new CopyOnWriteArrayList<PublicationError>();
+        final CountDownLatch handling = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch handled = new CountDownLatch(3);
+
+        @Override
+        public void handleError(PublicationError error) {
+            errors.add(error);
+            handling.countDown();
+
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+
+            handled.countDown();
+        }
+
+        @Override
+        public void handleError(String error, Class<?> listenerClass) {
+            handled.countDown();
+        }
+    }
+}
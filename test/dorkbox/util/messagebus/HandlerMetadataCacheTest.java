@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.annotations.Listener;
+import dorkbox.messagebus.annotations.References;
+import dorkbox.messagebus.annotations.Synchronized;
+import dorkbox.messagebus.common.HandlerMetadataCache;
+import dorkbox.messagebus.common.MessageHandler;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class HandlerMetadataCacheTest extends MessageBusTest {
+
+    private static final int FILE_SIZE = 64 * 1024;
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File file = File.createTempFile("handlers", ".cache");
+        file.deleteOnExit();
+
+        HandlerMetadataCache cache = HandlerMetadataCache.open(file, FILE_SIZE);
+        assertTrue(cache == HandlerMetadataCache.open(file, FILE_SIZE));
+
+        assertNull(cache.get(CachedListener.class));
+
+        MessageHandler[] handlers = MessageHandler.scan(CachedListener.class);
+        cache.put(CachedListener.class, handlers);
+        assertSameHandlers(handlers, cache.get(CachedListener.class));
+
+        // a class without handlers is cached as well
+        cache.put(NoHandlers.class, MessageHandler.scan(NoHandlers.class));
+        assertEquals(0, cache.get(NoHandlers.class).length);
+
+        // the same as restarting the JVM
+        cache.close();
+        HandlerMetadataCache reopened = HandlerMetadataCache.open(file, FILE_SIZE);
+        assertFalse(cache == reopened);
+
+        assertSameHandlers(handlers, reopened.get(CachedListener.class));
+        assertEquals(0, reopened.get(NoHandlers.class).length);
+        reopened.close();
+
+        // a file that is not a handler cache is started over
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.writeInt(42);
+        randomAccessFile.close();
+
+        HandlerMetadataCache damaged = HandlerMetadataCache.open(file, FILE_SIZE);
+        assertNull(damaged.get(CachedListener.class));
+        damaged.close();
+    }
+
+    @Test
+    public void testFullFile() throws Exception {
+        File file = File.createTempFile("handlers", ".cache");
+        file.deleteOnExit();
+
+        // only room for the header
+        HandlerMetadataCache cache = HandlerMetadataCache.open(file, 16);
+        cache.put(CachedListener.class, MessageHandler.scan(CachedListener.class));
+        assertNull(cache.get(CachedListener.class));
+        cache.close();
+    }
+
+    @Test
+    public void testChangedSuperClassIsNotUsed() throws Exception {
+        URL url = BaseListener.class.getResource("/" + BaseListener.class.getName().replace('.', '/') + ".class");
+        if (!"file".equals(url.getProtocol())) {
+            // only class files in a directory can be "changed" by this test
+            return;
+        }
+
+        File file = File.createTempFile("handlers", ".cache");
+        file.deleteOnExit();
+
+        HandlerMetadataCache cache = HandlerMetadataCache.open(file, FILE_SIZE);
+        cache.put(CachedListener.class, MessageHandler.scan(CachedListener.class));
+        assertNotNull(cache.get(CachedListener.class));
+
+        // the same as recompiling the super class
+        File classFile = new File(url.toURI());
+        long lastModified = classFile.lastModified();
+        try {
+            assertTrue(classFile.setLastModified(lastModified - 10000L));
+            assertNull(cache.get(CachedListener.class));
+        } finally {
+            classFile.setLastModified(lastModified);
+        }
+
+        assertNotNull(cache.get(CachedListener.class));
+        cache.close();
+    }
+
+    @Test
+    public void testBusUsesCache() throws Exception {
+        File file = File.createTempFile("handlers", ".cache");
+        file.deleteOnExit();
+
+        final File handlerCacheFile = MessageBus.handlerCacheFile;
+        MessageBus.handlerCacheFile = file;
+        try {
+            IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+            bus.addErrorHandler(TestFailingHandler);
+
+            BusListener listener = new BusListener();
+            bus.subscribe(listener);
+            bus.publish("message");
+            assertEquals(1, listener.count.get());
+
+            bus.shutdown();
+
+            HandlerMetadataCache cache = HandlerMetadataCache.open(file, MessageBus.handlerCacheFileSize);
+            assertSameHandlers(MessageHandler.scan(BusListener.class), cache.get(BusListener.class));
+            cache.close();
+        } finally {
+            MessageBus.handlerCacheFile = handlerCacheFile;
+        }
+    }
+
+    private void assertSameHandlers(final MessageHandler[] expected, final MessageHandler[] actual) {
+        assertNotNull(actual);
+        assertEquals(expected.length, actual.length);
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getMethod(), actual[i].getMethod());
+            assertEquals(expected[i].acceptsSubtypes(), actual[i].acceptsSubtypes());
+            assertEquals(expected[i].isSynchronized(), actual[i].isSynchronized());
+            assertEquals(expected[i].getReferenceType(), actual[i].getReferenceType());
+        }
+    }
+
+    public static class BaseListener {
+        @Handler
+        public void handle(int[] message) {
+        }
+    }
+
+    @Listener(references = References.Weak)
+    public static class CachedListener extends BaseListener {
+        @Handler
+        public void handle(String message) {
+        }
+
+        @Handler(acceptSubtypes = false)
+        @Synchronized
+        public void handle(long message, Integer message2) {
+        }
+
+        @Handler
+        public void handle(String[][] message) {
+        }
+    }
+
+    public static class NoHandlers {
+    }
+
+    public static class BusListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            count.getAndIncrement();
+        }
+    }
+}
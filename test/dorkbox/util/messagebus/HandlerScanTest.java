@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.annotations.Synchronized;
+import dorkbox.messagebus.common.MessageHandler;
+import dorkbox.messagebus.util.ReflectionUtils;
+import dorkbox.util.messagebus.common.AssertSupport;
+import dorkbox.util.messagebus.listeners.Listeners;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Verifies that the single-pass scan finds the same handlers as the original (quadratic) scan, including for a listener with a large
+ * class hierarchy.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class HandlerScanTest extends AssertSupport {
+
+    @Test
+    public void testSameHandlers() {
+        ArrayList<Class> classes = new ArrayList<Class>();
+        classes.addAll(Listeners.synchronous());
+        classes.addAll(Listeners.subtypeRejecting());
+        classes.addAll(Listeners.noHandlers());
+        classes.add(LargeListener.class);
+        classes.add(OverridingListener.class);
+        classes.add(DisablingListener.class);
+
+        for (Class<?> listenerClass : classes) {
+            ArrayList<Found> expected = referenceScan(listenerClass);
+            MessageHandler[] actual = MessageHandler.scan(listenerClass);
+
+            assertEquals(expected.size(), actual.length);
+            for (int i = 0; i < actual.length; i++) {
+                assertEquals(expected.get(i).method, actual[i].getMethod());
+                assertEquals(expected.get(i).config.acceptSubtypes(), actual[i].acceptsSubtypes());
+            }
+        }
+
+        // the overriding (non-annotated) method is used, with the configuration of the method it overrides
+        MessageHandler[] handlers = MessageHandler.scan(OverridingListener.class);
+        assertEquals(2, handlers.length);
+        for (MessageHandler handler : handlers) {
+            assertEquals(OverridingListener.class, handler.getMethod().getDeclaringClass());
+        }
+
+        // disabling an inherited handler removes it
+        assertEquals(1, MessageHandler.scan(DisablingListener.class).length);
+    }
+
+    @Test
+    public void testLargeHierarchy() {
+        // only the handlers are found, among the many (non handler) methods of the class hierarchy
+        MessageHandler[] handlers = MessageHandler.scan(LargeListener.class);
+        ArrayList<Found> expected = referenceScan(LargeListener.class);
+
+        assertEquals(4, handlers.length);
+        assertEquals(expected.size(), handlers.length);
+        for (int i = 0; i < handlers.length; i++) {
+            assertEquals(expected.get(i).method, handlers[i].getMethod());
+            assertEquals(LargeListener.class, handlers[i].getMethod().getDeclaringClass());
+        }
+    }
+
+    /**
+     * The original scan: finds every annotated method, then compares each of them to all of the others to drop the overridden ones,
+     * then looks up the deepest override in the class hierarchy (and the annotation) again.
+     */
+    private static ArrayList<Found> referenceScan(final Class<?> listenerClass) {
+        final Method[] allMethods = ReflectionUtils.getMethods(listenerClass);
+        final ArrayList<Found> handlers = new ArrayList<Found>();
+
+        for (Method method : allMethods) {
+            if (!ReflectionUtils.containsOverridingMethod(allMethods, method)) {
+                final Handler handler = ReflectionUtils.getAnnotation(method, Handler.class);
+                if (handler == null || !handler.enabled()) {
+                    continue;
+                }
+
+                Method overriddenHandler = ReflectionUtils.getOverridingMethod(method, listenerClass);
+                if (overriddenHandler == null) {
+                    overriddenHandler = method;
+                }
+
+                handlers.add(new Found(overriddenHandler, handler));
+            }
+        }
+
+        return handlers;
+    }
+
+    private static class Found {
+        private final Method method;
+        private final Handler config;
+
+        private Found(final Method method, final Handler config) {
+            this.method = method;
+            this.config = config;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class BaseListener {
+        @Handler
+        public void handle(String message) {
+        }
+
+        @Handler(acceptSubtypes = false)
+        @Synchronized
+        public void handle(Integer message) {
+        }
+
+        @Handler
+        public void handle(Long message) {
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class OverridingListener extends BaseListener {
+        @Override
+        public void handle(String message) {
+        }
+
+        @Override
+        public void handle(Integer message) {
+        }
+
+        @Override
+        @Handler(enabled = false)
+        public void handle(Long message) {
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class DisablingListener extends BaseListener {
+        @Override
+        @Handler(enabled = false)
+        public void handle(String message) {
+        }
+
+        @Override
+        @Handler(enabled = false)
+        public void handle(Integer message) {
+        }
+    }
+
+    /**
+     * Has a lot of (non handler) methods in its class hierarchy, like a generated listener
+     */
+    @SuppressWarnings("unused")
+    public static class LargeListener extends ConcurrentHashMap<Object, Object> {
+        private static final long serialVersionUID = 1L;
+
+        @Handler
+        public void handle(String message) {
+        }
+
+        @Handler
+        public void handle(Integer message) {
+        }
+
+        @Handler
+        public void handle(String message1, String message2) {
+        }
+
+        @Handler
+        @Deprecated
+        public void handle(Object message) {
+        }
+    }
+}
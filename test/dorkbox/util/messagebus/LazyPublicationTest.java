@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.common.MessageSupplier;
+import dorkbox.messagebus.error.DeadMessage;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class LazyPublicationTest extends MessageBusTest {
+
+    @Test
+    public void testHasSubscribers() {
+        IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.ExactWithSuperTypes, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        // DeadMessage handlers do not count
+        bus.subscribe(new DeadListener());
+        assertFalse(bus.hasSubscribers(String.class));
+
+        CharSequenceListener listener = new CharSequenceListener();
+        bus.subscribe(listener);
+
+        assertTrue(bus.hasSubscribers(CharSequence.class));
+        // only because of the super type
+        assertTrue(bus.hasSubscribers(String.class));
+        assertFalse(bus.hasSubscribers(Integer.class));
+
+        bus.unsubscribe(listener);
+        assertFalse(bus.hasSubscribers(CharSequence.class));
+
+        bus.shutdown();
+    }
+
+    @Test
+    public void testSupplier() {
+        IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        final AtomicInteger created = new AtomicInteger();
+        MessageSupplier<String> supplier = new MessageSupplier<String>() {
+            @Override
+            public String get() {
+                created.getAndIncrement();
+                return "message";
+            }
+        };
+
+        bus.publish(String.class, supplier);
+        assertEquals(0, created.get());
+        assertEquals(0L, bus.getDeadMessageCount(String.class));
+
+        StringListener listener = new StringListener();
+        bus.subscribe(listener);
+
+        bus.publish(String.class, supplier);
+        assertEquals(1, created.get());
+        assertEquals(1, listener.count.get());
+
+        bus.shutdown();
+    }
+
+    public static class StringListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            count.getAndIncrement();
+        }
+    }
+
+    public static class CharSequenceListener {
+        @Handler
+        public void handle(CharSequence message) {
+        }
+    }
+
+    public static class DeadListener {
+        @Handler
+        public void handle(DeadMessage message) {
+        }
+    }
+}
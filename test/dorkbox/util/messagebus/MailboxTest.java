@@ -0,0 +1,311 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.annotations.Synchronized;
+import dorkbox.messagebus.error.DeadMessage;
+import dorkbox.messagebus.error.IPublicationErrorHandler;
+import dorkbox.messagebus.error.PublicationError;
+import dorkbox.util.messagebus.PublishAndCollectTest.SumCollector;
+import dorkbox.util.messagebus.common.ConcurrentExecutor;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class MailboxTest extends MessageBusTest {
+
+    @Test
+    public void testMailboxes() throws Exception {
+        final boolean useAsmForDispatch = MessageBus.useAsmForDispatch;
+        final boolean useMailboxes = MessageBus.useMailboxesForSynchronizedHandlers;
+        MessageBus.useMailboxesForSynchronizedHandlers = true;
+        try {
+            testMailboxes(true);
+            testMailboxes(false);
+        } finally {
+            MessageBus.useAsmForDispatch = useAsmForDispatch;
+            MessageBus.useMailboxesForSynchronizedHandlers = useMailboxes;
+        }
+    }
+
+    @Test
+    public void testQueuedInvocations() throws Exception {
+        final boolean useAsmForDispatch = MessageBus.useAsmForDispatch;
+        final boolean useMailboxes = MessageBus.useMailboxesForSynchronizedHandlers;
+        final boolean trackPublications = MessageBus.trackPublications;
+        MessageBus.useMailboxesForSynchronizedHandlers = true;
+        MessageBus.trackPublications = true;
+        try {
+            testQueuedInvocations(true);
+            testQueuedInvocations(false);
+        } finally {
+            MessageBus.useAsmForDispatch = useAsmForDispatch;
+            MessageBus.useMailboxesForSynchronizedHandlers = useMailboxes;
+            MessageBus.trackPublications = trackPublications;
+        }
+    }
+
+    private void testQueuedInvocations(final boolean useAsm) throws Exception {
+        MessageBus.useAsmForDispatch = useAsm;
+
+        final IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+
+        // the messages of invocations that are queued (behind a slow handler) are copied, because the bus reuses them
+        final SlowListener listener = new SlowListener();
+        bus.subscribe(listener);
+
+        Thread owner = publishSlow(bus, listener);
+        bus.publish(42);
+        bus.publish("a", "b", "c", "d");
+        bus.publish("e", "f", "g", "h");
+
+        // an unrelated listener has its own mailbox, so it does not wait for the slow one
+        final FastListener fastListener = new FastListener();
+        bus.subscribe(fastListener);
+        bus.publish(new Fast());
+        assertEquals(1, fastListener.count);
+
+        assertEquals(0, listener.received.size());
+        listener.release.countDown();
+        owner.join();
+
+        assertEquals(3, listener.received.size());
+        assertEquals(Arrays.<Object>asList(42), listener.received.get(0));
+        assertEquals(Arrays.<Object>asList("a", "b", "c", "d"), listener.received.get(1));
+        assertEquals(Arrays.<Object>asList("e", "f", "g", "h"), listener.received.get(2));
+
+        // unsubscribeAndWait() waits for the invocations that are still queued
+        final SlowListener listener2 = new SlowListener();
+        bus.unsubscribe(listener);
+        bus.subscribe(listener2);
+
+        owner = publishSlow(bus, listener2);
+        bus.publish("a", "b", "c", "d");
+
+        final AtomicInteger receivedAfterUnsubscribe = new AtomicInteger(-1);
+        final Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    bus.unsubscribeAndWait(listener2);
+                    receivedAfterUnsubscribe.set(listener2.received.size());
+                } catch (InterruptedException ignored) {
+                }
+            }
+        };
+        waiter.start();
+
+        waiter.join(100);
+        assertTrue(waiter.isAlive());
+
+        listener2.release.countDown();
+        waiter.join();
+        owner.join();
+        assertEquals(1, receivedAfterUnsubscribe.get());
+
+        bus.shutdown();
+    }
+
+    /**
+     * Publishes the message that blocks the listener (on another thread, which becomes the owner of its mailbox)
+     */
+    private static Thread publishSlow(final IMessageBus bus, final SlowListener listener) throws InterruptedException {
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                bus.publish(new Slow());
+            }
+        };
+        thread.start();
+
+        listener.entered.await();
+        return thread;
+    }
+
+    private void testMailboxes(final boolean useAsm) {
+        MessageBus.useAsmForDispatch = useAsm;
+
+        final IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+        final AtomicInteger errors = new AtomicInteger();
+        bus.addErrorHandler(new IPublicationErrorHandler() {
+            @Override
+            public void handleError(final PublicationError error) {
+                errors.getAndIncrement();
+            }
+
+            @Override
+            public void handleError(final String error, final Class<?> listenerClass) {
+            }
+        });
+
+        final SynchronizedListener listener = new SynchronizedListener(bus);
+        bus.subscribe(listener);
+
+        // every invocation is executed, one at a time, in the order each thread published them
+        final AtomicLong threadIds = new AtomicLong();
+        ConcurrentExecutor.runConcurrent(new Runnable() {
+            @Override
+            public void run() {
+                final long threadId = threadIds.getAndIncrement();
+                for (int i = 0; i < IterationsPerThread * 10; i++) {
+                    bus.publish(new Ordered(threadId, i));
+                }
+            }
+        }, ConcurrentUnits);
+
+        assertEquals(ConcurrentUnits * IterationsPerThread * 10, listener.count);
+        assertFalse(listener.overlapped);
+        assertFalse(listener.outOfOrder);
+
+        // a handler that publishes to its own listener is executed right away (re-entrant)
+        bus.publish("hello");
+        assertEquals(1, listener.reentrantCount);
+
+        // the result of a synchronized handler is waited for
+        assertEquals(Integer.valueOf(42), bus.publishAndCollect(42L, new SumCollector()));
+
+        // errors are still reported
+        bus.publish(new Failing());
+        assertEquals(1, errors.get());
+
+        bus.shutdown();
+    }
+
+    public static class Ordered {
+        private final long threadId;
+        private final int sequence;
+
+        public Ordered(final long threadId, final int sequence) {
+            this.threadId = threadId;
+            this.sequence = sequence;
+        }
+    }
+
+    public static class Failing {
+    }
+
+    public static class SynchronizedListener {
+        private final IMessageBus bus;
+        private final AtomicInteger inside = new AtomicInteger();
+        private final int[] lastSequence = new int[ConcurrentUnits];
+
+        // not volatile or atomic, they are only ever modified by one thread at a time
+        private int count = 0;
+        private int reentrantCount = 0;
+        private boolean overlapped = false;
+        private boolean outOfOrder = false;
+
+        public SynchronizedListener(final IMessageBus bus) {
+            this.bus = bus;
+            for (int i = 0; i < lastSequence.length; i++) {
+                lastSequence[i] = -1;
+            }
+        }
+
+        @Handler
+        @Synchronized
+        public void handle(Ordered message) {
+            if (inside.getAndIncrement() != 0) {
+                overlapped = true;
+            }
+
+            count++;
+            final int threadId = (int) message.threadId;
+            if (lastSequence[threadId] + 1 != message.sequence) {
+                outOfOrder = true;
+            }
+            lastSequence[threadId] = message.sequence;
+
+            inside.getAndDecrement();
+        }
+
+        @Handler
+        @Synchronized
+        public void handle(String message) {
+            final int before = reentrantCount;
+            bus.publish(new Reentrant());
+            if (reentrantCount != before + 1) {
+                reentrantCount = -100;
+            }
+        }
+
+        @Handler
+        @Synchronized
+        public void handle(Reentrant message) {
+            reentrantCount++;
+        }
+
+        @Handler
+        @Synchronized
+        public int handle(Long message) {
+            return message.intValue();
+        }
+
+        @Handler
+        @Synchronized
+        public void handle(Failing message) {
+            throw new IllegalStateException("expected");
+        }
+    }
+
+    public static class Reentrant {
+    }
+
+    public static class Slow {
+    }
+
+    public static class Fast {
+    }
+
+    public static class SlowListener {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        // only modified by one thread at a time
+        private final List<List<Object>> received = new ArrayList<List<Object>>();
+
+        @Handler
+        @Synchronized
+        public void handle(Slow message) throws InterruptedException {
+            entered.countDown();
+            release.await();
+        }
+
+        @Handler
+        @Synchronized
+        public void handle(DeadMessage message) {
+            final Object[] messages = message.getMessages();
+            received.add(messages == null ? null : Arrays.asList(messages));
+        }
+
+        @Handler
+        @Synchronized
+        public void handle(String message1, String message2, String message3, String message4) {
+            received.add(Arrays.<Object>asList(message1, message2, message3, message4));
+        }
+    }
+
+    public static class FastListener {
+        private int count = 0;
+
+        @Handler
+        @Synchronized
+        public void handle(Fast message) {
+            count++;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.common.MultiClassIndex;
+import dorkbox.util.messagebus.common.AssertSupport;
+import org.junit.Test;
+
+public class MultiClassIndexTest extends AssertSupport {
+
+    @Test
+    public void testIndex() {
+        MultiClassIndex<String> index = new MultiClassIndex<String>();
+
+        index.put(String.class, Integer.class, "a");
+        index.put(Integer.class, String.class, "b");
+        index.put(String.class, Integer.class, Long.class, "c");
+
+        assertEquals("a", index.get(String.class, Integer.class));
+        assertEquals("b", index.get(Integer.class, String.class));
+        assertEquals("c", index.get(String.class, Integer.class, Long.class));
+
+        // unknown classes and unknown combinations
+        assertNull(index.get(String.class, String.class));
+        assertNull(index.get(Object.class, Integer.class));
+        assertNull(index.get(String.class, Integer.class, Integer.class));
+
+        // replacing a value
+        index.put(String.class, Integer.class, "d");
+        assertEquals("d", index.get(String.class, Integer.class));
+
+        // grows past the initial table size
+        Class<?>[] classes = new Class<?>[] {Object.class, Number.class, Double.class, Float.class, Short.class, Byte.class,
+                                             Character.class, Boolean.class, CharSequence.class, StringBuilder.class};
+        for (int i = 0; i < classes.length; i++) {
+            for (int j = 0; j < classes.length; j++) {
+                index.put(classes[i], classes[j], i + ":" + j);
+            }
+        }
+        for (int i = 0; i < classes.length; i++) {
+            for (int j = 0; j < classes.length; j++) {
+                assertEquals(i + ":" + j, index.get(classes[i], classes[j]));
+            }
+        }
+        assertEquals("d", index.get(String.class, Integer.class));
+        assertEquals("c", index.get(String.class, Integer.class, Long.class));
+
+        index.clear();
+        assertNull(index.get(String.class, Integer.class));
+    }
+}
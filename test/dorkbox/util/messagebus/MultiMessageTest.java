@@ -82,6 +82,65 @@ public class MultiMessageTest extends MessageBusTest {
         count.set(0);
     }
 
+    @Test
+    public void testManyMessages() throws Exception {
+        IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.ExactWithSuperTypes,
+                                         Runtime.getRuntime()
+                                                .availableProcessors() / 2);
+        ManyListener listener = new ManyListener();
+        bus.subscribe(listener);
+
+        bus.publish("s", "s", "s", "s"); // 1 exact
+        bus.publish(1, "s", "s", "s"); // 1 super (Number, CharSequence...)
+        bus.publish("s", "s", "s", "s", "s"); // 1
+        bus.publish(1, 2, 3, 4, 5, 6); // 1
+        bus.publish(1, 2, 3, 4, 5, "s"); // 0
+
+        assertEquals(4, manyCount.get());
+        assertEquals("s", listener.last);
+
+        bus.publishAsync(1, 2, 3, 4, 5, 6);
+        bus.publishAsync("s", "s", "s", "s");
+        for (int i = 0; i < 500 && manyCount.get() < 6; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(6, manyCount.get());
+
+        bus.unsubscribe(listener);
+        bus.publish("s", "s", "s", "s");
+        assertEquals(6, manyCount.get());
+
+        manyCount.set(0);
+        bus.shutdown();
+    }
+
+    private static AtomicInteger manyCount = new AtomicInteger(0);
+
+    public static class ManyListener {
+        volatile Object last;
+
+        @Handler
+        public void handle(String o1, String o2, String o3, String o4) {
+            manyCount.getAndIncrement();
+            last = o4;
+        }
+
+        @Handler
+        public void handle(Number o1, CharSequence o2, CharSequence o3, CharSequence o4) {
+            manyCount.getAndIncrement();
+        }
+
+        @Handler
+        public void handle(String o1, String o2, String o3, String o4, String o5) {
+            manyCount.getAndIncrement();
+        }
+
+        @Handler
+        public void handle(Integer o1, Integer o2, Integer o3, Integer o4, Integer o5, Integer o6) {
+            manyCount.getAndIncrement();
+        }
+    }
+
     public static class MultiListener {
         @Handler
         public void handleSync(Object o) {
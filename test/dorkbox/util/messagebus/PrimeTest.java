@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.subscription.asm.MethodAccessCache;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class PrimeTest extends MessageBusTest {
+
+    @Test
+    public void testPrime() throws Exception {
+        testPrime(IMessageBus.DispatchMode.Exact, 1);
+        testPrime(IMessageBus.DispatchMode.ExactWithSuperTypes, 1);
+        testPrime(IMessageBus.DispatchMode.ExactWithSuperTypes, 4);
+    }
+
+    private void testPrime(final IMessageBus.DispatchMode dispatchMode, final int numberOfThreads) throws Exception {
+        MessageBus bus = new MessageBus(dispatchMode, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        // priming does not subscribe anything
+        assertTrue(bus.primeListeners(numberOfThreads, StringListener.class, NumberListener.class, NoHandlers.class) >= 0L);
+        assertFalse(bus.hasSubscribers(String.class));
+
+        // but the invokers of the handlers were generated
+        if (MessageBus.useAsmForDispatch) {
+            assertNotNull(MethodAccessCache.getIfPresent(StringListener.class));
+            assertNotNull(MethodAccessCache.getIfPresent(NumberListener.class));
+            assertNull(MethodAccessCache.getIfPresent(NoHandlers.class));
+        }
+
+        // priming the same classes again is harmless
+        assertTrue(bus.primeListeners(StringListener.class, NumberListener.class) >= 0L);
+
+        StringListener stringListener = new StringListener();
+        NumberListener numberListener = new NumberListener();
+        bus.subscribe(stringListener);
+        bus.subscribe(numberListener);
+        bus.subscribe(new NoHandlers());
+
+        // only hasSubscribers(String.class) has resolved super-type subscriptions so far
+        assertTrue(bus.getSuperTypeCacheSize() <= 1);
+        assertTrue(bus.prime(String.class, Integer.class, Number.class, String[].class) >= 0L);
+
+        if (dispatchMode == IMessageBus.DispatchMode.ExactWithSuperTypes) {
+            // the super-type subscriptions of every primed type were resolved (and cached)
+            assertEquals(4, bus.getSuperTypeCacheSize());
+        }
+
+        bus.publish("hello");
+        bus.publish(42);
+        assertEquals(1, stringListener.count.get());
+
+        if (dispatchMode == IMessageBus.DispatchMode.Exact) {
+            assertEquals(0, numberListener.count.get());
+        }
+        else {
+            assertEquals(1, numberListener.count.get());
+        }
+
+        bus.unsubscribe(stringListener);
+        bus.publish("hello");
+        assertEquals(1, stringListener.count.get());
+
+        bus.shutdown();
+    }
+
+    public static class StringListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            count.getAndIncrement();
+        }
+    }
+
+    public static class NumberListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Handler(acceptSubtypes = true)
+        public void handle(Number message) {
+            count.getAndIncrement();
+        }
+    }
+
+    public static class NoHandlers {
+    }
+}
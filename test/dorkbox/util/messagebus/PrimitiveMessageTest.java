@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/2/16
+ */
+public class PrimitiveMessageTest extends MessageBusTest {
+
+    @Test
+    public void testPrimitiveMessages() {
+        testPrimitiveMessages(IMessageBus.DispatchMode.Exact);
+        testPrimitiveMessages(IMessageBus.DispatchMode.ExactWithSuperTypes);
+    }
+
+    private void testPrimitiveMessages(final IMessageBus.DispatchMode dispatchMode) {
+        IMessageBus bus = new MessageBus(dispatchMode, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        PrimitiveListener listener = new PrimitiveListener();
+        bus.subscribe(listener);
+
+        bus.publish(2);
+        bus.publish(3L);
+        bus.publish(4.5D);
+
+        assertEquals(2L, listener.intTotal.get());
+        assertEquals(3L, listener.longTotal.get());
+        assertEquals(Double.doubleToLongBits(4.5D), listener.doubleBits.get());
+
+        // nothing listens for boxed longs, and the primitive listener received it, so it is not a dead message
+        assertEquals(0L, bus.getDeadMessageCount(Long.class));
+
+        // there is a listener for the boxed type as well
+        assertEquals(2L, listener.boxedIntTotal.get());
+
+        bus.unsubscribe(listener);
+        bus.publish(7L);
+        assertEquals(3L, listener.longTotal.get());
+        assertEquals(1L, bus.getDeadMessageCount(Long.class));
+
+        bus.shutdown();
+    }
+
+    @Test
+    public void testPrimitiveMessagesAsync() throws InterruptedException {
+        IMessageBus bus = new MessageBus(1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        PrimitiveListener listener = new PrimitiveListener();
+        listener.latch = new CountDownLatch(3);
+        bus.subscribe(listener);
+
+        bus.publishAsync(2);
+        bus.publishAsync(3L);
+        bus.publishAsync(4.5D);
+
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+
+        assertEquals(2L, listener.intTotal.get());
+        assertEquals(3L, listener.longTotal.get());
+        assertEquals(Double.doubleToLongBits(4.5D), listener.doubleBits.get());
+
+        bus.shutdown();
+    }
+
+    public static class PrimitiveListener {
+        private final AtomicLong intTotal = new AtomicLong();
+        private final AtomicLong boxedIntTotal = new AtomicLong();
+        private final AtomicLong longTotal = new AtomicLong();
+        private final AtomicLong doubleBits = new AtomicLong();
+        private volatile CountDownLatch latch = new CountDownLatch(0);
+
+        @Handler
+        public void handleInt(int message) {
+            intTotal.addAndGet(message);
+            latch.countDown();
+        }
+
+        @Handler
+        public void handleInteger(Integer message) {
+            boxedIntTotal.addAndGet(message);
+        }
+
+        @Handler
+        public void handleLong(long message) {
+            longTotal.addAndGet(message);
+            latch.countDown();
+        }
+
+        @Handler
+        public void handleDouble(double message) {
+            doubleBits.set(Double.doubleToLongBits(message));
+            latch.countDown();
+        }
+    }
+}
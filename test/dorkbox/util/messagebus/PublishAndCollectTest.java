@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.common.MessageCollector;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class PublishAndCollectTest extends MessageBusTest {
+
+    @Test
+    public void testCollect() throws Exception {
+        IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        bus.subscribe(new AnswerListener(1));
+        bus.subscribe(new AnswerListener(2));
+        bus.subscribe(new AnswerListener(3));
+        bus.subscribe(new VoidListener());
+
+        // void handlers do not contribute a result
+        assertEquals(Integer.valueOf(6), bus.publishAndCollect("question", new SumCollector()));
+
+        Future<Integer> future = bus.publishAndCollectAsync("question", new SumCollector());
+        assertEquals(Integer.valueOf(6), future.get(10, TimeUnit.SECONDS));
+        assertTrue(future.isDone());
+
+        // nothing answers an Integer
+        assertEquals(Integer.valueOf(0), bus.publishAndCollect(42, new SumCollector()));
+
+        bus.shutdown();
+    }
+
+    public static class SumCollector implements MessageCollector<Integer> {
+        private int sum = 0;
+
+        @Override
+        public void collect(final Object result) {
+            sum += (Integer) result;
+        }
+
+        @Override
+        public Integer getResult() {
+            return sum;
+        }
+    }
+
+    public static class AnswerListener {
+        private final int answer;
+
+        public AnswerListener(final int answer) {
+            this.answer = answer;
+        }
+
+        @Handler
+        public int handle(String message) {
+            return answer;
+        }
+    }
+
+    public static class VoidListener {
+        @Handler
+        public void handle(String message) {
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.dispatch.Publisher;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class PublisherTest extends MessageBusTest {
+
+    @Test
+    public void testPublisher() {
+        IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.ExactWithSuperTypes, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        Publisher<String> publisher = bus.publisherFor(String.class);
+
+        // nothing is subscribed yet
+        publisher.publish("dead");
+        assertEquals(1L, bus.getDeadMessageCount(String.class));
+
+        StringListener listener1 = new StringListener();
+        bus.subscribe(listener1);
+        publisher.publish("a");
+        assertEquals(1, listener1.count.get());
+
+        // a new listener of a known class does not replace the subscriptions
+        StringListener listener2 = new StringListener();
+        bus.subscribe(listener2);
+        publisher.publish("b");
+        assertEquals(2, listener1.count.get());
+        assertEquals(1, listener2.count.get());
+
+        // a new listener class (for a super type) is picked up as well
+        ObjectListener objectListener = new ObjectListener();
+        bus.subscribe(objectListener);
+        publisher.publish("c");
+        assertEquals(3, listener1.count.get());
+        assertEquals(1, objectListener.count.get());
+
+        bus.unsubscribe(listener1);
+        bus.unsubscribe(listener2);
+        bus.unsubscribe(objectListener);
+        publisher.publish("dead");
+        assertEquals(3, listener1.count.get());
+        assertEquals(2L, bus.getDeadMessageCount(String.class));
+
+        bus.shutdown();
+    }
+
+    public static class StringListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            count.getAndIncrement();
+        }
+    }
+
+    public static class ObjectListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Handler
+        public void handle(Object message) {
+            count.getAndIncrement();
+        }
+    }
+}
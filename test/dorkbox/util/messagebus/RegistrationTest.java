@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.subscription.Registration;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class RegistrationTest extends MessageBusTest {
+
+    @Test
+    public void testRegistration() {
+        IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        Listener listener1 = new Listener();
+        Listener listener2 = new Listener();
+
+        // the first registration creates the subscriptions, the second one uses the existing subscriptions
+        Registration registration1 = bus.register(listener1);
+        Registration registration2 = bus.register(listener2);
+
+        bus.publish("s");
+        bus.publish(1);
+        assertEquals(2, listener1.count.get());
+        assertEquals(2, listener2.count.get());
+
+        registration1.close();
+        assertTrue(registration1.isClosed());
+
+        bus.publish("s");
+        bus.publish(1);
+        assertEquals(2, listener1.count.get());
+        assertEquals(4, listener2.count.get());
+
+        // closing again does nothing, even if the listener was subscribed again in the meantime
+        bus.subscribe(listener1);
+        registration1.close();
+        bus.publish("s");
+        assertEquals(3, listener1.count.get());
+        assertEquals(5, listener2.count.get());
+
+        // unsubscribe() and close() can be mixed
+        bus.unsubscribe(listener2);
+        registration2.close();
+        bus.publish("s");
+        assertEquals(5, listener2.count.get());
+
+        // classes without handlers still return a registration
+        bus.register(new Object()).close();
+
+        bus.shutdown();
+    }
+
+    public static class Listener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            count.getAndIncrement();
+        }
+
+        @Handler
+        public void handle(Integer message) {
+            count.getAndIncrement();
+        }
+    }
+}
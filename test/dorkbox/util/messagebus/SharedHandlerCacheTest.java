@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.common.MessageHandler;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class SharedHandlerCacheTest extends MessageBusTest {
+
+    @Test
+    public void testHandlersAreShared() {
+        MessageHandler[] handlers = MessageHandler.get(CountingListener.class);
+        assertEquals(1, handlers.length);
+        assertTrue(handlers == MessageHandler.get(CountingListener.class));
+
+        assertEquals(0, MessageHandler.get(Object.class).length);
+    }
+
+    @Test
+    public void testManyBuses() {
+        final int threshold = MessageBus.asmInvocationThreshold;
+        MessageBus.asmInvocationThreshold = 5;
+        try {
+            // every bus uses the same handlers (and invokers), but has its own listeners
+            IMessageBus[] buses = new IMessageBus[10];
+            CountingListener[] listeners = new CountingListener[buses.length];
+
+            for (int i = 0; i < buses.length; i++) {
+                buses[i] = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+                buses[i].addErrorHandler(TestFailingHandler);
+
+                listeners[i] = new CountingListener();
+                buses[i].subscribe(listeners[i]);
+            }
+
+            for (int i = 0; i < buses.length; i++) {
+                for (int j = 0; j <= i * 2; j++) {
+                    buses[i].publish("message");
+                }
+            }
+
+            for (int i = 0; i < buses.length; i++) {
+                assertEquals(i * 2 + 1, listeners[i].count.get());
+                buses[i].shutdown();
+            }
+        } finally {
+            MessageBus.asmInvocationThreshold = threshold;
+        }
+    }
+
+    public static class CountingListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            count.getAndIncrement();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.util.messagebus.common.ConcurrentExecutor;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subscribes and un-subscribes listeners of the same classes from many threads at the same time, while messages are published.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class SubscriptionChurnTest extends MessageBusTest {
+    private static final int Iterations = 2000;
+
+    @Test
+    public void testChurn() {
+        final IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.ExactWithSuperTypes, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        final AtomicInteger received = new AtomicInteger();
+
+        Runnable churn = new Runnable() {
+            @Override
+            public void run() {
+                StringListener stringListener = new StringListener(received);
+                MultiListener multiListener = new MultiListener(received);
+
+                for (int i = 0; i < Iterations; i++) {
+                    bus.subscribe(stringListener);
+                    bus.subscribe(multiListener);
+                    bus.publish("churn");
+                    bus.unsubscribe(stringListener);
+                    bus.unsubscribe(multiListener);
+                }
+
+                // leave one of each subscribed
+                bus.subscribe(stringListener);
+                bus.subscribe(multiListener);
+            }
+        };
+
+        ConcurrentExecutor.runConcurrent(churn, ConcurrentUnits);
+
+        // both handlers of every listener must be subscribed (and only once)
+        received.set(0);
+        bus.publish("done");
+        assertEquals(ConcurrentUnits * 2, received.get());
+
+        received.set(0);
+        bus.publish(1);
+        assertEquals(ConcurrentUnits, received.get());
+
+        bus.shutdown();
+    }
+
+    public static class StringListener {
+        private final AtomicInteger received;
+
+        public StringListener(final AtomicInteger received) {
+            this.received = received;
+        }
+
+        @Handler
+        public void handle(String message) {
+            received.getAndIncrement();
+        }
+    }
+
+    public static class MultiListener {
+        private final AtomicInteger received;
+
+        public MultiListener(final AtomicInteger received) {
+            this.received = received;
+        }
+
+        @Handler
+        public void handle(CharSequence message) {
+            received.getAndIncrement();
+        }
+
+        @Handler
+        public void handle(Integer message) {
+            received.getAndIncrement();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.subscription.Entry;
+import dorkbox.messagebus.subscription.Registration;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks the objects that the bus keeps per subscribed listener instance. A listener with several handlers shares ONE entry (and one
+ * weak reference) across all of its subscriptions, so the memory per instance does not grow with the number of handlers.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class SubscriptionMemoryTest extends MessageBusTest {
+    private static final int Instances = 1000;
+
+    @Test
+    public void testSharedEntries() {
+        IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        AtomicInteger received = new AtomicInteger();
+        FourHandlers listener1 = new FourHandlers(received);
+        FourHandlers listener2 = new FourHandlers(received);
+        bus.subscribe(listener1);
+        bus.subscribe(listener2);
+
+        bus.publish("s");
+        bus.publish(1);
+        bus.publish(1L);
+        bus.publish(new Object[0]);
+        assertEquals(8, received.get());
+
+        // removing the listener from one subscription removes it from all of them, since they share the entry
+        bus.unsubscribe(listener1);
+        received.set(0);
+        bus.publish("s");
+        bus.publish(1);
+        assertEquals(2, received.get());
+
+        bus.shutdown();
+    }
+
+    @Test
+    public void testObjectsPerInstance() {
+        countObjects(true);
+        countObjects(false);
+    }
+
+    /**
+     * Counts the entries (and weak references) that were created for the instances, instead of measuring the heap (which is not exact)
+     */
+    private void countObjects(final boolean useStrongReferences) {
+        final boolean original = MessageBus.useStrongReferencesByDefault;
+        MessageBus.useStrongReferencesByDefault = useStrongReferences;
+
+        try {
+            IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+            bus.addErrorHandler(TestFailingHandler);
+
+            AtomicInteger received = new AtomicInteger();
+            IdentityHashMap<Object, Boolean> entries = new IdentityHashMap<Object, Boolean>();
+            IdentityHashMap<Object, Boolean> references = new IdentityHashMap<Object, Boolean>();
+
+            for (int i = 0; i < Instances; i++) {
+                FourHandlers listener = new FourHandlers(received);
+                Registration registration = bus.register(listener);
+
+                // one entry per subscription (handler)
+                assertEquals(4, registration.getEntries().length);
+
+                for (Entry entry : registration.getEntries()) {
+                    entries.put(entry, Boolean.TRUE);
+
+                    final Object value = entry.getValue();
+                    if (useStrongReferences) {
+                        assertTrue(value == listener);
+                    }
+                    else {
+                        assertTrue(((WeakReference<?>) value).get() == listener);
+                        references.put(value, Boolean.TRUE);
+                    }
+                }
+            }
+
+            // one entry (and one weak reference) per instance, instead of one of each per handler
+            assertEquals(Instances, entries.size());
+            assertEquals(useStrongReferences ? 0 : Instances, references.size());
+
+            bus.publish("s");
+            assertEquals(Instances, received.get());
+            bus.shutdown();
+        } finally {
+            MessageBus.useStrongReferencesByDefault = original;
+        }
+    }
+
+
+    public static class FourHandlers {
+        private final AtomicInteger received;
+
+        public FourHandlers(final AtomicInteger received) {
+            this.received = received;
+        }
+
+        @Handler
+        public void handle(String message) {
+            received.getAndIncrement();
+        }
+
+        @Handler
+        public void handle(Integer message) {
+            received.getAndIncrement();
+        }
+
+        @Handler
+        public void handle(Long message) {
+            received.getAndIncrement();
+        }
+
+        @Handler
+        public void handle(Object[] message) {
+            received.getAndIncrement();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.common.MessageConsumer2;
+import dorkbox.messagebus.common.MessageConsumer3;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Every combination of the super types of the messages must be resolved exactly once.
+ *
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class SuperTypeIndexTest extends MessageBusTest {
+    private static final Class<?>[] IntegerSupers = new Class<?>[] {Number.class, Comparable.class, Serializable.class, Object.class};
+    private static final Class<?>[] StringSupers = new Class<?>[] {CharSequence.class, Comparable.class, Serializable.class, Object.class};
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTwoMessages() {
+        IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.ExactWithSuperTypes, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        final AtomicInteger[][] counts = new AtomicInteger[IntegerSupers.length][StringSupers.length];
+        for (int i = 0; i < IntegerSupers.length; i++) {
+            for (int j = 0; j < StringSupers.length; j++) {
+                final AtomicInteger count = counts[i][j] = new AtomicInteger();
+                bus.subscribe((Class<Object>) IntegerSupers[i], (Class<Object>) StringSupers[j], new MessageConsumer2<Object, Object>() {
+                    @Override
+                    public void accept(final Object message1, final Object message2) {
+                        count.getAndIncrement();
+                    }
+                });
+            }
+        }
+
+        final AtomicInteger unrelated = new AtomicInteger();
+        bus.subscribe(Double.class, CharSequence.class, new MessageConsumer2<Double, CharSequence>() {
+            @Override
+            public void accept(final Double message1, final CharSequence message2) {
+                unrelated.getAndIncrement();
+            }
+        });
+
+        bus.publish(1, "s");
+        bus.publish(2, "s");
+
+        for (int i = 0; i < IntegerSupers.length; i++) {
+            for (int j = 0; j < StringSupers.length; j++) {
+                assertEquals(2, counts[i][j].get());
+            }
+        }
+        assertEquals(0, unrelated.get());
+
+        bus.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testThreeMessages() {
+        IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.ExactWithSuperTypes, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        final AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < IntegerSupers.length; i++) {
+            for (int j = 0; j < StringSupers.length; j++) {
+                for (int k = 0; k < IntegerSupers.length; k++) {
+                    bus.subscribe((Class<Object>) IntegerSupers[i], (Class<Object>) StringSupers[j], (Class<Object>) IntegerSupers[k],
+                                  new MessageConsumer3<Object, Object, Object>() {
+                                      @Override
+                                      public void accept(final Object message1, final Object message2, final Object message3) {
+                                          count.getAndIncrement();
+                                      }
+                                  });
+                }
+            }
+        }
+
+        // more than 64 subscriptions, so the bitsets have more than one word
+        bus.publish(1, "s", 2);
+        assertEquals(IntegerSupers.length * StringSupers.length * IntegerSupers.length, count.get());
+
+        // a String is not a Number, so the handlers for a Number as the third message do not receive it
+        count.set(0);
+        bus.publish(1, "s", "x");
+        assertEquals(IntegerSupers.length * StringSupers.length * (IntegerSupers.length - 1), count.get());
+
+        bus.shutdown();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.annotations.Synchronized;
+import dorkbox.messagebus.error.IPublicationErrorHandler;
+import dorkbox.messagebus.error.PublicationError;
+import dorkbox.messagebus.subscription.asm.MethodAccessCache;
+import dorkbox.util.messagebus.common.ConcurrentExecutor;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class TieredInvocationTest extends MessageBusTest {
+
+    private static final int THRESHOLD = 10;
+
+    @Test
+    public void testPromotion() throws Exception {
+        final int threshold = MessageBus.asmInvocationThreshold;
+        MessageBus.asmInvocationThreshold = THRESHOLD;
+        try {
+            IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+            bus.addErrorHandler(TestFailingHandler);
+
+            CountingListener listener = new CountingListener();
+            SynchronizedListener synchronizedListener = new SynchronizedListener();
+            bus.subscribe(listener);
+            bus.subscribe(synchronizedListener);
+
+            // every message is delivered, before and after the handlers are promoted
+            for (int i = 0; i < THRESHOLD * 3; i++) {
+                bus.publish("message");
+                bus.publish("message", 1);
+            }
+
+            assertEquals(THRESHOLD * 3, listener.count.get());
+            assertEquals(THRESHOLD * 3, listener.count2.get());
+            assertEquals(THRESHOLD * 3, synchronizedListener.count.get());
+
+            // the handlers are promoted while several threads are publishing
+            final IMessageBus concurrentBus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+            concurrentBus.addErrorHandler(TestFailingHandler);
+
+            final CountingListener concurrentListener = new CountingListener();
+            concurrentBus.subscribe(concurrentListener);
+
+            ConcurrentExecutor.runConcurrent(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < THRESHOLD * 10; i++) {
+                        concurrentBus.publish("message");
+                    }
+                }
+            }, ConcurrentUnits);
+
+            assertEquals(ConcurrentUnits * THRESHOLD * 10, concurrentListener.count.get());
+
+            bus.shutdown();
+            concurrentBus.shutdown();
+        } finally {
+            MessageBus.asmInvocationThreshold = threshold;
+        }
+    }
+
+    @Test
+    public void testPrimingGeneratesMethodAccess() throws Exception {
+        final int threshold = MessageBus.asmInvocationThreshold;
+        final boolean useAsmForDispatch = MessageBus.useAsmForDispatch;
+        MessageBus.asmInvocationThreshold = THRESHOLD;
+        MessageBus.useAsmForDispatch = true;
+        try {
+            IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+            bus.addErrorHandler(TestFailingHandler);
+
+            // subscribe() waits until the handler has been used often enough
+            LazyListener lazyListener = new LazyListener();
+            bus.subscribe(lazyListener);
+            assertNull(MethodAccessCache.getIfPresent(LazyListener.class));
+
+            // priming, and subscribing in bulk, generate it right away
+            bus.primeListeners(2, PrimedListener.class, LazyListener.class);
+            assertNotNull(MethodAccessCache.getIfPresent(PrimedListener.class));
+            assertNotNull(MethodAccessCache.getIfPresent(LazyListener.class));
+
+            bus.subscribeAll(new BulkListener(), new BulkListener());
+            assertNotNull(MethodAccessCache.getIfPresent(BulkListener.class));
+
+            // otherwise it is generated in the background, once the threshold is reached
+            bus.subscribe(new BackgroundListener());
+            for (int i = 0; i < THRESHOLD; i++) {
+                bus.publish(new Background());
+            }
+
+            final long deadline = System.currentTimeMillis() + 10000L;
+            while (MethodAccessCache.getIfPresent(BackgroundListener.class) == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertNotNull(MethodAccessCache.getIfPresent(BackgroundListener.class));
+
+            bus.publish("message");
+            assertEquals(1, lazyListener.count.get());
+
+            bus.shutdown();
+        } finally {
+            MessageBus.asmInvocationThreshold = threshold;
+            MessageBus.useAsmForDispatch = useAsmForDispatch;
+        }
+    }
+
+    @Test
+    public void testExceptionsBeforePromotion() throws Exception {
+        final int threshold = MessageBus.asmInvocationThreshold;
+        MessageBus.asmInvocationThreshold = THRESHOLD;
+        try {
+            final AtomicInteger errors = new AtomicInteger();
+            final AtomicReference<Throwable> cause = new AtomicReference<Throwable>();
+
+            IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+            bus.addErrorHandler(new IPublicationErrorHandler() {
+                @Override
+                public void handleError(final PublicationError error) {
+                    errors.getAndIncrement();
+                    cause.set(error.getCause());
+                }
+
+                @Override
+                public void handleError(final String error, final Class<?> listenerClass) {
+                }
+            });
+
+            bus.subscribe(new FailingListener());
+
+            // the handler's exception is reported, not the reflection exception that wraps it
+            bus.publish("message");
+            assertEquals(1, errors.get());
+            assertTrue(cause.get() instanceof IllegalStateException);
+
+            for (int i = 0; i < THRESHOLD * 2; i++) {
+                bus.publish("message");
+            }
+            assertEquals(THRESHOLD * 2 + 1, errors.get());
+            assertTrue(cause.get() instanceof IllegalStateException);
+
+            bus.shutdown();
+        } finally {
+            MessageBus.asmInvocationThreshold = threshold;
+        }
+    }
+
+    public static class CountingListener {
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger count2 = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            count.getAndIncrement();
+        }
+
+        @Handler
+        public void handle(String message1, Integer message2) {
+            count2.getAndIncrement();
+        }
+    }
+
+    public static class SynchronizedListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Handler
+        @Synchronized
+        public void handle(String message) {
+            count.getAndIncrement();
+        }
+    }
+
+    public static class LazyListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            count.getAndIncrement();
+        }
+    }
+
+    public static class PrimedListener {
+        @Handler
+        public void handle(String message) {
+        }
+    }
+
+    public static class BulkListener {
+        @Handler
+        public void handle(String message) {
+        }
+    }
+
+    public static class BackgroundListener {
+        @Handler
+        public void handle(Background message) {
+        }
+    }
+
+    public static class Background {
+    }
+
+    public static class FailingListener {
+        @Handler
+        public void handle(String message) {
+            throw new IllegalStateException("expected");
+        }
+    }
+}
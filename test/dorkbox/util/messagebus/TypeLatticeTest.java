@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.util.ReflectionUtils;
+import dorkbox.messagebus.util.TypeLattice;
+import dorkbox.util.messagebus.common.AssertSupport;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TypeLatticeTest extends AssertSupport {
+    private static final Class<?>[] Types = new Class<?>[] {Object.class, String.class, Integer.class, Number.class, Comparable.class,
+                                                            Serializable.class, CharSequence.class, ArrayList.class, LinkedList.class,
+                                                            AbstractList.class, List.class, Collection.class, Iterable.class,
+                                                            RandomAccess.class, Cloneable.class, ConcurrentHashMap.class,
+                                                            StringBuilder.class, Thread.class, Runnable.class};
+
+    @Test
+    public void testSuperTypes() {
+        TypeLattice lattice = new TypeLattice();
+
+        for (Class<?> type : Types) {
+            // the same super types as the reflection utils
+            Set<Class<?>> expected = new HashSet<Class<?>>();
+            Iterator<Class<?>> iterator = ReflectionUtils.getSuperTypes(type);
+            while (iterator.hasNext()) {
+                Class<?> next = iterator.next();
+                if (next != type) {
+                    expected.add(next);
+                }
+            }
+
+            Set<Class<?>> actual = new HashSet<Class<?>>();
+            for (Class<?> superType : lattice.getSuperTypes(type)) {
+                assertTrue(actual.add(superType));  // no duplicates
+            }
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testIsSuperType() {
+        TypeLattice lattice = new TypeLattice();
+
+        for (Class<?> superType : Types) {
+            for (Class<?> type : Types) {
+                // interfaces do not have Object as a super type
+                boolean expected = superType.isAssignableFrom(type) && !(superType == Object.class && type.isInterface());
+                assertEquals(expected, lattice.isSuperType(superType, type));
+            }
+        }
+
+        // every class has a unique id
+        Set<Integer> ids = new HashSet<Integer>();
+        for (Class<?> type : Types) {
+            assertTrue(ids.add(lattice.getId(type)));
+        }
+    }
+
+    @Test
+    public void testClear() {
+        TypeLattice lattice = new TypeLattice();
+
+        for (Class<?> type : Types) {
+            lattice.getSuperTypes(type);
+        }
+        assertTrue(lattice.getId(String.class) > 0);
+
+        // the ids start over, and the super types are resolved again
+        lattice.clear();
+        assertEquals(0, lattice.getId(String.class));
+        assertTrue(lattice.isSuperType(CharSequence.class, String.class));
+        assertFalse(lattice.isSuperType(String.class, CharSequence.class));
+        assertTrue(lattice.isSuperType(Object.class, Integer.class));
+    }
+}
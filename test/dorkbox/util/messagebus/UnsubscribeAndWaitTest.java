@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ */
+package dorkbox.util.messagebus;
+
+import dorkbox.messagebus.IMessageBus;
+import dorkbox.messagebus.MessageBus;
+import dorkbox.messagebus.annotations.Handler;
+import dorkbox.messagebus.subscription.EpochTracker;
+import dorkbox.util.messagebus.common.MessageBusTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dorkbox, llc
+ *         Date: 2/3/16
+ */
+public class UnsubscribeAndWaitTest extends MessageBusTest {
+
+    private boolean trackPublications;
+
+    @Before
+    public void enableTracking() {
+        trackPublications = MessageBus.trackPublications;
+        MessageBus.trackPublications = true;
+    }
+
+    @After
+    public void restoreTracking() {
+        MessageBus.trackPublications = trackPublications;
+    }
+
+    @Test
+    public void testWaitsForInFlightDelivery() throws Exception {
+        final IMessageBus bus = new MessageBus(1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        final BlockingListener listener = new BlockingListener();
+        bus.subscribe(listener);
+
+        bus.publishAsync("first");
+        assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+
+        final CountDownLatch unsubscribed = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    bus.unsubscribeAndWait(listener);
+                    unsubscribed.countDown();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        thread.start();
+
+        // the delivery of "first" is still in progress
+        assertFalse(unsubscribed.await(200, TimeUnit.MILLISECONDS));
+
+        listener.release.countDown();
+        assertTrue(unsubscribed.await(10, TimeUnit.SECONDS));
+        assertEquals(1, listener.received.get());
+
+        bus.publish("second");
+        assertEquals(1, listener.received.get());
+
+        bus.shutdown();
+    }
+
+    @Test
+    public void testFromWithinHandler() throws Exception {
+        final IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+        bus.addErrorHandler(TestFailingHandler);
+
+        final SelfRemovingListener listener = new SelfRemovingListener(bus);
+        bus.subscribe(listener);
+
+        // must not wait for itself
+        bus.publish("first");
+        bus.publish("second");
+        assertEquals(1, listener.received.get());
+
+        bus.shutdown();
+    }
+
+    @Test
+    public void testRequiresTracking() throws Exception {
+        MessageBus.trackPublications = false;
+
+        final IMessageBus bus = new MessageBus(IMessageBus.DispatchMode.Exact, 1);
+        final BlockingListener listener = new BlockingListener();
+        bus.subscribe(listener);
+
+        try {
+            bus.unsubscribeAndWait(listener);
+            fail("publications are not tracked");
+        } catch (IllegalStateException expected) {
+        }
+
+        bus.shutdown();
+    }
+
+    @Test
+    public void testDeadThreadsAreRemoved() throws Exception {
+        final EpochTracker epochs = new EpochTracker();
+
+        for (int i = 0; i < 10; i++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    epochs.enter().exit();
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+
+        // only the record of this thread is left
+        epochs.awaitQuiescence();
+        assertEquals(1, epochs.size());
+    }
+
+    public static class BlockingListener {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger received = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) throws InterruptedException {
+            received.getAndIncrement();
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    public static class SelfRemovingListener {
+        private final IMessageBus bus;
+        private final AtomicInteger received = new AtomicInteger();
+
+        public SelfRemovingListener(final IMessageBus bus) {
+            this.bus = bus;
+        }
+
+        @Handler
+        public void handle(String message) throws InterruptedException {
+            received.getAndIncrement();
+            bus.unsubscribeAndWait(this);
+        }
+    }
+}